@@ -1,21 +1,23 @@
 package br.com.caixaeletronico.command;
 import br.com.caixaeletronico.model.TipoOperacao;
-import br.com.caixaeletronico.model.ValorCedula;
+import br.com.caixaeletronico.model.VetorCedulas;
 import br.com.caixaeletronico.repository.ContaRepository;
-import br.com.caixaeletronico.repository.EstoqueGlobalRepository;
 import br.com.caixaeletronico.repository.PagamentoAgendadoRepository;
+import br.com.caixaeletronico.service.GerenciadorBloqueioContas;
+import br.com.caixaeletronico.service.MotorEstoque;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import java.math.BigDecimal;
-import java.util.Map;
 @Component
 public class CommandFactory {
     @Autowired
     private ContaRepository contaRepository;
     @Autowired
-    private EstoqueGlobalRepository estoqueGlobalRepository;
-    @Autowired
     private PagamentoAgendadoRepository pagamentoAgendadoRepository;
+    @Autowired
+    private MotorEstoque motorEstoque;
+    @Autowired
+    private GerenciadorBloqueioContas bloqueioContas;
     public OperacaoCommand criarCommand(TipoOperacao tipo, Object... parametros) {
         switch (tipo) {
             case DEPOSITO:
@@ -50,10 +52,10 @@ public class CommandFactory {
         }
         Long contaId = (Long) parametros[0];
         BigDecimal valor = (BigDecimal) parametros[1];
-        @SuppressWarnings("unchecked")
-        Map<ValorCedula, Integer> cedulasDeposito = (Map<ValorCedula, Integer>) parametros[2];
-        return new DepositoCommand(contaRepository, estoqueGlobalRepository, 
-                                  contaId, valor, cedulasDeposito);
+        VetorCedulas cedulasDeposito = (VetorCedulas) parametros[2];
+        String terminalId = obterTerminal(parametros);
+        return new DepositoCommand(contaRepository, motorEstoque, bloqueioContas,
+                                  contaId, valor, cedulasDeposito, terminalId);
     }
     private OperacaoCommand criarDepositoCommand(br.com.caixaeletronico.model.Usuario usuarioLogado, Object... parametros) {
         if (parametros.length < 3) {
@@ -61,10 +63,10 @@ public class CommandFactory {
         }
         Long contaId = (Long) parametros[0];
         BigDecimal valor = (BigDecimal) parametros[1];
-        @SuppressWarnings("unchecked")
-        Map<ValorCedula, Integer> cedulasDeposito = (Map<ValorCedula, Integer>) parametros[2];
-        return new DepositoCommand(contaRepository, estoqueGlobalRepository, 
-                                  contaId, valor, cedulasDeposito, usuarioLogado);
+        VetorCedulas cedulasDeposito = (VetorCedulas) parametros[2];
+        String terminalId = obterTerminal(parametros);
+        return new DepositoCommand(contaRepository, motorEstoque, bloqueioContas,
+                                  contaId, valor, cedulasDeposito, terminalId, usuarioLogado);
     }
     private OperacaoCommand criarSaqueCommand(Object... parametros) {
         if (parametros.length < 3) {
@@ -72,10 +74,10 @@ public class CommandFactory {
         }
         Long contaId = (Long) parametros[0];
         BigDecimal valor = (BigDecimal) parametros[1];
-        @SuppressWarnings("unchecked")
-        Map<ValorCedula, Integer> cedulasSaque = (Map<ValorCedula, Integer>) parametros[2];
-        return new SaqueCommand(contaRepository, estoqueGlobalRepository, 
-                               contaId, valor, cedulasSaque);
+        VetorCedulas cedulasSaque = (VetorCedulas) parametros[2];
+        String terminalId = obterTerminal(parametros);
+        return new SaqueCommand(contaRepository, motorEstoque, bloqueioContas,
+                               contaId, valor, cedulasSaque, terminalId);
     }
     private OperacaoCommand criarSaqueCommand(br.com.caixaeletronico.model.Usuario usuarioLogado, Object... parametros) {
         if (parametros.length < 3) {
@@ -83,10 +85,10 @@ public class CommandFactory {
         }
         Long contaId = (Long) parametros[0];
         BigDecimal valor = (BigDecimal) parametros[1];
-        @SuppressWarnings("unchecked")
-        Map<ValorCedula, Integer> cedulasSaque = (Map<ValorCedula, Integer>) parametros[2];
-        return new SaqueCommand(contaRepository, estoqueGlobalRepository, 
-                               contaId, valor, cedulasSaque, usuarioLogado);
+        VetorCedulas cedulasSaque = (VetorCedulas) parametros[2];
+        String terminalId = obterTerminal(parametros);
+        return new SaqueCommand(contaRepository, motorEstoque, bloqueioContas,
+                               contaId, valor, cedulasSaque, terminalId, usuarioLogado);
     }
     private OperacaoCommand criarTransferenciaCommand(Object... parametros) {
         if (parametros.length < 3) {
@@ -95,7 +97,7 @@ public class CommandFactory {
         Long contaOrigemId = (Long) parametros[0];
         Long contaDestinoId = (Long) parametros[1];
         BigDecimal valor = (BigDecimal) parametros[2];
-        return new TransferenciaCommand(contaRepository, 
+        return new TransferenciaCommand(contaRepository, bloqueioContas,
                                        contaOrigemId, contaDestinoId, valor);
     }
     private OperacaoCommand criarTransferenciaCommand(br.com.caixaeletronico.model.Usuario usuarioLogado, Object... parametros) {
@@ -105,7 +107,7 @@ public class CommandFactory {
         Long contaOrigemId = (Long) parametros[0];
         Long contaDestinoId = (Long) parametros[1];
         BigDecimal valor = (BigDecimal) parametros[2];
-        return new TransferenciaCommand(contaRepository, 
+        return new TransferenciaCommand(contaRepository, bloqueioContas,
                                        contaOrigemId, contaDestinoId, valor, usuarioLogado);
     }
     private OperacaoCommand criarPaymentInstallmentCommand(Object... parametros) {
@@ -113,7 +115,13 @@ public class CommandFactory {
             throw new IllegalArgumentException("Parâmetros insuficientes para criar comando de pagamento de parcela");
         }
         Long pagamentoAgendadoId = (Long) parametros[0];
-        return new PaymentInstallmentCommand(contaRepository, pagamentoAgendadoRepository, 
+        return new PaymentInstallmentCommand(contaRepository, pagamentoAgendadoRepository, bloqueioContas, 
                                            pagamentoAgendadoId);
     }
+    /**
+     * Terminal opcional de saques e depósitos (quarto parâmetro); nulo = estoque global.
+     */
+    private String obterTerminal(Object... parametros) {
+        return parametros.length > 3 ? (String) parametros[3] : null;
+    }
 }
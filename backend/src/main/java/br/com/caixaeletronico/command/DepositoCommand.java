@@ -1,42 +1,51 @@
 package br.com.caixaeletronico.command;
 import br.com.caixaeletronico.model.*;
 import br.com.caixaeletronico.repository.ContaRepository;
-import br.com.caixaeletronico.repository.EstoqueGlobalRepository;
+import br.com.caixaeletronico.service.GerenciadorBloqueioContas;
+import br.com.caixaeletronico.service.MotorEstoque;
 import java.math.BigDecimal;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 public class DepositoCommand implements OperacaoCommand {
     private final ContaRepository contaRepository;
-    private final EstoqueGlobalRepository estoqueGlobalRepository;
+    private final MotorEstoque motorEstoque;
+    private final GerenciadorBloqueioContas bloqueioContas;
     private final Long contaId;
     private final BigDecimal valor;
-    private final Map<ValorCedula, Integer> cedulasDeposito;
+    private final VetorCedulas cedulasDeposito;
+    private final String terminalId;
     private final Usuario usuarioLogado;
     private OperationMemento memento;
-    public DepositoCommand(ContaRepository contaRepository, EstoqueGlobalRepository estoqueGlobalRepository, 
+    public DepositoCommand(ContaRepository contaRepository, MotorEstoque motorEstoque,
+                       GerenciadorBloqueioContas bloqueioContas,
                           Long contaId, BigDecimal valor, 
-                          Map<ValorCedula, Integer> cedulasDeposito) {
+                          VetorCedulas cedulasDeposito, String terminalId) {
         this.contaRepository = contaRepository;
-        this.estoqueGlobalRepository = estoqueGlobalRepository;
+        this.motorEstoque = motorEstoque;
+        this.bloqueioContas = bloqueioContas;
         this.contaId = contaId;
         this.valor = valor;
         this.cedulasDeposito = cedulasDeposito;
+        this.terminalId = terminalId;
         this.usuarioLogado = null;
     }
-    public DepositoCommand(ContaRepository contaRepository, EstoqueGlobalRepository estoqueGlobalRepository, 
+    public DepositoCommand(ContaRepository contaRepository, MotorEstoque motorEstoque,
+                       GerenciadorBloqueioContas bloqueioContas,
                           Long contaId, BigDecimal valor, 
-                          Map<ValorCedula, Integer> cedulasDeposito, Usuario usuarioLogado) {
+                          VetorCedulas cedulasDeposito, String terminalId,
+                          Usuario usuarioLogado) {
         this.contaRepository = contaRepository;
-        this.estoqueGlobalRepository = estoqueGlobalRepository;
+        this.motorEstoque = motorEstoque;
+        this.bloqueioContas = bloqueioContas;
         this.contaId = contaId;
         this.valor = valor;
         this.cedulasDeposito = cedulasDeposito;
+        this.terminalId = terminalId;
         this.usuarioLogado = usuarioLogado;
     }
     @Override
     public void executar() {
+        bloqueioContas.bloquear(contaId);
         Conta conta = contaRepository.findById(contaId)
             .orElseThrow(() -> new RuntimeException("Conta não encontrada"));
         if (usuarioLogado != null && 
@@ -44,16 +53,11 @@ public class DepositoCommand implements OperacaoCommand {
             !PerfilUsuario.ADMIN.equals(usuarioLogado.getPerfil())) {
             throw new RuntimeException("Você não tem permissão para depositar nesta conta");
         }
-        memento = gerarMemento();
-        conta.setSaldo(conta.getSaldo().add(valor));
-        for (Map.Entry<ValorCedula, Integer> entry : cedulasDeposito.entrySet()) {
-            ValorCedula valorCedula = entry.getKey();
-            Integer quantidade = entry.getValue();
-            EstoqueGlobal estoque = estoqueGlobalRepository.findByValorCedula(valorCedula)
-                .orElse(new EstoqueGlobal(valorCedula, 0));
-            estoque.adicionarQuantidade(quantidade);
-            estoqueGlobalRepository.save(estoque);
+        if (memento == null) {
+            gerarMemento();
         }
+        conta.setSaldo(conta.getSaldo().add(valor));
+        motorEstoque.creditar(terminalId, cedulasDeposito);
         contaRepository.save(conta);
     }
     @Override
@@ -63,29 +67,15 @@ public class DepositoCommand implements OperacaoCommand {
         }
         Conta conta = contaRepository.findById(contaId)
             .orElseThrow(() -> new RuntimeException("Conta não encontrada"));
-        BigDecimal saldoAnterior = memento.getSaldosAntes().get(contaId);
-        conta.setSaldo(saldoAnterior);
-        List<OperationMemento.EstoqueGlobalSnapshot> estoquesAnteriores = memento.getEstoquesAntes();
-        for (OperationMemento.EstoqueGlobalSnapshot snapshot : estoquesAnteriores) {
-            EstoqueGlobal estoque = estoqueGlobalRepository.findByValorCedula(snapshot.getValorCedula())
-                .orElseThrow(() -> new RuntimeException("Estoque não encontrado"));
-            estoque.setQuantidade(snapshot.getQuantidade());
-            estoqueGlobalRepository.save(estoque);
-        }
+        conta.setSaldo(conta.getSaldo().subtract(memento.getVariacoesSaldo().get(contaId)));
+        motorEstoque.debitar(terminalId, memento.getVariacoesCedulas());
         contaRepository.save(conta);
     }
     @Override
     public OperationMemento gerarMemento() {
-        Conta conta = contaRepository.findById(contaId)
-            .orElseThrow(() -> new RuntimeException("Conta não encontrada"));
-        Map<Long, BigDecimal> saldosAntes = new HashMap<>();
-        saldosAntes.put(contaId, conta.getSaldo());
-        List<OperationMemento.EstoqueGlobalSnapshot> estoquesAntes = new ArrayList<>();
-        List<EstoqueGlobal> estoques = estoqueGlobalRepository.findAll();
-        for (EstoqueGlobal estoque : estoques) {
-            estoquesAntes.add(new OperationMemento.EstoqueGlobalSnapshot(
-                estoque.getValorCedula(), estoque.getQuantidade()));
-        }
-        return new OperationMemento(saldosAntes, estoquesAntes);
+        Map<Long, BigDecimal> variacoesSaldo = new HashMap<>();
+        variacoesSaldo.put(contaId, valor);
+        memento = new OperationMemento(variacoesSaldo, cedulasDeposito, terminalId);
+        return memento;
     }
 }
@@ -1,22 +1,24 @@
 package br.com.caixaeletronico.command;
 import br.com.caixaeletronico.model.*;
 import br.com.caixaeletronico.repository.ContaRepository;
+import br.com.caixaeletronico.service.GerenciadorBloqueioContas;
 import br.com.caixaeletronico.repository.PagamentoAgendadoRepository;
 import java.math.BigDecimal;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 public class PaymentInstallmentCommand implements OperacaoCommand {
     private final ContaRepository contaRepository;
     private final PagamentoAgendadoRepository pagamentoAgendadoRepository;
+    private final GerenciadorBloqueioContas bloqueioContas;
     private final Long pagamentoAgendadoId;
     private OperationMemento memento;
     public PaymentInstallmentCommand(ContaRepository contaRepository, 
                                    PagamentoAgendadoRepository pagamentoAgendadoRepository,
+                                   GerenciadorBloqueioContas bloqueioContas,
                                    Long pagamentoAgendadoId) {
         this.contaRepository = contaRepository;
         this.pagamentoAgendadoRepository = pagamentoAgendadoRepository;
+        this.bloqueioContas = bloqueioContas;
         this.pagamentoAgendadoId = pagamentoAgendadoId;
     }
     @Override
@@ -26,16 +28,26 @@ public class PaymentInstallmentCommand implements OperacaoCommand {
         if (pagamento.getStatus() != StatusAgendamento.ATIVO) {
             throw new RuntimeException("Pagamento não está ativo");
         }
-        Conta conta = contaRepository.findById(pagamento.getContaOrigem().getId())
+        Long origemId = pagamento.getContaOrigem().getId();
+        Long destinoId = pagamento.getContaDestino().getId();
+        bloqueioContas.bloquear(origemId, destinoId);
+        Conta origem = contaRepository.findById(origemId)
             .orElseThrow(() -> new RuntimeException("Conta não encontrada"));
         BigDecimal valorParcela = pagamento.getValorParcela();
-        if (conta.getSaldo().compareTo(valorParcela) < 0) {
+        if (origem.getSaldo().compareTo(valorParcela) < 0) {
             throw new RuntimeException("Saldo insuficiente para pagamento da parcela");
         }
         memento = gerarMemento();
-        conta.setSaldo(conta.getSaldo().subtract(valorParcela));
+        origem.setSaldo(origem.getSaldo().subtract(valorParcela));
+        contaRepository.save(origem);
+        // Pagamento para a própria conta é só débito, como antes.
+        if (!destinoId.equals(origemId)) {
+            Conta destino = contaRepository.findById(destinoId)
+                .orElseThrow(() -> new RuntimeException("Conta destino não encontrada"));
+            destino.setSaldo(destino.getSaldo().add(valorParcela));
+            contaRepository.save(destino);
+        }
         pagamento.processarParcela();
-        contaRepository.save(conta);
         pagamentoAgendadoRepository.save(pagamento);
     }
     @Override
@@ -45,27 +57,28 @@ public class PaymentInstallmentCommand implements OperacaoCommand {
         }
         PagamentoAgendado pagamento = pagamentoAgendadoRepository.findById(pagamentoAgendadoId)
             .orElseThrow(() -> new RuntimeException("Pagamento agendado não encontrado"));
-        Conta conta = contaRepository.findById(pagamento.getContaOrigem().getId())
-            .orElseThrow(() -> new RuntimeException("Conta não encontrada"));
-        BigDecimal saldoAnterior = memento.getSaldosAntes().get(conta.getId());
-        conta.setSaldo(saldoAnterior);
+        for (Map.Entry<Long, BigDecimal> variacao : memento.getVariacoesSaldo().entrySet()) {
+            Conta conta = contaRepository.findById(variacao.getKey())
+                .orElseThrow(() -> new RuntimeException("Conta não encontrada"));
+            conta.setSaldo(conta.getSaldo().subtract(variacao.getValue()));
+            contaRepository.save(conta);
+        }
         pagamento.setParcelasRestantes(pagamento.getParcelasRestantes() + 1);
         pagamento.setDataProximaExecucao(pagamento.getDataProximaExecucao().minusDays(pagamento.getPeriodicidadeDias()));
         if (pagamento.getParcelasRestantes() > 0) {
             pagamento.setStatus(StatusAgendamento.ATIVO);
         }
-        contaRepository.save(conta);
         pagamentoAgendadoRepository.save(pagamento);
     }
     @Override
     public OperationMemento gerarMemento() {
         PagamentoAgendado pagamento = pagamentoAgendadoRepository.findById(pagamentoAgendadoId)
             .orElseThrow(() -> new RuntimeException("Pagamento agendado não encontrado"));
-        Conta conta = contaRepository.findById(pagamento.getContaOrigem().getId())
-            .orElseThrow(() -> new RuntimeException("Conta não encontrada"));
-        Map<Long, BigDecimal> saldosAntes = new HashMap<>();
-        saldosAntes.put(conta.getId(), conta.getSaldo());
-        List<OperationMemento.EstoqueGlobalSnapshot> estoquesAntes = new ArrayList<>();
-        return new OperationMemento(saldosAntes, estoquesAntes);
+        Map<Long, BigDecimal> variacoesSaldo = new HashMap<>();
+        variacoesSaldo.put(pagamento.getContaOrigem().getId(), pagamento.getValorParcela().negate());
+        if (!pagamento.getContaDestino().getId().equals(pagamento.getContaOrigem().getId())) {
+            variacoesSaldo.put(pagamento.getContaDestino().getId(), pagamento.getValorParcela());
+        }
+        return new OperationMemento(variacoesSaldo, VetorCedulas.VAZIO, null);
     }
 }
@@ -1,29 +1,31 @@
 package br.com.caixaeletronico.command;
 import br.com.caixaeletronico.model.*;
 import br.com.caixaeletronico.repository.ContaRepository;
+import br.com.caixaeletronico.service.GerenciadorBloqueioContas;
 import java.math.BigDecimal;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 public class TransferenciaCommand implements OperacaoCommand {
     private final ContaRepository contaRepository;
+    private final GerenciadorBloqueioContas bloqueioContas;
     private final Long contaOrigemId;
     private final Long contaDestinoId;
     private final BigDecimal valor;
     private final Usuario usuarioLogado;
     private OperationMemento memento;
-    public TransferenciaCommand(ContaRepository contaRepository, 
+    public TransferenciaCommand(ContaRepository contaRepository, GerenciadorBloqueioContas bloqueioContas,
                                Long contaOrigemId, Long contaDestinoId, BigDecimal valor) {
         this.contaRepository = contaRepository;
+        this.bloqueioContas = bloqueioContas;
         this.contaOrigemId = contaOrigemId;
         this.contaDestinoId = contaDestinoId;
         this.valor = valor;
         this.usuarioLogado = null;
     }
-    public TransferenciaCommand(ContaRepository contaRepository, 
+    public TransferenciaCommand(ContaRepository contaRepository, GerenciadorBloqueioContas bloqueioContas,
                                Long contaOrigemId, Long contaDestinoId, BigDecimal valor, Usuario usuarioLogado) {
         this.contaRepository = contaRepository;
+        this.bloqueioContas = bloqueioContas;
         this.contaOrigemId = contaOrigemId;
         this.contaDestinoId = contaDestinoId;
         this.valor = valor;
@@ -31,6 +33,7 @@ public class TransferenciaCommand implements OperacaoCommand {
     }
     @Override
     public void executar() {
+        bloqueioContas.bloquear(contaOrigemId, contaDestinoId);
         Conta contaOrigem = contaRepository.findById(contaOrigemId)
             .orElseThrow(() -> new RuntimeException("Conta origem não encontrada"));
         Conta contaDestino = contaRepository.findById(contaDestinoId)
@@ -58,23 +61,16 @@ public class TransferenciaCommand implements OperacaoCommand {
             .orElseThrow(() -> new RuntimeException("Conta origem não encontrada"));
         Conta contaDestino = contaRepository.findById(contaDestinoId)
             .orElseThrow(() -> new RuntimeException("Conta destino não encontrada"));
-        BigDecimal saldoAnteriorOrigem = memento.getSaldosAntes().get(contaOrigemId);
-        BigDecimal saldoAnteriorDestino = memento.getSaldosAntes().get(contaDestinoId);
-        contaOrigem.setSaldo(saldoAnteriorOrigem);
-        contaDestino.setSaldo(saldoAnteriorDestino);
+        contaOrigem.setSaldo(contaOrigem.getSaldo().subtract(memento.getVariacoesSaldo().get(contaOrigemId)));
+        contaDestino.setSaldo(contaDestino.getSaldo().subtract(memento.getVariacoesSaldo().get(contaDestinoId)));
         contaRepository.save(contaOrigem);
         contaRepository.save(contaDestino);
     }
     @Override
     public OperationMemento gerarMemento() {
-        Conta contaOrigem = contaRepository.findById(contaOrigemId)
-            .orElseThrow(() -> new RuntimeException("Conta origem não encontrada"));
-        Conta contaDestino = contaRepository.findById(contaDestinoId)
-            .orElseThrow(() -> new RuntimeException("Conta destino não encontrada"));
-        Map<Long, BigDecimal> saldosAntes = new HashMap<>();
-        saldosAntes.put(contaOrigemId, contaOrigem.getSaldo());
-        saldosAntes.put(contaDestinoId, contaDestino.getSaldo());
-        List<OperationMemento.EstoqueGlobalSnapshot> estoquesAntes = new ArrayList<>();
-        return new OperationMemento(saldosAntes, estoquesAntes);
+        Map<Long, BigDecimal> variacoesSaldo = new HashMap<>();
+        variacoesSaldo.put(contaOrigemId, valor.negate());
+        variacoesSaldo.put(contaDestinoId, valor);
+        return new OperationMemento(variacoesSaldo, VetorCedulas.VAZIO, null);
     }
 }
@@ -0,0 +1,127 @@
+package br.com.caixaeletronico.config;
+import br.com.caixaeletronico.event.UsuarioAlteradoEvent;
+import br.com.caixaeletronico.model.Usuario;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+/**
+ * Principais autenticados por token, para que requisições com um token já visto não leiam o
+ * usuário do banco nem verifiquem a assinatura de novo.
+ *
+ * A chave é o SHA-256 do token (o token em si não fica em memória) e cada entrada vale até o
+ * {@code exp} do token. O usuário guardado é uma cópia sem a conta, para que um saldo antigo
+ * nunca seja usado a partir do cache. Alterações de usuário publicam
+ * {@link UsuarioAlteradoEvent}, que remove as entradas daquele login e registra o instante da
+ * alteração: tokens emitidos antes dele deixam de valer pelas claims e o principal volta a ser
+ * lido do banco.
+ */
+@Component
+public class CachePrincipaisJwt implements MeterBinder {
+    @Value("${jwt.cache.tamanho-maximo:10000}")
+    private int tamanhoMaximo;
+    @Value("${jwt.expiration:86400000}")
+    private long validadeToken;
+    private final Map<String, Entrada> entradas = new ConcurrentHashMap<>();
+    private final Map<String, Long> alteracoes = new ConcurrentHashMap<>();
+    private final AtomicLong acertos = new AtomicLong();
+    private final AtomicLong faltas = new AtomicLong();
+    private record Entrada(CustomUserDetailsService.CustomUserPrincipal principal, long expiraEm) {
+    }
+    /**
+     * Principal do token, ou nulo se não estiver em cache ou o token já tiver expirado.
+     */
+    public CustomUserDetailsService.CustomUserPrincipal obter(String token) {
+        String chave = chave(token);
+        Entrada entrada = entradas.get(chave);
+        if (entrada == null) {
+            faltas.incrementAndGet();
+            return null;
+        }
+        if (entrada.expiraEm() <= System.currentTimeMillis()) {
+            entradas.remove(chave, entrada);
+            faltas.incrementAndGet();
+            return null;
+        }
+        acertos.incrementAndGet();
+        return entrada.principal();
+    }
+    /**
+     * Guarda o principal até a expiração do token e devolve a versão guardada. Com o cache
+     * cheio, remove as entradas expiradas; se ainda assim não houver espaço, não guarda.
+     */
+    public CustomUserDetailsService.CustomUserPrincipal guardar(String token,
+                                                               CustomUserDetailsService.CustomUserPrincipal principal,
+                                                               Date expiracao) {
+        CustomUserDetailsService.CustomUserPrincipal retrato =
+            new CustomUserDetailsService.CustomUserPrincipal(semConta(principal.getUsuario()), principal.getContaId());
+        if (expiracao == null) {
+            return retrato;
+        }
+        if (entradas.size() >= tamanhoMaximo) {
+            removerExpirados();
+            if (entradas.size() >= tamanhoMaximo) {
+                return retrato;
+            }
+        }
+        entradas.put(chave(token), new Entrada(retrato, expiracao.getTime()));
+        return retrato;
+    }
+    @EventListener
+    public void invalidar(UsuarioAlteradoEvent evento) {
+        invalidarUsuario(evento.getLogin());
+    }
+    public void invalidarUsuario(String login) {
+        alteracoes.put(login, System.currentTimeMillis());
+        entradas.values().removeIf(entrada -> entrada.principal().getUsername().equals(login));
+    }
+    /**
+     * Indica se o usuário foi alterado depois da emissão do token, caso em que as claims podem
+     * estar desatualizadas.
+     */
+    public boolean alteradoApos(String login, Date emitidoEm) {
+        Long alteradoEm = alteracoes.get(login);
+        return alteradoEm != null && (emitidoEm == null || emitidoEm.getTime() < alteradoEm);
+    }
+    @Scheduled(fixedDelayString = "${jwt.cache.limpeza-ms:60000}")
+    public void removerExpirados() {
+        long agora = System.currentTimeMillis();
+        entradas.values().removeIf(entrada -> entrada.expiraEm() <= agora);
+        alteracoes.values().removeIf(alteradoEm -> alteradoEm <= agora - validadeToken);
+    }
+    private static Usuario semConta(Usuario usuario) {
+        Usuario copia = new Usuario(usuario.getLogin(), usuario.getEmail(), usuario.getSenha(), usuario.getPerfil());
+        copia.setId(usuario.getId());
+        return copia;
+    }
+    private static String chave(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("jwt.cache.principais.tamanho", entradas, Map::size).register(registry);
+        FunctionCounter.builder("jwt.cache.principais.consultas", acertos, AtomicLong::get)
+            .tag("resultado", "acerto")
+            .register(registry);
+        FunctionCounter.builder("jwt.cache.principais.consultas", faltas, AtomicLong::get)
+            .tag("resultado", "falta")
+            .register(registry);
+    }
+}
@@ -1,6 +1,9 @@
 package br.com.caixaeletronico.config;
+import br.com.caixaeletronico.model.PerfilUsuario;
 import br.com.caixaeletronico.model.Usuario;
 import br.com.caixaeletronico.repository.UsuarioRepository;
+import br.com.caixaeletronico.service.JwtService;
+import io.jsonwebtoken.Claims;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -18,12 +21,34 @@ public class CustomUserDetailsService implements UserDetailsService {
     public UserDetails loadUserByUsername(String login) throws UsernameNotFoundException {
         Usuario usuario = usuarioRepository.findByLogin(login)
             .orElseThrow(() -> new UsernameNotFoundException("Usuário não encontrado: " + login));
-        return new CustomUserPrincipal(usuario);
+        return new CustomUserPrincipal(usuario, usuario.getConta() != null ? usuario.getConta().getId() : null);
     }
     public static class CustomUserPrincipal implements UserDetails {
         private final Usuario usuario;
+        private final Long contaId;
         public CustomUserPrincipal(Usuario usuario) {
+            this(usuario, null);
+        }
+        public CustomUserPrincipal(Usuario usuario, Long contaId) {
             this.usuario = usuario;
+            this.contaId = contaId;
+        }
+        /**
+         * Principal montado só com as claims assinadas do token, sem consultar o banco. O usuário
+         * devolvido não tem senha nem conta carregada. Retorna nulo para tokens sem as claims de
+         * identidade (emitidos antes delas existirem).
+         */
+        public static CustomUserPrincipal deClaims(Claims claims) {
+            Number usuarioId = claims.get(JwtService.CLAIM_USUARIO_ID, Number.class);
+            String perfil = claims.get(JwtService.CLAIM_PERFIL, String.class);
+            if (usuarioId == null || perfil == null || claims.getSubject() == null) {
+                return null;
+            }
+            Usuario usuario = new Usuario(claims.getSubject(), claims.get(JwtService.CLAIM_EMAIL, String.class),
+                null, PerfilUsuario.valueOf(perfil));
+            usuario.setId(usuarioId.longValue());
+            Number contaId = claims.get(JwtService.CLAIM_CONTA_ID, Number.class);
+            return new CustomUserPrincipal(usuario, contaId != null ? contaId.longValue() : null);
         }
         @Override
         public Collection<? extends GrantedAuthority> getAuthorities() {
@@ -57,5 +82,20 @@ public class CustomUserDetailsService implements UserDetailsService {
         public Usuario getUsuario() {
             return usuario;
         }
+        /**
+         * Conta do usuário segundo o token; nula para quem não tem conta (administradores).
+         */
+        public Long getContaId() {
+            return contaId;
+        }
+        public boolean isAdmin() {
+            return PerfilUsuario.ADMIN.equals(usuario.getPerfil());
+        }
+        /**
+         * Administradores acessam qualquer conta; os demais, só a própria.
+         */
+        public boolean podeAcessarConta(Long id) {
+            return isAdmin() || (id != null && id.equals(contaId));
+        }
     }
 }
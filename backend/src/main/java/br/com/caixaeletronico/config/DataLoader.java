@@ -15,6 +15,8 @@ public class DataLoader implements CommandLineRunner {
     @Autowired
     private EstoqueGlobalRepository estoqueGlobalRepository;
     @Autowired
+    private SlotCedulaRepository slotCedulaRepository;
+    @Autowired
     private PasswordEncoder passwordEncoder;
     @Override
     public void run(String... args) throws Exception {
@@ -60,6 +62,12 @@ public class DataLoader implements CommandLineRunner {
         criarEstoqueGlobal(ValorCedula.DEZ, 2000);
         criarEstoqueGlobal(ValorCedula.CINCO, 4000);
         criarEstoqueGlobal(ValorCedula.DOIS, 10000);
+        for (String terminalId : new String[] {"TERMINAL-01", "TERMINAL-02"}) {
+            criarSlot(terminalId, ValorCedula.CEM, 50);
+            criarSlot(terminalId, ValorCedula.CINQUENTA, 100);
+            criarSlot(terminalId, ValorCedula.VINTE, 200);
+            criarSlot(terminalId, ValorCedula.DEZ, 200);
+        }
         System.out.println("Dados iniciais criados:");
         System.out.println("- Admin: login=admin, senha=admin123");
         System.out.println("- Cliente 1: login=cliente, senha=cliente123");
@@ -67,6 +75,7 @@ public class DataLoader implements CommandLineRunner {
         System.out.println("- Conta 1: ID=1, Número=2025000001, Titular=João Silva, Saldo=R$ 5.000,00");
         System.out.println("- Conta 2: ID=2, Número=2025000002, Titular=Maria Santos, Saldo=R$ 3.000,00");
         System.out.println("- Estoque global de cédulas criado");
+        System.out.println("- Terminais com slots de cédulas: TERMINAL-01, TERMINAL-02");
     }
     private void criarEstoqueGlobal(ValorCedula valorCedula, int quantidade) {
         EstoqueGlobal estoque = new EstoqueGlobal();
@@ -74,4 +83,7 @@ public class DataLoader implements CommandLineRunner {
         estoque.setQuantidade(quantidade);
         estoqueGlobalRepository.save(estoque);
     }
+    private void criarSlot(String terminalId, ValorCedula valorCedula, int quantidade) {
+        slotCedulaRepository.save(new SlotCedula(terminalId, valorCedula, quantidade));
+    }
 }
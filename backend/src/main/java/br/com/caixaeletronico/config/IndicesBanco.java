@@ -0,0 +1,78 @@
+package br.com.caixaeletronico.config;
+import br.com.caixaeletronico.model.StatusAgendamento;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+/**
+ * Cria no PostgreSQL os índices que o JPA não sabe declarar (parciais, com expressões ou
+ * ordenação), acerta sequências e refaz restrições que o ddl-auto=update não altera. Em
+ * outros bancos, como o H2 dos testes, nada é feito.
+ *
+ * Sequências e restrições são acertadas ao fim da criação dos beans, depois de o Hibernate atualizar o
+ * esquema e antes de o servidor web aceitar requisições; uma falha aí impede a subida. Os
+ * índices ficam para quando a aplicação estiver pronta.
+ */
+@Component
+public class IndicesBanco implements SmartInitializingSingleton {
+    private static final List<String> INDICES_POSTGRES = List.of(
+        "CREATE INDEX IF NOT EXISTS idx_operacoes_desfaziveis ON operacoes " +
+        "(usuario_responsavel, data_hora DESC, id DESC) WHERE desfeita = false AND possui_memento = true",
+        "CREATE EXTENSION IF NOT EXISTS pg_trgm",
+        "CREATE INDEX IF NOT EXISTS idx_contas_titular_trgm ON contas USING gin (lower(titular) gin_trgm_ops)",
+        "CREATE INDEX IF NOT EXISTS idx_contas_numero_trgm ON contas USING gin (numero_conta gin_trgm_ops)",
+        "CREATE INDEX IF NOT EXISTS idx_pagamentos_agendados_ativos ON pagamentos_agendados " +
+        "(data_proxima_execucao, id) WHERE status = 'ATIVO'"
+    );
+    private static final List<String> SEQUENCIAS_POSTGRES = List.of(
+        // A sequência é nova numa tabela que já tinha ids de IDENTITY: começa depois do maior.
+        "SELECT setval('pagamentos_agendados_seq', GREATEST((SELECT last_value FROM pagamentos_agendados_seq), " +
+        "(SELECT COALESCE(MAX(id), 0) + 50 FROM pagamentos_agendados)))"
+    );
+    // O ddl-auto=update só acrescenta: não refaz o CHECK de enums criado com os valores da época
+    // nem remove o UNIQUE de valor_cedula de antes dos slots por terminal.
+    private static final List<String> RESTRICOES_POSTGRES = List.of(
+        "ALTER TABLE slots_cedulas DROP CONSTRAINT IF EXISTS slots_cedulas_valor_cedula_key",
+        "ALTER TABLE pagamentos_agendados DROP CONSTRAINT IF EXISTS pagamentos_agendados_status_check",
+        "ALTER TABLE pagamentos_agendados ADD CONSTRAINT pagamentos_agendados_status_check CHECK (status IN (" +
+        Arrays.stream(StatusAgendamento.values()).map(s -> "'" + s.name() + "'").collect(Collectors.joining(", ")) + "))"
+    );
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!isPostgres()) {
+            return;
+        }
+        for (String sequencia : SEQUENCIAS_POSTGRES) {
+            jdbcTemplate.execute(sequencia);
+        }
+        for (String restricao : RESTRICOES_POSTGRES) {
+            jdbcTemplate.execute(restricao);
+        }
+    }
+    @EventListener(ApplicationReadyEvent.class)
+    public void criarIndices() {
+        if (!isPostgres()) {
+            return;
+        }
+        for (String indice : INDICES_POSTGRES) {
+            try {
+                jdbcTemplate.execute(indice);
+            } catch (Exception e) {
+                System.err.println("Erro ao criar índice: " + e.getMessage());
+            }
+        }
+    }
+    private boolean isPostgres() {
+        String banco = jdbcTemplate.execute((ConnectionCallback<String>) conexao ->
+            conexao.getMetaData().getDatabaseProductName());
+        return "PostgreSQL".equalsIgnoreCase(banco);
+    }
+}
@@ -1,5 +1,6 @@
 package br.com.caixaeletronico.config;
 import br.com.caixaeletronico.service.JwtService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -19,6 +20,8 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private JwtService jwtService;
     @Autowired
     private UserDetailsService userDetailsService;
+    @Autowired
+    private CachePrincipaisJwt cachePrincipais;
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, 
                                    FilterChain filterChain) throws ServletException, IOException {
@@ -29,15 +32,22 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
         try {
             String token = authHeader.substring(7);
-            String login = jwtService.extrairLogin(token);
-            if (login != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                UserDetails userDetails = userDetailsService.loadUserByUsername(login);
-                if (jwtService.validarToken(token)) {
-                    UsernamePasswordAuthenticationToken authToken = 
-                        new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    SecurityContextHolder.getContext().setAuthentication(authToken);
+            if (SecurityContextHolder.getContext().getAuthentication() == null) {
+                UserDetails userDetails = cachePrincipais.obter(token);
+                if (userDetails == null) {
+                    Claims claims = jwtService.lerClaims(token);
+                    CustomUserDetailsService.CustomUserPrincipal principal =
+                        CustomUserDetailsService.CustomUserPrincipal.deClaims(claims);
+                    if (principal == null || cachePrincipais.alteradoApos(claims.getSubject(), claims.getIssuedAt())) {
+                        principal = (CustomUserDetailsService.CustomUserPrincipal)
+                            userDetailsService.loadUserByUsername(claims.getSubject());
+                    }
+                    userDetails = cachePrincipais.guardar(token, principal, claims.getExpiration());
                 }
+                UsernamePasswordAuthenticationToken authToken = 
+                    new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                SecurityContextHolder.getContext().setAuthentication(authToken);
             }
         } catch (Exception e) {
         }
@@ -0,0 +1,14 @@
+package br.com.caixaeletronico.config;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import java.time.Clock;
+/**
+ * Relógio do agendamento de pagamentos; testes e o simulador trocam por um relógio controlado.
+ */
+@Configuration
+public class RelogioConfig {
+    @Bean
+    public Clock clock() {
+        return Clock.systemDefaultZone();
+    }
+}
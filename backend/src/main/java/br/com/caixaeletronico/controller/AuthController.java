@@ -1,26 +1,27 @@
 package br.com.caixaeletronico.controller;
 import br.com.caixaeletronico.controller.api.AuthControllerApi;
+import br.com.caixaeletronico.dto.ContaBasicaDto;
 import br.com.caixaeletronico.model.Conta;
 import br.com.caixaeletronico.model.PerfilUsuario;
 import br.com.caixaeletronico.model.Usuario;
-import br.com.caixaeletronico.repository.ContaRepository;
+import br.com.caixaeletronico.service.AccountService;
 import br.com.caixaeletronico.service.AuthenticationService;
 import br.com.caixaeletronico.util.ResponseUtil;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 @RestController
 @RequestMapping("/auth")
 public class AuthController implements AuthControllerApi {
     @Autowired
     private AuthenticationService authenticationService;
     @Autowired
-    private ContaRepository contaRepository;
+    private AccountService accountService;
     @PostMapping("/register")
     public ResponseEntity<?> registrar(@Valid @RequestBody RegistroRequest request) {
         try {
@@ -114,15 +115,16 @@ public class AuthController implements AuthControllerApi {
         }
     }
     @GetMapping("/contas-disponiveis")
-    public ResponseEntity<?> listarContasDisponiveis() {
+    public ResponseEntity<?> listarContasDisponiveis(
+            @RequestParam(required = false) String filtro,
+            @RequestParam(required = false, defaultValue = "0") int pagina,
+            @RequestParam(required = false, defaultValue = "50") int tamanho,
+            @RequestParam(required = false, defaultValue = "id") String ordenarPor,
+            @RequestParam(required = false, defaultValue = "asc") String direcao) {
         try {
-            List<Conta> todasContas = contaRepository.findAll();
-            List<Object> contasInfo = todasContas.stream()
-                .map(conta -> ResponseUtil.criarContaBasica(conta))
-                .collect(Collectors.toList());
+            Page<ContaBasicaDto> contas = accountService.listarContasBasicas(filtro, pagina, tamanho, ordenarPor, direcao);
             Map<String, Object> dadosContas = new HashMap<>();
-            dadosContas.put("contas", contasInfo);
-            dadosContas.put("totalContas", contasInfo.size());
+            ResponseUtil.adicionarPaginaContas(dadosContas, contas);
             Map<String, Object> response = ResponseUtil.criarRespostaPadraoSimples(
                 "Contas disponíveis listadas com sucesso", dadosContas);
             return ResponseEntity.ok(response);
@@ -1,11 +1,12 @@
 package br.com.caixaeletronico.controller;
 import br.com.caixaeletronico.controller.api.EstoqueGlobalControllerApi;
-import br.com.caixaeletronico.model.EstoqueGlobal;
+import br.com.caixaeletronico.model.ICedula;
 import br.com.caixaeletronico.service.EstoqueGlobalService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import java.util.HashMap;
 import java.util.List;
@@ -17,16 +18,15 @@ public class EstoqueGlobalController implements EstoqueGlobalControllerApi {
     private EstoqueGlobalService estoqueGlobalService;
     @GetMapping("/cedulas")
     @Override
-    public ResponseEntity<?> consultarEstoqueGlobal() {
+    public ResponseEntity<?> consultarEstoqueGlobal(@RequestParam(required = false) String terminalId) {
         try {
-            List<EstoqueGlobal> estoque = estoqueGlobalService.obterEstoqueGlobal();
-            Map<String, Object> response = new HashMap<>();
-            response.put("estoque", estoque);
-            response.put("totalCedulas", estoque.stream().mapToInt(EstoqueGlobal::getQuantidade).sum());
-            int valorTotal = estoque.stream()
-                .mapToInt(e -> e.getValorCedula().getValor() * e.getQuantidade())
-                .sum();
-            response.put("valorTotalDisponivel", valorTotal);
+            List<? extends ICedula> estoque = terminalId != null
+                ? estoqueGlobalService.obterEstoqueTerminal(terminalId)
+                : estoqueGlobalService.obterEstoqueGlobal();
+            Map<String, Object> response = criarResposta(estoque);
+            if (terminalId != null) {
+                response.put("terminalId", terminalId);
+            }
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
@@ -34,4 +34,27 @@ public class EstoqueGlobalController implements EstoqueGlobalControllerApi {
             return ResponseEntity.badRequest().body(error);
         }
     }
+    @GetMapping("/consolidado")
+    @Override
+    public ResponseEntity<?> consultarEstoqueConsolidado() {
+        try {
+            Map<String, Object> response = criarResposta(estoqueGlobalService.obterEstoqueConsolidado());
+            response.put("terminais", estoqueGlobalService.listarTerminais());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    private Map<String, Object> criarResposta(List<? extends ICedula> estoque) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("estoque", estoque);
+        response.put("totalCedulas", estoque.stream().mapToInt(ICedula::getQuantidade).sum());
+        int valorTotal = estoque.stream()
+            .mapToInt(e -> e.getValorCedula().getValor() * e.getQuantidade())
+            .sum();
+        response.put("valorTotalDisponivel", valorTotal);
+        return response;
+    }
 }
@@ -1,84 +1,83 @@
 package br.com.caixaeletronico.controller;
 import br.com.caixaeletronico.config.CustomUserDetailsService;
 import br.com.caixaeletronico.controller.api.ExtratoControllerApi;
+import br.com.caixaeletronico.dto.ContaInfoDto;
 import br.com.caixaeletronico.dto.OperacaoDto;
-import br.com.caixaeletronico.model.Conta;
-import br.com.caixaeletronico.model.Operacao;
 import br.com.caixaeletronico.model.Usuario;
 import br.com.caixaeletronico.model.PerfilUsuario;
 import br.com.caixaeletronico.repository.ContaRepository;
+import br.com.caixaeletronico.service.AccountService;
 import br.com.caixaeletronico.service.ExtractService;
 import br.com.caixaeletronico.util.ResponseUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
-import java.util.Optional;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 @RestController
 @RequestMapping("/contas")
 public class ExtratoController implements ExtratoControllerApi {
     @Autowired
     private ExtractService extractService;
     @Autowired
+    private AccountService accountService;
+    @Autowired
     private ContaRepository contaRepository;
+    @Autowired
+    private ObjectMapper objectMapper;
     @GetMapping("/{id}/extrato")
     public ResponseEntity<?> obterExtrato(
             @PathVariable Long id,
             @RequestParam(required = false) String dataInicio,
             @RequestParam(required = false) String dataFim,
             @RequestParam(required = false, defaultValue = "50") int limite,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime antesDeDataHora,
+            @RequestParam(required = false) Long antesDeId,
             Authentication authentication) {
         try {
             CustomUserDetailsService.CustomUserPrincipal principal = 
                 (CustomUserDetailsService.CustomUserPrincipal) authentication.getPrincipal();
-            Usuario usuario = principal.getUsuario();
-            Conta conta;
-            if (PerfilUsuario.ADMIN.equals(usuario.getPerfil())) {
-                conta = contaRepository.findById(id)
-                    .orElseThrow(() -> new RuntimeException("Conta não encontrada"));
-            } else {
-                conta = contaRepository.findById(id)
-                    .orElseThrow(() -> new RuntimeException("Conta não encontrada"));
-                if (!conta.getUsuario().getId().equals(usuario.getId())) {
-                    throw new RuntimeException("Acesso negado: você não tem permissão para acessar esta conta");
-                }
-            }
-            List<Operacao> operacoes;
+            ContaInfoDto conta = obterContaAutorizada(id, principal);
+            LocalDateTime inicio = null;
+            LocalDateTime fim = null;
             if (dataInicio != null && dataFim != null) {
-                LocalDateTime inicio = parseDateTime(dataInicio, true);
-                LocalDateTime fim = parseDateTime(dataFim, false);
-                operacoes = extractService.obterExtratoPorPeriodo(conta, inicio, fim);
-            } else {
-                operacoes = extractService.obterUltimasOperacoes(conta, limite);
+                inicio = parseDateTime(dataInicio, true);
+                fim = parseDateTime(dataFim, false);
             }
-            List<OperacaoDto> operacoesDtos = operacoes.stream()
-                .map(operacao -> new OperacaoDto(
-                    operacao.getId(),
-                    operacao.getTipo(),
-                    operacao.getDataHora(),
-                    operacao.getValor(),
-                    operacao.getUsuarioResponsavel()
-                ))
-                .collect(Collectors.toList());
+            List<OperacaoDto> operacoesDtos = extractService.obterPaginaExtrato(
+                id, inicio, fim, antesDeDataHora, antesDeId, limite);
             Map<String, Object> dadosExtrato = new HashMap<>();
             dadosExtrato.put("operacoes", operacoesDtos);
             dadosExtrato.put("totalOperacoes", operacoesDtos.size());
-            if (dataInicio != null && dataFim != null) {
+            if (inicio != null) {
                 Map<String, Object> periodo = new HashMap<>();
-                periodo.put("dataInicio", parseDateTime(dataInicio, true));
-                periodo.put("dataFim", parseDateTime(dataFim, false));
+                periodo.put("dataInicio", inicio);
+                periodo.put("dataFim", fim);
                 dadosExtrato.put("periodo", periodo);
             }
+            if (!operacoesDtos.isEmpty() && operacoesDtos.size() >= Math.min(Math.max(limite, 1), ExtractService.TAMANHO_MAXIMO_PAGINA)) {
+                OperacaoDto ultima = operacoesDtos.get(operacoesDtos.size() - 1);
+                dadosExtrato.put("proximaPagina", Map.of(
+                    "antesDeDataHora", ultima.getDataHora(),
+                    "antesDeId", ultima.getId()
+                ));
+            }
             Map<String, Object> response = ResponseUtil.criarRespostaPadraoComConta(
-                "Extrato obtido com sucesso", conta, true, dadosExtrato);
+                "Extrato obtido com sucesso", conta, dadosExtrato);
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
@@ -86,6 +85,52 @@ public class ExtratoController implements ExtratoControllerApi {
             return ResponseEntity.badRequest().body(error);
         }
     }
+    @GetMapping("/{id}/extrato/exportar")
+    public void exportarExtrato(
+            @PathVariable Long id,
+            @RequestParam(required = false, defaultValue = "csv") String formato,
+            @RequestParam(required = false) String dataInicio,
+            @RequestParam(required = false) String dataFim,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            Authentication authentication,
+            HttpServletResponse response) throws IOException {
+        ContaInfoDto conta;
+        ExtractService.FormatoExtrato formatoExtrato;
+        LocalDateTime inicio;
+        LocalDateTime fim;
+        try {
+            CustomUserDetailsService.CustomUserPrincipal principal = 
+                (CustomUserDetailsService.CustomUserPrincipal) authentication.getPrincipal();
+            conta = obterContaAutorizada(id, principal);
+            formatoExtrato = ExtractService.FormatoExtrato.de(formato);
+            inicio = parseDateTime(dataInicio, true);
+            fim = parseDateTime(dataFim, false);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding("UTF-8");
+            objectMapper.writeValue(response.getOutputStream(), error);
+            return;
+        }
+        // Escrita síncrona na thread da requisição: o cursor do banco fica aberto só enquanto o
+        // cliente consome o arquivo, e os dados nunca são montados inteiros em memória.
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+        response.setContentType(formatoExtrato.getContentType());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+            "attachment; filename=\"extrato-" + conta.getNumeroConta() + "." + formatoExtrato.getExtensao() + "\"");
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            GZIPOutputStream saida = new GZIPOutputStream(response.getOutputStream(), 8192);
+            extractService.exportarExtrato(id, inicio, fim, formatoExtrato, saida);
+            saida.finish();
+        } else {
+            extractService.exportarExtrato(id, inicio, fim, formatoExtrato, response.getOutputStream());
+        }
+    }
     @GetMapping("/{id}/saldo")
     public ResponseEntity<?> obterSaldo(
             @PathVariable Long id,
@@ -93,22 +138,11 @@ public class ExtratoController implements ExtratoControllerApi {
         try {
             CustomUserDetailsService.CustomUserPrincipal principal = 
                 (CustomUserDetailsService.CustomUserPrincipal) authentication.getPrincipal();
-            Usuario usuario = principal.getUsuario();
-            Conta conta;
-            if (PerfilUsuario.ADMIN.equals(usuario.getPerfil())) {
-                conta = contaRepository.findById(id)
-                    .orElseThrow(() -> new RuntimeException("Conta não encontrada"));
-            } else {
-                conta = contaRepository.findById(id)
-                    .orElseThrow(() -> new RuntimeException("Conta não encontrada"));
-                if (!conta.getUsuario().getId().equals(usuario.getId())) {
-                    throw new RuntimeException("Acesso negado: você não tem permissão para acessar esta conta");
-                }
-            }
+            ContaInfoDto conta = obterContaAutorizada(id, principal);
             Map<String, Object> dadosSaldo = new HashMap<>();
             dadosSaldo.put("dataConsulta", java.time.LocalDateTime.now());
             Map<String, Object> response = ResponseUtil.criarRespostaPadraoComConta(
-                "Saldo consultado com sucesso", conta, true, dadosSaldo);
+                "Saldo consultado com sucesso", conta, dadosSaldo);
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
@@ -122,20 +156,17 @@ public class ExtratoController implements ExtratoControllerApi {
             CustomUserDetailsService.CustomUserPrincipal principal = 
                 (CustomUserDetailsService.CustomUserPrincipal) authentication.getPrincipal();
             Usuario usuario = principal.getUsuario();
-            List<Conta> contas;
+            List<ContaInfoDto> contas;
             if (PerfilUsuario.ADMIN.equals(usuario.getPerfil())) {
-                contas = contaRepository.findAll();
+                contas = contaRepository.findAllContaInfo();
             } else {
-                Optional<Conta> contaOpt = contaRepository.findByUsuario(usuario);
-                contas = contaOpt.map(List::of).orElse(List.of());
+                contas = contaRepository.findContaInfoByUsuarioId(usuario.getId());
             }
             Map<String, Object> dadosContas = new HashMap<>();
             dadosContas.put("usuario", usuario.getLogin());
             dadosContas.put("perfil", usuario.getPerfil());
             dadosContas.put("totalContas", contas.size());
-            dadosContas.put("contas", contas.stream().map(conta -> {
-                return ResponseUtil.criarContaInfoComSaldo(conta);
-            }).toList());
+            dadosContas.put("contas", contas);
             Map<String, Object> response = ResponseUtil.criarRespostaPadraoSimples(
                 "Contas listadas com sucesso", dadosContas);
             return ResponseEntity.ok(response);
@@ -146,7 +177,13 @@ public class ExtratoController implements ExtratoControllerApi {
         }
     }
     @GetMapping("/todas-contas")
-    public ResponseEntity<?> listarTodasContas(Authentication authentication) {
+    public ResponseEntity<?> listarTodasContas(
+            @RequestParam(required = false) String filtro,
+            @RequestParam(required = false, defaultValue = "0") int pagina,
+            @RequestParam(required = false, defaultValue = "50") int tamanho,
+            @RequestParam(required = false, defaultValue = "id") String ordenarPor,
+            @RequestParam(required = false, defaultValue = "asc") String direcao,
+            Authentication authentication) {
         try {
             CustomUserDetailsService.CustomUserPrincipal principal = 
                 (CustomUserDetailsService.CustomUserPrincipal) authentication.getPrincipal();
@@ -156,14 +193,11 @@ public class ExtratoController implements ExtratoControllerApi {
                 error.put("error", "Acesso negado: apenas administradores podem listar todas as contas");
                 return ResponseEntity.status(403).body(error);
             }
-            List<Conta> contas = contaRepository.findAll();
+            Page<ContaInfoDto> contas = accountService.listarContas(filtro, pagina, tamanho, ordenarPor, direcao);
             Map<String, Object> dadosTodasContas = new HashMap<>();
             dadosTodasContas.put("usuarioSolicitante", usuario.getLogin());
             dadosTodasContas.put("perfil", usuario.getPerfil());
-            dadosTodasContas.put("totalContas", contas.size());
-            dadosTodasContas.put("contas", contas.stream().map(conta -> {
-                return ResponseUtil.criarContaInfoComSaldo(conta);
-            }).toList());
+            ResponseUtil.adicionarPaginaContas(dadosTodasContas, contas);
             Map<String, Object> response = ResponseUtil.criarRespostaPadraoSimples(
                 "Todas as contas listadas com sucesso", dadosTodasContas);
             return ResponseEntity.ok(response);
@@ -173,6 +207,17 @@ public class ExtratoController implements ExtratoControllerApi {
             return ResponseEntity.badRequest().body(error);
         }
     }
+    /**
+     * A posse é conferida pela claim de conta do token antes de qualquer consulta; a projeção só
+     * é lida para contas que o usuário pode acessar.
+     */
+    private ContaInfoDto obterContaAutorizada(Long contaId, CustomUserDetailsService.CustomUserPrincipal principal) {
+        if (!principal.podeAcessarConta(contaId)) {
+            throw new RuntimeException("Acesso negado: você não tem permissão para acessar esta conta");
+        }
+        return contaRepository.findContaInfoById(contaId)
+            .orElseThrow(() -> new RuntimeException("Conta não encontrada"));
+    }
     private LocalDateTime parseDateTime(String dateString, boolean startOfDay) {
         if (dateString == null || dateString.trim().isEmpty()) {
             return null;
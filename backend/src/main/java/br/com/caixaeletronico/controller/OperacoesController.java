@@ -4,6 +4,7 @@ import br.com.caixaeletronico.controller.api.OperacoesControllerApi;
 import br.com.caixaeletronico.model.TipoOperacao;
 import br.com.caixaeletronico.model.Usuario;
 import br.com.caixaeletronico.model.ValorCedula;
+import br.com.caixaeletronico.model.VetorCedulas;
 import br.com.caixaeletronico.model.Conta;
 import br.com.caixaeletronico.repository.ContaRepository;
 import br.com.caixaeletronico.service.CommandManagerService;
@@ -30,18 +31,20 @@ public class OperacoesController implements OperacoesControllerApi {
             CustomUserDetailsService.CustomUserPrincipal principal = 
                 (CustomUserDetailsService.CustomUserPrincipal) authentication.getPrincipal();
             Usuario usuario = principal.getUsuario();
-            Map<ValorCedula, Integer> cedulasDeposito = new HashMap<>();
+            int[] quantidades = new int[VetorCedulas.DIMENSAO];
             for (Map.Entry<String, Integer> entry : request.getCedulas().entrySet()) {
                 ValorCedula valorCedula = ValorCedula.valueOf(entry.getKey());
-                cedulasDeposito.put(valorCedula, entry.getValue());
+                quantidades[valorCedula.ordinal()] += entry.getValue();
             }
+            VetorCedulas cedulasDeposito = VetorCedulas.envolvendo(quantidades);
             commandManagerService.executarComando(
                 TipoOperacao.DEPOSITO,
                 usuario,
                 usuario.getEmail(),
                 request.getContaId(),
                 request.getValor(),
-                cedulasDeposito
+                cedulasDeposito,
+                request.getTerminalId()
             );
             Conta conta = contaRepository.findById(request.getContaId())
                 .orElseThrow(() -> new RuntimeException("Conta não encontrada"));
@@ -102,12 +105,15 @@ public class OperacoesController implements OperacoesControllerApi {
         private Long contaId;
         private BigDecimal valor;
         private Map<String, Integer> cedulas;
+        private String terminalId;
         public Long getContaId() { return contaId; }
         public void setContaId(Long contaId) { this.contaId = contaId; }
         public BigDecimal getValor() { return valor; }
         public void setValor(BigDecimal valor) { this.valor = valor; }
         public Map<String, Integer> getCedulas() { return cedulas; }
         public void setCedulas(Map<String, Integer> cedulas) { this.cedulas = cedulas; }
+        public String getTerminalId() { return terminalId; }
+        public void setTerminalId(String terminalId) { this.terminalId = terminalId; }
     }
     public static class TransferenciaRequest {
         private Long contaOrigemId;
@@ -1,14 +1,15 @@
 package br.com.caixaeletronico.controller;
 import br.com.caixaeletronico.config.CustomUserDetailsService;
 import br.com.caixaeletronico.controller.api.PagamentoControllerApi;
+import br.com.caixaeletronico.dto.PagamentoAgendadoDTO;
 import br.com.caixaeletronico.model.Conta;
 import br.com.caixaeletronico.model.PagamentoAgendado;
-import br.com.caixaeletronico.model.StatusAgendamento;
-import br.com.caixaeletronico.model.Usuario;
 import br.com.caixaeletronico.repository.ContaRepository;
+import br.com.caixaeletronico.service.FolhaPagamentoService;
 import br.com.caixaeletronico.service.PaymentScheduleService;
 import br.com.caixaeletronico.util.ResponseUtil;
 import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
@@ -26,6 +27,8 @@ public class PagamentoController implements PagamentoControllerApi {
     private PaymentScheduleService paymentScheduleService;
     @Autowired
     private ContaRepository contaRepository;
+    @Autowired
+    private FolhaPagamentoService folhaPagamentoService;
     @PostMapping("/agendar")
     @Override
     public ResponseEntity<?> agendarTransferencia(
@@ -34,11 +37,11 @@ public class PagamentoController implements PagamentoControllerApi {
         try {
             CustomUserDetailsService.CustomUserPrincipal principal = 
                 (CustomUserDetailsService.CustomUserPrincipal) authentication.getPrincipal();
-            Usuario usuario = principal.getUsuario();
-            Conta contaOrigem = usuario.getConta();
-            if (contaOrigem == null) {
+            if (principal.getContaId() == null) {
                 throw new RuntimeException("Usuário não possui conta associada");
             }
+            Conta contaOrigem = contaRepository.findById(principal.getContaId())
+                .orElseThrow(() -> new RuntimeException("Usuário não possui conta associada"));
             Conta contaDestino = contaRepository.findById(request.getContaDestinoId())
                 .orElseThrow(() -> new RuntimeException("Conta destino não encontrada"));
             if (contaOrigem.getId().equals(contaDestino.getId())) {
@@ -77,6 +80,48 @@ public class PagamentoController implements PagamentoControllerApi {
             return ResponseEntity.badRequest().body(error);
         }
     }
+    @PostMapping("/lote")
+    @Override
+    public ResponseEntity<?> agendarFolha(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dataInicio,
+            @RequestParam(required = false, defaultValue = "Folha de pagamento") String descricao,
+            HttpServletRequest request,
+            Authentication authentication) {
+        try {
+            CustomUserDetailsService.CustomUserPrincipal principal = 
+                (CustomUserDetailsService.CustomUserPrincipal) authentication.getPrincipal();
+            if (principal.getContaId() == null) {
+                throw new RuntimeException("Usuário não possui conta associada");
+            }
+            FolhaPagamentoService.ProgressoFolha progresso = folhaPagamentoService.agendarFolha(
+                principal.getContaId(), request.getInputStream(), dataInicio, descricao);
+            Map<String, Object> response = progressoFolha(progresso);
+            response.put("message", "Folha de pagamento aceita");
+            return ResponseEntity.accepted().body(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    @GetMapping("/lote/{folhaId}")
+    public ResponseEntity<?> obterFolha(
+            @PathVariable String folhaId,
+            Authentication authentication) {
+        try {
+            CustomUserDetailsService.CustomUserPrincipal principal = 
+                (CustomUserDetailsService.CustomUserPrincipal) authentication.getPrincipal();
+            FolhaPagamentoService.ProgressoFolha progresso = folhaPagamentoService.obterProgresso(folhaId);
+            if (!progresso.getContaOrigemId().equals(principal.getContaId())) {
+                throw new RuntimeException("Folha de pagamento não encontrada");
+            }
+            return ResponseEntity.ok(progressoFolha(progresso));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
     @GetMapping("/{id}")
     public ResponseEntity<?> obterPagamento(
             @PathVariable Long id,
@@ -84,9 +129,8 @@ public class PagamentoController implements PagamentoControllerApi {
         try {
             CustomUserDetailsService.CustomUserPrincipal principal = 
                 (CustomUserDetailsService.CustomUserPrincipal) authentication.getPrincipal();
-            Usuario usuario = principal.getUsuario();
             PagamentoAgendado pagamento = paymentScheduleService.obterPagamentoPorId(id);
-            if (!pagamento.getContaOrigem().getUsuario().getId().equals(usuario.getId())) {
+            if (!pagamento.getContaOrigem().getId().equals(principal.getContaId())) {
                 throw new RuntimeException("Pagamento não autorizado");
             }
             PagamentoAgendadoDTO pagamentoDTO = convertToDTO(pagamento);
@@ -104,18 +148,12 @@ public class PagamentoController implements PagamentoControllerApi {
         try {
             CustomUserDetailsService.CustomUserPrincipal principal = 
                 (CustomUserDetailsService.CustomUserPrincipal) authentication.getPrincipal();
-            Usuario usuario = principal.getUsuario();
-            Conta conta = contaRepository.findById(contaId)
-                .orElseThrow(() -> new RuntimeException("Conta não encontrada"));
-            if (!conta.getUsuario().getId().equals(usuario.getId())) {
+            if (!contaId.equals(principal.getContaId())) {
                 throw new RuntimeException("Acesso negado: você não tem permissão para acessar esta conta");
             }
-            List<PagamentoAgendado> pagamentos = paymentScheduleService.obterTodosPagamentos(conta);
-            List<PagamentoAgendadoDTO> pagamentosDTO = pagamentos.stream()
-                .map(this::convertToDTO)
-                .toList();
+            List<PagamentoAgendadoDTO> pagamentosDTO = paymentScheduleService.listarPagamentosEnviados(contaId);
             Map<String, Object> response = new HashMap<>();
-            response.put("contaId", conta.getId());
+            response.put("contaId", contaId);
             response.put("pagamentos", pagamentosDTO);
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -131,18 +169,12 @@ public class PagamentoController implements PagamentoControllerApi {
         try {
             CustomUserDetailsService.CustomUserPrincipal principal = 
                 (CustomUserDetailsService.CustomUserPrincipal) authentication.getPrincipal();
-            Usuario usuario = principal.getUsuario();
-            Conta conta = contaRepository.findById(contaId)
-                .orElseThrow(() -> new RuntimeException("Conta não encontrada"));
-            if (!conta.getUsuario().getId().equals(usuario.getId())) {
+            if (!contaId.equals(principal.getContaId())) {
                 throw new RuntimeException("Acesso negado: você não tem permissão para acessar esta conta");
             }
-            List<PagamentoAgendado> pagamentosRecebidos = paymentScheduleService.obterPagamentosRecebidos(conta);
-            List<PagamentoAgendadoDTO> pagamentosDTO = pagamentosRecebidos.stream()
-                .map(this::convertToDTO)
-                .toList();
+            List<PagamentoAgendadoDTO> pagamentosDTO = paymentScheduleService.listarPagamentosRecebidos(contaId);
             Map<String, Object> response = new HashMap<>();
-            response.put("contaId", conta.getId());
+            response.put("contaId", contaId);
             response.put("pagamentosRecebidos", pagamentosDTO);
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -158,22 +190,13 @@ public class PagamentoController implements PagamentoControllerApi {
         try {
             CustomUserDetailsService.CustomUserPrincipal principal = 
                 (CustomUserDetailsService.CustomUserPrincipal) authentication.getPrincipal();
-            Usuario usuario = principal.getUsuario();
-            Conta conta = contaRepository.findById(contaId)
-                .orElseThrow(() -> new RuntimeException("Conta não encontrada"));
-            if (!conta.getUsuario().getId().equals(usuario.getId())) {
+            if (!contaId.equals(principal.getContaId())) {
                 throw new RuntimeException("Acesso negado: você não tem permissão para acessar esta conta");
             }
-            List<PagamentoAgendado> pagamentosEnviados = paymentScheduleService.obterTodosPagamentos(conta);
-            List<PagamentoAgendado> pagamentosRecebidos = paymentScheduleService.obterPagamentosRecebidos(conta);
-            List<PagamentoAgendadoDTO> pagamentosEnviadosDTO = pagamentosEnviados.stream()
-                .map(this::convertToDTO)
-                .toList();
-            List<PagamentoAgendadoDTO> pagamentosRecebidosDTO = pagamentosRecebidos.stream()
-                .map(this::convertToDTO)
-                .toList();
+            List<PagamentoAgendadoDTO> pagamentosEnviadosDTO = paymentScheduleService.listarPagamentosEnviados(contaId);
+            List<PagamentoAgendadoDTO> pagamentosRecebidosDTO = paymentScheduleService.listarPagamentosRecebidos(contaId);
             Map<String, Object> response = new HashMap<>();
-            response.put("contaId", conta.getId());
+            response.put("contaId", contaId);
             response.put("pagamentosEnviados", pagamentosEnviadosDTO);
             response.put("pagamentosRecebidos", pagamentosRecebidosDTO);
             return ResponseEntity.ok(response);
@@ -190,9 +213,8 @@ public class PagamentoController implements PagamentoControllerApi {
         try {
             CustomUserDetailsService.CustomUserPrincipal principal = 
                 (CustomUserDetailsService.CustomUserPrincipal) authentication.getPrincipal();
-            Usuario usuario = principal.getUsuario();
             PagamentoAgendado pagamento = paymentScheduleService.obterPagamentoPorId(id);
-            if (!pagamento.getContaOrigem().getUsuario().getId().equals(usuario.getId())) {
+            if (!pagamento.getContaOrigem().getId().equals(principal.getContaId())) {
                 throw new RuntimeException("Pagamento não autorizado");
             }
             paymentScheduleService.cancelarPagamento(id);
@@ -237,52 +259,17 @@ public class PagamentoController implements PagamentoControllerApi {
         public String getDescricao() { return descricao; }
         public void setDescricao(String descricao) { this.descricao = descricao; }
     }
-    @Schema(description = "Dados de um pagamento agendado para listagem")
-    public static class PagamentoAgendadoDTO {
-        @Schema(description = "ID do pagamento", example = "1")
-        private Long id;
-        @Schema(description = "ID da conta origem", example = "1")
-        private Long contaOrigemId;
-        @Schema(description = "ID da conta destino", example = "2")
-        private Long contaDestinoId;
-        @Schema(description = "Valor total", example = "150.00")
-        private BigDecimal valorTotal;
-        @Schema(description = "Valor da parcela", example = "50.00")
-        private BigDecimal valorParcela;
-        @Schema(description = "Quantidade de parcelas", example = "3")
-        private Integer quantidadeParcelas;
-        @Schema(description = "Parcelas restantes", example = "2")
-        private Integer parcelasRestantes;
-        @Schema(description = "Periodicidade em dias", example = "30")
-        private Integer periodicidadeDias;
-        @Schema(description = "Data da próxima execução", example = "2025-08-07")
-        private LocalDate dataProximaExecucao;
-        @Schema(description = "Status do pagamento", example = "ATIVO")
-        private StatusAgendamento status;
-        @Schema(description = "Descrição", example = "Transferência mensal")
-        private String descricao;
-        public Long getId() { return id; }
-        public void setId(Long id) { this.id = id; }
-        public Long getContaOrigemId() { return contaOrigemId; }
-        public void setContaOrigemId(Long contaOrigemId) { this.contaOrigemId = contaOrigemId; }
-        public Long getContaDestinoId() { return contaDestinoId; }
-        public void setContaDestinoId(Long contaDestinoId) { this.contaDestinoId = contaDestinoId; }
-        public BigDecimal getValorTotal() { return valorTotal; }
-        public void setValorTotal(BigDecimal valorTotal) { this.valorTotal = valorTotal; }
-        public BigDecimal getValorParcela() { return valorParcela; }
-        public void setValorParcela(BigDecimal valorParcela) { this.valorParcela = valorParcela; }
-        public Integer getQuantidadeParcelas() { return quantidadeParcelas; }
-        public void setQuantidadeParcelas(Integer quantidadeParcelas) { this.quantidadeParcelas = quantidadeParcelas; }
-        public Integer getParcelasRestantes() { return parcelasRestantes; }
-        public void setParcelasRestantes(Integer parcelasRestantes) { this.parcelasRestantes = parcelasRestantes; }
-        public Integer getPeriodicidadeDias() { return periodicidadeDias; }
-        public void setPeriodicidadeDias(Integer periodicidadeDias) { this.periodicidadeDias = periodicidadeDias; }
-        public LocalDate getDataProximaExecucao() { return dataProximaExecucao; }
-        public void setDataProximaExecucao(LocalDate dataProximaExecucao) { this.dataProximaExecucao = dataProximaExecucao; }
-        public StatusAgendamento getStatus() { return status; }
-        public void setStatus(StatusAgendamento status) { this.status = status; }
-        public String getDescricao() { return descricao; }
-        public void setDescricao(String descricao) { this.descricao = descricao; }
+    private Map<String, Object> progressoFolha(FolhaPagamentoService.ProgressoFolha progresso) {
+        Map<String, Object> dados = new HashMap<>();
+        dados.put("folhaId", progresso.getId());
+        dados.put("status", progresso.getStatus());
+        dados.put("total", progresso.getTotal());
+        dados.put("gravados", progresso.getGravados());
+        dados.put("percentual", progresso.getPercentual());
+        dados.put("iniciadaEm", progresso.getIniciadaEm());
+        dados.put("concluidaEm", progresso.getConcluidaEm());
+        dados.put("erro", progresso.getErro());
+        return dados;
     }
     private PagamentoAgendadoDTO convertToDTO(PagamentoAgendado pagamento) {
         PagamentoAgendadoDTO dto = new PagamentoAgendadoDTO();
@@ -297,6 +284,9 @@ public class PagamentoController implements PagamentoControllerApi {
         dto.setDataProximaExecucao(pagamento.getDataProximaExecucao());
         dto.setStatus(pagamento.getStatus());
         dto.setDescricao(pagamento.getDescricao());
+        dto.setTentativas(pagamento.getTentativas());
+        dto.setUltimoErro(pagamento.getUltimoErro());
+        dto.setProximaTentativa(pagamento.getProximaTentativa());
         return dto;
     }
 }
@@ -2,11 +2,14 @@ package br.com.caixaeletronico.controller;
 import br.com.caixaeletronico.config.CustomUserDetailsService;
 import br.com.caixaeletronico.controller.api.SaqueControllerApi;
 import br.com.caixaeletronico.model.CombinacaoCedulas;
+import br.com.caixaeletronico.model.ReservaSaque;
 import br.com.caixaeletronico.model.TipoOperacao;
 import br.com.caixaeletronico.model.Usuario;
 import br.com.caixaeletronico.model.Conta;
 import br.com.caixaeletronico.repository.ContaRepository;
 import br.com.caixaeletronico.service.CommandManagerService;
+import br.com.caixaeletronico.service.DispensabilidadeService;
+import br.com.caixaeletronico.service.ReservaSaqueService;
 import br.com.caixaeletronico.service.SaqueOptionService;
 import br.com.caixaeletronico.util.ResponseUtil;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -27,17 +30,36 @@ public class SaqueController implements SaqueControllerApi {
     private CommandManagerService commandManagerService;
     @Autowired
     private ContaRepository contaRepository;
+    @Autowired
+    private DispensabilidadeService dispensabilidadeService;
+    @Autowired
+    private ReservaSaqueService reservaSaqueService;
     @GetMapping("/opcoes")
     public ResponseEntity<?> obterOpcoesSaque(
             @RequestParam Long contaId,
             @RequestParam int valor,
+            @RequestParam(required = false) String terminalId,
             Authentication authentication) {
         try {
-            List<CombinacaoCedulas> opcoes = saqueOptionService.obterOpcoesRaques(contaId, valor);
+            CustomUserDetailsService.CustomUserPrincipal principal = 
+                (CustomUserDetailsService.CustomUserPrincipal) authentication.getPrincipal();
+            if (!principal.podeAcessarConta(contaId)) {
+                throw new RuntimeException("Acesso negado: você não tem permissão para acessar esta conta");
+            }
+            if (terminalId == null) {
+                dispensabilidadeService.validarValorDispensavel(valor);
+            }
+            ReservaSaque reserva = reservaSaqueService.reservar(contaId, terminalId, valor);
+            List<CombinacaoCedulas> opcoes = reserva.getOpcoes();
             Conta conta = contaRepository.findById(contaId)
                 .orElseThrow(() -> new RuntimeException("Conta não encontrada"));
             Map<String, Object> dadosOpcoes = new HashMap<>();
             dadosOpcoes.put("valorSolicitado", valor);
+            if (terminalId != null) {
+                dadosOpcoes.put("terminalId", terminalId);
+            }
+            dadosOpcoes.put("idReserva", reserva.getIdReserva());
+            dadosOpcoes.put("reservaExpiraEm", reserva.getExpiraEm());
             dadosOpcoes.put("opcoes", opcoes);
             dadosOpcoes.put("totalOpcoes", opcoes.size());
             dadosOpcoes.put("saldoSuficiente", true);
@@ -50,6 +72,25 @@ public class SaqueController implements SaqueControllerApi {
             return ResponseEntity.badRequest().body(error);
         }
     }
+    @GetMapping("/disponibilidade")
+    public ResponseEntity<?> consultarDisponibilidade(
+            @RequestParam List<Integer> valores,
+            Authentication authentication) {
+        try {
+            List<Map<String, Object>> consultas = valores.stream()
+                .map(dispensabilidadeService::consultar)
+                .toList();
+            Map<String, Object> dadosDisponibilidade = new HashMap<>();
+            dadosDisponibilidade.put("valores", consultas);
+            Map<String, Object> response = ResponseUtil.criarRespostaPadraoSimples(
+                "Disponibilidade de saque consultada com sucesso", dadosDisponibilidade);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
     @PostMapping
     public ResponseEntity<?> confirmarSaque(
             @RequestBody SaqueRequest request,
@@ -58,16 +99,30 @@ public class SaqueController implements SaqueControllerApi {
             CustomUserDetailsService.CustomUserPrincipal principal = 
                 (CustomUserDetailsService.CustomUserPrincipal) authentication.getPrincipal();
             Usuario usuario = principal.getUsuario();
-            CombinacaoCedulas combinacao = saqueOptionService.obterCombinacaoPorId(
-                request.getIdOpcao(), request.getContaId(), request.getValor());
-            commandManagerService.executarComando(
-                TipoOperacao.SAQUE,
-                usuario,
-                usuario.getEmail(),
-                request.getContaId(),
-                BigDecimal.valueOf(request.getValor()),
-                combinacao.getMapaCedulas()
-            );
+            CombinacaoCedulas combinacao;
+            if (request.getIdReserva() != null) {
+                ReservaSaque reserva = reservaSaqueService.consumir(
+                    request.getIdReserva(), request.getContaId(), request.getTerminalId(), request.getValor());
+                try {
+                    combinacao = reserva.obterOpcao(request.getIdOpcao());
+                    if (combinacao == null) {
+                        throw new RuntimeException("Opção de saque não encontrada");
+                    }
+                    executarSaque(usuario, request, combinacao);
+                } finally {
+                    reservaSaqueService.liberarCedulas(reserva);
+                }
+            } else {
+                combinacao = saqueOptionService.obterCombinacaoPorId(
+                    request.getIdOpcao(), request.getContaId(), request.getTerminalId(), request.getValor());
+                ReservaSaque retencao = reservaSaqueService.reterCombinacao(
+                    request.getContaId(), request.getTerminalId(), request.getValor(), combinacao);
+                try {
+                    executarSaque(usuario, request, combinacao);
+                } finally {
+                    reservaSaqueService.liberarCedulas(retencao);
+                }
+            }
             Conta conta = contaRepository.findById(request.getContaId())
                 .orElseThrow(() -> new RuntimeException("Conta não encontrada"));
             Map<String, Object> dadosOperacao = new HashMap<>();
@@ -87,15 +142,32 @@ public class SaqueController implements SaqueControllerApi {
             return ResponseEntity.badRequest().body(error);
         }
     }
+    private void executarSaque(Usuario usuario, SaqueRequest request, CombinacaoCedulas combinacao) {
+        commandManagerService.executarComando(
+            TipoOperacao.SAQUE,
+            usuario,
+            usuario.getEmail(),
+            request.getContaId(),
+            BigDecimal.valueOf(request.getValor()),
+            combinacao.getMapaCedulas(),
+            request.getTerminalId()
+        );
+    }
     public static class SaqueRequest {
         private Long contaId;
         private int valor;
         private UUID idOpcao;
+        private UUID idReserva;
+        private String terminalId;
         public Long getContaId() { return contaId; }
         public void setContaId(Long contaId) { this.contaId = contaId; }
         public int getValor() { return valor; }
         public void setValor(int valor) { this.valor = valor; }
         public UUID getIdOpcao() { return idOpcao; }
         public void setIdOpcao(UUID idOpcao) { this.idOpcao = idOpcao; }
+        public UUID getIdReserva() { return idReserva; }
+        public void setIdReserva(UUID idReserva) { this.idReserva = idReserva; }
+        public String getTerminalId() { return terminalId; }
+        public void setTerminalId(String terminalId) { this.terminalId = terminalId; }
     }
 }
@@ -1,15 +1,17 @@
 package br.com.caixaeletronico.controller;
 import br.com.caixaeletronico.config.CustomUserDetailsService;
 import br.com.caixaeletronico.controller.api.UndoControllerApi;
-import br.com.caixaeletronico.model.Operacao;
+import br.com.caixaeletronico.dto.OperacaoDesfazivelDto;
 import br.com.caixaeletronico.model.Usuario;
 import br.com.caixaeletronico.service.CommandManagerService;
 import br.com.caixaeletronico.util.ResponseUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -47,16 +49,58 @@ public class UndoController implements UndoControllerApi {
             return ResponseEntity.badRequest().body(error);
         }
     }
+    @PostMapping("/lote")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> desfazerOperacoesEmLote(
+            @RequestBody DesfazerLoteRequest request,
+            Authentication authentication) {
+        try {
+            CustomUserDetailsService.CustomUserPrincipal principal = 
+                (CustomUserDetailsService.CustomUserPrincipal) authentication.getPrincipal();
+            Usuario admin = principal.getUsuario();
+            List<Long> desfeitas;
+            if (request.getOperacaoIds() != null && !request.getOperacaoIds().isEmpty()) {
+                desfeitas = commandManagerService.desfazerOperacoesEmLote(request.getOperacaoIds(), admin);
+            } else if (request.getUsuarioId() != null && request.getDataInicio() != null && request.getDataFim() != null) {
+                desfeitas = commandManagerService.desfazerOperacoesDoUsuario(
+                    request.getUsuarioId(), request.getDataInicio(), request.getDataFim(), admin);
+            } else {
+                throw new RuntimeException("Informe operacaoIds ou usuarioId com dataInicio e dataFim");
+            }
+            Map<String, Object> dadosEstorno = new HashMap<>();
+            dadosEstorno.put("operacoesEstornadas", desfeitas);
+            dadosEstorno.put("totalEstornadas", desfeitas.size());
+            if (request.getOperacaoIds() != null && !request.getOperacaoIds().isEmpty()) {
+                java.util.Set<Long> idsDesfeitos = new java.util.HashSet<>(desfeitas);
+                dadosEstorno.put("operacoesIgnoradas", request.getOperacaoIds().stream()
+                    .filter(id -> !idsDesfeitos.contains(id))
+                    .distinct()
+                    .collect(java.util.stream.Collectors.toList()));
+            }
+            dadosEstorno.put("adminResponsavel", admin.getLogin());
+            Map<String, Object> response = ResponseUtil.criarRespostaPadraoSimples(
+                "Operações desfeitas com sucesso", dadosEstorno);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
     @GetMapping("/usuario/{usuarioId}/operacoes")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> listarOperacoesUsuario(
             @PathVariable Long usuarioId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime antesDeDataHora,
+            @RequestParam(required = false) Long antesDeId,
+            @RequestParam(defaultValue = "50") int tamanho,
             Authentication authentication) {
         try {
             CustomUserDetailsService.CustomUserPrincipal principal = 
                 (CustomUserDetailsService.CustomUserPrincipal) authentication.getPrincipal();
             Usuario admin = principal.getUsuario();
-            List<Operacao> operacoes = commandManagerService.listarOperacoesUsuario(usuarioId, admin);
+            List<OperacaoDesfazivelDto> operacoes = commandManagerService.listarOperacoesUsuario(
+                usuarioId, antesDeDataHora, antesDeId, tamanho, admin);
             List<Map<String, Object>> operacoesDto = operacoes.stream()
                 .map(op -> {
                     Map<String, Object> dto = new HashMap<>();
@@ -65,20 +109,20 @@ public class UndoController implements UndoControllerApi {
                     dto.put("dataHora", op.getDataHora());
                     dto.put("valor", op.getValor());
                     dto.put("usuarioResponsavel", op.getUsuarioResponsavel());
-                    dto.put("desfeita", op.getDesfeita());
-                    if (op.getContaOrigem() != null) {
+                    dto.put("desfeita", false);
+                    if (op.getContaOrigemId() != null) {
                         dto.put("contaOrigem", Map.of(
-                            "id", op.getContaOrigem().getId(),
-                            "numeroConta", op.getContaOrigem().getNumeroConta()
+                            "id", op.getContaOrigemId(),
+                            "numeroConta", op.getContaOrigemNumero()
                         ));
                     }
-                    if (op.getContaDestino() != null) {
+                    if (op.getContaDestinoId() != null) {
                         dto.put("contaDestino", Map.of(
-                            "id", op.getContaDestino().getId(),
-                            "numeroConta", op.getContaDestino().getNumeroConta()
+                            "id", op.getContaDestinoId(),
+                            "numeroConta", op.getContaDestinoNumero()
                         ));
                     }
-                    dto.put("podeDesfazer", !Boolean.TRUE.equals(op.getDesfeita()) && op.getMementoJson() != null);
+                    dto.put("podeDesfazer", true);
                     return dto;
                 })
                 .collect(java.util.stream.Collectors.toList());
@@ -87,6 +131,13 @@ public class UndoController implements UndoControllerApi {
             dadosOperacoes.put("adminSolicitante", admin.getLogin());
             dadosOperacoes.put("operacoes", operacoesDto);
             dadosOperacoes.put("totalOperacoes", operacoesDto.size());
+            if (!operacoes.isEmpty() && operacoes.size() >= Math.min(tamanho, CommandManagerService.TAMANHO_MAXIMO_PAGINA)) {
+                OperacaoDesfazivelDto ultima = operacoes.get(operacoes.size() - 1);
+                dadosOperacoes.put("proximaPagina", Map.of(
+                    "antesDeDataHora", ultima.getDataHora(),
+                    "antesDeId", ultima.getId()
+                ));
+            }
             Map<String, Object> response = ResponseUtil.criarRespostaPadraoSimples(
                 "Operações do usuário listadas com sucesso", dadosOperacoes);
             return ResponseEntity.ok(response);
@@ -96,4 +147,18 @@ public class UndoController implements UndoControllerApi {
             return ResponseEntity.badRequest().body(error);
         }
     }
+    public static class DesfazerLoteRequest {
+        private List<Long> operacaoIds;
+        private Long usuarioId;
+        private LocalDateTime dataInicio;
+        private LocalDateTime dataFim;
+        public List<Long> getOperacaoIds() { return operacaoIds; }
+        public void setOperacaoIds(List<Long> operacaoIds) { this.operacaoIds = operacaoIds; }
+        public Long getUsuarioId() { return usuarioId; }
+        public void setUsuarioId(Long usuarioId) { this.usuarioId = usuarioId; }
+        public LocalDateTime getDataInicio() { return dataInicio; }
+        public void setDataInicio(LocalDateTime dataInicio) { this.dataInicio = dataInicio; }
+        public LocalDateTime getDataFim() { return dataFim; }
+        public void setDataFim(LocalDateTime dataFim) { this.dataFim = dataFim; }
+    }
 }
@@ -1,5 +1,6 @@
 package br.com.caixaeletronico.controller.api;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -20,7 +21,8 @@ public interface EstoqueGlobalControllerApi {
     @Operation(
         summary = "Consultar estoque global de cédulas",
         description = "Retorna o estoque atual de todas as cédulas disponíveis no caixa eletrônico. " +
-                     "Este é o estoque físico compartilhado por todos os usuários do sistema.",
+                     "Sem terminalId, retorna o estoque global (cofre central); com terminalId, os slots " +
+                     "daquele terminal.",
         tags = {"Estoque Global"}
     )
     @ApiResponses({
@@ -106,5 +108,39 @@ public interface EstoqueGlobalControllerApi {
             )
         )
     })
-    ResponseEntity<?> consultarEstoqueGlobal();
+    ResponseEntity<?> consultarEstoqueGlobal(
+        @Parameter(description = "Terminal a consultar (opcional)")
+        String terminalId
+    );
+    @Operation(
+        summary = "Consultar estoque consolidado",
+        description = "Soma, por cédula, do estoque global e dos slots de todos os terminais.",
+        tags = {"Estoque Global"}
+    )
+    @ApiResponses({
+        @ApiResponse(
+            responseCode = "200",
+            description = "Estoque consolidado consultado com sucesso",
+            content = @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = Object.class),
+                examples = @ExampleObject(
+                    value = """
+                    {
+                        "estoque": [
+                            {
+                                "valorCedula": "CEM",
+                                "quantidade": 260
+                            }
+                        ],
+                        "terminais": ["TERMINAL-01", "TERMINAL-02"],
+                        "totalCedulas": 260,
+                        "valorTotalDisponivel": 26000
+                    }
+                    """
+                )
+            )
+        )
+    })
+    ResponseEntity<?> consultarEstoqueConsolidado();
 }
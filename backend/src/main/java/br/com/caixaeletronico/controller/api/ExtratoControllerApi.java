@@ -8,9 +8,13 @@ import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import java.io.IOException;
+import java.time.LocalDateTime;
 /**
  * Interface documentada para operações de extrato
  * 
@@ -23,7 +27,8 @@ public interface ExtratoControllerApi {
     @Operation(
         summary = "Obter extrato da conta",
         description = "Retorna o extrato bancário de uma conta específica. " +
-                     "Pode filtrar por período (dataInicio/dataFim) ou limitar o número de operações. " +
+                     "Pode filtrar por período (dataInicio/dataFim) e é paginado por cursor: para a próxima " +
+                     "página, repita a chamada com os valores de proximaPagina (antesDeDataHora e antesDeId). " +
                      "O usuário só pode consultar extratos de suas próprias contas.",
         tags = {"Extrato"}
     )
@@ -56,7 +61,11 @@ public interface ExtratoControllerApi {
                                 "descricao": "Saque no caixa eletrônico"
                             }
                         ],
-                        "totalOperacoes": 2
+                        "totalOperacoes": 2,
+                        "proximaPagina": {
+                            "antesDeDataHora": "2024-01-14T14:20:00",
+                            "antesDeId": 2
+                        }
                     }
                     """
                 )
@@ -99,10 +108,70 @@ public interface ExtratoControllerApi {
         @RequestParam(required = false) String dataInicio,
         @Parameter(description = "Data de fim para filtro (formato: YYYY-MM-DD, YYYY-MM-DDTHH:mm:ss ou dd/MM/yyyy)")
         @RequestParam(required = false) String dataFim,
-        @Parameter(description = "Número máximo de operações a retornar (padrão: 50)")
+        @Parameter(description = "Número máximo de operações a retornar (padrão: 50, máximo: 500)")
         @RequestParam(required = false, defaultValue = "50") int limite,
+        @Parameter(description = "Data/hora da última operação da página anterior (ISO 8601)")
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime antesDeDataHora,
+        @Parameter(description = "ID da última operação da página anterior")
+        @RequestParam(required = false) Long antesDeId,
         Authentication authentication
     );
+    @Operation(
+        summary = "Exportar extrato da conta",
+        description = "Exporta todas as operações da conta no período, da mais antiga para a mais recente, " +
+                     "em CSV ou NDJSON (um objeto JSON por linha). O arquivo é escrito à medida que as " +
+                     "operações são lidas do banco e vem compactado com gzip quando o cliente envia " +
+                     "Accept-Encoding: gzip. Sem período, exporta todo o histórico.",
+        tags = {"Extrato"}
+    )
+    @ApiResponses({
+        @ApiResponse(
+            responseCode = "200",
+            description = "Extrato exportado com sucesso",
+            content = {
+                @Content(
+                    mediaType = "text/csv",
+                    examples = @ExampleObject(
+                        value = """
+                        id,tipo,dataHora,valor,usuarioResponsavel,descricao
+                        1,DEPOSITO,2024-01-15T10:30:00,500.00,cliente,Depósito em dinheiro
+                        2,SAQUE,2024-01-16T14:20:00,100.00,cliente,Saque no caixa eletrônico
+                        """
+                    )
+                ),
+                @Content(mediaType = "application/x-ndjson")
+            }
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Conta não encontrada, não autorizada ou parâmetros inválidos",
+            content = @Content(
+                mediaType = "application/json",
+                examples = @ExampleObject(
+                    value = """
+                    {
+                        "error": "Formato de exportação inválido. Use: csv ou ndjson"
+                    }
+                    """
+                )
+            )
+        )
+    })
+    @GetMapping("/{id}/extrato/exportar")
+    void exportarExtrato(
+        @Parameter(description = "ID da conta", required = true)
+        @PathVariable Long id,
+        @Parameter(description = "Formato do arquivo: csv (padrão) ou ndjson")
+        @RequestParam(required = false, defaultValue = "csv") String formato,
+        @Parameter(description = "Data de início (formato: YYYY-MM-DD, YYYY-MM-DDTHH:mm:ss ou dd/MM/yyyy)")
+        @RequestParam(required = false) String dataInicio,
+        @Parameter(description = "Data de fim (formato: YYYY-MM-DD, YYYY-MM-DDTHH:mm:ss ou dd/MM/yyyy)")
+        @RequestParam(required = false) String dataFim,
+        @Parameter(hidden = true)
+        @RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding,
+        Authentication authentication,
+        @Parameter(hidden = true) HttpServletResponse response
+    ) throws IOException;
     @Operation(
         summary = "Obter saldo da conta",
         description = "Retorna o saldo atual de uma conta específica. " +
@@ -215,7 +284,9 @@ public interface ExtratoControllerApi {
     ResponseEntity<?> listarMinhasContas(Authentication authentication);
     @Operation(
         summary = "Listar todas as contas (Admin)",
-        description = "Retorna todas as contas bancárias do sistema. " +
+        description = "Retorna as contas bancárias do sistema, paginadas e ordenáveis (id, numeroConta, " +
+                     "titular ou saldo), com filtro opcional por trecho do titular ou do número da conta. " +
+                     "O tamanho da página é limitado a 200. " +
                      "Apenas usuários com perfil de administrador podem acessar este endpoint.",
         tags = {"Extrato"}
     )
@@ -232,6 +303,9 @@ public interface ExtratoControllerApi {
                         "usuario": "admin",
                         "perfil": "ADMIN",
                         "totalContas": 5,
+                        "pagina": 0,
+                        "tamanhoPagina": 2,
+                        "totalPaginas": 3,
                         "contas": [
                             {
                                 "id": 1,
@@ -281,5 +355,17 @@ public interface ExtratoControllerApi {
         )
     })
     @GetMapping("/todas-contas")
-    ResponseEntity<?> listarTodasContas(Authentication authentication);
+    ResponseEntity<?> listarTodasContas(
+        @Parameter(description = "Trecho do titular ou do número da conta")
+        @RequestParam(required = false) String filtro,
+        @Parameter(description = "Número da página, a partir de 0")
+        @RequestParam(required = false, defaultValue = "0") int pagina,
+        @Parameter(description = "Contas por página (padrão: 50, máximo: 200)")
+        @RequestParam(required = false, defaultValue = "50") int tamanho,
+        @Parameter(description = "Campo de ordenação: id, numeroConta, titular ou saldo")
+        @RequestParam(required = false, defaultValue = "id") String ordenarPor,
+        @Parameter(description = "Direção da ordenação: asc ou desc")
+        @RequestParam(required = false, defaultValue = "asc") String direcao,
+        Authentication authentication
+    );
 }
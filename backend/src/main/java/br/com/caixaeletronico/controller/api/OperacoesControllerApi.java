@@ -24,7 +24,8 @@ public interface OperacoesControllerApi {
     @Operation(
         summary = "Realizar depósito",
         description = "Realiza um depósito em dinheiro na conta especificada. " +
-                     "O usuário deve informar as cédulas que está depositando para controle do estoque.",
+                     "O usuário deve informar as cédulas que está depositando para controle do estoque. " +
+                     "Com terminalId, as cédulas entram nos slots do terminal; sem ele, no estoque global.",
         tags = {"Operações Bancárias"}
     )
     @ApiResponses({
@@ -1,5 +1,7 @@
 package br.com.caixaeletronico.controller.api;
 import br.com.caixaeletronico.controller.PagamentoController;
+import br.com.caixaeletronico.dto.LinhaFolhaPagamento;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -9,9 +11,12 @@ import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import java.time.LocalDate;
 /**
  * Interface documentada para operações de pagamento agendado
  * 
@@ -100,6 +105,72 @@ public interface PagamentoControllerApi {
         @RequestBody PagamentoController.TransferenciaAgendadaRequest request,
         Authentication authentication
     );
+    @Operation(
+        summary = "Agendar folha de pagamento",
+        description = "Agenda de uma vez pagamentos da conta do usuário para milhares de contas destino. " +
+                     "O corpo é uma lista JSON de linhas, lida em streaming; a folha é validada inteira e, " +
+                     "aceita, gravada em segundo plano. O andamento é consultado em GET /pagamentos/lote/{folhaId}.",
+        tags = {"Pagamentos"},
+        requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+            required = true,
+            content = @Content(
+                mediaType = "application/json",
+                array = @ArraySchema(schema = @Schema(implementation = LinhaFolhaPagamento.class)),
+                examples = @ExampleObject(
+                    value = """
+                    [
+                        {"contaDestinoId": 5, "valor": 3500.00, "parcelas": 1, "periodicidadeDias": 30},
+                        {"contaDestinoId": 6, "valor": 4200.00, "parcelas": 1, "periodicidadeDias": 30}
+                    ]
+                    """
+                )
+            )
+        )
+    )
+    @ApiResponses({
+        @ApiResponse(
+            responseCode = "202",
+            description = "Folha aceita; gravação em andamento",
+            content = @Content(
+                mediaType = "application/json",
+                examples = @ExampleObject(
+                    value = """
+                    {
+                        "message": "Folha de pagamento aceita",
+                        "folhaId": "3f1c2a9e-6b1d-4c55-9a0e-2d7c1b8e4f10",
+                        "status": "PROCESSANDO",
+                        "total": 20000,
+                        "gravados": 0,
+                        "percentual": 0
+                    }
+                    """
+                )
+            )
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Folha inválida; nenhum pagamento é agendado",
+            content = @Content(
+                mediaType = "application/json",
+                examples = @ExampleObject(
+                    value = """
+                    {
+                        "error": "Folha inválida: linha 3: valor deve ser maior que zero; conta destino 99 não encontrada"
+                    }
+                    """
+                )
+            )
+        )
+    })
+    @PostMapping("/lote")
+    ResponseEntity<?> agendarFolha(
+        @Parameter(description = "Data da primeira parcela", required = true, example = "2025-08-05")
+        @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dataInicio,
+        @Parameter(description = "Descrição dos pagamentos", example = "Folha de agosto")
+        @RequestParam(required = false, defaultValue = "Folha de pagamento") String descricao,
+        HttpServletRequest request,
+        Authentication authentication
+    );
     @Operation(
         summary = "Obter detalhes de um pagamento",
         description = "Retorna os detalhes de um pagamento agendado específico, incluindo status e parcelas restantes.",
@@ -12,6 +12,7 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import java.util.List;
 /**
  * Interface documentada para operações de saque
  * 
@@ -24,7 +25,9 @@ public interface SaqueControllerApi {
     @Operation(
         summary = "Obter opções de saque",
         description = "Retorna as combinações de cédulas disponíveis para realizar um saque no valor especificado. " +
-                     "Considera a disponibilidade de cédulas no caixa eletrônico.",
+                     "Considera a disponibilidade de cédulas no caixa eletrônico e reserva as cédulas " +
+                     "das opções retornadas por um curto período (idReserva). Com terminalId, usa apenas " +
+                     "os slots do terminal; sem ele, o estoque global.",
         tags = {"Saque"}
     )
     @ApiResponses({
@@ -53,6 +56,8 @@ public interface SaqueControllerApi {
                                 }
                             }
                         ],
+                        "idReserva": "0b6f1c7e-3c52-4d7a-9a7e-2f1f5d0c8a11",
+                        "reservaExpiraEm": "2025-07-07T20:53:05",
                         "contaId": 1,
                         "valor": 100
                     }
@@ -95,12 +100,71 @@ public interface SaqueControllerApi {
         @RequestParam Long contaId,
         @Parameter(description = "Valor do saque (deve ser múltiplo de 10)", required = true)
         @RequestParam int valor,
+        @Parameter(description = "Terminal de onde as cédulas serão retiradas (opcional; padrão: estoque global)")
+        @RequestParam(required = false) String terminalId,
+        Authentication authentication
+    );
+    @Operation(
+        summary = "Consultar disponibilidade de saque",
+        description = "Informa, para cada valor solicitado, se ele pode ser pago com as cédulas atualmente em estoque " +
+                     "e quais são os valores pagáveis mais próximos. A consulta usa um mapa pré-calculado do estoque " +
+                     "e não gera as opções de saque.",
+        tags = {"Saque"}
+    )
+    @ApiResponses({
+        @ApiResponse(
+            responseCode = "200",
+            description = "Disponibilidade consultada com sucesso",
+            content = @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = Object.class),
+                examples = @ExampleObject(
+                    value = """
+                    {
+                        "message": "Disponibilidade de saque consultada com sucesso",
+                        "dados": {
+                            "valores": [
+                                {
+                                    "valor": 3,
+                                    "calculado": true,
+                                    "dispensavel": false,
+                                    "valorDispensavelAnterior": 2,
+                                    "valorDispensavelSeguinte": 4
+                                }
+                            ]
+                        }
+                    }
+                    """
+                )
+            )
+        ),
+        @ApiResponse(
+            responseCode = "401",
+            description = "Token de autenticação inválido",
+            content = @Content(
+                mediaType = "application/json",
+                examples = @ExampleObject(
+                    value = """
+                    {
+                        "error": "Acesso negado"
+                    }
+                    """
+                )
+            )
+        )
+    })
+    @GetMapping("/disponibilidade")
+    ResponseEntity<?> consultarDisponibilidade(
+        @Parameter(description = "Valores a consultar (ex.: valores=20,50,100)", required = true)
+        @RequestParam List<Integer> valores,
         Authentication authentication
     );
     @Operation(
         summary = "Confirmar saque",
         description = "Confirma a operação de saque com a combinação de cédulas selecionada. " +
-                     "Debita o valor da conta e reduz o estoque de cédulas do caixa eletrônico.",
+                     "Quando informado o idReserva, a opção é obtida da reserva sem recalcular as opções. " +
+                     "Debita o valor da conta e reduz o estoque de cédulas do terminal informado " +
+                     "(terminalId, o mesmo da consulta de opções) ou do estoque global.",
         tags = {"Saque"}
     )
     @ApiResponses({
@@ -1,4 +1,5 @@
 package br.com.caixaeletronico.controller.api;
+import br.com.caixaeletronico.controller.UndoController;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
@@ -8,9 +9,11 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.Parameter;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import java.time.LocalDateTime;
 /**
  * Interface documentada para operações de desfazer (undo)
  * 
@@ -96,9 +99,74 @@ public interface UndoControllerApi {
             @Parameter(description = "ID do usuário proprietário da operação", required = true)
             @PathVariable Long usuarioId,
             Authentication authentication);
+    @Operation(
+        summary = "Desfazer operações em lote",
+        description = "Desfaz, em uma única transação, as operações informadas em operacaoIds ou todas as " +
+                     "operações de um usuário entre dataInicio e dataFim. Os saldos e o estoque de cédulas " +
+                     "recebem as variações inversas, preservando operações posteriores. Operações já " +
+                     "desfeitas ou sem memento são ignoradas. Disponível apenas para usuários com perfil ADMIN.",
+        tags = {"Desfazer Operações"}
+    )
+    @ApiResponses({
+        @ApiResponse(
+            responseCode = "200",
+            description = "Operações desfeitas com sucesso",
+            content = @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = Object.class),
+                examples = @ExampleObject(
+                    value = """
+                    {
+                        "operacoesEstornadas": [123, 124],
+                        "totalEstornadas": 2,
+                        "operacoesIgnoradas": [125],
+                        "adminResponsavel": "admin"
+                    }
+                    """
+                )
+            )
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Parâmetros inválidos ou erro ao desfazer; nenhuma operação é desfeita",
+            content = @Content(
+                mediaType = "application/json",
+                examples = @ExampleObject(
+                    value = """
+                    {
+                        "error": "Conta não encontrada ou saldo insuficiente para desfazer: 7"
+                    }
+                    """
+                )
+            )
+        ),
+        @ApiResponse(
+            responseCode = "401",
+            description = "Token de autenticação inválido"
+        ),
+        @ApiResponse(
+            responseCode = "403",
+            description = "Acesso negado - perfil ADMIN requerido"
+        )
+    })
+    @PostMapping("/lote")
+    ResponseEntity<?> desfazerOperacoesEmLote(
+            @Parameter(description = "operacaoIds ou usuarioId com dataInicio e dataFim", required = true,
+                      schema = @Schema(implementation = UndoController.DesfazerLoteRequest.class,
+                                     example = """
+                                     {
+                                         "usuarioId": 456,
+                                         "dataInicio": "2024-01-15T00:00:00",
+                                         "dataFim": "2024-01-15T23:59:59"
+                                     }
+                                     """))
+            @RequestBody UndoController.DesfazerLoteRequest request,
+            Authentication authentication);
     @Operation(
         summary = "Listar operações de um usuário",
-        description = "Lista todas as operações de um usuário específico. " +
+        description = "Lista as operações de um usuário que ainda podem ser desfeitas, da mais recente para a " +
+                     "mais antiga. Para a próxima página, repita a chamada com os valores de proximaPagina " +
+                     "(antesDeDataHora e antesDeId). " +
                      "Esta funcionalidade está disponível apenas para usuários com perfil ADMIN.",
         tags = {"Desfazer Operações"}
     )
@@ -122,7 +190,11 @@ public interface UndoControllerApi {
                                 "desfeita": false
                             }
                         ],
-                        "total": 1
+                        "total": 1,
+                        "proximaPagina": {
+                            "antesDeDataHora": "2024-01-15T10:30:00",
+                            "antesDeId": 123
+                        }
                     }
                     """
                 )
@@ -155,5 +227,11 @@ public interface UndoControllerApi {
     ResponseEntity<?> listarOperacoesUsuario(
             @Parameter(description = "ID do usuário", required = true)
             @PathVariable Long usuarioId,
+            @Parameter(description = "Data/hora da última operação da página anterior (ISO 8601)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime antesDeDataHora,
+            @Parameter(description = "ID da última operação da página anterior")
+            @RequestParam(required = false) Long antesDeId,
+            @Parameter(description = "Quantidade de operações por página (máximo 200)")
+            @RequestParam(defaultValue = "50") int tamanho,
             Authentication authentication);
 }
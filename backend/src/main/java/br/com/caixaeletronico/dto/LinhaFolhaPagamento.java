@@ -0,0 +1,29 @@
+package br.com.caixaeletronico.dto;
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.math.BigDecimal;
+@Schema(description = "Uma linha da folha de pagamento: um destino e seu agendamento")
+public class LinhaFolhaPagamento {
+    @Schema(description = "ID da conta destino", example = "5")
+    private Long contaDestinoId;
+    @Schema(description = "Valor total a pagar ao destino", example = "3500.00")
+    private BigDecimal valor;
+    @Schema(description = "Número de parcelas", example = "1")
+    private Integer parcelas;
+    @Schema(description = "Periodicidade entre parcelas em dias", example = "30")
+    private Integer periodicidadeDias;
+    public LinhaFolhaPagamento() {}
+    public LinhaFolhaPagamento(Long contaDestinoId, BigDecimal valor, Integer parcelas, Integer periodicidadeDias) {
+        this.contaDestinoId = contaDestinoId;
+        this.valor = valor;
+        this.parcelas = parcelas;
+        this.periodicidadeDias = periodicidadeDias;
+    }
+    public Long getContaDestinoId() { return contaDestinoId; }
+    public void setContaDestinoId(Long contaDestinoId) { this.contaDestinoId = contaDestinoId; }
+    public BigDecimal getValor() { return valor; }
+    public void setValor(BigDecimal valor) { this.valor = valor; }
+    public Integer getParcelas() { return parcelas; }
+    public void setParcelas(Integer parcelas) { this.parcelas = parcelas; }
+    public Integer getPeriodicidadeDias() { return periodicidadeDias; }
+    public void setPeriodicidadeDias(Integer periodicidadeDias) { this.periodicidadeDias = periodicidadeDias; }
+}
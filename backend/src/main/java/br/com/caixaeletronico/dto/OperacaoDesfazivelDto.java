@@ -0,0 +1,86 @@
+package br.com.caixaeletronico.dto;
+import br.com.caixaeletronico.model.TipoOperacao;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+/**
+ * Projeção com os campos exibidos na lista de operações que podem ser desfeitas.
+ */
+public class OperacaoDesfazivelDto {
+    private Long id;
+    private TipoOperacao tipo;
+    private LocalDateTime dataHora;
+    private BigDecimal valor;
+    private String usuarioResponsavel;
+    private Long contaOrigemId;
+    private String contaOrigemNumero;
+    private Long contaDestinoId;
+    private String contaDestinoNumero;
+    public OperacaoDesfazivelDto() {}
+    public OperacaoDesfazivelDto(Long id, TipoOperacao tipo, LocalDateTime dataHora, BigDecimal valor,
+                                 String usuarioResponsavel, Long contaOrigemId, String contaOrigemNumero,
+                                 Long contaDestinoId, String contaDestinoNumero) {
+        this.id = id;
+        this.tipo = tipo;
+        this.dataHora = dataHora;
+        this.valor = valor;
+        this.usuarioResponsavel = usuarioResponsavel;
+        this.contaOrigemId = contaOrigemId;
+        this.contaOrigemNumero = contaOrigemNumero;
+        this.contaDestinoId = contaDestinoId;
+        this.contaDestinoNumero = contaDestinoNumero;
+    }
+    public Long getId() {
+        return id;
+    }
+    public void setId(Long id) {
+        this.id = id;
+    }
+    public TipoOperacao getTipo() {
+        return tipo;
+    }
+    public void setTipo(TipoOperacao tipo) {
+        this.tipo = tipo;
+    }
+    public LocalDateTime getDataHora() {
+        return dataHora;
+    }
+    public void setDataHora(LocalDateTime dataHora) {
+        this.dataHora = dataHora;
+    }
+    public BigDecimal getValor() {
+        return valor;
+    }
+    public void setValor(BigDecimal valor) {
+        this.valor = valor;
+    }
+    public String getUsuarioResponsavel() {
+        return usuarioResponsavel;
+    }
+    public void setUsuarioResponsavel(String usuarioResponsavel) {
+        this.usuarioResponsavel = usuarioResponsavel;
+    }
+    public Long getContaOrigemId() {
+        return contaOrigemId;
+    }
+    public void setContaOrigemId(Long contaOrigemId) {
+        this.contaOrigemId = contaOrigemId;
+    }
+    public String getContaOrigemNumero() {
+        return contaOrigemNumero;
+    }
+    public void setContaOrigemNumero(String contaOrigemNumero) {
+        this.contaOrigemNumero = contaOrigemNumero;
+    }
+    public Long getContaDestinoId() {
+        return contaDestinoId;
+    }
+    public void setContaDestinoId(Long contaDestinoId) {
+        this.contaDestinoId = contaDestinoId;
+    }
+    public String getContaDestinoNumero() {
+        return contaDestinoNumero;
+    }
+    public void setContaDestinoNumero(String contaDestinoNumero) {
+        this.contaDestinoNumero = contaDestinoNumero;
+    }
+}
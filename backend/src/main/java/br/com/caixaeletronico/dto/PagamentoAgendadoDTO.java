@@ -0,0 +1,93 @@
+package br.com.caixaeletronico.dto;
+import br.com.caixaeletronico.model.StatusAgendamento;
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+@Schema(description = "Dados de um pagamento agendado para listagem")
+public class PagamentoAgendadoDTO {
+    @Schema(description = "ID do pagamento", example = "1")
+    private Long id;
+    @Schema(description = "ID da conta origem", example = "1")
+    private Long contaOrigemId;
+    @Schema(description = "ID da conta destino", example = "2")
+    private Long contaDestinoId;
+    @Schema(description = "Valor total", example = "150.00")
+    private BigDecimal valorTotal;
+    @Schema(description = "Valor da parcela", example = "50.00")
+    private BigDecimal valorParcela;
+    @Schema(description = "Quantidade de parcelas", example = "3")
+    private Integer quantidadeParcelas;
+    @Schema(description = "Parcelas restantes", example = "2")
+    private Integer parcelasRestantes;
+    @Schema(description = "Periodicidade em dias", example = "30")
+    private Integer periodicidadeDias;
+    @Schema(description = "Data da próxima execução", example = "2025-08-07")
+    private LocalDate dataProximaExecucao;
+    @Schema(description = "Status do pagamento", example = "ATIVO")
+    private StatusAgendamento status;
+    @Schema(description = "Descrição", example = "Transferência mensal")
+    private String descricao;
+    @Schema(description = "Tentativas de cobrança da parcela atual que falharam", example = "0")
+    private Integer tentativas;
+    @Schema(description = "Erro da última tentativa que falhou", example = "Saldo insuficiente para pagamento da parcela")
+    private String ultimoErro;
+    @Schema(description = "Quando a parcela será cobrada de novo após uma falha", example = "2025-08-07T00:15:00")
+    private LocalDateTime proximaTentativa;
+    public PagamentoAgendadoDTO() {
+    }
+    public PagamentoAgendadoDTO(Long id, Long contaOrigemId, Long contaDestinoId, BigDecimal valorTotal,
+                                Integer quantidadeParcelas, Integer parcelasRestantes, Integer periodicidadeDias,
+                                LocalDate dataProximaExecucao, StatusAgendamento status, String descricao) {
+        this(id, contaOrigemId, contaDestinoId, valorTotal, quantidadeParcelas, parcelasRestantes, periodicidadeDias,
+            dataProximaExecucao, status, descricao, 0, null, null);
+    }
+    public PagamentoAgendadoDTO(Long id, Long contaOrigemId, Long contaDestinoId, BigDecimal valorTotal,
+                                Integer quantidadeParcelas, Integer parcelasRestantes, Integer periodicidadeDias,
+                                LocalDate dataProximaExecucao, StatusAgendamento status, String descricao,
+                                Integer tentativas, String ultimoErro, LocalDateTime proximaTentativa) {
+        this.id = id;
+        this.contaOrigemId = contaOrigemId;
+        this.contaDestinoId = contaDestinoId;
+        this.valorTotal = valorTotal;
+        this.valorParcela = valorTotal.divide(BigDecimal.valueOf(quantidadeParcelas), 2, RoundingMode.HALF_UP);
+        this.quantidadeParcelas = quantidadeParcelas;
+        this.parcelasRestantes = parcelasRestantes;
+        this.periodicidadeDias = periodicidadeDias;
+        this.dataProximaExecucao = dataProximaExecucao;
+        this.status = status;
+        this.descricao = descricao;
+        this.tentativas = tentativas;
+        this.ultimoErro = ultimoErro;
+        this.proximaTentativa = proximaTentativa;
+    }
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public Long getContaOrigemId() { return contaOrigemId; }
+    public void setContaOrigemId(Long contaOrigemId) { this.contaOrigemId = contaOrigemId; }
+    public Long getContaDestinoId() { return contaDestinoId; }
+    public void setContaDestinoId(Long contaDestinoId) { this.contaDestinoId = contaDestinoId; }
+    public BigDecimal getValorTotal() { return valorTotal; }
+    public void setValorTotal(BigDecimal valorTotal) { this.valorTotal = valorTotal; }
+    public BigDecimal getValorParcela() { return valorParcela; }
+    public void setValorParcela(BigDecimal valorParcela) { this.valorParcela = valorParcela; }
+    public Integer getQuantidadeParcelas() { return quantidadeParcelas; }
+    public void setQuantidadeParcelas(Integer quantidadeParcelas) { this.quantidadeParcelas = quantidadeParcelas; }
+    public Integer getParcelasRestantes() { return parcelasRestantes; }
+    public void setParcelasRestantes(Integer parcelasRestantes) { this.parcelasRestantes = parcelasRestantes; }
+    public Integer getPeriodicidadeDias() { return periodicidadeDias; }
+    public void setPeriodicidadeDias(Integer periodicidadeDias) { this.periodicidadeDias = periodicidadeDias; }
+    public LocalDate getDataProximaExecucao() { return dataProximaExecucao; }
+    public void setDataProximaExecucao(LocalDate dataProximaExecucao) { this.dataProximaExecucao = dataProximaExecucao; }
+    public StatusAgendamento getStatus() { return status; }
+    public void setStatus(StatusAgendamento status) { this.status = status; }
+    public String getDescricao() { return descricao; }
+    public void setDescricao(String descricao) { this.descricao = descricao; }
+    public Integer getTentativas() { return tentativas; }
+    public void setTentativas(Integer tentativas) { this.tentativas = tentativas; }
+    public String getUltimoErro() { return ultimoErro; }
+    public void setUltimoErro(String ultimoErro) { this.ultimoErro = ultimoErro; }
+    public LocalDateTime getProximaTentativa() { return proximaTentativa; }
+    public void setProximaTentativa(LocalDateTime proximaTentativa) { this.proximaTentativa = proximaTentativa; }
+}
@@ -0,0 +1,45 @@
+package br.com.caixaeletronico.event;
+import br.com.caixaeletronico.model.VetorCedulas;
+import org.springframework.context.ApplicationEvent;
+import java.util.concurrent.atomic.AtomicLong;
+public class EstoqueAlteradoEvent extends ApplicationEvent {
+    private static final AtomicLong SEQUENCIA = new AtomicLong();
+    private final String terminalId;
+    private final VetorCedulas variacoes;
+    private final long versao = SEQUENCIA.incrementAndGet();
+    public EstoqueAlteradoEvent(Object source, VetorCedulas variacoes) {
+        this(source, null, variacoes);
+    }
+    public EstoqueAlteradoEvent(Object source, String terminalId, VetorCedulas variacoes) {
+        super(source);
+        this.terminalId = terminalId;
+        this.variacoes = variacoes;
+    }
+    /**
+     * Terminal cujos slots foram alterados; nulo para o estoque global (cofre central).
+     */
+    public String getTerminalId() {
+        return terminalId;
+    }
+    /**
+     * Variação de quantidade por cédula (positiva = crédito, negativa = débito).
+     * Nulo quando a alteração não é conhecida em detalhe e o estoque deve ser relido.
+     */
+    public VetorCedulas getVariacoes() {
+        return variacoes;
+    }
+    /**
+     * Número do evento na ordem de publicação, ainda dentro da transação que alterou o
+     * estoque (antes do commit).
+     */
+    public long getVersao() {
+        return versao;
+    }
+    /**
+     * Versão do último evento publicado. Uma alteração cujo evento tem versão maior que a lida
+     * logo após uma consulta ao estoque foi confirmada depois dela e não está no resultado.
+     */
+    public static long versaoAtual() {
+        return SEQUENCIA.get();
+    }
+}
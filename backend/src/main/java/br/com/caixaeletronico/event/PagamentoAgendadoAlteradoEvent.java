@@ -0,0 +1,36 @@
+package br.com.caixaeletronico.event;
+import br.com.caixaeletronico.model.PagamentoAgendado;
+import br.com.caixaeletronico.model.StatusAgendamento;
+import org.springframework.context.ApplicationEvent;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+/**
+ * Publicado quando um pagamento agendado é criado, cancelado, tem uma parcela processada ou
+ * uma falha registrada, com o status e a próxima execução resultantes; mantém a agenda em
+ * memória atualizada.
+ */
+public class PagamentoAgendadoAlteradoEvent extends ApplicationEvent {
+    private final Long pagamentoId;
+    private final StatusAgendamento status;
+    private final LocalDate dataProximaExecucao;
+    private final LocalDateTime proximaTentativa;
+    public PagamentoAgendadoAlteradoEvent(Object source, PagamentoAgendado pagamento) {
+        super(source);
+        this.pagamentoId = pagamento.getId();
+        this.status = pagamento.getStatus();
+        this.dataProximaExecucao = pagamento.getDataProximaExecucao();
+        this.proximaTentativa = pagamento.getProximaTentativa();
+    }
+    public Long getPagamentoId() {
+        return pagamentoId;
+    }
+    public StatusAgendamento getStatus() {
+        return status;
+    }
+    public LocalDate getDataProximaExecucao() {
+        return dataProximaExecucao;
+    }
+    public LocalDateTime getProximaTentativa() {
+        return proximaTentativa;
+    }
+}
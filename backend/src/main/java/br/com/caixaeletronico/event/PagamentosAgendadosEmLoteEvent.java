@@ -0,0 +1,23 @@
+package br.com.caixaeletronico.event;
+import org.springframework.context.ApplicationEvent;
+import java.time.LocalDate;
+/**
+ * Publicado uma vez por folha de pagamento gravada, no lugar de um
+ * {@link PagamentoAgendadoAlteradoEvent} por linha: todos os pagamentos são novos, ativos e
+ * vencem na mesma data.
+ */
+public class PagamentosAgendadosEmLoteEvent extends ApplicationEvent {
+    private final long[] pagamentoIds;
+    private final LocalDate dataProximaExecucao;
+    public PagamentosAgendadosEmLoteEvent(Object source, long[] pagamentoIds, LocalDate dataProximaExecucao) {
+        super(source);
+        this.pagamentoIds = pagamentoIds;
+        this.dataProximaExecucao = dataProximaExecucao;
+    }
+    public long[] getPagamentoIds() {
+        return pagamentoIds;
+    }
+    public LocalDate getDataProximaExecucao() {
+        return dataProximaExecucao;
+    }
+}
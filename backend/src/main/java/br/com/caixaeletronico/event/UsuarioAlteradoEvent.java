@@ -0,0 +1,16 @@
+package br.com.caixaeletronico.event;
+import org.springframework.context.ApplicationEvent;
+/**
+ * Publicado quando dados de um usuário que compõem o principal autenticado (perfil, senha,
+ * conta) mudam; invalida os principais em cache daquele login.
+ */
+public class UsuarioAlteradoEvent extends ApplicationEvent {
+    private final String login;
+    public UsuarioAlteradoEvent(Object source, String login) {
+        super(source);
+        this.login = login;
+    }
+    public String getLogin() {
+        return login;
+    }
+}
@@ -0,0 +1,31 @@
+package br.com.caixaeletronico.model;
+import jakarta.persistence.*;
+/**
+ * Última sequência do journal do motor de estoque em memória já refletida em
+ * estoque_global. Gravada na mesma transação que aplica as variações.
+ */
+@Entity
+@Table(name = "estoque_checkpoint")
+public class CheckpointEstoque {
+    @Id
+    private Long id;
+    @Column(nullable = false)
+    private Long sequencia;
+    public CheckpointEstoque() {}
+    public CheckpointEstoque(Long id, Long sequencia) {
+        this.id = id;
+        this.sequencia = sequencia;
+    }
+    public Long getId() {
+        return id;
+    }
+    public void setId(Long id) {
+        this.id = id;
+    }
+    public Long getSequencia() {
+        return sequencia;
+    }
+    public void setSequencia(Long sequencia) {
+        this.sequencia = sequencia;
+    }
+}
@@ -1,35 +1,37 @@
 package br.com.caixaeletronico.model;
-import java.util.Map;
 import java.util.UUID;
-import java.security.MessageDigest;
-import java.nio.charset.StandardCharsets;
 public class CombinacaoCedulas {
     private UUID idOpcao;
-    private Map<ValorCedula, Integer> mapaCedulas;
+    private VetorCedulas mapaCedulas;
     private int quantidadeTotalDeNotas;
     private String descricaoLegivel;
     public CombinacaoCedulas() {
         this.idOpcao = UUID.randomUUID();
     }
-    public CombinacaoCedulas(Map<ValorCedula, Integer> mapaCedulas) {
+    public CombinacaoCedulas(VetorCedulas mapaCedulas) {
         this.mapaCedulas = mapaCedulas;
-        this.quantidadeTotalDeNotas = mapaCedulas.values().stream().mapToInt(Integer::intValue).sum();
-        this.descricaoLegivel = gerarDescricaoLegivel();
-        this.idOpcao = gerarUUIDDeterministico();
+        this.quantidadeTotalDeNotas = mapaCedulas.getTotalNotas();
     }
+    /**
+     * Identificador determinístico obtido empacotando as quantidades de cédulas
+     * (ver {@link VetorCedulas#paraIdentificador()}), calculado apenas quando solicitado.
+     */
     public UUID getIdOpcao() {
+        if (idOpcao == null && mapaCedulas != null) {
+            idOpcao = mapaCedulas.paraIdentificador();
+        }
         return idOpcao;
     }
     public void setIdOpcao(UUID idOpcao) {
         this.idOpcao = idOpcao;
     }
-    public Map<ValorCedula, Integer> getMapaCedulas() {
+    public VetorCedulas getMapaCedulas() {
         return mapaCedulas;
     }
-    public void setMapaCedulas(Map<ValorCedula, Integer> mapaCedulas) {
+    public void setMapaCedulas(VetorCedulas mapaCedulas) {
         this.mapaCedulas = mapaCedulas;
-        this.quantidadeTotalDeNotas = mapaCedulas.values().stream().mapToInt(Integer::intValue).sum();
-        this.descricaoLegivel = gerarDescricaoLegivel();
+        this.quantidadeTotalDeNotas = mapaCedulas.getTotalNotas();
+        this.descricaoLegivel = null;
     }
     public int getQuantidadeTotalDeNotas() {
         return quantidadeTotalDeNotas;
@@ -37,7 +39,13 @@ public class CombinacaoCedulas {
     public void setQuantidadeTotalDeNotas(int quantidadeTotalDeNotas) {
         this.quantidadeTotalDeNotas = quantidadeTotalDeNotas;
     }
+    /**
+     * Descrição gerada sob demanda, normalmente apenas na serialização da resposta.
+     */
     public String getDescricaoLegivel() {
+        if (descricaoLegivel == null && mapaCedulas != null) {
+            return gerarDescricaoLegivel();
+        }
         return descricaoLegivel;
     }
     public void setDescricaoLegivel(String descricaoLegivel) {
@@ -45,52 +53,20 @@ public class CombinacaoCedulas {
     }
     private String gerarDescricaoLegivel() {
         StringBuilder sb = new StringBuilder();
-        mapaCedulas.entrySet().stream()
-            .filter(entry -> entry.getValue() > 0)
-            .sorted((e1, e2) -> Integer.compare(e2.getKey().getValor(), e1.getKey().getValor()))
-            .forEach(entry -> {
+        for (int i = VetorCedulas.DIMENSAO - 1; i >= 0; i--) {
+            int quantidade = mapaCedulas.getQuantidade(i);
+            if (quantidade > 0) {
                 if (sb.length() > 0) {
                     sb.append(", ");
                 }
-                sb.append(entry.getValue())
+                sb.append(quantidade)
                   .append("x R$")
-                  .append(entry.getKey().getValor());
-            });
-        return sb.toString();
-    }
-    public int calcularValorTotal() {
-        return mapaCedulas.entrySet().stream()
-            .mapToInt(entry -> entry.getKey().getValor() * entry.getValue())
-            .sum();
-    }
-    private UUID gerarUUIDDeterministico() {
-        try {
-            String conteudo = gerarConteudoParaHash();
-            MessageDigest digest = MessageDigest.getInstance("MD5");
-            byte[] hash = digest.digest(conteudo.getBytes(StandardCharsets.UTF_8));
-            long mostSigBits = 0;
-            long leastSigBits = 0;
-            for (int i = 0; i < 8; i++) {
-                mostSigBits = (mostSigBits << 8) | (hash[i] & 0xFF);
+                  .append(VetorCedulas.cedula(i).getValor());
             }
-            for (int i = 8; i < 16; i++) {
-                leastSigBits = (leastSigBits << 8) | (hash[i] & 0xFF);
-            }
-            return new UUID(mostSigBits, leastSigBits);
-        } catch (Exception e) {
-            return UUID.randomUUID();
         }
-    }
-    private String gerarConteudoParaHash() {
-        StringBuilder sb = new StringBuilder();
-        mapaCedulas.entrySet().stream()
-            .sorted((e1, e2) -> Integer.compare(e1.getKey().getValor(), e2.getKey().getValor()))
-            .forEach(entry -> {
-                sb.append(entry.getKey().getValor())
-                  .append(":")
-                  .append(entry.getValue())
-                  .append(";");
-            });
         return sb.toString();
     }
+    public int calcularValorTotal() {
+        return mapaCedulas.getValorTotal();
+    }
 }
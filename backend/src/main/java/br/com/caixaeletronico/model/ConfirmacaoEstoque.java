@@ -0,0 +1,23 @@
+package br.com.caixaeletronico.model;
+import jakarta.persistence.*;
+/**
+ * Marca uma entrada do journal do motor de estoque em memória como confirmada. Gravada na
+ * mesma transação que fez a movimentação e removida na mesma transação que a aplica em
+ * estoque_global; entradas do journal sem marca são descartadas na recuperação.
+ */
+@Entity
+@Table(name = "estoque_confirmacao")
+public class ConfirmacaoEstoque {
+    @Id
+    private Long sequencia;
+    public ConfirmacaoEstoque() {}
+    public ConfirmacaoEstoque(Long sequencia) {
+        this.sequencia = sequencia;
+    }
+    public Long getSequencia() {
+        return sequencia;
+    }
+    public void setSequencia(Long sequencia) {
+        this.sequencia = sequencia;
+    }
+}
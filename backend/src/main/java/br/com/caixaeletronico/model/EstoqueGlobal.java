@@ -15,6 +15,9 @@ public class EstoqueGlobal implements ICedula {
     @NotNull(message = "Quantidade é obrigatória")
     @Min(value = 0, message = "Quantidade não pode ser negativa")
     private Integer quantidade;
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long versao = 0L;
     public EstoqueGlobal() {}
     public EstoqueGlobal(ValorCedula valorCedula, Integer quantidade) {
         this.valorCedula = valorCedula;
@@ -38,6 +41,12 @@ public class EstoqueGlobal implements ICedula {
     public void setQuantidade(Integer quantidade) {
         this.quantidade = quantidade;
     }
+    public Long getVersao() {
+        return versao;
+    }
+    public void setVersao(Long versao) {
+        this.versao = versao;
+    }
     public void adicionarQuantidade(int valor) {
         this.quantidade += valor;
     }
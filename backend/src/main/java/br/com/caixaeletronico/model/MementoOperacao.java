@@ -0,0 +1,51 @@
+package br.com.caixaeletronico.model;
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+/**
+ * Dados para desfazer uma operação, mantidos fora da tabela operacoes para que extratos e
+ * listagens não os carreguem. Registros migrados do formato antigo trazem apenas o JSON.
+ */
+@Entity
+@Table(name = "operacao_mementos",
+       indexes = @Index(name = "idx_operacao_mementos_criado_em", columnList = "criado_em"))
+public class MementoOperacao {
+    @Id
+    @Column(name = "operacao_id")
+    private Long operacaoId;
+    @Column(name = "dados", length = 1024)
+    private byte[] dados;
+    @Column(name = "dados_json", columnDefinition = "TEXT")
+    private String dadosJson;
+    @Column(name = "criado_em", nullable = false)
+    private LocalDateTime criadoEm;
+    public MementoOperacao() {}
+    public MementoOperacao(Long operacaoId, byte[] dados, LocalDateTime criadoEm) {
+        this.operacaoId = operacaoId;
+        this.dados = dados;
+        this.criadoEm = criadoEm;
+    }
+    public Long getOperacaoId() {
+        return operacaoId;
+    }
+    public void setOperacaoId(Long operacaoId) {
+        this.operacaoId = operacaoId;
+    }
+    public byte[] getDados() {
+        return dados;
+    }
+    public void setDados(byte[] dados) {
+        this.dados = dados;
+    }
+    public String getDadosJson() {
+        return dadosJson;
+    }
+    public void setDadosJson(String dadosJson) {
+        this.dadosJson = dadosJson;
+    }
+    public LocalDateTime getCriadoEm() {
+        return criadoEm;
+    }
+    public void setCriadoEm(LocalDateTime criadoEm) {
+        this.criadoEm = criadoEm;
+    }
+}
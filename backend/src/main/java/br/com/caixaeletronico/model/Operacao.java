@@ -7,7 +7,10 @@ import jakarta.validation.constraints.Size;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 @Entity
-@Table(name = "operacoes")
+@Table(name = "operacoes", indexes = {
+    @Index(name = "idx_operacoes_origem_data", columnList = "conta_origem_id, data_hora DESC, id DESC"),
+    @Index(name = "idx_operacoes_destino_data", columnList = "conta_destino_id, data_hora DESC, id DESC")
+})
 public class Operacao {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -27,8 +30,9 @@ public class Operacao {
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "conta_destino_id")
     private Conta contaDestino;
-    @Column(columnDefinition = "TEXT")
-    private String mementoJson;
+    // Os dados para desfazer ficam em operacao_mementos (MementoOperacao).
+    @Column(name = "possui_memento", nullable = false, columnDefinition = "boolean default false")
+    private Boolean possuiMemento = false;
     @NotBlank(message = "Usuário responsável é obrigatório")
     @Size(max = 100, message = "Usuário responsável deve ter no máximo 100 caracteres")
     private String usuarioResponsavel;
@@ -85,11 +89,11 @@ public class Operacao {
     public void setContaDestino(Conta contaDestino) {
         this.contaDestino = contaDestino;
     }
-    public String getMementoJson() {
-        return mementoJson;
+    public Boolean getPossuiMemento() {
+        return possuiMemento;
     }
-    public void setMementoJson(String mementoJson) {
-        this.mementoJson = mementoJson;
+    public void setPossuiMemento(Boolean possuiMemento) {
+        this.possuiMemento = possuiMemento;
     }
     public String getUsuarioResponsavel() {
         return usuarioResponsavel;
@@ -2,13 +2,44 @@ package br.com.caixaeletronico.model;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
+/**
+ * Variações aplicadas por uma operação: saldo por conta e quantidade por cédula (no
+ * terminal ou, se nulo, no estoque global). Desfazer a operação aplica as variações
+ * inversas.
+ *
+ * Registros antigos, gravados em JSON, guardavam os valores absolutos anteriores à
+ * operação em {@code saldosAntes} e {@code estoquesAntes}; esses campos só são preenchidos
+ * pela leitura do formato legado (ver {@link #isLegado()}).
+ */
 public class OperationMemento {
+    private Map<Long, BigDecimal> variacoesSaldo;
+    private VetorCedulas variacoesCedulas = VetorCedulas.VAZIO;
+    private String terminalId;
     private Map<Long, BigDecimal> saldosAntes;
     private List<EstoqueGlobalSnapshot> estoquesAntes;
     public OperationMemento() {}
-    public OperationMemento(Map<Long, BigDecimal> saldosAntes, List<EstoqueGlobalSnapshot> estoquesAntes) {
-        this.saldosAntes = saldosAntes;
-        this.estoquesAntes = estoquesAntes;
+    public OperationMemento(Map<Long, BigDecimal> variacoesSaldo, VetorCedulas variacoesCedulas, String terminalId) {
+        this.variacoesSaldo = variacoesSaldo;
+        this.variacoesCedulas = variacoesCedulas;
+        this.terminalId = terminalId;
+    }
+    public Map<Long, BigDecimal> getVariacoesSaldo() {
+        return variacoesSaldo;
+    }
+    public void setVariacoesSaldo(Map<Long, BigDecimal> variacoesSaldo) {
+        this.variacoesSaldo = variacoesSaldo;
+    }
+    public VetorCedulas getVariacoesCedulas() {
+        return variacoesCedulas;
+    }
+    public void setVariacoesCedulas(VetorCedulas variacoesCedulas) {
+        this.variacoesCedulas = variacoesCedulas;
+    }
+    public String getTerminalId() {
+        return terminalId;
+    }
+    public void setTerminalId(String terminalId) {
+        this.terminalId = terminalId;
     }
     public Map<Long, BigDecimal> getSaldosAntes() {
         return saldosAntes;
@@ -22,6 +53,9 @@ public class OperationMemento {
     public void setEstoquesAntes(List<EstoqueGlobalSnapshot> estoquesAntes) {
         this.estoquesAntes = estoquesAntes;
     }
+    public boolean isLegado() {
+        return saldosAntes != null;
+    }
     public static class EstoqueGlobalSnapshot {
         private ValorCedula valorCedula;
         private Integer quantidade;
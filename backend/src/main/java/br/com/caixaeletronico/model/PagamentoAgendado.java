@@ -6,11 +6,17 @@ import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 @Entity
 @Table(name = "pagamentos_agendados")
 public class PagamentoAgendado {
+    /**
+     * Ids de sequência, reservados de 50 em 50, para que os inserts possam ir em lote (com
+     * IDENTITY o Hibernate insere um a um para ler o id gerado).
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pagamentos_agendados_seq")
+    @SequenceGenerator(name = "pagamentos_agendados_seq", sequenceName = "pagamentos_agendados_seq", allocationSize = 50)
     private Long id;
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "conta_origem_id")
@@ -42,6 +48,21 @@ public class PagamentoAgendado {
     private StatusAgendamento status;
     @Column(length = 255)
     private String descricao;
+    /**
+     * Até quando o pagamento está reservado para processamento por uma instância. Expirada a
+     * reserva (instância caiu ou a parcela falhou), outra execução pode reservá-lo de novo.
+     */
+    private LocalDateTime reservadoAte;
+    /**
+     * Falhas seguidas na parcela atual; zera quando uma parcela é cobrada.
+     */
+    private Integer tentativas;
+    @Column(length = 500)
+    private String ultimoErro;
+    /**
+     * Antes deste instante a parcela que falhou não é cobrada de novo (espera exponencial).
+     */
+    private LocalDateTime proximaTentativa;
     public PagamentoAgendado() {}
     public PagamentoAgendado(Conta contaOrigem, Conta contaDestino, BigDecimal valorTotal, 
                            Integer quantidadeParcelas, Integer periodicidadeDias, 
@@ -116,6 +137,46 @@ public class PagamentoAgendado {
     public void setDescricao(String descricao) {
         this.descricao = descricao;
     }
+    public LocalDateTime getReservadoAte() {
+        return reservadoAte;
+    }
+    public void setReservadoAte(LocalDateTime reservadoAte) {
+        this.reservadoAte = reservadoAte;
+    }
+    public int getTentativas() {
+        return tentativas == null ? 0 : tentativas;
+    }
+    public void setTentativas(Integer tentativas) {
+        this.tentativas = tentativas;
+    }
+    public String getUltimoErro() {
+        return ultimoErro;
+    }
+    public void setUltimoErro(String ultimoErro) {
+        this.ultimoErro = ultimoErro;
+    }
+    public LocalDateTime getProximaTentativa() {
+        return proximaTentativa;
+    }
+    public void setProximaTentativa(LocalDateTime proximaTentativa) {
+        this.proximaTentativa = proximaTentativa;
+    }
+    public boolean aguardandoNovaTentativa(LocalDateTime agora) {
+        return proximaTentativa != null && proximaTentativa.isAfter(agora);
+    }
+    /**
+     * Registra uma falha da parcela atual: agenda a próxima tentativa ou, sem ela, encerra o
+     * pagamento como {@link StatusAgendamento#FALHOU}.
+     */
+    public void registrarFalha(String erro, LocalDateTime proximaTentativa) {
+        this.tentativas = getTentativas() + 1;
+        this.ultimoErro = erro != null && erro.length() > 500 ? erro.substring(0, 500) : erro;
+        this.proximaTentativa = proximaTentativa;
+        this.reservadoAte = null;
+        if (proximaTentativa == null) {
+            this.status = StatusAgendamento.FALHOU;
+        }
+    }
     public BigDecimal getValorParcela() {
         return valorTotal.divide(BigDecimal.valueOf(quantidadeParcelas), 2, java.math.RoundingMode.HALF_UP);
     }
@@ -123,6 +184,9 @@ public class PagamentoAgendado {
         if (parcelasRestantes > 0) {
             parcelasRestantes--;
             dataProximaExecucao = dataProximaExecucao.plusDays(periodicidadeDias);
+            tentativas = 0;
+            ultimoErro = null;
+            proximaTentativa = null;
             if (parcelasRestantes == 0) {
                 status = StatusAgendamento.CONCLUIDO;
             }
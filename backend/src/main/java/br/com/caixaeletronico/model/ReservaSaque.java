@@ -0,0 +1,66 @@
+package br.com.caixaeletronico.model;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.UUID;
+/**
+ * Reserva temporária das opções de saque oferecidas a uma conta.
+ *
+ * Enquanto válida, retém em memória as cédulas necessárias para atender qualquer uma das
+ * opções ofertadas, impedindo que as mesmas notas sejam oferecidas a outro usuário.
+ */
+public class ReservaSaque {
+    private final UUID idReserva;
+    private final Long contaId;
+    private final String terminalId;
+    private final int valor;
+    private final List<CombinacaoCedulas> opcoes;
+    private final VetorCedulas cedulasRetidas;
+    private final long expiraEmMillis;
+    public ReservaSaque(UUID idReserva, Long contaId, String terminalId, int valor, List<CombinacaoCedulas> opcoes,
+                        VetorCedulas cedulasRetidas, long expiraEmMillis) {
+        this.idReserva = idReserva;
+        this.contaId = contaId;
+        this.terminalId = terminalId;
+        this.valor = valor;
+        this.opcoes = opcoes;
+        this.cedulasRetidas = cedulasRetidas;
+        this.expiraEmMillis = expiraEmMillis;
+    }
+    public UUID getIdReserva() {
+        return idReserva;
+    }
+    public Long getContaId() {
+        return contaId;
+    }
+    public String getTerminalId() {
+        return terminalId;
+    }
+    public int getValor() {
+        return valor;
+    }
+    public List<CombinacaoCedulas> getOpcoes() {
+        return opcoes;
+    }
+    public VetorCedulas getCedulasRetidas() {
+        return cedulasRetidas;
+    }
+    public long getExpiraEmMillis() {
+        return expiraEmMillis;
+    }
+    public LocalDateTime getExpiraEm() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(expiraEmMillis), ZoneId.systemDefault());
+    }
+    public boolean isExpirada(long agoraMillis) {
+        return agoraMillis >= expiraEmMillis;
+    }
+    public CombinacaoCedulas obterOpcao(UUID idOpcao) {
+        for (CombinacaoCedulas opcao : opcoes) {
+            if (opcao.getIdOpcao().equals(idOpcao)) {
+                return opcao;
+            }
+        }
+        return null;
+    }
+}
@@ -1,22 +1,31 @@
 package br.com.caixaeletronico.model;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 @Entity
-@Table(name = "slots_cedulas")
+@Table(name = "slots_cedulas",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"terminal_id", "valor_cedula"}))
 public class SlotCedula implements ICedula {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
+    @NotBlank(message = "Terminal é obrigatório")
+    @Column(name = "terminal_id", nullable = false, length = 50)
+    private String terminalId;
     @NotNull(message = "Valor da cédula é obrigatório")
     @Enumerated(EnumType.STRING)
-    @Column(unique = true)
+    @Column(name = "valor_cedula")
     private ValorCedula valorCedula;
     @NotNull(message = "Quantidade é obrigatória")
     @Min(value = 0, message = "Quantidade não pode ser negativa")
     private Integer quantidade;
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long versao = 0L;
     public SlotCedula() {}
-    public SlotCedula(ValorCedula valorCedula, Integer quantidade) {
+    public SlotCedula(String terminalId, ValorCedula valorCedula, Integer quantidade) {
+        this.terminalId = terminalId;
         this.valorCedula = valorCedula;
         this.quantidade = quantidade;
     }
@@ -26,6 +35,12 @@ public class SlotCedula implements ICedula {
     public void setId(Long id) {
         this.id = id;
     }
+    public String getTerminalId() {
+        return terminalId;
+    }
+    public void setTerminalId(String terminalId) {
+        this.terminalId = terminalId;
+    }
     public ValorCedula getValorCedula() {
         return valorCedula;
     }
@@ -38,6 +53,12 @@ public class SlotCedula implements ICedula {
     public void setQuantidade(Integer quantidade) {
         this.quantidade = quantidade;
     }
+    public Long getVersao() {
+        return versao;
+    }
+    public void setVersao(Long versao) {
+        this.versao = versao;
+    }
     public void adicionarQuantidade(int valor) {
         this.quantidade += valor;
     }
@@ -2,5 +2,6 @@ package br.com.caixaeletronico.model;
 public enum StatusAgendamento {
     ATIVO,
     CONCLUIDO,
-    CANCELADO
+    CANCELADO,
+    FALHOU
 }
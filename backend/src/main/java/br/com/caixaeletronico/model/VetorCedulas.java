@@ -0,0 +1,288 @@
+package br.com.caixaeletronico.model;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+/**
+ * Vetor imutável de quantidades de cédulas, indexado por {@link ValorCedula#ordinal()}.
+ *
+ * Substitui {@code Map<ValorCedula, Integer>} no caminho de saque/depósito: as operações
+ * trabalham sobre um único {@code int[]} de largura fixa, sem boxing nem entradas de mapa.
+ * Em JSON é representado como objeto {@code {"CEM": 2, "VINTE": 1}}, omitindo zeros.
+ */
+@JsonSerialize(using = VetorCedulas.Serializador.class)
+@JsonDeserialize(using = VetorCedulas.Desserializador.class)
+public final class VetorCedulas implements Comparable<VetorCedulas> {
+    private static final ValorCedula[] CEDULAS = ValorCedula.values();
+    public static final int DIMENSAO = CEDULAS.length;
+    public static final VetorCedulas VAZIO = new VetorCedulas(new int[DIMENSAO]);
+    private static final int BITS_POR_CEDULA = 16;
+    private static final int CEDULAS_POR_METADE = Long.SIZE / BITS_POR_CEDULA;
+    private static final int MAXIMO_POR_IDENTIFICADOR = (1 << BITS_POR_CEDULA) - 1;
+    private final int[] quantidades;
+    private VetorCedulas(int[] quantidades) {
+        this.quantidades = quantidades;
+    }
+    public static VetorCedulas de(int[] quantidades) {
+        return envolvendo(quantidades.clone());
+    }
+    /**
+     * Cria o vetor sem copiar o array, que não deve mais ser alterado pelo chamador.
+     */
+    public static VetorCedulas envolvendo(int[] quantidades) {
+        if (quantidades.length != DIMENSAO) {
+            throw new IllegalArgumentException("Vetor de cédulas deve ter " + DIMENSAO + " posições");
+        }
+        return new VetorCedulas(quantidades);
+    }
+    public static VetorCedulas de(ValorCedula valorCedula, int quantidade) {
+        int[] quantidades = new int[DIMENSAO];
+        quantidades[valorCedula.ordinal()] = quantidade;
+        return new VetorCedulas(quantidades);
+    }
+    public static VetorCedulas de(Map<ValorCedula, Integer> mapa) {
+        int[] quantidades = new int[DIMENSAO];
+        for (Map.Entry<ValorCedula, Integer> entry : mapa.entrySet()) {
+            quantidades[entry.getKey().ordinal()] += entry.getValue();
+        }
+        return new VetorCedulas(quantidades);
+    }
+    public static VetorCedulas doEstoque(List<? extends ICedula> cedulas) {
+        int[] quantidades = new int[DIMENSAO];
+        for (ICedula cedula : cedulas) {
+            quantidades[cedula.getValorCedula().ordinal()] += cedula.getQuantidade();
+        }
+        return new VetorCedulas(quantidades);
+    }
+    /**
+     * Uma entrada de estoque (não gerenciada pelo JPA) por cédula com quantidade positiva,
+     * da maior para a menor.
+     */
+    public List<EstoqueGlobal> paraEstoque() {
+        List<EstoqueGlobal> estoque = new ArrayList<>();
+        for (int i = DIMENSAO - 1; i >= 0; i--) {
+            if (quantidades[i] > 0) {
+                estoque.add(new EstoqueGlobal(CEDULAS[i], quantidades[i]));
+            }
+        }
+        return estoque;
+    }
+    public static ValorCedula cedula(int indice) {
+        return CEDULAS[indice];
+    }
+    public int getQuantidade(ValorCedula valorCedula) {
+        return quantidades[valorCedula.ordinal()];
+    }
+    public int getQuantidade(int indice) {
+        return quantidades[indice];
+    }
+    public int getTotalNotas() {
+        int total = 0;
+        for (int quantidade : quantidades) {
+            total += quantidade;
+        }
+        return total;
+    }
+    public int getValorTotal() {
+        int total = 0;
+        for (int i = 0; i < DIMENSAO; i++) {
+            total += quantidades[i] * CEDULAS[i].getValor();
+        }
+        return total;
+    }
+    /**
+     * Número de cédulas com quantidade diferente de zero.
+     */
+    public int getCedulasDistintas() {
+        int distintas = 0;
+        for (int quantidade : quantidades) {
+            if (quantidade != 0) {
+                distintas++;
+            }
+        }
+        return distintas;
+    }
+    public boolean isVazio() {
+        for (int quantidade : quantidades) {
+            if (quantidade != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    public boolean isNaoNegativo() {
+        for (int quantidade : quantidades) {
+            if (quantidade < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    public VetorCedulas somar(VetorCedulas outro) {
+        int[] resultado = new int[DIMENSAO];
+        for (int i = 0; i < DIMENSAO; i++) {
+            resultado[i] = quantidades[i] + outro.quantidades[i];
+        }
+        return new VetorCedulas(resultado);
+    }
+    public VetorCedulas subtrair(VetorCedulas outro) {
+        int[] resultado = new int[DIMENSAO];
+        for (int i = 0; i < DIMENSAO; i++) {
+            resultado[i] = quantidades[i] - outro.quantidades[i];
+        }
+        return new VetorCedulas(resultado);
+    }
+    public VetorCedulas negar() {
+        int[] resultado = new int[DIMENSAO];
+        for (int i = 0; i < DIMENSAO; i++) {
+            resultado[i] = -quantidades[i];
+        }
+        return new VetorCedulas(resultado);
+    }
+    /**
+     * Mantém apenas as quantidades positivas; as negativas viram zero.
+     */
+    public VetorCedulas positivos() {
+        int[] resultado = new int[DIMENSAO];
+        for (int i = 0; i < DIMENSAO; i++) {
+            resultado[i] = Math.max(quantidades[i], 0);
+        }
+        return new VetorCedulas(resultado);
+    }
+    /**
+     * Verifica se todas as posições são menores ou iguais às do limite (ex.: estoque disponível).
+     */
+    public boolean cabeEm(VetorCedulas limite) {
+        for (int i = 0; i < DIMENSAO; i++) {
+            if (quantidades[i] > limite.quantidades[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    /**
+     * Indica se as quantidades cabem em {@link #paraIdentificador()} (0 a 65535 por cédula).
+     */
+    public boolean isIdentificavel() {
+        for (int quantidade : quantidades) {
+            if (quantidade < 0 || quantidade > MAXIMO_POR_IDENTIFICADOR) {
+                return false;
+            }
+        }
+        return true;
+    }
+    /**
+     * Empacota as quantidades em um UUID determinístico, 16 bits por cédula: as quatro
+     * primeiras nos bits mais significativos e as demais nos menos significativos.
+     */
+    public UUID paraIdentificador() {
+        long mais = 0;
+        long menos = 0;
+        for (int i = 0; i < DIMENSAO; i++) {
+            int quantidade = quantidades[i];
+            if (quantidade < 0 || quantidade > MAXIMO_POR_IDENTIFICADOR) {
+                throw new IllegalStateException("Quantidade de cédulas de R$" + CEDULAS[i].getValor()
+                    + " fora do limite do identificador: " + quantidade);
+            }
+            if (i < CEDULAS_POR_METADE) {
+                mais |= (long) quantidade << (i * BITS_POR_CEDULA);
+            } else {
+                menos |= (long) quantidade << ((i - CEDULAS_POR_METADE) * BITS_POR_CEDULA);
+            }
+        }
+        return new UUID(mais, menos);
+    }
+    /**
+     * Operação inversa de {@link #paraIdentificador()}; retorna nulo se o UUID não foi
+     * gerado a partir de um vetor de cédulas.
+     */
+    public static VetorCedulas doIdentificador(UUID identificador) {
+        long mais = identificador.getMostSignificantBits();
+        long menos = identificador.getLeastSignificantBits();
+        if ((menos >>> ((DIMENSAO - CEDULAS_POR_METADE) * BITS_POR_CEDULA)) != 0) {
+            return null;
+        }
+        int[] quantidades = new int[DIMENSAO];
+        for (int i = 0; i < DIMENSAO; i++) {
+            long metade = i < CEDULAS_POR_METADE ? mais : menos;
+            int deslocamento = (i < CEDULAS_POR_METADE ? i : i - CEDULAS_POR_METADE) * BITS_POR_CEDULA;
+            quantidades[i] = (int) ((metade >>> deslocamento) & MAXIMO_POR_IDENTIFICADOR);
+        }
+        return new VetorCedulas(quantidades);
+    }
+    public Map<ValorCedula, Integer> toMap() {
+        Map<ValorCedula, Integer> mapa = new EnumMap<>(ValorCedula.class);
+        for (int i = 0; i < DIMENSAO; i++) {
+            if (quantidades[i] != 0) {
+                mapa.put(CEDULAS[i], quantidades[i]);
+            }
+        }
+        return mapa;
+    }
+    /**
+     * Ordena por número total de notas e, em caso de empate, pelas cédulas de maior valor.
+     */
+    @Override
+    public int compareTo(VetorCedulas outro) {
+        int comparacao = Integer.compare(getTotalNotas(), outro.getTotalNotas());
+        for (int i = DIMENSAO - 1; comparacao == 0 && i >= 0; i--) {
+            comparacao = Integer.compare(outro.quantidades[i], quantidades[i]);
+        }
+        return comparacao;
+    }
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        return o instanceof VetorCedulas && Arrays.equals(quantidades, ((VetorCedulas) o).quantidades);
+    }
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(quantidades);
+    }
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+    public static class Serializador extends JsonSerializer<VetorCedulas> {
+        @Override
+        public void serialize(VetorCedulas vetor, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            gen.writeStartObject();
+            for (int i = 0; i < DIMENSAO; i++) {
+                if (vetor.quantidades[i] != 0) {
+                    gen.writeNumberField(CEDULAS[i].name(), vetor.quantidades[i]);
+                }
+            }
+            gen.writeEndObject();
+        }
+    }
+    public static class Desserializador extends JsonDeserializer<VetorCedulas> {
+        @Override
+        public VetorCedulas deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            int[] quantidades = new int[DIMENSAO];
+            if (parser.currentToken() == JsonToken.START_OBJECT) {
+                parser.nextToken();
+            }
+            while (parser.currentToken() == JsonToken.FIELD_NAME) {
+                ValorCedula valorCedula = ValorCedula.valueOf(parser.getCurrentName());
+                parser.nextToken();
+                quantidades[valorCedula.ordinal()] += parser.getIntValue();
+                parser.nextToken();
+            }
+            return new VetorCedulas(quantidades);
+        }
+    }
+}
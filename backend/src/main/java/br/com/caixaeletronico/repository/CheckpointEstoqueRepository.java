@@ -0,0 +1,7 @@
+package br.com.caixaeletronico.repository;
+import br.com.caixaeletronico.model.CheckpointEstoque;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+@Repository
+public interface CheckpointEstoqueRepository extends JpaRepository<CheckpointEstoque, Long> {
+}
@@ -0,0 +1,20 @@
+package br.com.caixaeletronico.repository;
+import br.com.caixaeletronico.model.ConfirmacaoEstoque;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.util.Collection;
+import java.util.List;
+@Repository
+public interface ConfirmacaoEstoqueRepository extends JpaRepository<ConfirmacaoEstoque, Long> {
+    @Modifying
+    @Query(value = "INSERT INTO estoque_confirmacao (sequencia) VALUES (:sequencia)", nativeQuery = true)
+    void registrar(@Param("sequencia") long sequencia);
+    @Query("SELECT c.sequencia FROM ConfirmacaoEstoque c WHERE c.sequencia > :sequencia")
+    List<Long> findSequenciasApos(@Param("sequencia") long sequencia);
+    @Modifying
+    @Query("DELETE FROM ConfirmacaoEstoque c WHERE c.sequencia IN :sequencias")
+    int removerSequencias(@Param("sequencias") Collection<Long> sequencias);
+}
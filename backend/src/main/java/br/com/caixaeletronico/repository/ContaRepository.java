@@ -1,12 +1,63 @@
 package br.com.caixaeletronico.repository;
+import br.com.caixaeletronico.dto.ContaBasicaDto;
+import br.com.caixaeletronico.dto.ContaInfoDto;
 import br.com.caixaeletronico.model.Conta;
 import br.com.caixaeletronico.model.Usuario;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 @Repository
 public interface ContaRepository extends JpaRepository<Conta, Long> {
+    String SELECT_CONTA_INFO = "SELECT new br.com.caixaeletronico.dto.ContaInfoDto(c.id, c.numeroConta, c.titular, " +
+        "u.login, u.id, c.saldo) FROM Conta c LEFT JOIN c.usuario u ";
+    String SELECT_CONTA_BASICA = "SELECT new br.com.caixaeletronico.dto.ContaBasicaDto(c.id, c.numeroConta, c.titular, " +
+        "u.login, u.id) FROM Conta c LEFT JOIN c.usuario u ";
+    String COUNT_CONTAS = "SELECT COUNT(c) FROM Conta c ";
+    /**
+     * Filtro por trecho do titular ou do número da conta; no PostgreSQL é atendido pelos índices
+     * pg_trgm criados em {@code IndicesBanco}. O padrão já vem em minúsculas, com curingas e
+     * escapado com '!'.
+     */
+    String FILTRO_CONTAS = "WHERE LOWER(c.titular) LIKE :padrao ESCAPE '!' OR c.numeroConta LIKE :padrao ESCAPE '!' ";
     Optional<Conta> findByUsuario(Usuario usuario);
     Optional<Conta> findTopByNumeroContaStartingWithOrderByNumeroContaDesc(String prefixo);
     Optional<Conta> findByNumeroConta(String numeroConta);
+    /**
+     * Dentre os ids informados, os que existem, em uma consulta sem carregar as contas.
+     */
+    @Query("SELECT c.id FROM Conta c WHERE c.id IN :ids")
+    List<Long> findIdsExistentes(@Param("ids") Collection<Long> ids);
+    /**
+     * Soma a variação ao saldo em um UPDATE condicional; não altera a conta se o saldo
+     * ficaria negativo. Retorna o número de linhas atualizadas (0 ou 1).
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Conta c SET c.saldo = c.saldo + :variacao WHERE c.id = :contaId AND c.saldo + :variacao >= 0")
+    int aplicarVariacaoSaldo(@Param("contaId") Long contaId, @Param("variacao") BigDecimal variacao);
+    /**
+     * Conta com saldo e dono em uma consulta, sem carregar entidades (para leitura e
+     * verificação de acesso).
+     */
+    @Query(SELECT_CONTA_INFO + "WHERE c.id = :contaId")
+    Optional<ContaInfoDto> findContaInfoById(@Param("contaId") Long contaId);
+    @Query(SELECT_CONTA_INFO + "WHERE u.id = :usuarioId ORDER BY c.id")
+    List<ContaInfoDto> findContaInfoByUsuarioId(@Param("usuarioId") Long usuarioId);
+    @Query(SELECT_CONTA_INFO + "ORDER BY c.id")
+    List<ContaInfoDto> findAllContaInfo();
+    @Query(value = SELECT_CONTA_INFO, countQuery = COUNT_CONTAS)
+    Page<ContaInfoDto> findContaInfo(Pageable pageable);
+    @Query(value = SELECT_CONTA_INFO + FILTRO_CONTAS, countQuery = COUNT_CONTAS + FILTRO_CONTAS)
+    Page<ContaInfoDto> findContaInfoByFiltro(@Param("padrao") String padrao, Pageable pageable);
+    @Query(value = SELECT_CONTA_BASICA, countQuery = COUNT_CONTAS)
+    Page<ContaBasicaDto> findContaBasica(Pageable pageable);
+    @Query(value = SELECT_CONTA_BASICA + FILTRO_CONTAS, countQuery = COUNT_CONTAS + FILTRO_CONTAS)
+    Page<ContaBasicaDto> findContaBasicaByFiltro(@Param("padrao") String padrao, Pageable pageable);
 }
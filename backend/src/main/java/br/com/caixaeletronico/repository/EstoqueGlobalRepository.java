@@ -1,13 +1,84 @@
 package br.com.caixaeletronico.repository;
 import br.com.caixaeletronico.model.EstoqueGlobal;
 import br.com.caixaeletronico.model.ValorCedula;
+import br.com.caixaeletronico.model.VetorCedulas;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 @Repository
 public interface EstoqueGlobalRepository extends JpaRepository<EstoqueGlobal, Long> {
+    String QUANTIDADE_POR_CEDULA = "CASE valor_cedula " +
+        "WHEN 'DOIS' THEN :dois WHEN 'CINCO' THEN :cinco WHEN 'DEZ' THEN :dez WHEN 'VINTE' THEN :vinte " +
+        "WHEN 'CINQUENTA' THEN :cinquenta WHEN 'CEM' THEN :cem WHEN 'DUZENTOS' THEN :duzentos ELSE 0 END";
     Optional<EstoqueGlobal> findByValorCedula(ValorCedula valorCedula);
     List<EstoqueGlobal> findByQuantidadeGreaterThan(Integer quantidade);
     List<EstoqueGlobal> findAllByOrderByValorCedulaDesc();
+    /**
+     * Debita todas as cédulas em um único UPDATE condicional; só altera as linhas com
+     * quantidade suficiente. Retorna o número de linhas atualizadas.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE estoque_global SET quantidade = quantidade - " + QUANTIDADE_POR_CEDULA +
+        ", versao = versao + 1 WHERE valor_cedula IN (:cedulas) AND quantidade >= " + QUANTIDADE_POR_CEDULA,
+        nativeQuery = true)
+    int debitarCedulas(@Param("dois") int dois, @Param("cinco") int cinco, @Param("dez") int dez,
+                       @Param("vinte") int vinte, @Param("cinquenta") int cinquenta, @Param("cem") int cem,
+                       @Param("duzentos") int duzentos, @Param("cedulas") List<String> cedulas);
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE estoque_global SET quantidade = quantidade + " + QUANTIDADE_POR_CEDULA +
+        ", versao = versao + 1 WHERE valor_cedula IN (:cedulas)",
+        nativeQuery = true)
+    int creditarCedulas(@Param("dois") int dois, @Param("cinco") int cinco, @Param("dez") int dez,
+                        @Param("vinte") int vinte, @Param("cinquenta") int cinquenta, @Param("cem") int cem,
+                        @Param("duzentos") int duzentos, @Param("cedulas") List<String> cedulas);
+    default int debitarCedulas(VetorCedulas cedulas) {
+        if (cedulas.isVazio()) {
+            return 0;
+        }
+        return debitarCedulas(
+            cedulas.getQuantidade(ValorCedula.DOIS), cedulas.getQuantidade(ValorCedula.CINCO),
+            cedulas.getQuantidade(ValorCedula.DEZ), cedulas.getQuantidade(ValorCedula.VINTE),
+            cedulas.getQuantidade(ValorCedula.CINQUENTA), cedulas.getQuantidade(ValorCedula.CEM),
+            cedulas.getQuantidade(ValorCedula.DUZENTOS), nomesDasCedulas(cedulas));
+    }
+    default int creditarCedulas(VetorCedulas cedulas) {
+        if (cedulas.isVazio()) {
+            return 0;
+        }
+        return creditarCedulas(
+            cedulas.getQuantidade(ValorCedula.DOIS), cedulas.getQuantidade(ValorCedula.CINCO),
+            cedulas.getQuantidade(ValorCedula.DEZ), cedulas.getQuantidade(ValorCedula.VINTE),
+            cedulas.getQuantidade(ValorCedula.CINQUENTA), cedulas.getQuantidade(ValorCedula.CEM),
+            cedulas.getQuantidade(ValorCedula.DUZENTOS), nomesDasCedulas(cedulas));
+    }
+    /**
+     * Aplica variações (positivas ou negativas) sem condição, criando as linhas de
+     * estoque que ainda não existem.
+     */
+    default void aplicarVariacoes(VetorCedulas variacoes) {
+        if (creditarCedulas(variacoes) == variacoes.getCedulasDistintas()) {
+            return;
+        }
+        for (int i = 0; i < VetorCedulas.DIMENSAO; i++) {
+            ValorCedula valorCedula = VetorCedulas.cedula(i);
+            int quantidade = variacoes.getQuantidade(i);
+            if (quantidade != 0 && findByValorCedula(valorCedula).isEmpty()) {
+                save(new EstoqueGlobal(valorCedula, quantidade));
+            }
+        }
+    }
+    private static List<String> nomesDasCedulas(VetorCedulas cedulas) {
+        List<String> nomes = new ArrayList<>(VetorCedulas.DIMENSAO);
+        for (int i = 0; i < VetorCedulas.DIMENSAO; i++) {
+            if (cedulas.getQuantidade(i) != 0) {
+                nomes.add(VetorCedulas.cedula(i).name());
+            }
+        }
+        return nomes;
+    }
 }
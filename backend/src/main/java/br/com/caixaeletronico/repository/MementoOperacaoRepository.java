@@ -0,0 +1,18 @@
+package br.com.caixaeletronico.repository;
+import br.com.caixaeletronico.model.MementoOperacao;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+@Repository
+public interface MementoOperacaoRepository extends JpaRepository<MementoOperacao, Long> {
+    @Modifying
+    @Query("UPDATE Operacao o SET o.possuiMemento = false WHERE o.id IN " +
+           "(SELECT m.operacaoId FROM MementoOperacao m WHERE m.criadoEm < :limite)")
+    int desmarcarOperacoesComMementoAnteriorA(@Param("limite") LocalDateTime limite);
+    @Modifying
+    @Query("DELETE FROM MementoOperacao m WHERE m.criadoEm < :limite")
+    int removerAnterioresA(@Param("limite") LocalDateTime limite);
+}
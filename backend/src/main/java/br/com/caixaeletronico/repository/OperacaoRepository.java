@@ -1,15 +1,27 @@
 package br.com.caixaeletronico.repository;
+import br.com.caixaeletronico.dto.OperacaoDesfazivelDto;
+import br.com.caixaeletronico.dto.OperacaoDto;
 import br.com.caixaeletronico.model.Conta;
 import br.com.caixaeletronico.model.Operacao;
 import br.com.caixaeletronico.model.TipoOperacao;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 @Repository
 public interface OperacaoRepository extends JpaRepository<Operacao, Long> {
+    String SELECT_DESFAZIVEIS = "SELECT new br.com.caixaeletronico.dto.OperacaoDesfazivelDto(o.id, o.tipo, o.dataHora, " +
+        "o.valor, o.usuarioResponsavel, co.id, co.numeroConta, cd.id, cd.numeroConta) " +
+        "FROM Operacao o LEFT JOIN o.contaOrigem co LEFT JOIN o.contaDestino cd " +
+        "WHERE o.usuarioResponsavel = :usuarioResponsavel AND o.desfeita = false AND o.possuiMemento = true ";
     List<Operacao> findByContaOrigemOrderByDataHoraDesc(Conta conta);
     List<Operacao> findByContaDestinoOrderByDataHoraDesc(Conta conta);
     @Query("SELECT o FROM Operacao o WHERE (o.contaOrigem = :conta OR o.contaDestino = :conta) ORDER BY o.dataHora DESC")
@@ -21,12 +33,76 @@ public interface OperacaoRepository extends JpaRepository<Operacao, Long> {
         @Param("dataInicio") LocalDateTime dataInicio,
         @Param("dataFim") LocalDateTime dataFim
     );
-    List<Operacao> findByTipoAndMementoJsonIsNotNull(TipoOperacao tipo);
+    List<Operacao> findByTipoAndPossuiMementoTrue(TipoOperacao tipo);
+    /**
+     * Operações da conta no período, da mais antiga para a mais recente, lidas sob demanda
+     * (fetch size ajustado) e projetadas em DTO, sem entidades no contexto de persistência.
+     * Deve ser consumido dentro de uma transação e fechado ao final.
+     */
+    @QueryHints({
+        @QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT new br.com.caixaeletronico.dto.OperacaoDto(o.id, o.tipo, o.dataHora, o.valor, o.usuarioResponsavel) " +
+           "FROM Operacao o WHERE (o.contaOrigem.id = :contaId OR o.contaDestino.id = :contaId) " +
+           "AND o.dataHora BETWEEN :dataInicio AND :dataFim ORDER BY o.dataHora, o.id")
+    Stream<OperacaoDto> streamExtrato(
+        @Param("contaId") Long contaId,
+        @Param("dataInicio") LocalDateTime dataInicio,
+        @Param("dataFim") LocalDateTime dataFim
+    );
+    /**
+     * Página do extrato da conta, da operação mais recente para a mais antiga, anterior ao
+     * cursor (antesDeDataHora, antesDeId). Cada perna do UNION (origem e destino) usa seu
+     * índice composto e é limitada antes da junção; transferências para a própria conta
+     * aparecem uma vez. Projeta direto em {@link OperacaoDto}, sem carregar entidades.
+     */
+    @Query("SELECT new br.com.caixaeletronico.dto.OperacaoDto(e.id, e.tipo, e.dataHora, e.valor, e.usuarioResponsavel) FROM (" +
+        "(SELECT o.id id, o.tipo tipo, o.dataHora dataHora, o.valor valor, o.usuarioResponsavel usuarioResponsavel " +
+        "FROM Operacao o WHERE o.contaOrigem.id = :contaId AND o.dataHora >= :dataInicio " +
+        "AND (o.dataHora < :antesDeDataHora OR (o.dataHora = :antesDeDataHora AND o.id < :antesDeId)) " +
+        "ORDER BY o.dataHora DESC, o.id DESC LIMIT :limite) " +
+        "UNION ALL " +
+        "(SELECT o.id id, o.tipo tipo, o.dataHora dataHora, o.valor valor, o.usuarioResponsavel usuarioResponsavel " +
+        "FROM Operacao o WHERE o.contaDestino.id = :contaId AND o.dataHora >= :dataInicio " +
+        "AND (o.contaOrigem.id IS NULL OR o.contaOrigem.id <> :contaId) " +
+        "AND (o.dataHora < :antesDeDataHora OR (o.dataHora = :antesDeDataHora AND o.id < :antesDeId)) " +
+        "ORDER BY o.dataHora DESC, o.id DESC LIMIT :limite)" +
+        ") e ORDER BY e.dataHora DESC, e.id DESC LIMIT :limite")
+    List<OperacaoDto> findPaginaExtrato(
+        @Param("contaId") Long contaId,
+        @Param("dataInicio") LocalDateTime dataInicio,
+        @Param("antesDeDataHora") LocalDateTime antesDeDataHora,
+        @Param("antesDeId") Long antesDeId,
+        @Param("limite") int limite
+    );
     List<Operacao> findByUsuarioResponsavelOrderByDataHoraDesc(String usuarioResponsavel);
-    @Query("SELECT o FROM Operacao o LEFT JOIN FETCH o.contaOrigem LEFT JOIN FETCH o.contaDestino WHERE o.usuarioResponsavel = :usuarioResponsavel ORDER BY o.dataHora DESC")
-    List<Operacao> findByUsuarioResponsavelWithContasOrderByDataHoraDesc(@Param("usuarioResponsavel") String usuarioResponsavel);
+    /**
+     * Primeira página das operações que podem ser desfeitas, da mais recente para a mais antiga.
+     */
+    @Query(SELECT_DESFAZIVEIS + "ORDER BY o.dataHora DESC, o.id DESC")
+    List<OperacaoDesfazivelDto> findDesfaziveisByUsuarioResponsavel(
+        @Param("usuarioResponsavel") String usuarioResponsavel, Limit limite);
+    /**
+     * Páginas seguintes: operações anteriores ao cursor (dataHora, id) da última linha já lida.
+     */
+    @Query(SELECT_DESFAZIVEIS + "AND (o.dataHora < :dataHora OR (o.dataHora = :dataHora AND o.id < :id)) " +
+           "ORDER BY o.dataHora DESC, o.id DESC")
+    List<OperacaoDesfazivelDto> findDesfaziveisByUsuarioResponsavelAntesDe(
+        @Param("usuarioResponsavel") String usuarioResponsavel,
+        @Param("dataHora") LocalDateTime dataHora,
+        @Param("id") Long id,
+        Limit limite
+    );
     @Query("SELECT o FROM Operacao o WHERE o.usuarioResponsavel = :usuarioResponsavel AND o.desfeita = false ORDER BY o.dataHora DESC")
     List<Operacao> findByUsuarioResponsavelAndNaoDesfeita(@Param("usuarioResponsavel") String usuarioResponsavel);
+    @Query("SELECT o FROM Operacao o WHERE o.usuarioResponsavel = :usuarioResponsavel AND o.desfeita = false " +
+           "AND o.possuiMemento = true AND o.dataHora BETWEEN :dataInicio AND :dataFim ORDER BY o.dataHora DESC")
+    List<Operacao> findDesfaziveisByUsuarioResponsavelAndPeriodo(
+        @Param("usuarioResponsavel") String usuarioResponsavel,
+        @Param("dataInicio") LocalDateTime dataInicio,
+        @Param("dataFim") LocalDateTime dataFim
+    );
     @Query("SELECT o FROM Operacao o WHERE o.id = :operacaoId AND o.usuarioResponsavel = :usuarioResponsavel AND o.desfeita = false")
     Operacao findByIdAndUsuarioResponsavelAndNaoDesfeita(@Param("operacaoId") Long operacaoId, @Param("usuarioResponsavel") String usuarioResponsavel);
 }
@@ -1,15 +1,32 @@
 package br.com.caixaeletronico.repository;
+import br.com.caixaeletronico.dto.PagamentoAgendadoDTO;
 import br.com.caixaeletronico.model.Conta;
 import br.com.caixaeletronico.model.PagamentoAgendado;
 import br.com.caixaeletronico.model.StatusAgendamento;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 @Repository
 public interface PagamentoAgendadoRepository extends JpaRepository<PagamentoAgendado, Long> {
+    String SELECT_PAGAMENTO_DTO = "SELECT new br.com.caixaeletronico.dto.PagamentoAgendadoDTO(p.id, p.contaOrigem.id, " +
+        "p.contaDestino.id, p.valorTotal, p.quantidadeParcelas, p.parcelasRestantes, p.periodicidadeDias, " +
+        "p.dataProximaExecucao, p.status, p.descricao, p.tentativas, p.ultimoErro, p.proximaTentativa) " +
+        "FROM PagamentoAgendado p ";
+    /**
+     * Timeout de trava -2, que o Hibernate traduz para SKIP LOCKED nos dialetos que o suportam
+     * (PostgreSQL e H2). Literal porque {@code LockOptions.SKIP_LOCKED} está obsoleta.
+     */
+    String TIMEOUT_PULAR_TRAVADOS = "-2";
     List<PagamentoAgendado> findByContaOrigem(Conta conta);
     List<PagamentoAgendado> findByContaOrigemAndStatus(Conta conta, StatusAgendamento status);
     List<PagamentoAgendado> findByContaDestino(Conta conta);
@@ -21,4 +38,34 @@ public interface PagamentoAgendadoRepository extends JpaRepository<PagamentoAgen
     );
     @Query("SELECT p FROM PagamentoAgendado p WHERE p.status = 'ATIVO' AND p.dataProximaExecucao <= :hoje")
     List<PagamentoAgendado> findPagamentosVencidos(@Param("hoje") LocalDate hoje);
+    /**
+     * Próximo lote de pagamentos vencidos, fora da espera entre tentativas e sem reserva válida,
+     * em ordem de id a partir do cursor. As linhas já travadas por outra instância são puladas (FOR UPDATE SKIP LOCKED),
+     * então instâncias concorrentes reservam lotes disjuntos.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = TIMEOUT_PULAR_TRAVADOS))
+    @Query("SELECT p FROM PagamentoAgendado p WHERE p.status = 'ATIVO' AND p.dataProximaExecucao <= :hoje " +
+           "AND p.id > :aposId AND (p.reservadoAte IS NULL OR p.reservadoAte < :agora) " +
+           "AND (p.proximaTentativa IS NULL OR p.proximaTentativa <= :agora) ORDER BY p.id")
+    List<PagamentoAgendado> findVencidosParaReserva(
+        @Param("hoje") LocalDate hoje,
+        @Param("agora") LocalDateTime agora,
+        @Param("aposId") Long aposId,
+        Limit limite
+    );
+    /**
+     * Trava o pagamento para processar a parcela; vazio se ele não existir ou já estiver travado
+     * por outra transação (que está processando ou alterando o pagamento).
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = TIMEOUT_PULAR_TRAVADOS))
+    @Query("SELECT p FROM PagamentoAgendado p WHERE p.id = :id")
+    Optional<PagamentoAgendado> findByIdParaProcessamento(@Param("id") Long id);
+    @Query(SELECT_PAGAMENTO_DTO + "WHERE p.status = 'ATIVO' AND p.dataProximaExecucao <= :limite")
+    List<PagamentoAgendadoDTO> findDtoAtivosAte(@Param("limite") LocalDate limite);
+    @Query(SELECT_PAGAMENTO_DTO + "WHERE p.contaOrigem.id = :contaId ORDER BY p.id")
+    List<PagamentoAgendadoDTO> findDtoByContaOrigemId(@Param("contaId") Long contaId);
+    @Query(SELECT_PAGAMENTO_DTO + "WHERE p.contaDestino.id = :contaId ORDER BY p.id")
+    List<PagamentoAgendadoDTO> findDtoByContaDestinoId(@Param("contaId") Long contaId);
 }
@@ -1,13 +1,92 @@
 package br.com.caixaeletronico.repository;
 import br.com.caixaeletronico.model.SlotCedula;
 import br.com.caixaeletronico.model.ValorCedula;
+import br.com.caixaeletronico.model.VetorCedulas;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 @Repository
 public interface SlotCedulaRepository extends JpaRepository<SlotCedula, Long> {
-    Optional<SlotCedula> findByValorCedula(ValorCedula valorCedula);
-    List<SlotCedula> findAllByOrderByValorCedulaDesc();
-    List<SlotCedula> findByQuantidadeGreaterThan(Integer quantidade);
+    Optional<SlotCedula> findByTerminalIdAndValorCedula(String terminalId, ValorCedula valorCedula);
+    List<SlotCedula> findByTerminalIdOrderByValorCedulaDesc(String terminalId);
+    List<SlotCedula> findByTerminalIdAndQuantidadeGreaterThan(String terminalId, Integer quantidade);
+    boolean existsByTerminalId(String terminalId);
+    @Query("SELECT DISTINCT s.terminalId FROM SlotCedula s ORDER BY s.terminalId")
+    List<String> findTerminais();
+    /**
+     * Soma das quantidades de todos os terminais, por cédula: [ValorCedula, Long].
+     */
+    @Query("SELECT s.valorCedula, SUM(s.quantidade) FROM SlotCedula s GROUP BY s.valorCedula")
+    List<Object[]> somarQuantidadesPorCedula();
+    /**
+     * Mesmo UPDATE condicional de {@link EstoqueGlobalRepository#debitarCedulas}, restrito
+     * às linhas do terminal.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE slots_cedulas SET quantidade = quantidade - " + EstoqueGlobalRepository.QUANTIDADE_POR_CEDULA +
+        ", versao = versao + 1 WHERE terminal_id = :terminalId AND valor_cedula IN (:cedulas) AND quantidade >= " +
+        EstoqueGlobalRepository.QUANTIDADE_POR_CEDULA,
+        nativeQuery = true)
+    int debitarCedulas(@Param("terminalId") String terminalId,
+                       @Param("dois") int dois, @Param("cinco") int cinco, @Param("dez") int dez,
+                       @Param("vinte") int vinte, @Param("cinquenta") int cinquenta, @Param("cem") int cem,
+                       @Param("duzentos") int duzentos, @Param("cedulas") List<String> cedulas);
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE slots_cedulas SET quantidade = quantidade + " + EstoqueGlobalRepository.QUANTIDADE_POR_CEDULA +
+        ", versao = versao + 1 WHERE terminal_id = :terminalId AND valor_cedula IN (:cedulas)",
+        nativeQuery = true)
+    int creditarCedulas(@Param("terminalId") String terminalId,
+                        @Param("dois") int dois, @Param("cinco") int cinco, @Param("dez") int dez,
+                        @Param("vinte") int vinte, @Param("cinquenta") int cinquenta, @Param("cem") int cem,
+                        @Param("duzentos") int duzentos, @Param("cedulas") List<String> cedulas);
+    default int debitarCedulas(String terminalId, VetorCedulas cedulas) {
+        if (cedulas.isVazio()) {
+            return 0;
+        }
+        return debitarCedulas(terminalId,
+            cedulas.getQuantidade(ValorCedula.DOIS), cedulas.getQuantidade(ValorCedula.CINCO),
+            cedulas.getQuantidade(ValorCedula.DEZ), cedulas.getQuantidade(ValorCedula.VINTE),
+            cedulas.getQuantidade(ValorCedula.CINQUENTA), cedulas.getQuantidade(ValorCedula.CEM),
+            cedulas.getQuantidade(ValorCedula.DUZENTOS), nomesDasCedulas(cedulas));
+    }
+    default int creditarCedulas(String terminalId, VetorCedulas cedulas) {
+        if (cedulas.isVazio()) {
+            return 0;
+        }
+        return creditarCedulas(terminalId,
+            cedulas.getQuantidade(ValorCedula.DOIS), cedulas.getQuantidade(ValorCedula.CINCO),
+            cedulas.getQuantidade(ValorCedula.DEZ), cedulas.getQuantidade(ValorCedula.VINTE),
+            cedulas.getQuantidade(ValorCedula.CINQUENTA), cedulas.getQuantidade(ValorCedula.CEM),
+            cedulas.getQuantidade(ValorCedula.DUZENTOS), nomesDasCedulas(cedulas));
+    }
+    /**
+     * Aplica variações sem condição nos slots do terminal, criando os slots que ainda não
+     * existem.
+     */
+    default void aplicarVariacoes(String terminalId, VetorCedulas variacoes) {
+        if (creditarCedulas(terminalId, variacoes) == variacoes.getCedulasDistintas()) {
+            return;
+        }
+        for (int i = 0; i < VetorCedulas.DIMENSAO; i++) {
+            ValorCedula valorCedula = VetorCedulas.cedula(i);
+            int quantidade = variacoes.getQuantidade(i);
+            if (quantidade != 0 && findByTerminalIdAndValorCedula(terminalId, valorCedula).isEmpty()) {
+                save(new SlotCedula(terminalId, valorCedula, quantidade));
+            }
+        }
+    }
+    private static List<String> nomesDasCedulas(VetorCedulas cedulas) {
+        List<String> nomes = new ArrayList<>(VetorCedulas.DIMENSAO);
+        for (int i = 0; i < VetorCedulas.DIMENSAO; i++) {
+            if (cedulas.getQuantidade(i) != 0) {
+                nomes.add(VetorCedulas.cedula(i).name());
+            }
+        }
+        return nomes;
+    }
 }
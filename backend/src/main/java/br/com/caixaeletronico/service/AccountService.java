@@ -1,22 +1,36 @@
 package br.com.caixaeletronico.service;
+import br.com.caixaeletronico.dto.ContaBasicaDto;
+import br.com.caixaeletronico.dto.ContaInfoDto;
+import br.com.caixaeletronico.event.EstoqueAlteradoEvent;
 import br.com.caixaeletronico.model.Conta;
 import br.com.caixaeletronico.model.EstoqueGlobal;
 import br.com.caixaeletronico.model.ValorCedula;
+import br.com.caixaeletronico.model.VetorCedulas;
 import br.com.caixaeletronico.model.Usuario;
 import br.com.caixaeletronico.repository.ContaRepository;
-import br.com.caixaeletronico.repository.EstoqueGlobalRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Set;
 @Service
 @Transactional
 public class AccountService {
+    public static final int TAMANHO_MAXIMO_PAGINA_CONTAS = 200;
+    private static final Set<String> ORDENACOES_CONTAS = Set.of("id", "numeroConta", "titular", "saldo");
+    private static final Set<String> ORDENACOES_CONTAS_BASICAS = Set.of("id", "numeroConta", "titular");
     @Autowired
     private ContaRepository contaRepository;
     @Autowired
-    private EstoqueGlobalRepository estoqueGlobalRepository;
+    private MotorEstoque motorEstoque;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
     public void creditarConta(Long contaId, BigDecimal valor) {
         Conta conta = contaRepository.findById(contaId)
             .orElseThrow(() -> new RuntimeException("Conta não encontrada"));
@@ -33,19 +47,17 @@ public class AccountService {
         contaRepository.save(conta);
     }
     public void adicionarCedulas(ValorCedula valorCedula, int quantidade) {
-        EstoqueGlobal estoque = estoqueGlobalRepository.findByValorCedula(valorCedula)
-            .orElse(new EstoqueGlobal(valorCedula, 0));
-        estoque.adicionarQuantidade(quantidade);
-        estoqueGlobalRepository.save(estoque);
+        validarQuantidade(quantidade);
+        motorEstoque.creditar(VetorCedulas.de(valorCedula, quantidade));
+        eventPublisher.publishEvent(new EstoqueAlteradoEvent(this, VetorCedulas.de(valorCedula, quantidade)));
     }
     public void removerCedulas(ValorCedula valorCedula, int quantidade) {
-        EstoqueGlobal estoque = estoqueGlobalRepository.findByValorCedula(valorCedula)
-            .orElseThrow(() -> new RuntimeException("Estoque não encontrado"));
-        estoque.removerQuantidade(quantidade);
-        estoqueGlobalRepository.save(estoque);
+        validarQuantidade(quantidade);
+        motorEstoque.debitar(VetorCedulas.de(valorCedula, quantidade));
+        eventPublisher.publishEvent(new EstoqueAlteradoEvent(this, VetorCedulas.de(valorCedula, -quantidade)));
     }
     public List<EstoqueGlobal> obterEstoqueGlobal() {
-        return estoqueGlobalRepository.findAllByOrderByValorCedulaDesc();
+        return motorEstoque.obterQuantidades().paraEstoque();
     }
     public BigDecimal obterSaldo(Long contaId) {
         Conta conta = contaRepository.findById(contaId)
@@ -63,4 +75,55 @@ public class AccountService {
         return contaRepository.findById(contaId)
             .orElseThrow(() -> new RuntimeException("Conta não encontrada"));
     }
+    /**
+     * Página de contas com saldo e dono (uma consulta com junção, sem carregar entidades),
+     * opcionalmente filtrada por trecho do titular ou do número da conta.
+     */
+    @Transactional(readOnly = true)
+    public Page<ContaInfoDto> listarContas(String filtro, int pagina, int tamanho, String ordenarPor, String direcao) {
+        Pageable paginacao = paginacaoContas(pagina, tamanho, ordenarPor, direcao, ORDENACOES_CONTAS);
+        String padrao = padraoBusca(filtro);
+        return padrao == null
+            ? contaRepository.findContaInfo(paginacao)
+            : contaRepository.findContaInfoByFiltro(padrao, paginacao);
+    }
+    /**
+     * Como {@link #listarContas}, sem saldo (e sem ordenação por saldo).
+     */
+    @Transactional(readOnly = true)
+    public Page<ContaBasicaDto> listarContasBasicas(String filtro, int pagina, int tamanho, String ordenarPor, String direcao) {
+        Pageable paginacao = paginacaoContas(pagina, tamanho, ordenarPor, direcao, ORDENACOES_CONTAS_BASICAS);
+        String padrao = padraoBusca(filtro);
+        return padrao == null
+            ? contaRepository.findContaBasica(paginacao)
+            : contaRepository.findContaBasicaByFiltro(padrao, paginacao);
+    }
+    private Pageable paginacaoContas(int pagina, int tamanho, String ordenarPor, String direcao, Set<String> permitidas) {
+        String propriedade = ordenarPor == null || ordenarPor.isBlank() ? "id" : ordenarPor;
+        if (!permitidas.contains(propriedade)) {
+            throw new RuntimeException("Ordenação inválida. Use: " + String.join(", ", permitidas.stream().sorted().toList()));
+        }
+        Sort.Direction sentido = "desc".equalsIgnoreCase(direcao) ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Sort ordenacao = Sort.by(sentido, propriedade);
+        if (!"id".equals(propriedade)) {
+            ordenacao = ordenacao.and(Sort.by(sentido, "id"));
+        }
+        int tamanhoPagina = Math.max(1, Math.min(tamanho, TAMANHO_MAXIMO_PAGINA_CONTAS));
+        return PageRequest.of(Math.max(pagina, 0), tamanhoPagina, ordenacao);
+    }
+    private String padraoBusca(String filtro) {
+        if (filtro == null || filtro.isBlank()) {
+            return null;
+        }
+        String escapado = filtro.trim().toLowerCase()
+            .replace("!", "!!")
+            .replace("%", "!%")
+            .replace("_", "!_");
+        return "%" + escapado + "%";
+    }
+    private void validarQuantidade(int quantidade) {
+        if (quantidade <= 0) {
+            throw new RuntimeException("Quantidade deve ser maior que zero");
+        }
+    }
 }
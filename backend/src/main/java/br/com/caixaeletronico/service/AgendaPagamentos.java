@@ -0,0 +1,237 @@
+package br.com.caixaeletronico.service;
+import br.com.caixaeletronico.dto.PagamentoAgendadoDTO;
+import br.com.caixaeletronico.event.PagamentoAgendadoAlteradoEvent;
+import br.com.caixaeletronico.event.PagamentosAgendadosEmLoteEvent;
+import br.com.caixaeletronico.model.StatusAgendamento;
+import br.com.caixaeletronico.repository.PagamentoAgendadoRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+/**
+ * Agenda em memória dos próximos vencimentos, para que cada parcela seja cobrada no instante
+ * em que vence (início do dia de {@code dataProximaExecucao}) sem varrer a tabela.
+ *
+ * Os vencimentos ficam numa {@link FilaVencimentos}; uma thread dorme até o primeiro
+ * deles e entrega os vencidos ao {@link ProcessadorPagamentosAgendados}. A agenda é montada do
+ * banco na subida e uma vez por dia pelo {@link ScheduledPaymentJob}, cobrindo os próximos
+ * {@code pagamentos.agenda.janela-dias} (o que também traz pagamentos criados por outras
+ * instâncias), e entre as recargas segue os {@link PagamentoAgendadoAlteradoEvent} confirmados.
+ * Uma parcela que falhou entra na agenda no instante da próxima tentativa, e uma que o
+ * processador pulou por estar travada volta após {@code pagamentos.agenda.espera-travado-ms}.
+ * Sem vencimentos, nada consulta o banco.
+ */
+@Service
+public class AgendaPagamentos implements MeterBinder {
+    @Autowired
+    private PagamentoAgendadoRepository pagamentoAgendadoRepository;
+    @Autowired
+    private ProcessadorPagamentosAgendados processadorPagamentosAgendados;
+    @Autowired
+    private Clock clock;
+    @Value("${pagamentos.agenda.janela-dias:2}")
+    private int janelaDias;
+    @Value("${pagamentos.agenda.espera-travado-ms:1000}")
+    private long esperaTravadoMs;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition alterada = lock.newCondition();
+    private final FilaVencimentos fila = new FilaVencimentos();
+    private volatile boolean ativa;
+    private Thread disparador;
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        recarregar();
+        ativa = true;
+        disparador = new Thread(this::executarDisparador, "agenda-pagamentos");
+        disparador.setDaemon(true);
+        disparador.start();
+    }
+    @PreDestroy
+    public void encerrar() {
+        ativa = false;
+        if (disparador != null) {
+            disparador.interrupt();
+        }
+    }
+    /**
+     * Substitui a agenda pelos pagamentos ativos que vencem até o fim da janela.
+     */
+    public void recarregar() {
+        List<PagamentoAgendadoDTO> ativos = pagamentoAgendadoRepository.findDtoAtivosAte(
+            LocalDate.now(clock).plusDays(janelaDias));
+        lock.lock();
+        try {
+            fila.limpar();
+            for (PagamentoAgendadoDTO pagamento : ativos) {
+                fila.agendar(pagamento.getId(),
+                    instanteDe(pagamento.getDataProximaExecucao(), pagamento.getProximaTentativa()));
+            }
+            alterada.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+    @TransactionalEventListener(fallbackExecution = true)
+    public void aoAlterarPagamento(PagamentoAgendadoAlteradoEvent evento) {
+        if (evento.getStatus() != StatusAgendamento.ATIVO || evento.getDataProximaExecucao() == null
+                || evento.getDataProximaExecucao().isAfter(LocalDate.now(clock).plusDays(janelaDias))) {
+            remover(evento.getPagamentoId());
+            return;
+        }
+        agendar(evento.getPagamentoId(), instanteDe(evento.getDataProximaExecucao(), evento.getProximaTentativa()));
+    }
+    /**
+     * Agenda os pagamentos de uma folha confirmada com uma única tomada da trava.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void aoAgendarEmLote(PagamentosAgendadosEmLoteEvent evento) {
+        if (evento.getDataProximaExecucao().isAfter(LocalDate.now(clock).plusDays(janelaDias))) {
+            return;
+        }
+        long instante = instanteDe(evento.getDataProximaExecucao(), null);
+        lock.lock();
+        try {
+            for (long pagamentoId : evento.getPagamentoIds()) {
+                fila.agendar(pagamentoId, instante);
+            }
+            alterada.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+    public void agendar(Long pagamentoId, long instante) {
+        lock.lock();
+        try {
+            fila.agendar(pagamentoId, instante);
+            alterada.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+    public void remover(Long pagamentoId) {
+        lock.lock();
+        try {
+            fila.remover(pagamentoId);
+        } finally {
+            lock.unlock();
+        }
+    }
+    public int tamanho() {
+        lock.lock();
+        try {
+            return fila.tamanho();
+        } finally {
+            lock.unlock();
+        }
+    }
+    /**
+     * Instante do próximo vencimento agendado, ou {@link Long#MAX_VALUE} se não houver nenhum.
+     */
+    public long proximoVencimento() {
+        lock.lock();
+        try {
+            return fila.proximoInstante();
+        } finally {
+            lock.unlock();
+        }
+    }
+    /**
+     * Entrega ao processador o que venceu até o instante atual do relógio e devolve quantos
+     * pagamentos foram entregues. É o passo da thread disparadora, exposto para quem avança o
+     * relógio por conta própria, como a simulação.
+     */
+    public int dispararVencidos() {
+        List<Long> vencidos = retirarVencidos(clock.millis());
+        if (!vencidos.isEmpty()) {
+            disparar(vencidos);
+        }
+        return vencidos.size();
+    }
+    /**
+     * Remove e devolve os pagamentos vencidos até o instante.
+     */
+    List<Long> retirarVencidos(long agora) {
+        lock.lock();
+        try {
+            return fila.retirarVencidos(agora);
+        } finally {
+            lock.unlock();
+        }
+    }
+    private void executarDisparador() {
+        while (ativa) {
+            try {
+                aguardarProximoVencimento();
+                dispararVencidos();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                System.err.println("Erro na agenda de pagamentos: " + e.getMessage());
+            }
+        }
+    }
+    private void aguardarProximoVencimento() throws InterruptedException {
+        lock.lock();
+        try {
+            while (ativa) {
+                long proximo = fila.proximoInstante();
+                if (proximo == Long.MAX_VALUE) {
+                    alterada.await();
+                    continue;
+                }
+                long espera = proximo - clock.millis();
+                if (espera <= 0) {
+                    return;
+                }
+                alterada.await(espera, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    /**
+     * Entrega os vencidos ao processador; ele publica o novo estado de cada pagamento (próxima
+     * parcela ou próxima tentativa), que volta para a agenda pelos eventos. Os pulados por
+     * trava não publicam nada e são reagendados aqui.
+     */
+    void disparar(List<Long> vencidos) {
+        Map<Long, ProcessadorPagamentosAgendados.ResultadoParcela> resultados =
+            processadorPagamentosAgendados.processarPagamentos(vencidos);
+        long novaTentativa = clock.millis() + esperaTravadoMs;
+        resultados.forEach((pagamentoId, resultado) -> {
+            if (resultado == ProcessadorPagamentosAgendados.ResultadoParcela.TRAVADA) {
+                agendar(pagamentoId, novaTentativa);
+            }
+        });
+    }
+    /**
+     * Início do dia do vencimento ou, se a parcela falhou e ainda está em espera, o instante
+     * da próxima tentativa.
+     */
+    private long instanteDe(LocalDate data, LocalDateTime proximaTentativa) {
+        long vencimento = data.atStartOfDay(clock.getZone()).toInstant().toEpochMilli();
+        if (proximaTentativa == null) {
+            return vencimento;
+        }
+        return Math.max(vencimento, proximaTentativa.atZone(clock.getZone()).toInstant().toEpochMilli());
+    }
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("pagamentos.agenda.tamanho", this, AgendaPagamentos::tamanho).register(registry);
+    }
+}
@@ -1,10 +1,12 @@
 package br.com.caixaeletronico.service;
+import br.com.caixaeletronico.event.UsuarioAlteradoEvent;
 import br.com.caixaeletronico.model.Conta;
 import br.com.caixaeletronico.model.PerfilUsuario;
 import br.com.caixaeletronico.model.Usuario;
 import br.com.caixaeletronico.repository.ContaRepository;
 import br.com.caixaeletronico.repository.UsuarioRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -21,6 +23,8 @@ public class AuthenticationService {
     private PasswordEncoder passwordEncoder;
     @Autowired
     private JwtService jwtService;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
     public Usuario registrarUsuario(String login, String email, String senha, PerfilUsuario perfil) {
         if (usuarioRepository.existsByLogin(login)) {
             throw new RuntimeException("Login já cadastrado");
@@ -42,6 +46,7 @@ public class AuthenticationService {
             conta.setUsuario(usuario);
             contaRepository.save(conta);
         }
+        eventPublisher.publishEvent(new UsuarioAlteradoEvent(this, login));
         return usuario;
     }
     private String gerarNumeroConta() {
@@ -63,7 +68,8 @@ public class AuthenticationService {
         if (!passwordEncoder.matches(senha, usuario.getSenha())) {
             throw new RuntimeException("Senha incorreta");
         }
-        return jwtService.gerarToken(usuario.getLogin());
+        Conta conta = usuario.getConta();
+        return jwtService.gerarToken(usuario, conta != null ? conta.getId() : null);
     }
     public Optional<Usuario> obterUsuarioDoToken(String token) {
         try {
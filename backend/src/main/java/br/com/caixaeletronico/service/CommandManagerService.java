@@ -1,24 +1,40 @@
 package br.com.caixaeletronico.service;
 import br.com.caixaeletronico.command.CommandFactory;
 import br.com.caixaeletronico.command.OperacaoCommand;
+import br.com.caixaeletronico.dto.OperacaoDesfazivelDto;
+import br.com.caixaeletronico.event.EstoqueAlteradoEvent;
 import br.com.caixaeletronico.event.OperationCompletedEvent;
 import br.com.caixaeletronico.model.Operacao;
 import br.com.caixaeletronico.model.OperationMemento;
 import br.com.caixaeletronico.model.PerfilUsuario;
 import br.com.caixaeletronico.model.TipoOperacao;
 import br.com.caixaeletronico.model.Usuario;
+import br.com.caixaeletronico.model.VetorCedulas;
 import br.com.caixaeletronico.repository.OperacaoRepository;
 import br.com.caixaeletronico.repository.UsuarioRepository;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 @Service
 @Transactional
 public class CommandManagerService {
+    public static final int TAMANHO_MAXIMO_PAGINA = 200;
+    private static final String SQL_MARCAR_DESFEITA = "UPDATE operacoes SET desfeita = true, possui_memento = false, " +
+        "admin_responsavel_desfazer = ?, data_hora_desfazer = ? WHERE id = ? AND desfeita = false";
+    private static final String SQL_REGISTRAR_DESFAZER = "INSERT INTO operacoes (tipo, data_hora, valor, conta_origem_id, " +
+        "conta_destino_id, usuario_responsavel, desfeita, possui_memento) VALUES ('DESFAZER', ?, ?, ?, ?, ?, false, false)";
     @Autowired
     private CommandFactory commandFactory;
     @Autowired
@@ -26,20 +42,30 @@ public class CommandManagerService {
     @Autowired
     private br.com.caixaeletronico.repository.ContaRepository contaRepository;
     @Autowired
-    private br.com.caixaeletronico.repository.EstoqueGlobalRepository estoqueGlobalRepository;
-    @Autowired
     private UsuarioRepository usuarioRepository;
     @Autowired
+    private MotorEstoque motorEstoque;
+    @Autowired
+    private GerenciadorBloqueioContas bloqueioContas;
+    @Autowired
     private ApplicationEventPublisher eventPublisher;
     @Autowired
-    private ObjectMapper objectMapper;
+    private MementoOperacaoService mementoOperacaoService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Value("${operacoes.desfazer.lote.tamanho-maximo:5000}")
+    private int tamanhoMaximoLote;
     public Operacao executarComando(TipoOperacao tipo, Usuario usuario, String emailUsuario, Object... parametros) {
         try {
             OperacaoCommand command = commandFactory.criarCommand(tipo, usuario, parametros);
             OperationMemento memento = command.gerarMemento();
             command.executar();
+            publicarAlteracaoEstoque(tipo, parametros);
             Operacao operacao = criarOperacao(tipo, usuario, memento, parametros);
             operacao = operacaoRepository.save(operacao);
+            if (memento != null) {
+                mementoOperacaoService.salvar(operacao, memento);
+            }
             eventPublisher.publishEvent(new OperationCompletedEvent(this, operacao, emailUsuario));
             return operacao;
         } catch (Exception e) {
@@ -57,20 +83,21 @@ public class CommandManagerService {
         if (operacaoOriginal == null) {
             throw new RuntimeException("Operação não encontrada ou já foi desfeita");
         }
-        if (operacaoOriginal.getMementoJson() == null) {
+        if (!Boolean.TRUE.equals(operacaoOriginal.getPossuiMemento())) {
             throw new RuntimeException("Operação não pode ser desfeita - memento não disponível");
         }
         if (operacaoOriginal.getDesfeita()) {
             throw new RuntimeException("Operação já foi desfeita anteriormente");
         }
+        // A marcação condicional vem antes da compensação: um desfazer concorrente da mesma
+        // operação espera a trava da linha e marca zero linhas, sem estornar de novo.
+        if (jdbcTemplate.update(SQL_MARCAR_DESFEITA, admin.getLogin(), LocalDateTime.now(), operacaoOriginal.getId()) == 0) {
+            throw new RuntimeException("Operação já foi desfeita anteriormente");
+        }
         try {
-            OperationMemento memento = objectMapper.readValue(operacaoOriginal.getMementoJson(), OperationMemento.class);
-            OperacaoCommand command = criarCommandoDesfazer(operacaoOriginal, memento);
-            command.desfazer();
-            operacaoOriginal.setDesfeita(true);
-            operacaoOriginal.setAdminResponsavelDesfazer(admin.getLogin());
-            operacaoOriginal.setDataHoraDesfazer(LocalDateTime.now());
-            operacaoRepository.save(operacaoOriginal);
+            OperationMemento memento = mementoOperacaoService.ler(operacaoOriginal.getId());
+            compensar(List.of(operacaoOriginal), Map.of(operacaoOriginal.getId(), memento));
+            mementoOperacaoService.remover(operacaoOriginal.getId());
             Operacao operacaoDesfazer = new Operacao();
             operacaoDesfazer.setTipo(TipoOperacao.DESFAZER);
             operacaoDesfazer.setValor(operacaoOriginal.getValor());
@@ -83,30 +110,74 @@ public class CommandManagerService {
             throw new RuntimeException("Erro ao desfazer operação: " + e.getMessage(), e);
         }
     }
-    public java.util.List<Operacao> listarOperacoesUsuario(Long usuarioId, Usuario admin) {
+    /**
+     * Desfaz as operações informadas em uma única transação. Operações inexistentes, já
+     * desfeitas ou sem memento são ignoradas; retorna os ids efetivamente desfeitos.
+     */
+    public List<Long> desfazerOperacoesEmLote(List<Long> operacaoIds, Usuario admin) {
+        if (!admin.getPerfil().equals(PerfilUsuario.ADMIN)) {
+            throw new RuntimeException("Apenas administradores podem desfazer operações específicas");
+        }
+        validarTamanhoLote(operacaoIds.size());
+        List<Operacao> operacoes = operacaoRepository.findAllById(operacaoIds).stream()
+            .filter(op -> !Boolean.TRUE.equals(op.getDesfeita()) && Boolean.TRUE.equals(op.getPossuiMemento()))
+            .collect(Collectors.toList());
+        return desfazerLote(operacoes, admin);
+    }
+    /**
+     * Desfaz, em uma única transação, todas as operações de um usuário no período que ainda
+     * podem ser desfeitas.
+     */
+    public List<Long> desfazerOperacoesDoUsuario(Long usuarioId, LocalDateTime dataInicio, LocalDateTime dataFim, Usuario admin) {
+        if (!admin.getPerfil().equals(PerfilUsuario.ADMIN)) {
+            throw new RuntimeException("Apenas administradores podem desfazer operações específicas");
+        }
+        if (dataInicio.isAfter(dataFim)) {
+            throw new RuntimeException("Data inicial deve ser anterior à data final");
+        }
+        Usuario usuarioAlvo = usuarioRepository.findById(usuarioId)
+            .orElseThrow(() -> new RuntimeException("Usuário não encontrado"));
+        List<Operacao> operacoes = operacaoRepository.findDesfaziveisByUsuarioResponsavelAndPeriodo(
+            usuarioAlvo.getLogin(), dataInicio, dataFim);
+        validarTamanhoLote(operacoes.size());
+        return desfazerLote(operacoes, admin);
+    }
+    /**
+     * Lista as operações do usuário que ainda podem ser desfeitas, paginadas por cursor: a
+     * próxima página começa depois de (antesDeDataHora, antesDeId), a última linha recebida.
+     */
+    @Transactional(readOnly = true)
+    public List<OperacaoDesfazivelDto> listarOperacoesUsuario(Long usuarioId, LocalDateTime antesDeDataHora,
+                                                             Long antesDeId, int tamanho, Usuario admin) {
         if (!admin.getPerfil().equals(PerfilUsuario.ADMIN)) {
             throw new RuntimeException("Apenas administradores podem listar operações de outros usuários");
         }
+        if ((antesDeDataHora == null) != (antesDeId == null)) {
+            throw new RuntimeException("Informe antesDeDataHora e antesDeId juntos");
+        }
         Usuario usuarioAlvo = usuarioRepository.findById(usuarioId)
             .orElseThrow(() -> new RuntimeException("Usuário não encontrado"));
-        System.out.println("DEBUG: Buscando operações para usuário: " + usuarioAlvo.getLogin() + " (ID: " + usuarioId + ")");
-        List<Operacao> todasOperacoes = operacaoRepository.findByUsuarioResponsavelWithContasOrderByDataHoraDesc(usuarioAlvo.getLogin());
-        System.out.println("DEBUG: Total de operações encontradas: " + todasOperacoes.size());
-        List<Operacao> operacoesFiltradas = todasOperacoes.stream()
-            .filter(op -> !Boolean.TRUE.equals(op.getDesfeita()) && op.getMementoJson() != null)
-            .collect(java.util.stream.Collectors.toList());
-        System.out.println("DEBUG: Operações que podem ser desfeitas: " + operacoesFiltradas.size());
-        return operacoesFiltradas;
+        Limit limite = Limit.of(Math.max(1, Math.min(tamanho, TAMANHO_MAXIMO_PAGINA)));
+        if (antesDeDataHora == null) {
+            return operacaoRepository.findDesfaziveisByUsuarioResponsavel(usuarioAlvo.getLogin(), limite);
+        }
+        return operacaoRepository.findDesfaziveisByUsuarioResponsavelAntesDe(
+            usuarioAlvo.getLogin(), antesDeDataHora, antesDeId, limite);
+    }
+    private void publicarAlteracaoEstoque(TipoOperacao tipo, Object... parametros) {
+        if ((tipo != TipoOperacao.DEPOSITO && tipo != TipoOperacao.SAQUE) || parametros.length < 3) {
+            return;
+        }
+        VetorCedulas cedulas = (VetorCedulas) parametros[2];
+        String terminalId = parametros.length > 3 ? (String) parametros[3] : null;
+        eventPublisher.publishEvent(new EstoqueAlteradoEvent(this, terminalId,
+            tipo == TipoOperacao.SAQUE ? cedulas.negar() : cedulas));
     }
     private Operacao criarOperacao(TipoOperacao tipo, Usuario usuario, OperationMemento memento, Object... parametros) {
         Operacao operacao = new Operacao();
         operacao.setTipo(tipo);
         operacao.setUsuarioResponsavel(usuario.getLogin());
-        try {
-            operacao.setMementoJson(objectMapper.writeValueAsString(memento));
-        } catch (Exception e) {
-            throw new RuntimeException("Erro ao serializar memento", e);
-        }
+        operacao.setPossuiMemento(memento != null);
         switch (tipo) {
             case DEPOSITO:
             case SAQUE:
@@ -140,7 +211,117 @@ public class CommandManagerService {
         }
         return operacao;
     }
-    private OperacaoCommand criarCommandoDesfazer(Operacao operacaoOriginal, OperationMemento memento) {
+    private void validarTamanhoLote(int tamanho) {
+        if (tamanho > tamanhoMaximoLote) {
+            throw new RuntimeException("Lote excede o limite de " + tamanhoMaximoLote + " operações");
+        }
+    }
+    /**
+     * Marca as operações como desfeitas e registra as operações DESFAZER com JDBC em lote. A
+     * marcação só altera operações ainda não desfeitas; se outra transação desfez alguma delas,
+     * o lote inteiro é revertido.
+     */
+    private List<Long> desfazerLote(List<Operacao> operacoes, Usuario admin) {
+        if (operacoes.isEmpty()) {
+            return List.of();
+        }
+        List<Long> operacaoIds = operacoes.stream().map(Operacao::getId).collect(Collectors.toList());
+        compensar(operacoes, mementoOperacaoService.lerTodos(operacaoIds));
+        LocalDateTime agora = LocalDateTime.now();
+        List<Object[]> marcacoes = new ArrayList<>(operacoes.size());
+        List<Object[]> registros = new ArrayList<>(operacoes.size());
+        for (Operacao operacao : operacoes) {
+            marcacoes.add(new Object[] {admin.getLogin(), agora, operacao.getId()});
+            registros.add(new Object[] {agora, operacao.getValor(), idDaConta(operacao.getContaOrigem()),
+                idDaConta(operacao.getContaDestino()), admin.getLogin()});
+        }
+        int[] marcadas = jdbcTemplate.batchUpdate(SQL_MARCAR_DESFEITA, marcacoes);
+        for (int i = 0; i < marcadas.length; i++) {
+            if (marcadas[i] == 0) {
+                throw new RuntimeException("Operação " + operacaoIds.get(i) + " já foi desfeita anteriormente");
+            }
+        }
+        jdbcTemplate.batchUpdate(SQL_REGISTRAR_DESFAZER, registros);
+        mementoOperacaoService.removerTodos(operacaoIds);
+        return operacaoIds;
+    }
+    /**
+     * Aplica as variações inversas registradas nos mementos. As variações são somadas por conta
+     * e por terminal e aplicadas com UPDATE condicional, preservando as operações feitas depois;
+     * mementos legados (valores absolutos) ainda restauram o estado anterior.
+     */
+    private void compensar(List<Operacao> operacoes, Map<Long, OperationMemento> mementos) {
+        Map<Long, BigDecimal> variacoesSaldo = new TreeMap<>();
+        Map<String, VetorCedulas> variacoesCedulas = new HashMap<>();
+        for (Operacao operacao : operacoes) {
+            OperationMemento memento = mementos.get(operacao.getId());
+            if (memento == null) {
+                throw new RuntimeException("Operação " + operacao.getId() + " não pode ser desfeita - memento não disponível");
+            }
+            if (memento.isLegado()) {
+                criarCommandoDesfazer(memento).desfazer();
+                VetorCedulas variacao = restaurarEstoqueLegado(memento);
+                if (!variacao.isVazio()) {
+                    eventPublisher.publishEvent(new EstoqueAlteradoEvent(this, memento.getTerminalId(), variacao));
+                }
+                continue;
+            }
+            memento.getVariacoesSaldo().forEach((contaId, variacao) ->
+                variacoesSaldo.merge(contaId, variacao.negate(), BigDecimal::add));
+            if (!memento.getVariacoesCedulas().isVazio()) {
+                variacoesCedulas.merge(memento.getTerminalId(), memento.getVariacoesCedulas().negar(), VetorCedulas::somar);
+            }
+        }
+        bloqueioContas.bloquear(variacoesSaldo.keySet().toArray(new Long[0]));
+        variacoesSaldo.forEach((contaId, variacao) -> {
+            if (variacao.signum() != 0 && contaRepository.aplicarVariacaoSaldo(contaId, variacao) == 0) {
+                throw new RuntimeException("Conta não encontrada ou saldo insuficiente para desfazer: " + contaId);
+            }
+        });
+        variacoesCedulas.forEach((terminalId, variacao) -> {
+            VetorCedulas entradas = variacao.positivos();
+            VetorCedulas saidas = variacao.negar().positivos();
+            if (!entradas.isVazio()) {
+                motorEstoque.creditar(terminalId, entradas);
+            }
+            if (!saidas.isVazio()) {
+                motorEstoque.debitar(terminalId, saidas);
+            }
+            eventPublisher.publishEvent(new EstoqueAlteradoEvent(this, terminalId, variacao));
+        });
+    }
+    private static Long idDaConta(br.com.caixaeletronico.model.Conta conta) {
+        return conta != null ? conta.getId() : null;
+    }
+    /**
+     * Converte as quantidades absolutas de um memento legado em variação sobre as contagens
+     * atuais do motor de estoque e a aplica por ele, para não sobrescrever o livro em memória.
+     */
+    private VetorCedulas restaurarEstoqueLegado(OperationMemento memento) {
+        if (memento.getEstoquesAntes() == null || memento.getEstoquesAntes().isEmpty()) {
+            return VetorCedulas.VAZIO;
+        }
+        String terminalId = memento.getTerminalId();
+        VetorCedulas atuais = motorEstoque.obterQuantidades(terminalId);
+        VetorCedulas variacao = VetorCedulas.VAZIO;
+        for (OperationMemento.EstoqueGlobalSnapshot snapshot : memento.getEstoquesAntes()) {
+            variacao = variacao.somar(VetorCedulas.de(snapshot.getValorCedula(),
+                snapshot.getQuantidade() - atuais.getQuantidade(snapshot.getValorCedula())));
+        }
+        VetorCedulas entradas = variacao.positivos();
+        VetorCedulas saidas = variacao.negar().positivos();
+        if (!entradas.isVazio()) {
+            motorEstoque.creditar(terminalId, entradas);
+        }
+        if (!saidas.isVazio()) {
+            motorEstoque.debitar(terminalId, saidas);
+        }
+        return variacao;
+    }
+    /**
+     * Restaura os saldos absolutos de um memento legado (gravado antes das variações).
+     */
+    private OperacaoCommand criarCommandoDesfazer(OperationMemento memento) {
         return new OperacaoCommand() {
             @Override
             public void executar() {
@@ -154,13 +335,6 @@ public class CommandManagerService {
                     conta.setSaldo(saldoAnterior);
                     contaRepository.save(conta);
                 });
-                memento.getEstoquesAntes().forEach(estoqueSnapshot -> {
-                    br.com.caixaeletronico.model.EstoqueGlobal estoque = estoqueGlobalRepository
-                        .findByValorCedula(estoqueSnapshot.getValorCedula())
-                        .orElseThrow(() -> new RuntimeException("Estoque não encontrado para cédula: " + estoqueSnapshot.getValorCedula()));
-                    estoque.setQuantidade(estoqueSnapshot.getQuantidade());
-                    estoqueGlobalRepository.save(estoque);
-                });
             }
             @Override
             public OperationMemento gerarMemento() {
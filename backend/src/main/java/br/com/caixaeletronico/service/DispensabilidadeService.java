@@ -0,0 +1,160 @@
+package br.com.caixaeletronico.service;
+import br.com.caixaeletronico.event.EstoqueAlteradoEvent;
+import br.com.caixaeletronico.model.VetorCedulas;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+/**
+ * Mantém, para o estoque global (cofre central), o conjunto de valores de 0..valorMaximo
+ * que podem ser pagos com as cédulas disponíveis, respondendo consultas em O(1). Alterações
+ * nos slots de terminais não afetam o mapa.
+ *
+ * Créditos de cédulas são aplicados incrementalmente sobre o mapa atual; débitos (ou
+ * alterações sem detalhe) invalidam o mapa, que é reconstruído na próxima consulta.
+ *
+ * O mapa guarda a versão de evento lida logo após a consulta ao estoque. Um crédito com
+ * evento até essa versão pode já estar na consulta (confirmado antes dela, entregue depois) e
+ * não é somado de novo: invalida o mapa, como um débito.
+ */
+@Service
+public class DispensabilidadeService {
+    @Autowired
+    private MotorEstoque motorEstoque;
+    @Value("${saque.dispensabilidade.valor-maximo:10000}")
+    private int valorMaximo;
+    private volatile MapaDispensabilidade mapa;
+    public boolean isCalculado(int valor) {
+        return valor >= 0 && valor <= valorMaximo;
+    }
+    public boolean isDispensavel(int valor) {
+        return isCalculado(valor) && obterMapa().alcancaveis.get(valor);
+    }
+    public Integer obterValorDispensavelAnterior(int valor) {
+        if (valor < 0) {
+            return null;
+        }
+        int anterior = obterMapa().anterior[Math.min(valor, valorMaximo)];
+        return anterior > 0 ? anterior : null;
+    }
+    public Integer obterValorDispensavelSeguinte(int valor) {
+        if (!isCalculado(valor)) {
+            return null;
+        }
+        int seguinte = obterMapa().seguinte[Math.max(valor, 0)];
+        return seguinte > 0 ? seguinte : null;
+    }
+    public Map<String, Object> consultar(int valor) {
+        Map<String, Object> consulta = new LinkedHashMap<>();
+        consulta.put("valor", valor);
+        consulta.put("calculado", isCalculado(valor));
+        consulta.put("dispensavel", isDispensavel(valor));
+        consulta.put("valorDispensavelAnterior", obterValorDispensavelAnterior(valor));
+        consulta.put("valorDispensavelSeguinte", obterValorDispensavelSeguinte(valor));
+        return consulta;
+    }
+    public void validarValorDispensavel(int valor) {
+        if (!isCalculado(valor) || isDispensavel(valor)) {
+            return;
+        }
+        StringBuilder mensagem = new StringBuilder("Não é possível sacar R$")
+            .append(valor)
+            .append(" com as cédulas disponíveis");
+        Integer anterior = obterValorDispensavelAnterior(valor);
+        Integer seguinte = obterValorDispensavelSeguinte(valor);
+        if (anterior != null || seguinte != null) {
+            mensagem.append(". Valores mais próximos:");
+            if (anterior != null) {
+                mensagem.append(" R$").append(anterior);
+            }
+            if (seguinte != null) {
+                mensagem.append(anterior != null ? " e R$" : " R$").append(seguinte);
+            }
+        }
+        throw new RuntimeException(mensagem.toString());
+    }
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleEstoqueAlterado(EstoqueAlteradoEvent event) {
+        if (event.getTerminalId() != null) {
+            return;
+        }
+        VetorCedulas variacoes = event.getVariacoes();
+        synchronized (this) {
+            MapaDispensabilidade atual = mapa;
+            if (atual == null) {
+                return;
+            }
+            if (variacoes == null || !variacoes.isNaoNegativo() || event.getVersao() <= atual.versao) {
+                mapa = null;
+                return;
+            }
+            BitSet alcancaveis = (BitSet) atual.alcancaveis.clone();
+            for (int i = 0; i < VetorCedulas.DIMENSAO; i++) {
+                adicionarCedulas(alcancaveis, VetorCedulas.cedula(i).getValor(), variacoes.getQuantidade(i));
+            }
+            mapa = new MapaDispensabilidade(alcancaveis, valorMaximo, atual.versao);
+        }
+    }
+    private MapaDispensabilidade obterMapa() {
+        MapaDispensabilidade atual = mapa;
+        if (atual != null) {
+            return atual;
+        }
+        synchronized (this) {
+            if (mapa == null) {
+                VetorCedulas estoque = motorEstoque.obterQuantidades();
+                mapa = construirMapa(estoque, EstoqueAlteradoEvent.versaoAtual());
+            }
+            return mapa;
+        }
+    }
+    private MapaDispensabilidade construirMapa(VetorCedulas estoque, long versao) {
+        BitSet alcancaveis = new BitSet(valorMaximo + 1);
+        alcancaveis.set(0);
+        for (int i = 0; i < VetorCedulas.DIMENSAO; i++) {
+            adicionarCedulas(alcancaveis, VetorCedulas.cedula(i).getValor(), estoque.getQuantidade(i));
+        }
+        return new MapaDispensabilidade(alcancaveis, valorMaximo, versao);
+    }
+    private void adicionarCedulas(BitSet alcancaveis, int nota, int quantidade) {
+        if (quantidade <= 0 || nota > valorMaximo) {
+            return;
+        }
+        int[] usadas = new int[valorMaximo + 1];
+        for (int v = nota; v <= valorMaximo; v++) {
+            if (!alcancaveis.get(v) && alcancaveis.get(v - nota) && usadas[v - nota] < quantidade) {
+                alcancaveis.set(v);
+                usadas[v] = usadas[v - nota] + 1;
+            }
+        }
+    }
+    private static final class MapaDispensabilidade {
+        private final BitSet alcancaveis;
+        private final int[] anterior;
+        private final int[] seguinte;
+        private final long versao;
+        private MapaDispensabilidade(BitSet alcancaveis, int valorMaximo, long versao) {
+            this.alcancaveis = alcancaveis;
+            this.versao = versao;
+            this.anterior = new int[valorMaximo + 1];
+            this.seguinte = new int[valorMaximo + 1];
+            int ultimo = 0;
+            for (int v = 0; v <= valorMaximo; v++) {
+                if (alcancaveis.get(v)) {
+                    ultimo = v;
+                }
+                anterior[v] = ultimo;
+            }
+            int proximo = -1;
+            for (int v = valorMaximo; v >= 0; v--) {
+                if (alcancaveis.get(v)) {
+                    proximo = v;
+                }
+                seguinte[v] = proximo;
+            }
+        }
+    }
+}
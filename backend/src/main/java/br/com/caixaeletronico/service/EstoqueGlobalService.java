@@ -1,46 +1,93 @@
 package br.com.caixaeletronico.service;
+import br.com.caixaeletronico.event.EstoqueAlteradoEvent;
 import br.com.caixaeletronico.model.EstoqueGlobal;
+import br.com.caixaeletronico.model.SlotCedula;
 import br.com.caixaeletronico.model.ValorCedula;
+import br.com.caixaeletronico.model.VetorCedulas;
 import br.com.caixaeletronico.repository.EstoqueGlobalRepository;
+import br.com.caixaeletronico.repository.SlotCedulaRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import java.util.ArrayList;
 import java.util.List;
 @Service
 @Transactional
 public class EstoqueGlobalService {
     @Autowired
     private EstoqueGlobalRepository estoqueGlobalRepository;
+    @Autowired
+    private SlotCedulaRepository slotCedulaRepository;
+    @Autowired
+    private MotorEstoque motorEstoque;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    /**
+     * Estoque global segundo o {@link MotorEstoque}, que no modo em memória está à frente de
+     * estoque_global. As entradas retornadas não são gerenciadas pelo JPA.
+     */
     public List<EstoqueGlobal> obterEstoqueGlobal() {
-        return estoqueGlobalRepository.findAllByOrderByValorCedulaDesc();
+        return motorEstoque.obterQuantidades().paraEstoque();
+    }
+    public List<SlotCedula> obterEstoqueTerminal(String terminalId) {
+        List<SlotCedula> slots = slotCedulaRepository.findByTerminalIdOrderByValorCedulaDesc(terminalId);
+        if (slots.isEmpty()) {
+            throw new RuntimeException("Terminal não encontrado: " + terminalId);
+        }
+        return slots;
+    }
+    public List<String> listarTerminais() {
+        return slotCedulaRepository.findTerminais();
+    }
+    /**
+     * Visão agregada: estoque global somado aos slots de todos os terminais, por cédula.
+     * As entradas retornadas não são gerenciadas pelo JPA.
+     */
+    @Transactional(readOnly = true)
+    public List<EstoqueGlobal> obterEstoqueConsolidado() {
+        VetorCedulas global = motorEstoque.obterQuantidades();
+        int[] quantidades = new int[VetorCedulas.DIMENSAO];
+        for (int i = 0; i < VetorCedulas.DIMENSAO; i++) {
+            quantidades[i] = global.getQuantidade(i);
+        }
+        for (Object[] soma : slotCedulaRepository.somarQuantidadesPorCedula()) {
+            quantidades[((ValorCedula) soma[0]).ordinal()] += ((Number) soma[1]).intValue();
+        }
+        List<EstoqueGlobal> consolidado = new ArrayList<>();
+        for (int i = VetorCedulas.DIMENSAO - 1; i >= 0; i--) {
+            if (quantidades[i] > 0) {
+                consolidado.add(new EstoqueGlobal(VetorCedulas.cedula(i), quantidades[i]));
+            }
+        }
+        return consolidado;
     }
     public EstoqueGlobal obterEstoquePorValor(ValorCedula valorCedula) {
         return estoqueGlobalRepository.findByValorCedula(valorCedula)
             .orElseThrow(() -> new RuntimeException("Estoque não encontrado para cédula " + valorCedula));
     }
+    /**
+     * Entrada de cédulas pelo administrador; passa pelo {@link MotorEstoque} como os depósitos.
+     */
     public void adicionarCedulas(ValorCedula valorCedula, int quantidade) {
-        EstoqueGlobal estoque = estoqueGlobalRepository.findByValorCedula(valorCedula)
-            .orElse(new EstoqueGlobal(valorCedula, 0));
-        estoque.adicionarQuantidade(quantidade);
-        estoqueGlobalRepository.save(estoque);
+        validarQuantidade(quantidade);
+        motorEstoque.creditar(VetorCedulas.de(valorCedula, quantidade));
+        eventPublisher.publishEvent(new EstoqueAlteradoEvent(this, VetorCedulas.de(valorCedula, quantidade)));
     }
     public void removerCedulas(ValorCedula valorCedula, int quantidade) {
-        EstoqueGlobal estoque = estoqueGlobalRepository.findByValorCedula(valorCedula)
-            .orElseThrow(() -> new RuntimeException("Estoque não encontrado para cédula " + valorCedula));
-        if (estoque.getQuantidade() < quantidade) {
-            throw new RuntimeException("Quantidade insuficiente no estoque");
-        }
-        estoque.removerQuantidade(quantidade);
-        estoqueGlobalRepository.save(estoque);
+        validarQuantidade(quantidade);
+        motorEstoque.debitar(VetorCedulas.de(valorCedula, quantidade));
+        eventPublisher.publishEvent(new EstoqueAlteradoEvent(this, VetorCedulas.de(valorCedula, -quantidade)));
     }
     public boolean verificarDisponibilidade(ValorCedula valorCedula, int quantidadeNecessaria) {
-        EstoqueGlobal estoque = estoqueGlobalRepository.findByValorCedula(valorCedula)
-            .orElse(new EstoqueGlobal(valorCedula, 0));
-        return estoque.getQuantidade() >= quantidadeNecessaria;
+        return obterQuantidadeDisponivel(valorCedula) >= quantidadeNecessaria;
     }
     public int obterQuantidadeDisponivel(ValorCedula valorCedula) {
-        EstoqueGlobal estoque = estoqueGlobalRepository.findByValorCedula(valorCedula)
-            .orElse(new EstoqueGlobal(valorCedula, 0));
-        return estoque.getQuantidade();
+        return motorEstoque.obterQuantidades().getQuantidade(valorCedula);
+    }
+    private void validarQuantidade(int quantidade) {
+        if (quantidade <= 0) {
+            throw new RuntimeException("Quantidade deve ser maior que zero");
+        }
     }
 }
@@ -1,26 +1,140 @@
 package br.com.caixaeletronico.service;
+import br.com.caixaeletronico.dto.OperacaoDto;
 import br.com.caixaeletronico.model.Conta;
 import br.com.caixaeletronico.model.Operacao;
 import br.com.caixaeletronico.repository.OperacaoRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 @Service
 public class ExtractService {
+    public static final int TAMANHO_MAXIMO_PAGINA = 500;
+    private static final LocalDateTime INICIO_HISTORICO = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime FIM_HISTORICO = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+    private static final int TAMANHO_BUFFER_EXPORTACAO = 64 * 1024;
+    public enum FormatoExtrato {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+        private final String contentType;
+        private final String extensao;
+        FormatoExtrato(String contentType, String extensao) {
+            this.contentType = contentType;
+            this.extensao = extensao;
+        }
+        public String getContentType() {
+            return contentType;
+        }
+        public String getExtensao() {
+            return extensao;
+        }
+        public static FormatoExtrato de(String valor) {
+            for (FormatoExtrato formato : values()) {
+                if (formato.name().equalsIgnoreCase(valor)) {
+                    return formato;
+                }
+            }
+            throw new RuntimeException("Formato de exportação inválido. Use: csv ou ndjson");
+        }
+    }
     @Autowired
     private OperacaoRepository operacaoRepository;
+    @Autowired
+    private ObjectMapper objectMapper;
     public List<Operacao> obterExtrato(Conta conta) {
         return operacaoRepository.findByContaOrderByDataHoraDesc(conta);
     }
     public List<Operacao> obterExtratoPorPeriodo(Conta conta, LocalDateTime dataInicio, LocalDateTime dataFim) {
         return operacaoRepository.findByContaAndDataHoraBetweenOrderByDataHoraDesc(conta, dataInicio, dataFim);
     }
-    public List<Operacao> obterUltimasOperacoes(Conta conta, int limite) {
-        List<Operacao> operacoes = obterExtrato(conta);
-        if (operacoes.size() <= limite) {
-            return operacoes;
+    public List<OperacaoDto> obterUltimasOperacoes(Conta conta, int limite) {
+        return obterPaginaExtrato(conta.getId(), null, null, null, null, limite);
+    }
+    /**
+     * Página do extrato paginada por cursor: retorna até {@code limite} operações anteriores a
+     * (antesDeDataHora, antesDeId), a última linha da página anterior. Sem cursor, começa pela
+     * operação mais recente (ou pelo fim do período, se informado).
+     */
+    public List<OperacaoDto> obterPaginaExtrato(Long contaId, LocalDateTime dataInicio, LocalDateTime dataFim,
+                                                LocalDateTime antesDeDataHora, Long antesDeId, int limite) {
+        if ((antesDeDataHora == null) != (antesDeId == null)) {
+            throw new RuntimeException("Informe antesDeDataHora e antesDeId juntos");
+        }
+        LocalDateTime inicio = dataInicio != null ? dataInicio : INICIO_HISTORICO;
+        LocalDateTime cursorDataHora = antesDeDataHora;
+        Long cursorId = antesDeId;
+        if (cursorDataHora == null || (dataFim != null && cursorDataHora.isAfter(dataFim))) {
+            cursorDataHora = dataFim != null ? dataFim : FIM_HISTORICO;
+            cursorId = Long.MAX_VALUE;
+        }
+        int tamanho = Math.max(1, Math.min(limite, TAMANHO_MAXIMO_PAGINA));
+        return operacaoRepository.findPaginaExtrato(contaId, inicio, cursorDataHora, cursorId, tamanho);
+    }
+    /**
+     * Escreve o extrato do período, da operação mais antiga para a mais recente, direto no
+     * {@code saida}. As linhas são lidas do banco sob demanda e escritas uma a uma, então a
+     * memória usada não depende do tamanho do histórico. Retorna a quantidade de operações.
+     */
+    @Transactional(readOnly = true)
+    public long exportarExtrato(Long contaId, LocalDateTime dataInicio, LocalDateTime dataFim,
+                                FormatoExtrato formato, OutputStream saida) throws IOException {
+        LocalDateTime inicio = dataInicio != null ? dataInicio : INICIO_HISTORICO;
+        LocalDateTime fim = dataFim != null ? dataFim : FIM_HISTORICO;
+        Writer writer = new BufferedWriter(
+            new OutputStreamWriter(saida, StandardCharsets.UTF_8), TAMANHO_BUFFER_EXPORTACAO);
+        long total = 0;
+        try (Stream<OperacaoDto> operacoes = operacaoRepository.streamExtrato(contaId, inicio, fim)) {
+            ObjectWriter json = objectMapper.writerFor(OperacaoDto.class);
+            if (formato == FormatoExtrato.CSV) {
+                writer.write("id,tipo,dataHora,valor,usuarioResponsavel,descricao\n");
+            }
+            Iterator<OperacaoDto> iterator = operacoes.iterator();
+            while (iterator.hasNext()) {
+                OperacaoDto operacao = iterator.next();
+                if (formato == FormatoExtrato.CSV) {
+                    escreverLinhaCsv(writer, operacao);
+                } else {
+                    writer.write(json.writeValueAsString(operacao));
+                    writer.write('\n');
+                }
+                total++;
+            }
+        }
+        writer.flush();
+        return total;
+    }
+    private void escreverLinhaCsv(Writer writer, OperacaoDto operacao) throws IOException {
+        writer.write(String.valueOf(operacao.getId()));
+        writer.write(',');
+        writer.write(operacao.getTipo() != null ? operacao.getTipo().name() : "");
+        writer.write(',');
+        writer.write(operacao.getDataHora() != null ? operacao.getDataHora().toString() : "");
+        writer.write(',');
+        writer.write(operacao.getValor() != null ? operacao.getValor().toPlainString() : "");
+        writer.write(',');
+        writer.write(campoCsv(operacao.getUsuarioResponsavel()));
+        writer.write(',');
+        writer.write(campoCsv(operacao.getDescricao()));
+        writer.write('\n');
+    }
+    private String campoCsv(String valor) {
+        if (valor == null) {
+            return "";
+        }
+        if (valor.indexOf(',') < 0 && valor.indexOf('"') < 0 && valor.indexOf('\n') < 0 && valor.indexOf('\r') < 0) {
+            return valor;
         }
-        return operacoes.subList(0, limite);
+        return '"' + valor.replace("\"", "\"\"") + '"';
     }
 }
@@ -0,0 +1,59 @@
+package br.com.caixaeletronico.service;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+/**
+ * Vencimentos por instante (epoch ms), no máximo um por pagamento. Reagendar ou remover não
+ * procura a entrada antiga na fila: ela fica lá e é descartada ao chegar a vez dela. Não é
+ * thread-safe.
+ */
+public class FilaVencimentos {
+    private final PriorityQueue<Vencimento> fila = new PriorityQueue<>();
+    private final Map<Long, Long> vencimentoPorPagamento = new HashMap<>();
+    private record Vencimento(long instante, long pagamentoId) implements Comparable<Vencimento> {
+        @Override
+        public int compareTo(Vencimento outro) {
+            int comparacao = Long.compare(instante, outro.instante);
+            return comparacao != 0 ? comparacao : Long.compare(pagamentoId, outro.pagamentoId);
+        }
+    }
+    public void agendar(Long pagamentoId, long instante) {
+        vencimentoPorPagamento.put(pagamentoId, instante);
+        fila.add(new Vencimento(instante, pagamentoId));
+    }
+    public void remover(Long pagamentoId) {
+        vencimentoPorPagamento.remove(pagamentoId);
+    }
+    public void limpar() {
+        fila.clear();
+        vencimentoPorPagamento.clear();
+    }
+    public int tamanho() {
+        return vencimentoPorPagamento.size();
+    }
+    /**
+     * Instante do primeiro vencimento na fila (pode ser de uma entrada já descartada), ou
+     * {@link Long#MAX_VALUE} se ela estiver vazia.
+     */
+    public long proximoInstante() {
+        Vencimento proximo = fila.peek();
+        return proximo == null ? Long.MAX_VALUE : proximo.instante();
+    }
+    /**
+     * Remove e devolve, em ordem de vencimento, os pagamentos vencidos até o instante.
+     */
+    public List<Long> retirarVencidos(long agora) {
+        List<Long> vencidos = new ArrayList<>();
+        while (!fila.isEmpty() && fila.peek().instante() <= agora) {
+            Vencimento vencimento = fila.poll();
+            Long atual = vencimentoPorPagamento.get(vencimento.pagamentoId());
+            if (atual != null && atual == vencimento.instante()) {
+                vencimentoPorPagamento.remove(vencimento.pagamentoId());
+                vencidos.add(vencimento.pagamentoId());
+            }
+        }
+        return vencidos;
+    }
+}
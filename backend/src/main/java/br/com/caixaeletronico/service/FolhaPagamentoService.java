@@ -0,0 +1,258 @@
+package br.com.caixaeletronico.service;
+import br.com.caixaeletronico.dto.LinhaFolhaPagamento;
+import br.com.caixaeletronico.event.PagamentosAgendadosEmLoteEvent;
+import br.com.caixaeletronico.model.Conta;
+import br.com.caixaeletronico.model.PagamentoAgendado;
+import br.com.caixaeletronico.repository.ContaRepository;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+/**
+ * Agenda uma folha de pagamento: uma conta origem e milhares de destinos numa requisição.
+ *
+ * A folha (lista JSON de {@link LinhaFolhaPagamento}) é lida em streaming e validada inteira
+ * antes de aceitar: campos por linha e as contas destino com consultas por conjunto de ids,
+ * nunca uma por linha. Aceita, ela é gravada em segundo plano numa única transação (a folha
+ * entra inteira ou não entra), em lotes de {@code pagamentos.folha.tamanho-lote} com flush e
+ * clear, e os inserts vão em lote JDBC graças aos ids de sequência de {@link PagamentoAgendado}.
+ * A agenda recebe a folha num único {@link PagamentosAgendadosEmLoteEvent}, depois do commit.
+ * O andamento fica em memória, consultável pelo id devolvido, por
+ * {@code pagamentos.folha.retencao-minutos} depois de terminar.
+ */
+@Service
+public class FolhaPagamentoService {
+    /**
+     * Ids por consulta de existência, abaixo do limite de parâmetros do driver do PostgreSQL.
+     */
+    static final int IDS_POR_CONSULTA = 10_000;
+    private static final int MAXIMO_ERROS_REPORTADOS = 20;
+    @Autowired
+    private ContaRepository contaRepository;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private Clock clock;
+    @PersistenceContext
+    private EntityManager entityManager;
+    @Value("${pagamentos.folha.maximo-linhas:50000}")
+    private int maximoLinhas;
+    @Value("${pagamentos.folha.tamanho-lote:500}")
+    private int tamanhoLote;
+    @Value("${pagamentos.folha.retencao-minutos:60}")
+    private long minutosRetencao;
+    private final Map<String, ProgressoFolha> folhas = new ConcurrentHashMap<>();
+    private TransactionTemplate transactionTemplate;
+    private Executor executor;
+    public enum StatusFolha { PROCESSANDO, CONCLUIDA, FALHOU }
+    public static class ProgressoFolha {
+        private final String id;
+        private final Long contaOrigemId;
+        private final int total;
+        private final LocalDateTime iniciadaEm;
+        private final AtomicInteger gravados = new AtomicInteger();
+        private volatile StatusFolha status = StatusFolha.PROCESSANDO;
+        private volatile String erro;
+        private volatile LocalDateTime concluidaEm;
+        ProgressoFolha(String id, Long contaOrigemId, int total, LocalDateTime iniciadaEm) {
+            this.id = id;
+            this.contaOrigemId = contaOrigemId;
+            this.total = total;
+            this.iniciadaEm = iniciadaEm;
+        }
+        public String getId() { return id; }
+        public Long getContaOrigemId() { return contaOrigemId; }
+        public int getTotal() { return total; }
+        /**
+         * Pagamentos já enviados ao banco; só ficam visíveis a outras transações quando a folha
+         * termina como {@link StatusFolha#CONCLUIDA}.
+         */
+        public int getGravados() { return gravados.get(); }
+        public StatusFolha getStatus() { return status; }
+        public String getErro() { return erro; }
+        public LocalDateTime getIniciadaEm() { return iniciadaEm; }
+        public LocalDateTime getConcluidaEm() { return concluidaEm; }
+        public int getPercentual() {
+            return total == 0 ? 100 : (int) (gravados.get() * 100L / total);
+        }
+    }
+    @PostConstruct
+    public void inicializar() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        executor = Executors.newSingleThreadExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, "folha-pagamentos");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    @PreDestroy
+    public void encerrar() {
+        if (executor instanceof ExecutorService servico) {
+            servico.shutdown();
+        }
+    }
+    /**
+     * Lê e valida a folha e agenda sua gravação; devolve o andamento, cujo id serve para
+     * consultá-lo depois. Uma folha com qualquer linha inválida é recusada inteira.
+     */
+    public ProgressoFolha agendarFolha(Long contaOrigemId, InputStream corpo, LocalDate dataInicio, String descricao) {
+        if (dataInicio == null) {
+            throw new RuntimeException("Data de início é obrigatória");
+        }
+        List<LinhaFolhaPagamento> linhas = new ArrayList<>();
+        List<String> erros = new ArrayList<>();
+        lerLinhas(corpo, contaOrigemId, linhas, erros);
+        if (linhas.isEmpty() && erros.isEmpty()) {
+            throw new RuntimeException("A folha não tem pagamentos");
+        }
+        validarContasDestino(linhas, erros);
+        if (!erros.isEmpty()) {
+            throw new RuntimeException("Folha inválida: " + resumirErros(erros));
+        }
+        removerExpiradas();
+        ProgressoFolha progresso = new ProgressoFolha(UUID.randomUUID().toString(), contaOrigemId, linhas.size(),
+            LocalDateTime.now(clock));
+        folhas.put(progresso.getId(), progresso);
+        executor.execute(() -> gravar(progresso, linhas, dataInicio, descricao));
+        return progresso;
+    }
+    public ProgressoFolha obterProgresso(String id) {
+        ProgressoFolha progresso = folhas.get(id);
+        if (progresso == null) {
+            throw new RuntimeException("Folha de pagamento não encontrada");
+        }
+        return progresso;
+    }
+    private void lerLinhas(InputStream corpo, Long contaOrigemId, List<LinhaFolhaPagamento> linhas, List<String> erros) {
+        try (JsonParser parser = objectMapper.createParser(corpo)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new RuntimeException("A folha deve ser uma lista JSON de pagamentos");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                if (linhas.size() + erros.size() >= maximoLinhas) {
+                    throw new RuntimeException("Folha excede o limite de " + maximoLinhas + " pagamentos");
+                }
+                LinhaFolhaPagamento linha = parser.readValueAs(LinhaFolhaPagamento.class);
+                String erro = validarLinha(linha, contaOrigemId);
+                if (erro == null) {
+                    linhas.add(linha);
+                } else {
+                    erros.add("linha " + (linhas.size() + erros.size() + 1) + ": " + erro);
+                }
+            }
+            if (parser.currentToken() != JsonToken.END_ARRAY) {
+                throw new RuntimeException("A folha deve ser uma lista JSON de pagamentos");
+            }
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Folha inválida: " + e.getOriginalMessage());
+        } catch (IOException e) {
+            throw new RuntimeException("Erro ao ler a folha: " + e.getMessage());
+        }
+    }
+    private String validarLinha(LinhaFolhaPagamento linha, Long contaOrigemId) {
+        if (linha.getContaDestinoId() == null) {
+            return "conta destino é obrigatória";
+        }
+        if (linha.getContaDestinoId().equals(contaOrigemId)) {
+            return "conta origem e destino não podem ser iguais";
+        }
+        if (linha.getValor() == null || linha.getValor().compareTo(new BigDecimal("0.01")) < 0) {
+            return "valor deve ser maior que zero";
+        }
+        if (linha.getParcelas() == null || linha.getParcelas() < 1) {
+            return "quantidade de parcelas deve ser maior que zero";
+        }
+        if (linha.getPeriodicidadeDias() == null || linha.getPeriodicidadeDias() < 1) {
+            return "periodicidade deve ser maior que zero";
+        }
+        return null;
+    }
+    private void validarContasDestino(List<LinhaFolhaPagamento> linhas, List<String> erros) {
+        Set<Long> pedidos = new HashSet<>();
+        for (LinhaFolhaPagamento linha : linhas) {
+            pedidos.add(linha.getContaDestinoId());
+        }
+        List<Long> ids = new ArrayList<>(pedidos);
+        Set<Long> existentes = new HashSet<>(ids.size() * 2);
+        for (int inicio = 0; inicio < ids.size(); inicio += IDS_POR_CONSULTA) {
+            existentes.addAll(contaRepository.findIdsExistentes(
+                ids.subList(inicio, Math.min(inicio + IDS_POR_CONSULTA, ids.size()))));
+        }
+        for (LinhaFolhaPagamento linha : linhas) {
+            if (!existentes.contains(linha.getContaDestinoId())) {
+                erros.add("conta destino " + linha.getContaDestinoId() + " não encontrada");
+            }
+        }
+    }
+    void gravar(ProgressoFolha progresso, List<LinhaFolhaPagamento> linhas, LocalDate dataInicio, String descricao) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                long[] ids = new long[linhas.size()];
+                for (int inicio = 0; inicio < linhas.size(); inicio += tamanhoLote) {
+                    Conta origem = entityManager.getReference(Conta.class, progresso.getContaOrigemId());
+                    int fim = Math.min(inicio + tamanhoLote, linhas.size());
+                    for (int i = inicio; i < fim; i++) {
+                        LinhaFolhaPagamento linha = linhas.get(i);
+                        PagamentoAgendado pagamento = new PagamentoAgendado(origem,
+                            entityManager.getReference(Conta.class, linha.getContaDestinoId()), linha.getValor(),
+                            linha.getParcelas(), linha.getPeriodicidadeDias(), dataInicio, descricao);
+                        entityManager.persist(pagamento);
+                        ids[i] = pagamento.getId();
+                    }
+                    entityManager.flush();
+                    entityManager.clear();
+                    progresso.gravados.addAndGet(fim - inicio);
+                }
+                eventPublisher.publishEvent(new PagamentosAgendadosEmLoteEvent(this, ids, dataInicio));
+            });
+            progresso.status = StatusFolha.CONCLUIDA;
+        } catch (Exception e) {
+            System.err.println("Erro ao gravar folha de pagamento " + progresso.getId() + ": " + e.getMessage());
+            progresso.gravados.set(0);
+            progresso.erro = e.getMessage();
+            progresso.status = StatusFolha.FALHOU;
+        }
+        progresso.concluidaEm = LocalDateTime.now(clock);
+    }
+    private void removerExpiradas() {
+        LocalDateTime limite = LocalDateTime.now(clock).minusMinutes(minutosRetencao);
+        folhas.values().removeIf(progresso -> progresso.getConcluidaEm() != null
+            && progresso.getConcluidaEm().isBefore(limite));
+    }
+    private static String resumirErros(List<String> erros) {
+        String resumo = String.join("; ", erros.subList(0, Math.min(erros.size(), MAXIMO_ERROS_REPORTADOS)));
+        return erros.size() > MAXIMO_ERROS_REPORTADOS
+            ? resumo + " (e mais " + (erros.size() - MAXIMO_ERROS_REPORTADOS) + " erros)" : resumo;
+    }
+}
@@ -0,0 +1,117 @@
+package br.com.caixaeletronico.service;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+/**
+ * Serializa as alterações de saldo por conta até o fim da transação corrente.
+ *
+ * Dentro da JVM cada conta cai em uma faixa de {@link ReentrantLock}; com
+ * {@code contas.bloqueio.distribuido=true} também é obtido um advisory lock transacional do
+ * PostgreSQL por conta, para serializar instâncias que compartilham o banco. As faixas são
+ * obtidas em ordem de índice e os advisory locks em ordem de id, o que evita deadlock entre
+ * transferências em sentidos opostos. O bloqueio deve ser obtido antes de ler a conta.
+ */
+@Service
+public class GerenciadorBloqueioContas implements MeterBinder {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Value("${contas.bloqueio.faixas:1024}")
+    private int quantidadeFaixas;
+    @Value("${contas.bloqueio.timeout-ms:5000}")
+    private long timeoutMs;
+    @Value("${contas.bloqueio.distribuido:false}")
+    private boolean distribuido;
+    private ReentrantLock[] faixas;
+    private final AtomicLong esperasLocais = new AtomicLong();
+    private final AtomicLong nanosEsperaLocal = new AtomicLong();
+    private final AtomicLong esperasDistribuidas = new AtomicLong();
+    private final AtomicLong nanosEsperaDistribuida = new AtomicLong();
+    @PostConstruct
+    public void criarFaixas() {
+        faixas = new ReentrantLock[quantidadeFaixas];
+        for (int i = 0; i < quantidadeFaixas; i++) {
+            faixas[i] = new ReentrantLock();
+        }
+    }
+    /**
+     * Bloqueia as contas até o commit ou rollback da transação ativa.
+     */
+    public void bloquear(Long... contaIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Bloqueio de contas exige uma transação ativa");
+        }
+        long[] ids = Arrays.stream(contaIds).mapToLong(Long::longValue).distinct().sorted().toArray();
+        List<ReentrantLock> obtidos = bloquearFaixas(ids);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                liberar(obtidos);
+            }
+        });
+        if (distribuido) {
+            long inicio = System.nanoTime();
+            for (long id : ids) {
+                jdbcTemplate.queryForObject("SELECT pg_advisory_xact_lock(?)", Object.class, id);
+            }
+            esperasDistribuidas.incrementAndGet();
+            nanosEsperaDistribuida.addAndGet(System.nanoTime() - inicio);
+        }
+    }
+    private List<ReentrantLock> bloquearFaixas(long[] ids) {
+        int[] indices = Arrays.stream(ids).mapToInt(this::faixa).distinct().sorted().toArray();
+        List<ReentrantLock> obtidos = new ArrayList<>(indices.length);
+        long inicio = System.nanoTime();
+        try {
+            for (int indice : indices) {
+                ReentrantLock lock = faixas[indice];
+                if (!lock.tryLock(timeoutMs, TimeUnit.MILLISECONDS)) {
+                    throw new RuntimeException("Conta em uso por outra operação. Tente novamente em instantes");
+                }
+                obtidos.add(lock);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            liberar(obtidos);
+            throw new RuntimeException("Operação interrompida aguardando bloqueio da conta", e);
+        } catch (RuntimeException e) {
+            liberar(obtidos);
+            throw e;
+        } finally {
+            esperasLocais.incrementAndGet();
+            nanosEsperaLocal.addAndGet(System.nanoTime() - inicio);
+        }
+        return obtidos;
+    }
+    private int faixa(long contaId) {
+        return Math.floorMod(Long.hashCode(contaId * 0x9E3779B97F4A7C15L), faixas.length);
+    }
+    private void liberar(List<ReentrantLock> obtidos) {
+        for (int i = obtidos.size() - 1; i >= 0; i--) {
+            obtidos.get(i).unlock();
+        }
+    }
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionTimer.builder("contas.bloqueio.espera", this,
+                g -> g.esperasLocais.get(), g -> g.nanosEsperaLocal.get(), TimeUnit.NANOSECONDS)
+            .tag("tipo", "local")
+            .register(registry);
+        FunctionTimer.builder("contas.bloqueio.espera", this,
+                g -> g.esperasDistribuidas.get(), g -> g.nanosEsperaDistribuida.get(), TimeUnit.NANOSECONDS)
+            .tag("tipo", "advisory")
+            .register(registry);
+    }
+}
@@ -1,35 +1,67 @@
 package br.com.caixaeletronico.service;
+import br.com.caixaeletronico.model.Usuario;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import javax.crypto.SecretKey;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 @Service
 public class JwtService {
+    public static final String CLAIM_USUARIO_ID = "uid";
+    public static final String CLAIM_PERFIL = "perfil";
+    public static final String CLAIM_CONTA_ID = "contaId";
+    public static final String CLAIM_EMAIL = "email";
     @Value("${jwt.secret:minha-chave-secreta-super-segura-para-jwt-tokens}")
     private String jwtSecret;
     @Value("${jwt.expiration:86400000}")
     private Long jwtExpiration;
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes());
+    private SecretKey signingKey;
+    private JwtParser parser;
+    /**
+     * Chave HMAC e parser são imutáveis e thread-safe: montados uma vez, na inicialização.
+     */
+    @PostConstruct
+    public void inicializar() {
+        signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
     }
     public String gerarToken(String login) {
         Map<String, Object> claims = new HashMap<>();
         return createToken(claims, login);
     }
+    /**
+     * Token com a identidade completa (id, perfil, conta e email) em claims assinadas, para que
+     * as requisições não precisem consultar o usuário.
+     */
+    public String gerarToken(Usuario usuario, Long contaId) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(CLAIM_USUARIO_ID, usuario.getId());
+        claims.put(CLAIM_PERFIL, usuario.getPerfil().name());
+        claims.put(CLAIM_EMAIL, usuario.getEmail());
+        if (contaId != null) {
+            claims.put(CLAIM_CONTA_ID, contaId);
+        }
+        return createToken(claims, usuario.getLogin());
+    }
     private String createToken(Map<String, Object> claims, String subject) {
         return Jwts.builder()
                 .setClaims(claims)
                 .setSubject(subject)
+                .setId(UUID.randomUUID().toString())
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + jwtExpiration))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
     public String extrairLogin(String token) {
@@ -42,12 +74,15 @@ public class JwtService {
         final Claims claims = extractAllClaims(token);
         return claimsResolver.apply(claims);
     }
+    /**
+     * Verifica assinatura e expiração e devolve as claims, em uma única leitura do token.
+     * Lança exceção se o token for inválido ou estiver expirado.
+     */
+    public Claims lerClaims(String token) {
+        return parser.parseClaimsJws(token).getBody();
+    }
     private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return lerClaims(token);
     }
     public Boolean validarToken(String token) {
         try {
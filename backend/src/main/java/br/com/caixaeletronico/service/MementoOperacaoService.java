@@ -0,0 +1,138 @@
+package br.com.caixaeletronico.service;
+import br.com.caixaeletronico.model.MementoOperacao;
+import br.com.caixaeletronico.model.Operacao;
+import br.com.caixaeletronico.model.OperationMemento;
+import br.com.caixaeletronico.repository.MementoOperacaoRepository;
+import br.com.caixaeletronico.util.MementoCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+/**
+ * Armazena os dados para desfazer operações em operacao_mementos, com retenção própria:
+ * após {@code operacoes.memento.retencao-dias} os dados são removidos e a operação deixa de
+ * poder ser desfeita.
+ */
+@Service
+@Transactional
+public class MementoOperacaoService {
+    @Autowired
+    private MementoOperacaoRepository mementoOperacaoRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @PersistenceContext
+    private EntityManager entityManager;
+    @Value("${operacoes.memento.retencao-dias:90}")
+    private int retencaoDias;
+    /**
+     * Persiste direto: o id vem da operação, e o save do repositório faria merge, com um SELECT
+     * antes de cada INSERT.
+     */
+    public void salvar(Operacao operacao, OperationMemento memento) {
+        entityManager.persist(new MementoOperacao(
+            operacao.getId(), MementoCodec.codificar(memento), operacao.getDataHora()));
+    }
+    /**
+     * Lê o memento binário ou, para operações migradas do formato antigo, o JSON com valores
+     * absolutos.
+     */
+    @Transactional(readOnly = true)
+    public OperationMemento ler(Long operacaoId) {
+        return decodificar(mementoOperacaoRepository.findById(operacaoId)
+            .orElseThrow(() -> new RuntimeException("Operação não pode ser desfeita - memento não disponível")));
+    }
+    /**
+     * Lê os mementos de várias operações em uma única consulta; operações sem memento não
+     * aparecem no mapa.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, OperationMemento> lerTodos(Collection<Long> operacaoIds) {
+        Map<Long, OperationMemento> mementos = new HashMap<>();
+        for (MementoOperacao registro : mementoOperacaoRepository.findAllById(operacaoIds)) {
+            mementos.put(registro.getOperacaoId(), decodificar(registro));
+        }
+        return mementos;
+    }
+    public void remover(Long operacaoId) {
+        mementoOperacaoRepository.deleteById(operacaoId);
+    }
+    public void removerTodos(Collection<Long> operacaoIds) {
+        mementoOperacaoRepository.deleteAllByIdInBatch(operacaoIds);
+    }
+    private OperationMemento decodificar(MementoOperacao registro) {
+        if (registro.getDados() != null) {
+            return MementoCodec.decodificar(registro.getDados());
+        }
+        try {
+            return objectMapper.readValue(registro.getDadosJson(), OperationMemento.class);
+        } catch (Exception e) {
+            throw new RuntimeException("Erro ao ler memento da operação " + registro.getOperacaoId(), e);
+        }
+    }
+    @Scheduled(cron = "${operacoes.memento.expiracao-cron:0 30 3 * * *}")
+    public void expirarMementos() {
+        LocalDateTime limite = LocalDateTime.now().minusDays(retencaoDias);
+        mementoOperacaoRepository.desmarcarOperacoesComMementoAnteriorA(limite);
+        int removidos = mementoOperacaoRepository.removerAnterioresA(limite);
+        if (removidos > 0) {
+            System.out.println("Mementos de operações expirados: " + removidos);
+        }
+    }
+    /**
+     * Move para operacao_mementos os dados gravados nas colunas memento_json e memento da
+     * tabela operacoes (bancos criados antes da tabela própria) e esvazia essas colunas.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrarMementosLegados() {
+        migrarColuna("memento_json", "dados_json");
+        migrarColuna("memento", "dados");
+    }
+    private void migrarColuna(String colunaOrigem, String colunaDestino) {
+        if (!colunaExiste("operacoes", colunaOrigem)) {
+            return;
+        }
+        int migrados = jdbcTemplate.update(
+            "INSERT INTO operacao_mementos (operacao_id, " + colunaDestino + ", criado_em) " +
+            "SELECT o.id, o." + colunaOrigem + ", o.data_hora FROM operacoes o " +
+            "WHERE o." + colunaOrigem + " IS NOT NULL AND (o.desfeita IS NULL OR o.desfeita = false) " +
+            "AND NOT EXISTS (SELECT 1 FROM operacao_mementos m WHERE m.operacao_id = o.id)");
+        jdbcTemplate.update(
+            "UPDATE operacoes SET possui_memento = true WHERE " + colunaOrigem + " IS NOT NULL " +
+            "AND (desfeita IS NULL OR desfeita = false)");
+        jdbcTemplate.update("UPDATE operacoes SET " + colunaOrigem + " = NULL WHERE " + colunaOrigem + " IS NOT NULL");
+        if (migrados > 0) {
+            System.out.println("Mementos migrados de operacoes." + colunaOrigem + ": " + migrados);
+        }
+    }
+    private boolean colunaExiste(String tabela, String coluna) {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) conexao -> {
+            DatabaseMetaData metadados = conexao.getMetaData();
+            for (String nomeTabela : new String[] {tabela, tabela.toUpperCase()}) {
+                try (ResultSet colunas = metadados.getColumns(null, null, nomeTabela, null)) {
+                    while (colunas.next()) {
+                        if (coluna.equalsIgnoreCase(colunas.getString("COLUMN_NAME"))) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        }));
+    }
+}
@@ -0,0 +1,31 @@
+package br.com.caixaeletronico.service;
+import br.com.caixaeletronico.model.VetorCedulas;
+/**
+ * Ponto único de débito e crédito de cédulas usado pelos comandos de saque e depósito.
+ *
+ * A implementação é escolhida pela propriedade {@code estoque.motor}: {@code banco}
+ * (padrão, UPDATE condicional em estoque_global) ou {@code memoria} (livro em memória com
+ * escritor único e persistência posterior).
+ */
+public interface MotorEstoque {
+    /**
+     * Debita as cédulas do terminal ({@code null} = estoque global) ou lança exceção se
+     * alguma delas for insuficiente.
+     */
+    void debitar(String terminalId, VetorCedulas cedulas);
+    void creditar(String terminalId, VetorCedulas cedulas);
+    /**
+     * Quantidades disponíveis no terminal ({@code null} = estoque global), segundo a fonte
+     * autoritativa da implementação; lança exceção se o terminal não existir.
+     */
+    VetorCedulas obterQuantidades(String terminalId);
+    default void debitar(VetorCedulas cedulas) {
+        debitar(null, cedulas);
+    }
+    default void creditar(VetorCedulas cedulas) {
+        creditar(null, cedulas);
+    }
+    default VetorCedulas obterQuantidades() {
+        return obterQuantidades(null);
+    }
+}
@@ -0,0 +1,66 @@
+package br.com.caixaeletronico.service;
+import br.com.caixaeletronico.model.ICedula;
+import br.com.caixaeletronico.model.VetorCedulas;
+import br.com.caixaeletronico.repository.EstoqueGlobalRepository;
+import br.com.caixaeletronico.repository.SlotCedulaRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import java.util.List;
+@Service
+@ConditionalOnProperty(name = "estoque.motor", havingValue = "banco", matchIfMissing = true)
+public class MotorEstoqueBanco implements MotorEstoque {
+    @Autowired
+    private EstoqueGlobalRepository estoqueGlobalRepository;
+    @Autowired
+    private SlotCedulaRepository slotCedulaRepository;
+    @Override
+    public void debitar(String terminalId, VetorCedulas cedulas) {
+        if (terminalId == null) {
+            int atualizadas = estoqueGlobalRepository.debitarCedulas(cedulas);
+            if (atualizadas != cedulas.getCedulasDistintas()) {
+                throw new RuntimeException(descreverCedulasInsuficientes(
+                    estoqueGlobalRepository.findAllByOrderByValorCedulaDesc(), cedulas, ""));
+            }
+            return;
+        }
+        validarTerminal(terminalId);
+        int atualizadas = slotCedulaRepository.debitarCedulas(terminalId, cedulas);
+        if (atualizadas != cedulas.getCedulasDistintas()) {
+            throw new RuntimeException(descreverCedulasInsuficientes(
+                slotCedulaRepository.findByTerminalIdOrderByValorCedulaDesc(terminalId), cedulas,
+                " no terminal " + terminalId));
+        }
+    }
+    @Override
+    public void creditar(String terminalId, VetorCedulas cedulas) {
+        if (terminalId == null) {
+            estoqueGlobalRepository.aplicarVariacoes(cedulas);
+            return;
+        }
+        validarTerminal(terminalId);
+        slotCedulaRepository.aplicarVariacoes(terminalId, cedulas);
+    }
+    @Override
+    public VetorCedulas obterQuantidades(String terminalId) {
+        if (terminalId == null) {
+            return VetorCedulas.doEstoque(estoqueGlobalRepository.findByQuantidadeGreaterThan(0));
+        }
+        validarTerminal(terminalId);
+        return VetorCedulas.doEstoque(slotCedulaRepository.findByTerminalIdAndQuantidadeGreaterThan(terminalId, 0));
+    }
+    private void validarTerminal(String terminalId) {
+        if (!slotCedulaRepository.existsByTerminalId(terminalId)) {
+            throw new RuntimeException("Terminal não encontrado: " + terminalId);
+        }
+    }
+    private String descreverCedulasInsuficientes(List<? extends ICedula> estoques, VetorCedulas cedulas, String local) {
+        VetorCedulas disponiveis = VetorCedulas.doEstoque(estoques);
+        for (int i = VetorCedulas.DIMENSAO - 1; i >= 0; i--) {
+            if (disponiveis.getQuantidade(i) < cedulas.getQuantidade(i)) {
+                return "Cédulas insuficientes de R$" + VetorCedulas.cedula(i).getValor() + local;
+            }
+        }
+        return "Cédulas insuficientes para o saque" + local;
+    }
+}
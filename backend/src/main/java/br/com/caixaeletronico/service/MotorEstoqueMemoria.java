@@ -0,0 +1,478 @@
+package br.com.caixaeletronico.service;
+import br.com.caixaeletronico.model.CheckpointEstoque;
+import br.com.caixaeletronico.model.VetorCedulas;
+import br.com.caixaeletronico.repository.CheckpointEstoqueRepository;
+import br.com.caixaeletronico.repository.ConfirmacaoEstoqueRepository;
+import br.com.caixaeletronico.repository.EstoqueGlobalRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+/**
+ * Livro de estoque em memória com escritor único ({@code estoque.motor=memoria}).
+ *
+ * Débitos e créditos entram em uma fila limitada e são aplicados por uma única thread, que
+ * grava cada lote no journal (um único fsync por lote) antes de concluir os futures. Cada
+ * entrada do journal é provisória até a transação que a originou gravar sua marca em
+ * estoque_confirmacao; se a transação não confirmar, a entrada é desfeita em memória e a
+ * ausência da marca a descarta na recuperação, sem depender de nenhuma escrita posterior.
+ * Débitos reservam as cédulas na hora; créditos só ficam disponíveis após a confirmação.
+ *
+ * As entradas confirmadas são persistidas periodicamente em estoque_global, na mesma
+ * transação que remove suas marcas e grava o checkpoint: a maior sequência até a qual
+ * todas as entradas já estão resolvidas. Em seguida o journal é reescrito apenas com as
+ * entradas ainda não resolvidas, o que o mantém do tamanho das transações em andamento.
+ * Atende apenas o estoque global; operações em terminais exigem {@code estoque.motor=banco}.
+ */
+@Service
+@ConditionalOnProperty(name = "estoque.motor", havingValue = "memoria")
+public class MotorEstoqueMemoria implements MotorEstoque {
+    private static final long ID_CHECKPOINT = 1L;
+    private static final int TAMANHO_LOTE = 256;
+    private static final int MARCAS_POR_REMOCAO = 10_000;
+    @Autowired
+    private EstoqueGlobalRepository estoqueGlobalRepository;
+    @Autowired
+    private CheckpointEstoqueRepository checkpointEstoqueRepository;
+    @Autowired
+    private ConfirmacaoEstoqueRepository confirmacaoEstoqueRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Value("${estoque.memoria.journal:estoque-journal.log}")
+    private String caminhoJournal;
+    @Value("${estoque.memoria.capacidade-fila:4096}")
+    private int capacidadeFila;
+    @Value("${estoque.memoria.sincronizar-journal:true}")
+    private boolean sincronizarJournal;
+    @Value("${estoque.memoria.tempo-espera-ms:5000}")
+    private long tempoEsperaMs;
+    private BlockingQueue<Evento> fila;
+    // Sem limite: o desfecho de uma transação nunca pode ser descartado por fila cheia.
+    private final Queue<Evento> resolucoes = new ConcurrentLinkedQueue<>();
+    private Thread escritor;
+    private volatile boolean ativo;
+    private volatile boolean falhou;
+    private volatile VetorCedulas quantidadesPublicadas = VetorCedulas.VAZIO;
+    // Estado do escritor: acessado apenas pela thread escritora.
+    private final int[] quantidades = new int[VetorCedulas.DIMENSAO];
+    private final TreeMap<Long, VetorCedulas> emAndamento = new TreeMap<>();
+    private final TreeMap<Long, VetorCedulas> confirmados = new TreeMap<>();
+    private long sequencia;
+    private FileChannel journal;
+    // Estado da persistência: acessado apenas pela thread agendada.
+    private long sequenciaPersistida;
+    @PostConstruct
+    public void criarFila() {
+        fila = new ArrayBlockingQueue<>(capacidadeFila);
+    }
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() throws IOException {
+        VetorCedulas banco = VetorCedulas.doEstoque(estoqueGlobalRepository.findAll());
+        sequenciaPersistida = checkpointEstoqueRepository.findById(ID_CHECKPOINT)
+            .map(CheckpointEstoque::getSequencia)
+            .orElse(0L);
+        sequencia = sequenciaPersistida;
+        for (int i = 0; i < VetorCedulas.DIMENSAO; i++) {
+            quantidades[i] = banco.getQuantidade(i);
+        }
+        Path caminho = Paths.get(caminhoJournal);
+        if (Files.exists(caminho)) {
+            reaplicarJournal(caminho);
+        }
+        rotacionarJournal();
+        quantidadesPublicadas = VetorCedulas.de(quantidades);
+        ativo = true;
+        escritor = new Thread(this::executarEscritor, "motor-estoque-escritor");
+        escritor.setDaemon(true);
+        escritor.start();
+    }
+    @PreDestroy
+    public void parar() throws InterruptedException, IOException {
+        if (!ativo) {
+            return;
+        }
+        persistirVariacoes();
+        ativo = false;
+        escritor.join(tempoEsperaMs);
+        journal.close();
+    }
+    @Override
+    public void debitar(String terminalId, VetorCedulas cedulas) {
+        validarTerminal(terminalId);
+        movimentar(cedulas.negar());
+    }
+    @Override
+    public void creditar(String terminalId, VetorCedulas cedulas) {
+        validarTerminal(terminalId);
+        movimentar(cedulas);
+    }
+    /**
+     * Quantidades disponíveis no livro, já descontados os débitos em andamento; não consulta
+     * o banco, que fica atrás do livro até a próxima persistência.
+     */
+    @Override
+    public VetorCedulas obterQuantidades(String terminalId) {
+        validarTerminal(terminalId);
+        return quantidadesPublicadas;
+    }
+    @Scheduled(fixedDelayString = "${estoque.memoria.intervalo-flush-ms:200}")
+    public synchronized void persistirVariacoes() {
+        if (!ativo) {
+            return;
+        }
+        Coleta coleta = (Coleta) aguardar(enfileirar(new Evento(TipoEvento.COLETA, VetorCedulas.VAZIO, null)));
+        if (coleta.sequencias.length == 0 && coleta.marca == sequenciaPersistida) {
+            return;
+        }
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                estoqueGlobalRepository.aplicarVariacoes(coleta.variacao);
+                for (int inicio = 0; inicio < coleta.sequencias.length; inicio += MARCAS_POR_REMOCAO) {
+                    confirmacaoEstoqueRepository.removerSequencias(Arrays.stream(coleta.sequencias, inicio,
+                        Math.min(inicio + MARCAS_POR_REMOCAO, coleta.sequencias.length)).boxed().toList());
+                }
+                checkpointEstoqueRepository.save(new CheckpointEstoque(ID_CHECKPOINT, coleta.marca));
+            });
+        } catch (RuntimeException e) {
+            System.err.println("Erro ao persistir variações do estoque: " + e.getMessage());
+            return;
+        }
+        sequenciaPersistida = coleta.marca;
+        // Sem EstoqueAlteradoEvent: as mesmas variações já foram publicadas no commit de cada
+        // operação, e os leitores consultam o livro, não estoque_global.
+        aguardar(enfileirar(new Evento(TipoEvento.ROTACAO, VetorCedulas.VAZIO, coleta.sequencias)));
+    }
+    private void validarTerminal(String terminalId) {
+        if (terminalId != null) {
+            throw new RuntimeException("O motor de estoque em memória atende apenas o estoque global");
+        }
+    }
+    private void movimentar(VetorCedulas variacao) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            registrarMovimento(variacao);
+            return;
+        }
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> registrarMovimento(variacao));
+    }
+    /**
+     * Aplica a variação no livro e grava a marca de confirmação na transação corrente. O
+     * desfecho da transação é repassado ao escritor, que efetiva ou desfaz a entrada.
+     */
+    private void registrarMovimento(VetorCedulas variacao) {
+        Evento evento = new Evento(TipoEvento.MOVIMENTO, variacao, null);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED || !evento.registrado) {
+                    evento.cancelado = true;
+                }
+                resolucoes.add(evento);
+            }
+        });
+        long sequenciaEvento = (Long) aguardar(enfileirar(evento));
+        confirmacaoEstoqueRepository.registrar(sequenciaEvento);
+        evento.registrado = true;
+    }
+    private CompletableFuture<Object> enfileirar(Evento evento) {
+        if (falhou) {
+            throw new RuntimeException("Motor de estoque indisponível após falha no journal");
+        }
+        try {
+            if (!fila.offer(evento, tempoEsperaMs, TimeUnit.MILLISECONDS)) {
+                throw new RuntimeException("Fila do motor de estoque cheia. Tente novamente em instantes");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Operação de estoque interrompida", e);
+        }
+        return evento.conclusao;
+    }
+    private Object aguardar(CompletableFuture<Object> conclusao) {
+        try {
+            return conclusao.get(tempoEsperaMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Tempo esgotado aguardando o motor de estoque");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Operação de estoque interrompida", e);
+        }
+    }
+    private void executarEscritor() {
+        List<Evento> lote = new ArrayList<>(TAMANHO_LOTE);
+        List<Runnable> conclusoes = new ArrayList<>(TAMANHO_LOTE);
+        StringBuilder registros = new StringBuilder();
+        while (ativo || !fila.isEmpty()) {
+            try {
+                Evento primeiro = fila.poll(100, TimeUnit.MILLISECONDS);
+                Evento resolvido;
+                while ((resolvido = resolucoes.poll()) != null) {
+                    resolver(resolvido);
+                }
+                if (primeiro != null) {
+                    lote.add(primeiro);
+                    fila.drainTo(lote, TAMANHO_LOTE - 1);
+                }
+                for (Evento evento : lote) {
+                    processar(evento, registros, conclusoes);
+                }
+                if (registros.length() > 0) {
+                    journal.write(ByteBuffer.wrap(registros.toString().getBytes(StandardCharsets.UTF_8)));
+                    if (sincronizarJournal) {
+                        journal.force(false);
+                    }
+                }
+                quantidadesPublicadas = VetorCedulas.de(quantidades);
+                conclusoes.forEach(Runnable::run);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException e) {
+                // O estado em memória já não corresponde ao journal: para de aceitar eventos e
+                // deixa a recuperação (banco + journal + marcas) para a próxima inicialização.
+                System.err.println("Falha no journal do estoque: " + e.getMessage());
+                falhou = true;
+                ativo = false;
+                fila.drainTo(lote);
+                for (Evento evento : lote) {
+                    evento.conclusao.completeExceptionally(new RuntimeException("Falha no journal do estoque: " + e.getMessage(), e));
+                }
+                return;
+            } finally {
+                lote.clear();
+                conclusoes.clear();
+                registros.setLength(0);
+            }
+        }
+    }
+    private void processar(Evento evento, StringBuilder registros, List<Runnable> conclusoes) throws IOException {
+        switch (evento.tipo) {
+            case MOVIMENTO -> {
+                if (evento.cancelado) {
+                    conclusoes.add(() -> evento.conclusao.completeExceptionally(
+                        new RuntimeException("Movimentação de estoque cancelada")));
+                    return;
+                }
+                for (int i = 0; i < VetorCedulas.DIMENSAO; i++) {
+                    if (quantidades[i] + Math.min(evento.variacao.getQuantidade(i), 0) < 0) {
+                        RuntimeException erro = new RuntimeException(
+                            "Cédulas insuficientes de R$" + VetorCedulas.cedula(i).getValor());
+                        conclusoes.add(() -> evento.conclusao.completeExceptionally(erro));
+                        return;
+                    }
+                }
+                long atribuida = ++sequencia;
+                evento.sequencia = atribuida;
+                for (int i = 0; i < VetorCedulas.DIMENSAO; i++) {
+                    quantidades[i] += Math.min(evento.variacao.getQuantidade(i), 0);
+                }
+                emAndamento.put(atribuida, evento.variacao);
+                registrar(atribuida, evento.variacao, registros);
+                conclusoes.add(() -> evento.conclusao.complete(atribuida));
+            }
+            case COLETA -> {
+                long[] sequencias = new long[confirmados.size()];
+                int[] variacao = new int[VetorCedulas.DIMENSAO];
+                int posicao = 0;
+                for (Map.Entry<Long, VetorCedulas> entrada : confirmados.entrySet()) {
+                    sequencias[posicao++] = entrada.getKey();
+                    for (int i = 0; i < VetorCedulas.DIMENSAO; i++) {
+                        variacao[i] += entrada.getValue().getQuantidade(i);
+                    }
+                }
+                long marca = emAndamento.isEmpty() ? sequencia : emAndamento.firstKey() - 1;
+                Coleta coleta = new Coleta(sequencias, VetorCedulas.de(variacao), marca);
+                conclusoes.add(() -> evento.conclusao.complete(coleta));
+            }
+            case ROTACAO -> {
+                for (long persistida : evento.sequencias) {
+                    confirmados.remove(persistida);
+                }
+                // A reescrita já inclui as entradas deste lote ainda não gravadas.
+                rotacionarJournal();
+                registros.setLength(0);
+                conclusoes.add(() -> evento.conclusao.complete(null));
+            }
+        }
+    }
+    /**
+     * Efetiva ou desfaz uma entrada conforme o desfecho da transação. Uma entrada cancelada
+     * antes de chegar ao escritor é recusada quando ele a processar.
+     */
+    private void resolver(Evento evento) {
+        VetorCedulas variacao = emAndamento.remove(evento.sequencia);
+        if (variacao == null) {
+            return;
+        }
+        for (int i = 0; i < VetorCedulas.DIMENSAO; i++) {
+            int quantidade = variacao.getQuantidade(i);
+            if (evento.cancelado && quantidade < 0) {
+                quantidades[i] -= quantidade;
+            } else if (!evento.cancelado && quantidade > 0) {
+                quantidades[i] += quantidade;
+            }
+        }
+        if (!evento.cancelado) {
+            confirmados.put(evento.sequencia, variacao);
+        }
+    }
+    /**
+     * Reescreve o journal apenas com as entradas não resolvidas (em andamento ou confirmadas
+     * e ainda não persistidas) e o troca atomicamente pelo atual.
+     */
+    private void rotacionarJournal() throws IOException {
+        Path caminho = Paths.get(caminhoJournal);
+        Path temporario = caminho.resolveSibling(caminho.getFileName() + ".tmp");
+        TreeMap<Long, VetorCedulas> retidas = new TreeMap<>(emAndamento);
+        retidas.putAll(confirmados);
+        StringBuilder registros = new StringBuilder();
+        retidas.forEach((sequenciaRetida, variacao) -> registrar(sequenciaRetida, variacao, registros));
+        try (FileChannel novo = FileChannel.open(temporario, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            novo.write(ByteBuffer.wrap(registros.toString().getBytes(StandardCharsets.UTF_8)));
+            if (sincronizarJournal) {
+                novo.force(false);
+            }
+        }
+        if (journal != null) {
+            journal.close();
+        }
+        Files.move(temporario, caminho, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        journal = FileChannel.open(caminho, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+    /**
+     * Registra a linha "sequencia;q0;...;q6;verificador", em que o verificador é a soma dos
+     * campos anteriores (detecta linha final incompleta).
+     */
+    private static void registrar(long sequencia, VetorCedulas variacao, StringBuilder registros) {
+        long verificador = sequencia;
+        registros.append(sequencia);
+        for (int i = 0; i < VetorCedulas.DIMENSAO; i++) {
+            int quantidade = variacao.getQuantidade(i);
+            verificador += quantidade;
+            registros.append(';').append(quantidade);
+        }
+        registros.append(';').append(verificador).append('\n');
+    }
+    /**
+     * Reaplica as entradas posteriores ao checkpoint que têm marca de confirmação; elas
+     * voltam a ser confirmadas pendentes de persistência. As demais foram desfeitas ou já
+     * estão em estoque_global.
+     */
+    private void reaplicarJournal(Path caminho) throws IOException {
+        TreeMap<Long, VetorCedulas> entradas = new TreeMap<>();
+        try (BufferedReader leitor = Files.newBufferedReader(caminho, StandardCharsets.UTF_8)) {
+            String linha;
+            while ((linha = leitor.readLine()) != null) {
+                long[] campos = lerRegistro(linha);
+                if (campos == null) {
+                    continue;
+                }
+                sequencia = Math.max(sequencia, campos[0]);
+                if (campos[0] > sequenciaPersistida) {
+                    int[] variacao = new int[VetorCedulas.DIMENSAO];
+                    for (int i = 0; i < VetorCedulas.DIMENSAO; i++) {
+                        variacao[i] = (int) campos[i + 1];
+                    }
+                    entradas.put(campos[0], VetorCedulas.de(variacao));
+                }
+            }
+        }
+        if (entradas.isEmpty()) {
+            return;
+        }
+        Set<Long> marcadas = new HashSet<>(confirmacaoEstoqueRepository.findSequenciasApos(sequenciaPersistida));
+        entradas.forEach((sequenciaEntrada, variacao) -> {
+            if (marcadas.contains(sequenciaEntrada)) {
+                for (int i = 0; i < VetorCedulas.DIMENSAO; i++) {
+                    quantidades[i] += variacao.getQuantidade(i);
+                }
+                confirmados.put(sequenciaEntrada, variacao);
+            }
+        });
+    }
+    private long[] lerRegistro(String linha) {
+        String[] partes = linha.split(";");
+        if (partes.length != VetorCedulas.DIMENSAO + 2) {
+            return null;
+        }
+        long[] campos = new long[VetorCedulas.DIMENSAO + 1];
+        long verificador = 0;
+        try {
+            for (int i = 0; i < campos.length; i++) {
+                campos[i] = Long.parseLong(partes[i]);
+                verificador += campos[i];
+            }
+            return verificador == Long.parseLong(partes[campos.length]) ? campos : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    private enum TipoEvento {
+        MOVIMENTO, COLETA, ROTACAO
+    }
+    private static final class Evento {
+        private final TipoEvento tipo;
+        private final VetorCedulas variacao;
+        private final long[] sequencias;
+        private final CompletableFuture<Object> conclusao = new CompletableFuture<>();
+        // Atribuída pelo escritor ao aplicar um MOVIMENTO.
+        private long sequencia;
+        private volatile boolean cancelado;
+        // Marca gravada na transação; acessado apenas pela thread da transação.
+        private boolean registrado;
+        private Evento(TipoEvento tipo, VetorCedulas variacao, long[] sequencias) {
+            this.tipo = tipo;
+            this.variacao = variacao;
+            this.sequencias = sequencias;
+        }
+    }
+    private static final class Coleta {
+        private final long[] sequencias;
+        private final VetorCedulas variacao;
+        private final long marca;
+        private Coleta(long[] sequencias, VetorCedulas variacao, long marca) {
+            this.sequencias = sequencias;
+            this.variacao = variacao;
+            this.marca = marca;
+        }
+    }
+}
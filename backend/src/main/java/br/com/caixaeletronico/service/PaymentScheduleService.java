@@ -1,13 +1,17 @@
 package br.com.caixaeletronico.service;
+import br.com.caixaeletronico.dto.PagamentoAgendadoDTO;
+import br.com.caixaeletronico.event.PagamentoAgendadoAlteradoEvent;
 import br.com.caixaeletronico.model.Conta;
 import br.com.caixaeletronico.model.PagamentoAgendado;
 import br.com.caixaeletronico.model.StatusAgendamento;
 import br.com.caixaeletronico.repository.ContaRepository;
 import br.com.caixaeletronico.repository.PagamentoAgendadoRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
+import java.time.Clock;
 import java.time.LocalDate;
 import java.util.List;
 @Service
@@ -17,6 +21,10 @@ public class PaymentScheduleService {
     private PagamentoAgendadoRepository pagamentoAgendadoRepository;
     @Autowired
     private ContaRepository contaRepository;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private Clock clock;
     public PagamentoAgendado criarPagamentoAgendado(Conta conta, BigDecimal valorTotal, 
                                                    Integer quantidadeParcelas, Integer periodicidadeDias,
                                                    LocalDate dataInicio, boolean debitarPrimeiraParcela) {
@@ -35,7 +43,7 @@ public class PaymentScheduleService {
             }
             contaRepository.save(conta);
         }
-        return pagamentoAgendadoRepository.save(pagamento);
+        return salvarENotificar(pagamento);
     }
     public PagamentoAgendado criarPagamentoAgendado(Conta conta, BigDecimal valorTotal, 
                                                    Integer quantidadeParcelas, Integer periodicidadeDias,
@@ -46,7 +54,7 @@ public class PaymentScheduleService {
         return pagamentoAgendadoRepository.findByContaOrigemAndStatus(conta, StatusAgendamento.ATIVO);
     }
     public List<PagamentoAgendado> obterPagamentosVencidos() {
-        return pagamentoAgendadoRepository.findPagamentosVencidos(LocalDate.now());
+        return pagamentoAgendadoRepository.findPagamentosVencidos(LocalDate.now(clock));
     }
     public PagamentoAgendado obterPagamentoPorId(Long id) {
         return pagamentoAgendadoRepository.findById(id)
@@ -55,12 +63,12 @@ public class PaymentScheduleService {
     public void cancelarPagamento(Long id) {
         PagamentoAgendado pagamento = obterPagamentoPorId(id);
         pagamento.setStatus(StatusAgendamento.CANCELADO);
-        pagamentoAgendadoRepository.save(pagamento);
+        salvarENotificar(pagamento);
     }
     public void processarParcela(Long id) {
         PagamentoAgendado pagamento = obterPagamentoPorId(id);
         pagamento.processarParcela();
-        pagamentoAgendadoRepository.save(pagamento);
+        salvarENotificar(pagamento);
     }
     public List<PagamentoAgendado> obterTodosPagamentos(Conta conta) {
         return pagamentoAgendadoRepository.findByContaOrigem(conta);
@@ -68,6 +76,14 @@ public class PaymentScheduleService {
     public List<PagamentoAgendado> obterPagamentosRecebidos(Conta conta) {
         return pagamentoAgendadoRepository.findByContaDestino(conta);
     }
+    @Transactional(readOnly = true)
+    public List<PagamentoAgendadoDTO> listarPagamentosEnviados(Long contaId) {
+        return pagamentoAgendadoRepository.findDtoByContaOrigemId(contaId);
+    }
+    @Transactional(readOnly = true)
+    public List<PagamentoAgendadoDTO> listarPagamentosRecebidos(Long contaId) {
+        return pagamentoAgendadoRepository.findDtoByContaDestinoId(contaId);
+    }
     public List<PagamentoAgendado> obterPagamentosRecebidosAtivos(Conta conta) {
         return pagamentoAgendadoRepository.findByContaDestinoAndStatus(conta, StatusAgendamento.ATIVO);
     }
@@ -96,6 +112,11 @@ public class PaymentScheduleService {
             contaRepository.save(contaOrigem);
             contaRepository.save(contaDestino);
         }
-        return pagamentoAgendadoRepository.save(transferencia);
+        return salvarENotificar(transferencia);
+    }
+    private PagamentoAgendado salvarENotificar(PagamentoAgendado pagamento) {
+        PagamentoAgendado salvo = pagamentoAgendadoRepository.save(pagamento);
+        eventPublisher.publishEvent(new PagamentoAgendadoAlteradoEvent(this, pagamento));
+        return salvo;
     }
 }
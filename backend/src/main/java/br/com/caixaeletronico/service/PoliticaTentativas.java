@@ -0,0 +1,27 @@
+package br.com.caixaeletronico.service;
+import java.time.LocalDateTime;
+/**
+ * Quando tentar de novo uma parcela que falhou: a espera inicial, dobrada a cada falha e
+ * limitada à máxima; esgotadas as tentativas não há próxima.
+ */
+public class PoliticaTentativas {
+    private final int maximoTentativas;
+    private final long minutosEsperaInicial;
+    private final long minutosEsperaMaxima;
+    public PoliticaTentativas(int maximoTentativas, long minutosEsperaInicial, long minutosEsperaMaxima) {
+        this.maximoTentativas = maximoTentativas;
+        this.minutosEsperaInicial = minutosEsperaInicial;
+        this.minutosEsperaMaxima = minutosEsperaMaxima;
+    }
+    /**
+     * Instante da próxima tentativa após a falha de número {@code tentativa}, ou nulo se ela
+     * foi a última.
+     */
+    public LocalDateTime proximaTentativa(int tentativa, LocalDateTime agora) {
+        return tentativa >= maximoTentativas ? null : agora.plusMinutes(esperaAposFalha(tentativa));
+    }
+    public long esperaAposFalha(int tentativa) {
+        int expoente = Math.min(tentativa - 1, 30);
+        return Math.min(minutosEsperaInicial << expoente, minutosEsperaMaxima);
+    }
+}
@@ -0,0 +1,269 @@
+package br.com.caixaeletronico.service;
+import br.com.caixaeletronico.command.CommandFactory;
+import br.com.caixaeletronico.event.PagamentoAgendadoAlteradoEvent;
+import br.com.caixaeletronico.model.PagamentoAgendado;
+import br.com.caixaeletronico.model.StatusAgendamento;
+import br.com.caixaeletronico.model.TipoOperacao;
+import br.com.caixaeletronico.repository.PagamentoAgendadoRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+/**
+ * Processa as parcelas vencidas em lotes, com várias instâncias da aplicação no mesmo banco.
+ *
+ * Cada lote é reservado numa transação curta com {@code FOR UPDATE SKIP LOCKED}, que grava
+ * {@code reservadoAte} nas linhas e as esconde das outras instâncias até a reserva expirar.
+ * As parcelas do lote rodam num pool limitado, cada uma em sua própria transação, que trava
+ * o pagamento (pulando-o se outra transação já o travou) e confere de novo se ele ainda está
+ * ativo e vencido; assim uma parcela nunca é cobrada duas vezes, e uma parcela lenta ou com
+ * erro não segura as demais.
+ *
+ * Uma parcela que falha é registrada no pagamento numa transação à parte: a próxima tentativa
+ * fica para depois de uma espera que dobra a cada falha (de
+ * {@code pagamentos.falhas.espera-inicial-minutos} até {@code pagamentos.falhas.espera-maxima-minutos}),
+ * e esgotadas {@code pagamentos.falhas.maximo-tentativas} o pagamento passa a
+ * {@link StatusAgendamento#FALHOU} e sai das consultas de vencidos. Toda alteração publica
+ * {@link PagamentoAgendadoAlteradoEvent} com o novo estado.
+ *
+ * Um pagamento pulado por estar travado por outra transação, na cobrança ou no registro da
+ * falha, volta como {@link ResultadoParcela#TRAVADA}: nada foi publicado sobre ele, e quem
+ * pediu o processamento deve tentar de novo.
+ */
+@Service
+public class ProcessadorPagamentosAgendados implements MeterBinder {
+    @Autowired
+    private PagamentoAgendadoRepository pagamentoAgendadoRepository;
+    @Autowired
+    private CommandFactory commandFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private Clock clock;
+    @Value("${pagamentos.processamento.tamanho-lote:500}")
+    private int tamanhoLote;
+    @Value("${pagamentos.processamento.threads:8}")
+    private int threads;
+    @Value("${pagamentos.processamento.reserva-minutos:15}")
+    private long minutosReserva;
+    @Value("${pagamentos.falhas.maximo-tentativas:5}")
+    private int maximoTentativas;
+    @Value("${pagamentos.falhas.espera-inicial-minutos:15}")
+    private long minutosEsperaInicial;
+    @Value("${pagamentos.falhas.espera-maxima-minutos:1440}")
+    private long minutosEsperaMaxima;
+    private ExecutorService executor;
+    private TransactionTemplate transactionTemplate;
+    private PoliticaTentativas politicaTentativas;
+    private final AtomicLong processados = new AtomicLong();
+    private final AtomicLong falhas = new AtomicLong();
+    private final AtomicLong ignorados = new AtomicLong();
+    private final AtomicLong travados = new AtomicLong();
+    private final AtomicLong esgotados = new AtomicLong();
+    private final AtomicLong execucoes = new AtomicLong();
+    private final AtomicLong nanosExecucao = new AtomicLong();
+    private volatile double vazaoUltimaExecucao;
+    public record ResumoExecucao(int processados, int falhas, int ignorados, long duracaoMs) {
+        public double vazaoPorSegundo() {
+            return duracaoMs == 0 ? processados : processados * 1000.0 / duracaoMs;
+        }
+    }
+    public enum ResultadoParcela { PROCESSADA, FALHA, IGNORADA, TRAVADA }
+    @PostConstruct
+    public void inicializar() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        politicaTentativas = new PoliticaTentativas(maximoTentativas, minutosEsperaInicial, minutosEsperaMaxima);
+        AtomicInteger contador = new AtomicInteger();
+        // Fila do tamanho de um lote: o lote inteiro é enfileirado de uma vez e a thread do
+        // agendador só espera, sem executar parcelas ela mesma.
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(Math.max(tamanhoLote, 1)),
+            tarefa -> {
+                Thread thread = new Thread(tarefa, "pagamentos-agendados-" + contador.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+    @PreDestroy
+    public void encerrar() {
+        executor.shutdown();
+    }
+    /**
+     * Processa todas as parcelas vencidas até hoje, lote a lote, e devolve o resumo da execução.
+     * Cada pagamento é visitado no máximo uma vez por execução.
+     */
+    public synchronized ResumoExecucao processarVencidos() {
+        long inicio = System.nanoTime();
+        LocalDate hoje = LocalDate.now(clock);
+        int totalProcessados = 0;
+        int totalFalhas = 0;
+        int totalIgnorados = 0;
+        long ultimoId = 0L;
+        while (true) {
+            List<Long> lote = reservarLote(hoje, ultimoId);
+            if (lote.isEmpty()) {
+                break;
+            }
+            ultimoId = lote.get(lote.size() - 1);
+            for (ResultadoParcela resultado : processarLote(lote, hoje).values()) {
+                switch (resultado) {
+                    case PROCESSADA -> totalProcessados++;
+                    case FALHA -> totalFalhas++;
+                    case IGNORADA, TRAVADA -> totalIgnorados++;
+                }
+            }
+        }
+        long nanos = System.nanoTime() - inicio;
+        ResumoExecucao resumo = new ResumoExecucao(totalProcessados, totalFalhas, totalIgnorados,
+            TimeUnit.NANOSECONDS.toMillis(nanos));
+        execucoes.incrementAndGet();
+        nanosExecucao.addAndGet(nanos);
+        vazaoUltimaExecucao = resumo.vazaoPorSegundo();
+        return resumo;
+    }
+    /**
+     * Processa agora as parcelas dos pagamentos indicados que estiverem vencidas, sem reserva
+     * prévia; a trava e a conferência por pagamento bastam para não cobrar duas vezes.
+     */
+    public synchronized Map<Long, ResultadoParcela> processarPagamentos(List<Long> ids) {
+        LocalDate hoje = LocalDate.now(clock);
+        Map<Long, ResultadoParcela> resultados = new LinkedHashMap<>();
+        for (int inicio = 0; inicio < ids.size(); inicio += tamanhoLote) {
+            resultados.putAll(processarLote(ids.subList(inicio, Math.min(inicio + tamanhoLote, ids.size())), hoje));
+        }
+        return resultados;
+    }
+    private Map<Long, ResultadoParcela> processarLote(List<Long> lote, LocalDate hoje) {
+        Map<Long, CompletableFuture<ResultadoParcela>> tarefas = new LinkedHashMap<>();
+        for (Long id : lote) {
+            tarefas.put(id, CompletableFuture.supplyAsync(() -> processarPagamento(id, hoje), executor));
+        }
+        Map<Long, ResultadoParcela> resultados = new LinkedHashMap<>();
+        tarefas.forEach((id, tarefa) -> resultados.put(id, tarefa.join()));
+        return resultados;
+    }
+    private List<Long> reservarLote(LocalDate hoje, long aposId) {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime agora = LocalDateTime.now(clock);
+            List<PagamentoAgendado> pagamentos = pagamentoAgendadoRepository.findVencidosParaReserva(
+                hoje, agora, aposId, Limit.of(tamanhoLote));
+            List<Long> ids = new ArrayList<>(pagamentos.size());
+            for (PagamentoAgendado pagamento : pagamentos) {
+                pagamento.setReservadoAte(agora.plusMinutes(minutosReserva));
+                ids.add(pagamento.getId());
+            }
+            return ids;
+        });
+    }
+    private ResultadoParcela processarPagamento(Long id, LocalDate hoje) {
+        try {
+            ResultadoParcela resultado = transactionTemplate.execute(status -> {
+                PagamentoAgendado pagamento = pagamentoAgendadoRepository.findByIdParaProcessamento(id).orElse(null);
+                if (pagamento == null) {
+                    return travadoOuIgnorado(id);
+                }
+                if (pagamento.getStatus() != StatusAgendamento.ATIVO || pagamento.getDataProximaExecucao().isAfter(hoje)
+                        || pagamento.aguardandoNovaTentativa(LocalDateTime.now(clock))) {
+                    eventPublisher.publishEvent(new PagamentoAgendadoAlteradoEvent(this, pagamento));
+                    return ResultadoParcela.IGNORADA;
+                }
+                commandFactory.criarCommand(TipoOperacao.PAGAMENTO_PARCELA, id).executar();
+                pagamento.setReservadoAte(null);
+                eventPublisher.publishEvent(new PagamentoAgendadoAlteradoEvent(this, pagamento));
+                return ResultadoParcela.PROCESSADA;
+            });
+            switch (resultado) {
+                case PROCESSADA -> processados.incrementAndGet();
+                case TRAVADA -> travados.incrementAndGet();
+                default -> ignorados.incrementAndGet();
+            }
+            return resultado;
+        } catch (Exception e) {
+            falhas.incrementAndGet();
+            System.err.println("Falha ao processar pagamento ID " + id + ": " + e.getMessage());
+            if (registrarFalha(id, e.getMessage()) == ResultadoParcela.TRAVADA) {
+                // A falha não foi gravada nem publicada: a parcela precisa voltar à agenda.
+                travados.incrementAndGet();
+                return ResultadoParcela.TRAVADA;
+            }
+            return ResultadoParcela.FALHA;
+        }
+    }
+    private ResultadoParcela registrarFalha(Long id, String erro) {
+        try {
+            return transactionTemplate.execute(status -> {
+                PagamentoAgendado pagamento = pagamentoAgendadoRepository.findByIdParaProcessamento(id).orElse(null);
+                if (pagamento == null) {
+                    return travadoOuIgnorado(id);
+                }
+                LocalDateTime proximaTentativa = politicaTentativas.proximaTentativa(
+                    pagamento.getTentativas() + 1, LocalDateTime.now(clock));
+                pagamento.registrarFalha(erro, proximaTentativa);
+                if (proximaTentativa == null) {
+                    esgotados.incrementAndGet();
+                }
+                eventPublisher.publishEvent(new PagamentoAgendadoAlteradoEvent(this, pagamento));
+                return ResultadoParcela.FALHA;
+            });
+        } catch (Exception e) {
+            System.err.println("Erro ao registrar falha do pagamento ID " + id + ": " + e.getMessage());
+            return ResultadoParcela.FALHA;
+        }
+    }
+    /**
+     * O SKIP LOCKED não distingue linha travada de linha apagada; só a primeira deve ser
+     * tentada de novo.
+     */
+    private ResultadoParcela travadoOuIgnorado(Long id) {
+        return pagamentoAgendadoRepository.existsById(id) ? ResultadoParcela.TRAVADA : ResultadoParcela.IGNORADA;
+    }
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("pagamentos.agendados.parcelas", processados, AtomicLong::get)
+            .tag("resultado", "processada")
+            .register(registry);
+        FunctionCounter.builder("pagamentos.agendados.parcelas", falhas, AtomicLong::get)
+            .tag("resultado", "falha")
+            .register(registry);
+        FunctionCounter.builder("pagamentos.agendados.parcelas", ignorados, AtomicLong::get)
+            .tag("resultado", "ignorada")
+            .register(registry);
+        FunctionCounter.builder("pagamentos.agendados.parcelas", travados, AtomicLong::get)
+            .tag("resultado", "travada")
+            .register(registry);
+        FunctionCounter.builder("pagamentos.agendados.falhas.esgotadas", esgotados, AtomicLong::get)
+            .register(registry);
+        FunctionTimer.builder("pagamentos.agendados.execucao", this,
+                p -> p.execucoes.get(), p -> p.nanosExecucao.get(), TimeUnit.NANOSECONDS)
+            .register(registry);
+        Gauge.builder("pagamentos.agendados.execucao.vazao", this, p -> p.vazaoUltimaExecucao)
+            .baseUnit("parcelas/s")
+            .register(registry);
+    }
+}
@@ -0,0 +1,258 @@
+package br.com.caixaeletronico.service;
+import br.com.caixaeletronico.model.CombinacaoCedulas;
+import br.com.caixaeletronico.model.ReservaSaque;
+import br.com.caixaeletronico.model.VetorCedulas;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+/**
+ * Tabela em memória de reservas de saque.
+ *
+ * Ao solicitar opções, as cédulas necessárias são retidas por um prazo curto; a confirmação
+ * apenas consulta a reserva, sem recalcular as opções. As retenções são mantidas por
+ * terminal (ou para o estoque global), cada uma com seu próprio bloqueio. Reservas vencidas
+ * são liberadas por uma roda de expiração com uma fila por tick de {@value #DURACAO_TICK_MS} ms.
+ *
+ * Cada conta tem no máximo uma reserva por terminal: pedir opções de novo substitui (e libera)
+ * a anterior, e o total de reservas ativas da conta é limitado por
+ * {@code saque.reserva.maximo-por-conta}, para que ninguém retenha o estoque só consultando.
+ */
+@Service
+public class ReservaSaqueService {
+    private static final long DURACAO_TICK_MS = 1000;
+    private static final int TAMANHO_RODA = 64;
+    @Autowired
+    private SaqueOptionService saqueOptionService;
+    @Autowired
+    private Clock clock;
+    @Value("${saque.reserva.ttl-segundos:120}")
+    private long ttlSegundos;
+    @Value("${saque.reserva.maximo-por-conta:3}")
+    private int maximoPorConta;
+    private final Map<UUID, ReservaSaque> reservas = new ConcurrentHashMap<>();
+    private final List<Queue<UUID>> roda = new ArrayList<>(TAMANHO_RODA);
+    private final Map<String, Retencao> retencoes = new ConcurrentHashMap<>();
+    /**
+     * Reserva ativa de cada conta por terminal (chave {@link #chaveTerminal(String)}); a conta
+     * sai do mapa quando não tem mais reservas.
+     */
+    private final Map<Long, Map<String, UUID>> reservasPorConta = new ConcurrentHashMap<>();
+    private long ultimoTickProcessado;
+    public ReservaSaqueService() {
+        for (int i = 0; i < TAMANHO_RODA; i++) {
+            roda.add(new ConcurrentLinkedQueue<>());
+        }
+    }
+    @PostConstruct
+    public void inicializar() {
+        ultimoTickProcessado = clock.millis() / DURACAO_TICK_MS;
+    }
+    public ReservaSaque reservar(Long contaId, int valor) {
+        return reservar(contaId, null, valor);
+    }
+    public ReservaSaque reservar(Long contaId, String terminalId, int valor) {
+        liberarReservaDaConta(contaId, terminalId);
+        Map<String, UUID> ativas = reservasPorConta.get(contaId);
+        if (ativas != null && ativas.size() >= maximoPorConta) {
+            throw new RuntimeException("Limite de " + maximoPorConta + " reservas de saque ativas por conta atingido");
+        }
+        List<CombinacaoCedulas> opcoes = saqueOptionService.obterOpcoesRaques(contaId, terminalId, valor);
+        VetorCedulas estoque = saqueOptionService.obterEstoqueAtual(terminalId);
+        Retencao retencaoTerminal = retencao(terminalId);
+        ReservaSaque reserva;
+        synchronized (retencaoTerminal) {
+            VetorCedulas disponivel = estoque.subtrair(retencaoTerminal.cedulas);
+            List<CombinacaoCedulas> ofertadas = new ArrayList<>();
+            int[] retencao = new int[VetorCedulas.DIMENSAO];
+            for (CombinacaoCedulas opcao : opcoes) {
+                VetorCedulas cedulas = opcao.getMapaCedulas();
+                if (!cedulas.cabeEm(disponivel)) {
+                    continue;
+                }
+                ofertadas.add(opcao);
+                for (int i = 0; i < VetorCedulas.DIMENSAO; i++) {
+                    retencao[i] = Math.max(retencao[i], cedulas.getQuantidade(i));
+                }
+            }
+            if (ofertadas.isEmpty() && !opcoes.isEmpty()) {
+                throw new RuntimeException("As cédulas para este valor estão reservadas no momento. Tente novamente em instantes");
+            }
+            long expiraEm = clock.millis() + ttlSegundos * 1000;
+            reserva = new ReservaSaque(UUID.randomUUID(), contaId, terminalId, valor, ofertadas,
+                VetorCedulas.envolvendo(retencao), expiraEm);
+            retencaoTerminal.cedulas = retencaoTerminal.cedulas.somar(reserva.getCedulasRetidas());
+            reservas.put(reserva.getIdReserva(), reserva);
+        }
+        registrarNaConta(reserva);
+        roda.get(posicaoNaRoda(reserva.getExpiraEmMillis())).add(reserva.getIdReserva());
+        return reserva;
+    }
+    /**
+     * Retém só as cédulas da combinação escolhida, para o saque confirmado sem reserva prévia:
+     * a combinação precisa caber no estoque que não está reservado para outras contas. A
+     * reserva da própria conta no terminal é substituída. A retenção não entra na tabela e
+     * deve ser desfeita com {@link #liberarCedulas(ReservaSaque)} após o saque.
+     */
+    public ReservaSaque reterCombinacao(Long contaId, String terminalId, int valor, CombinacaoCedulas combinacao) {
+        liberarReservaDaConta(contaId, terminalId);
+        VetorCedulas estoque = saqueOptionService.obterEstoqueAtual(terminalId);
+        Retencao retencaoTerminal = retencao(terminalId);
+        synchronized (retencaoTerminal) {
+            if (!combinacao.getMapaCedulas().cabeEm(estoque.subtrair(retencaoTerminal.cedulas))) {
+                throw new RuntimeException("As cédulas desta opção estão reservadas no momento. Solicite novas opções de saque");
+            }
+            ReservaSaque retencao = new ReservaSaque(UUID.randomUUID(), contaId, terminalId, valor, List.of(combinacao),
+                combinacao.getMapaCedulas(), clock.millis() + ttlSegundos * 1000);
+            retencaoTerminal.cedulas = retencaoTerminal.cedulas.somar(retencao.getCedulasRetidas());
+            return retencao;
+        }
+    }
+    /**
+     * Retira a reserva da tabela para confirmação. As cédulas continuam retidas até
+     * {@link #liberarCedulas(ReservaSaque)}, chamado após a execução do saque.
+     */
+    public ReservaSaque consumir(UUID idReserva, Long contaId, int valor) {
+        return consumir(idReserva, contaId, null, valor);
+    }
+    public ReservaSaque consumir(UUID idReserva, Long contaId, String terminalId, int valor) {
+        ReservaSaque reserva = reservas.get(idReserva);
+        if (reserva == null || reserva.isExpirada(clock.millis())) {
+            throw new RuntimeException("Reserva de saque expirada ou inexistente. Solicite novas opções de saque");
+        }
+        if (!reserva.getContaId().equals(contaId) || reserva.getValor() != valor
+                || !Objects.equals(reserva.getTerminalId(), terminalId)) {
+            throw new RuntimeException("Reserva de saque não corresponde à conta, ao terminal ou ao valor informado");
+        }
+        if (!reservas.remove(idReserva, reserva)) {
+            throw new RuntimeException("Reserva de saque já utilizada");
+        }
+        removerDaConta(reserva);
+        return reserva;
+    }
+    public void liberarCedulas(ReservaSaque reserva) {
+        Retencao retencaoTerminal = retencao(reserva.getTerminalId());
+        synchronized (retencaoTerminal) {
+            retencaoTerminal.cedulas = retencaoTerminal.cedulas.subtrair(reserva.getCedulasRetidas());
+        }
+    }
+    public VetorCedulas getCedulasRetidas() {
+        return getCedulasRetidas(null);
+    }
+    public VetorCedulas getCedulasRetidas(String terminalId) {
+        Retencao retencaoTerminal = retencao(terminalId);
+        synchronized (retencaoTerminal) {
+            return retencaoTerminal.cedulas;
+        }
+    }
+    public int getTotalReservas() {
+        return reservas.size();
+    }
+    public int getTotalReservas(Long contaId) {
+        Map<String, UUID> ativas = reservasPorConta.get(contaId);
+        return ativas != null ? ativas.size() : 0;
+    }
+    @Scheduled(fixedRate = DURACAO_TICK_MS)
+    public void expirarReservas() {
+        long agora = clock.millis();
+        long tickAtual = agora / DURACAO_TICK_MS;
+        long primeiroTick = Math.max(ultimoTickProcessado + 1, tickAtual - TAMANHO_RODA + 1);
+        for (long tick = primeiroTick; tick <= tickAtual; tick++) {
+            Queue<UUID> fila = roda.get((int) (tick % TAMANHO_RODA));
+            for (int pendentes = fila.size(); pendentes > 0; pendentes--) {
+                UUID idReserva = fila.poll();
+                if (idReserva == null) {
+                    break;
+                }
+                ReservaSaque reserva = reservas.get(idReserva);
+                if (reserva == null) {
+                    continue;
+                }
+                if (!reserva.isExpirada(agora)) {
+                    fila.add(idReserva);
+                } else if (reservas.remove(idReserva, reserva)) {
+                    removerDaConta(reserva);
+                    liberarCedulas(reserva);
+                }
+            }
+        }
+        ultimoTickProcessado = tickAtual;
+    }
+    /**
+     * Retira da tabela e libera a reserva que a conta tem no terminal, se houver.
+     */
+    private void liberarReservaDaConta(Long contaId, String terminalId) {
+        UUID[] anterior = new UUID[1];
+        reservasPorConta.computeIfPresent(contaId, (conta, ativas) -> {
+            anterior[0] = ativas.remove(chaveTerminal(terminalId));
+            return ativas.isEmpty() ? null : ativas;
+        });
+        if (anterior[0] != null) {
+            ReservaSaque reserva = reservas.get(anterior[0]);
+            if (reserva != null && reservas.remove(anterior[0], reserva)) {
+                liberarCedulas(reserva);
+            }
+        }
+    }
+    /**
+     * Registra a reserva como a da conta no terminal. Se uma requisição concorrente da mesma
+     * conta registrou outra antes, a outra é substituída; se a conta chegou ao limite nesse
+     * meio-tempo, a nova é desfeita.
+     */
+    private void registrarNaConta(ReservaSaque reserva) {
+        UUID[] substituida = new UUID[1];
+        boolean[] excedeu = new boolean[1];
+        reservasPorConta.compute(reserva.getContaId(), (conta, ativas) -> {
+            Map<String, UUID> mapa = ativas != null ? ativas : new HashMap<>();
+            String terminal = chaveTerminal(reserva.getTerminalId());
+            if (!mapa.containsKey(terminal) && mapa.size() >= maximoPorConta) {
+                excedeu[0] = true;
+            } else {
+                substituida[0] = mapa.put(terminal, reserva.getIdReserva());
+            }
+            return mapa.isEmpty() ? null : mapa;
+        });
+        if (excedeu[0]) {
+            reservas.remove(reserva.getIdReserva());
+            liberarCedulas(reserva);
+            throw new RuntimeException("Limite de " + maximoPorConta + " reservas de saque ativas por conta atingido");
+        }
+        if (substituida[0] != null) {
+            ReservaSaque anterior = reservas.get(substituida[0]);
+            if (anterior != null && reservas.remove(substituida[0], anterior)) {
+                liberarCedulas(anterior);
+            }
+        }
+    }
+    private void removerDaConta(ReservaSaque reserva) {
+        reservasPorConta.computeIfPresent(reserva.getContaId(), (conta, ativas) -> {
+            ativas.remove(chaveTerminal(reserva.getTerminalId()), reserva.getIdReserva());
+            return ativas.isEmpty() ? null : ativas;
+        });
+    }
+    private Retencao retencao(String terminalId) {
+        return retencoes.computeIfAbsent(chaveTerminal(terminalId), t -> new Retencao());
+    }
+    // ConcurrentHashMap não aceita chave nula: o estoque global usa a string vazia.
+    private static String chaveTerminal(String terminalId) {
+        return terminalId != null ? terminalId : "";
+    }
+    private int posicaoNaRoda(long expiraEmMillis) {
+        long tick = (expiraEmMillis + DURACAO_TICK_MS - 1) / DURACAO_TICK_MS;
+        return (int) (tick % TAMANHO_RODA);
+    }
+    private static final class Retencao {
+        private VetorCedulas cedulas = VetorCedulas.VAZIO;
+    }
+}
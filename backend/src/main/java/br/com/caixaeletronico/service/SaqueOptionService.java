@@ -1,69 +1,224 @@
 package br.com.caixaeletronico.service;
+import br.com.caixaeletronico.event.EstoqueAlteradoEvent;
 import br.com.caixaeletronico.model.CombinacaoCedulas;
 import br.com.caixaeletronico.model.EstoqueGlobal;
-import br.com.caixaeletronico.repository.EstoqueGlobalRepository;
+import br.com.caixaeletronico.model.VetorCedulas;
 import br.com.caixaeletronico.strategy.NotesDispenseStrategy;
 import br.com.caixaeletronico.strategy.NotesStrategyFactory;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
+/**
+ * Gera e mantém em cache as opções de saque por valor, para o estoque global ou para os
+ * slots de um terminal.
+ *
+ * As entradas são indexadas por (terminal, valor, versão do estoque). Cada terminal tem sua
+ * própria versão, incrementada a cada alteração confirmada nos seus slots, de modo que
+ * opções calculadas sobre um estoque antigo deixam de ser encontradas imediatamente sem
+ * afetar os demais terminais. O cache é limitado e descarta primeiro as entradas mais
+ * antigas.
+ */
 @Service
-public class SaqueOptionService {
+public class SaqueOptionService implements MeterBinder {
     @Autowired
-    private EstoqueGlobalRepository estoqueGlobalRepository;
+    private MotorEstoque motorEstoque;
     @Autowired
     private NotesStrategyFactory strategyFactory;
-    private Map<String, List<CombinacaoCedulas>> cache = new HashMap<>();
-    private Map<String, Long> cacheTimestamps = new HashMap<>();
-    private final long CACHE_TTL = 300000;
+    @Value("${saque.opcoes.cache.tamanho-maximo:1000}")
+    private int tamanhoMaximoCache;
+    private final Map<ChaveCache, List<CombinacaoCedulas>> cache = new ConcurrentHashMap<>();
+    private final Queue<ChaveCache> ordemInsercao = new ConcurrentLinkedQueue<>();
+    private final Map<String, AtomicLong> versoesEstoque = new ConcurrentHashMap<>();
+    private final AtomicLong acertos = new AtomicLong();
+    private final AtomicLong falhas = new AtomicLong();
+    private final AtomicLong remocoes = new AtomicLong();
+    private final Map<String, EstoqueVersionado> estoquesAtuais = new ConcurrentHashMap<>();
     public List<CombinacaoCedulas> obterOpcoesRaques(Long contaId, int valor) {
-        String cacheKey = "global_" + valor;
-        if (isCacheValid(cacheKey)) {
-            return cache.get(cacheKey);
+        return obterOpcoesRaques(contaId, null, valor);
+    }
+    public List<CombinacaoCedulas> obterOpcoesRaques(Long contaId, String terminalId, int valor) {
+        String terminal = chaveTerminal(terminalId);
+        ChaveCache chave = new ChaveCache(terminal, valor, versaoAtual(terminal));
+        List<CombinacaoCedulas> emCache = cache.get(chave);
+        if (emCache != null) {
+            acertos.incrementAndGet();
+            return emCache;
         }
-        List<EstoqueGlobal> estoques = estoqueGlobalRepository.findByQuantidadeGreaterThan(0);
+        falhas.incrementAndGet();
+        VetorCedulas atual = motorEstoque.obterQuantidades(terminalId);
+        estoquesAtuais.put(terminal, new EstoqueVersionado(chave.versao, atual));
+        List<EstoqueGlobal> estoques = atual.paraEstoque();
         List<CombinacaoCedulas> todasCombinacoes = new ArrayList<>();
         for (NotesDispenseStrategy strategy : strategyFactory.getAllStrategies()) {
             List<CombinacaoCedulas> combinacoes = strategy.generateCombinations(valor, estoques);
             todasCombinacoes.addAll(combinacoes);
         }
-        List<CombinacaoCedulas> resultado = consolidarEOrdenar(todasCombinacoes);
-        cache.put(cacheKey, resultado);
-        cacheTimestamps.put(cacheKey, System.currentTimeMillis());
+        List<CombinacaoCedulas> resultado = Collections.unmodifiableList(consolidarEOrdenar(todasCombinacoes));
+        if (cache.putIfAbsent(chave, resultado) == null) {
+            ordemInsercao.add(chave);
+            removerExcedentes();
+        }
         return resultado;
     }
-    private boolean isCacheValid(String cacheKey) {
-        if (!cache.containsKey(cacheKey)) {
-            return false;
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleEstoqueAlterado(EstoqueAlteradoEvent event) {
+        String terminal = chaveTerminal(event.getTerminalId());
+        long versaoAtual = versoesEstoque.computeIfAbsent(terminal, t -> new AtomicLong()).incrementAndGet();
+        ordemInsercao.removeIf(chave -> chave.isAnterior(terminal, versaoAtual));
+        for (ChaveCache chave : cache.keySet()) {
+            if (chave.isAnterior(terminal, versaoAtual) && cache.remove(chave) != null) {
+                remocoes.incrementAndGet();
+            }
         }
-        Long timestamp = cacheTimestamps.get(cacheKey);
-        if (timestamp == null) {
-            return false;
+    }
+    public VetorCedulas obterEstoqueAtual() {
+        return obterEstoqueAtual(null);
+    }
+    /**
+     * Quantidades em estoque do terminal na versão atual, relidas do {@link MotorEstoque}
+     * apenas quando a versão muda.
+     */
+    public VetorCedulas obterEstoqueAtual(String terminalId) {
+        String terminal = chaveTerminal(terminalId);
+        long versao = versaoAtual(terminal);
+        EstoqueVersionado atual = estoquesAtuais.get(terminal);
+        if (atual != null && atual.versao == versao) {
+            return atual.cedulas;
+        }
+        VetorCedulas cedulas = motorEstoque.obterQuantidades(terminalId);
+        estoquesAtuais.put(terminal, new EstoqueVersionado(versao, cedulas));
+        return cedulas;
+    }
+    public long getVersaoEstoque() {
+        return getVersaoEstoque(null);
+    }
+    public long getVersaoEstoque(String terminalId) {
+        return versaoAtual(chaveTerminal(terminalId));
+    }
+    public Map<String, Object> obterEstatisticasCache() {
+        Map<String, Object> estatisticas = new LinkedHashMap<>();
+        estatisticas.put("versaoEstoque", getVersaoEstoque());
+        estatisticas.put("tamanho", cache.size());
+        estatisticas.put("tamanhoMaximo", tamanhoMaximoCache);
+        estatisticas.put("acertos", acertos.get());
+        estatisticas.put("falhas", falhas.get());
+        estatisticas.put("remocoes", remocoes.get());
+        return estatisticas;
+    }
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("saque.opcoes.cache.requisicoes", acertos, AtomicLong::get)
+            .tag("resultado", "acerto")
+            .register(registry);
+        FunctionCounter.builder("saque.opcoes.cache.requisicoes", falhas, AtomicLong::get)
+            .tag("resultado", "falha")
+            .register(registry);
+        FunctionCounter.builder("saque.opcoes.cache.remocoes", remocoes, AtomicLong::get)
+            .register(registry);
+        Gauge.builder("saque.opcoes.cache.tamanho", cache, Map::size)
+            .register(registry);
+    }
+    private void removerExcedentes() {
+        while (cache.size() > tamanhoMaximoCache) {
+            ChaveCache maisAntiga = ordemInsercao.poll();
+            if (maisAntiga == null) {
+                return;
+            }
+            if (cache.remove(maisAntiga) != null) {
+                remocoes.incrementAndGet();
+            }
         }
-        return System.currentTimeMillis() - timestamp < CACHE_TTL;
     }
+    /**
+     * Remove repetidas e as que não têm identificador (mais de 65535 notas de uma cédula), que
+     * não poderiam ser escolhidas depois.
+     */
     private List<CombinacaoCedulas> consolidarEOrdenar(List<CombinacaoCedulas> combinacoes) {
-        Map<String, CombinacaoCedulas> combinacoesUnicas = new LinkedHashMap<>();
+        Map<VetorCedulas, CombinacaoCedulas> combinacoesUnicas = new LinkedHashMap<>();
         for (CombinacaoCedulas combinacao : combinacoes) {
-            String descricao = combinacao.getDescricaoLegivel();
-            if (!combinacoesUnicas.containsKey(descricao)) {
-                combinacoesUnicas.put(descricao, combinacao);
+            if (!combinacao.getMapaCedulas().isIdentificavel()) {
+                continue;
             }
+            combinacoesUnicas.putIfAbsent(combinacao.getMapaCedulas(), combinacao);
         }
         return combinacoesUnicas.values().stream()
-            .sorted(Comparator.comparingInt(CombinacaoCedulas::getQuantidadeTotalDeNotas))
+            .sorted(Comparator.comparing(CombinacaoCedulas::getMapaCedulas))
             .collect(Collectors.toList());
     }
     public CombinacaoCedulas obterCombinacaoPorId(UUID idOpcao, Long contaId, int valor) {
-        List<CombinacaoCedulas> opcoes = obterOpcoesRaques(contaId, valor);
+        return obterCombinacaoPorId(idOpcao, contaId, null, valor);
+    }
+    public CombinacaoCedulas obterCombinacaoPorId(UUID idOpcao, Long contaId, String terminalId, int valor) {
+        VetorCedulas cedulas = VetorCedulas.doIdentificador(idOpcao);
+        if (cedulas == null || cedulas.getValorTotal() != valor) {
+            throw new RuntimeException("Opção de saque não encontrada");
+        }
+        List<CombinacaoCedulas> opcoes = obterOpcoesRaques(contaId, terminalId, valor);
         return opcoes.stream()
-            .filter(combinacao -> combinacao.getIdOpcao().equals(idOpcao))
+            .filter(combinacao -> combinacao.getMapaCedulas().equals(cedulas))
             .findFirst()
             .orElseThrow(() -> new RuntimeException("Opção de saque não encontrada"));
     }
     public void limparCache() {
         cache.clear();
-        cacheTimestamps.clear();
+        ordemInsercao.clear();
+    }
+    /**
+     * Só lê: o contador é criado na primeira alteração de estoque do terminal, nunca a partir
+     * de um id vindo da requisição, que ainda não foi validado.
+     */
+    private long versaoAtual(String terminal) {
+        AtomicLong versao = versoesEstoque.get(terminal);
+        return versao != null ? versao.get() : 0L;
+    }
+    // ConcurrentHashMap não aceita chave nula: o estoque global usa a string vazia.
+    private static String chaveTerminal(String terminalId) {
+        return terminalId != null ? terminalId : "";
+    }
+    private static final class EstoqueVersionado {
+        private final long versao;
+        private final VetorCedulas cedulas;
+        private EstoqueVersionado(long versao, VetorCedulas cedulas) {
+            this.versao = versao;
+            this.cedulas = cedulas;
+        }
+    }
+    private static final class ChaveCache {
+        private final String terminal;
+        private final int valor;
+        private final long versao;
+        private ChaveCache(String terminal, int valor, long versao) {
+            this.terminal = terminal;
+            this.valor = valor;
+            this.versao = versao;
+        }
+        private boolean isAnterior(String terminal, long versaoAtual) {
+            return versao < versaoAtual && this.terminal.equals(terminal);
+        }
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ChaveCache)) {
+                return false;
+            }
+            ChaveCache outra = (ChaveCache) o;
+            return valor == outra.valor && versao == outra.versao && terminal.equals(outra.terminal);
+        }
+        @Override
+        public int hashCode() {
+            return 31 * (31 * terminal.hashCode() + Integer.hashCode(valor)) + Long.hashCode(versao);
+        }
     }
 }
@@ -1,49 +1,31 @@
 package br.com.caixaeletronico.service;
-import br.com.caixaeletronico.command.CommandFactory;
-import br.com.caixaeletronico.command.OperacaoCommand;
-import br.com.caixaeletronico.model.PagamentoAgendado;
-import br.com.caixaeletronico.model.TipoOperacao;
-import br.com.caixaeletronico.repository.PagamentoAgendadoRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import java.util.List;
 @Service
-@Transactional
 public class ScheduledPaymentJob {
     @Autowired
-    private PaymentScheduleService paymentScheduleService;
+    private ProcessadorPagamentosAgendados processadorPagamentosAgendados;
     @Autowired
-    private CommandFactory commandFactory;
-    @Autowired
-    private PagamentoAgendadoRepository pagamentoAgendadoRepository;
-    @Scheduled(fixedRate = 3600000)
+    private AgendaPagamentos agendaPagamentos;
+    /**
+     * Reconciliação diária: cobra o que ficou vencido fora da agenda (falhas, pagamentos de
+     * instâncias que caíram) e recarrega a agenda com a janela dos próximos dias. As parcelas
+     * no horário são disparadas pela {@link AgendaPagamentos}.
+     */
+    @Scheduled(cron = "${pagamentos.agenda.recarga-cron:0 30 0 * * *}")
     public void processarPagamentosVencidos() {
         try {
-            List<PagamentoAgendado> pagamentosVencidos = paymentScheduleService.obterPagamentosVencidos();
-            for (PagamentoAgendado pagamento : pagamentosVencidos) {
-                try {
-                    processarPagamento(pagamento);
-                } catch (Exception e) {
-                    System.err.println("Erro ao processar pagamento ID " + pagamento.getId() + ": " + e.getMessage());
-                }
-            }
+            ProcessadorPagamentosAgendados.ResumoExecucao resumo = processadorPagamentosAgendados.processarVencidos();
+            System.out.println("Pagamentos agendados: " + resumo.processados() + " processados, " +
+                resumo.falhas() + " falhas, " + resumo.ignorados() + " ignorados em " + resumo.duracaoMs() + " ms");
         } catch (Exception e) {
             System.err.println("Erro no job de pagamentos agendados: " + e.getMessage());
         }
-    }
-    private void processarPagamento(PagamentoAgendado pagamento) {
         try {
-            OperacaoCommand command = commandFactory.criarCommand(TipoOperacao.PAGAMENTO_PARCELA, 
-                                                                pagamento.getId());
-            command.executar();
-            pagamento.processarParcela();
-            pagamentoAgendadoRepository.save(pagamento);
-            System.out.println("Pagamento processado com sucesso: ID " + pagamento.getId());
+            agendaPagamentos.recarregar();
         } catch (Exception e) {
-            System.err.println("Falha ao processar pagamento ID " + pagamento.getId() + ": " + e.getMessage());
-            throw e;
+            System.err.println("Erro ao recarregar a agenda de pagamentos: " + e.getMessage());
         }
     }
     @Scheduled(cron = "0 0 1 * * ?")
@@ -1,7 +1,7 @@
 package br.com.caixaeletronico.strategy;
 import br.com.caixaeletronico.model.CombinacaoCedulas;
 import br.com.caixaeletronico.model.ICedula;
-import br.com.caixaeletronico.model.ValorCedula;
+import br.com.caixaeletronico.model.VetorCedulas;
 import org.springframework.stereotype.Component;
 import java.util.*;
 @Component
@@ -9,40 +9,40 @@ public class IntermediateNotesStrategy implements NotesDispenseStrategy {
     @Override
     public List<CombinacaoCedulas> generateCombinations(int valor, List<? extends ICedula> cedulas) {
         List<CombinacaoCedulas> combinacoes = new ArrayList<>();
-        List<? extends ICedula> cedulasDisponiveis = cedulas.stream()
-            .filter(cedula -> cedula.getQuantidade() > 0)
-            .toList();
-        if (cedulasDisponiveis.isEmpty()) {
+        VetorCedulas estoque = VetorCedulas.doEstoque(cedulas);
+        int[] disponiveis = new int[VetorCedulas.DIMENSAO];
+        int totalDisponiveis = 0;
+        for (int i = 0; i < VetorCedulas.DIMENSAO; i++) {
+            if (estoque.getQuantidade(i) > 0) {
+                disponiveis[totalDisponiveis++] = i;
+            }
+        }
+        if (totalDisponiveis == 0) {
             return combinacoes;
         }
-        Map<ValorCedula, Integer> combinacao = new HashMap<>();
-        List<? extends ICedula> cedulasOrdenadas = new ArrayList<>(cedulasDisponiveis);
-        cedulasOrdenadas.sort((a, b) -> Integer.compare(a.getValorCedula().getValor(), b.getValorCedula().getValor()));
+        int[] combinacao = new int[VetorCedulas.DIMENSAO];
         int valorRestante = valor;
-        int meioIndice = cedulasOrdenadas.size() / 2;
-        for (int i = meioIndice; i < cedulasOrdenadas.size(); i++) {
-            ICedula cedula = cedulasOrdenadas.get(i);
-            int valorNota = cedula.getValorCedula().getValor();
-            int quantidadeMaxima = Math.min(cedula.getQuantidade(), valorRestante / valorNota);
-            if (quantidadeMaxima > 0) {
-                combinacao.put(cedula.getValorCedula(), quantidadeMaxima);
-                valorRestante -= quantidadeMaxima * valorNota;
-            }
+        int meioIndice = totalDisponiveis / 2;
+        for (int i = meioIndice; i < totalDisponiveis; i++) {
+            valorRestante = retirar(disponiveis[i], estoque, combinacao, valorRestante);
         }
         for (int i = meioIndice - 1; i >= 0 && valorRestante > 0; i--) {
-            ICedula cedula = cedulasOrdenadas.get(i);
-            int valorNota = cedula.getValorCedula().getValor();
-            int quantidadeMaxima = Math.min(cedula.getQuantidade(), valorRestante / valorNota);
-            if (quantidadeMaxima > 0) {
-                combinacao.put(cedula.getValorCedula(), quantidadeMaxima);
-                valorRestante -= quantidadeMaxima * valorNota;
-            }
+            valorRestante = retirar(disponiveis[i], estoque, combinacao, valorRestante);
         }
         if (valorRestante == 0) {
-            combinacoes.add(new CombinacaoCedulas(combinacao));
+            combinacoes.add(new CombinacaoCedulas(VetorCedulas.envolvendo(combinacao)));
         }
         return combinacoes;
     }
+    private int retirar(int indice, VetorCedulas estoque, int[] combinacao, int valorRestante) {
+        int valorNota = VetorCedulas.cedula(indice).getValor();
+        int quantidadeMaxima = Math.min(estoque.getQuantidade(indice), valorRestante / valorNota);
+        if (quantidadeMaxima > 0) {
+            combinacao[indice] = quantidadeMaxima;
+            valorRestante -= quantidadeMaxima * valorNota;
+        }
+        return valorRestante;
+    }
     @Override
     public String getStrategyName() {
         return "Estratégia Balanceada";
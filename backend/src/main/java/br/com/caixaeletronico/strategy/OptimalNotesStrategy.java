@@ -0,0 +1,173 @@
+package br.com.caixaeletronico.strategy;
+import br.com.caixaeletronico.model.CombinacaoCedulas;
+import br.com.caixaeletronico.model.ICedula;
+import br.com.caixaeletronico.model.VetorCedulas;
+import org.springframework.stereotype.Component;
+import java.util.*;
+/**
+ * Mochila limitada (bounded knapsack) por programação dinâmica.
+ *
+ * Encontra a combinação com menor número de notas respeitando a quantidade de cada cédula
+ * e, adicionalmente, um pequeno conjunto de Pareto que troca número de notas por menor
+ * esgotamento das cédulas escassas. Cada cédula é processada com janela deslizante por
+ * resíduo (fila monotônica), em O(cédulas x valor), usando apenas arrays primitivos.
+ */
+@Component
+public class OptimalNotesStrategy implements NotesDispenseStrategy {
+    private static final long ESCALA = 1024;
+    private static final long[] PESOS_ESCASSEZ = {0, 1, 4, 16};
+    private static final long INFINITO = Long.MAX_VALUE / 4;
+    /**
+     * Maior valor cuja área de trabalho fica guardada na thread para o próximo saque; acima
+     * dele a área é alocada só para a chamada, para não prender arrays grandes em cada thread
+     * do servidor.
+     */
+    static final int VALOR_MAXIMO_AREA_REUTILIZADA = 20_000;
+    private final ThreadLocal<AreaTrabalho> areaTrabalho = ThreadLocal.withInitial(AreaTrabalho::new);
+    @Override
+    public List<CombinacaoCedulas> generateCombinations(int valor, List<? extends ICedula> cedulas) {
+        List<CombinacaoCedulas> combinacoes = new ArrayList<>();
+        if (valor <= 0 || cedulas.isEmpty()) {
+            return combinacoes;
+        }
+        int[] indices = new int[cedulas.size()];
+        int[] valores = new int[cedulas.size()];
+        int[] limites = new int[cedulas.size()];
+        long[] custoEscassez = new long[cedulas.size()];
+        long capacidadeTotal = 0;
+        int n = 0;
+        for (ICedula cedula : cedulas) {
+            int quantidade = cedula.getQuantidade() != null ? cedula.getQuantidade() : 0;
+            int valorNota = cedula.getValorCedula().getValor();
+            if (quantidade <= 0 || valorNota > valor) {
+                continue;
+            }
+            indices[n] = cedula.getValorCedula().ordinal();
+            valores[n] = valorNota;
+            limites[n] = Math.min(quantidade, valor / valorNota);
+            custoEscassez[n] = (ESCALA + quantidade - 1) / quantidade;
+            capacidadeTotal += (long) limites[n] * valorNota;
+            n++;
+        }
+        if (n == 0 || capacidadeTotal < valor) {
+            return combinacoes;
+        }
+        int[][] solucoes = new int[PESOS_ESCASSEZ.length][];
+        long[] totalNotas = new long[PESOS_ESCASSEZ.length];
+        long[] esgotamento = new long[PESOS_ESCASSEZ.length];
+        long[] pesos = new long[n];
+        for (int p = 0; p < PESOS_ESCASSEZ.length; p++) {
+            for (int i = 0; i < n; i++) {
+                pesos[i] = ESCALA + PESOS_ESCASSEZ[p] * custoEscassez[i];
+            }
+            int[] quantidades = resolver(valor, valores, limites, pesos, n);
+            if (quantidades == null) {
+                return combinacoes;
+            }
+            solucoes[p] = quantidades;
+            for (int i = 0; i < n; i++) {
+                totalNotas[p] += quantidades[i];
+                esgotamento[p] += quantidades[i] * custoEscassez[i];
+            }
+        }
+        for (int p = 0; p < solucoes.length; p++) {
+            if (isDominadaOuRepetida(p, solucoes, totalNotas, esgotamento)) {
+                continue;
+            }
+            int[] combinacao = new int[VetorCedulas.DIMENSAO];
+            for (int i = 0; i < n; i++) {
+                combinacao[indices[i]] += solucoes[p][i];
+            }
+            combinacoes.add(new CombinacaoCedulas(VetorCedulas.envolvendo(combinacao)));
+        }
+        return combinacoes;
+    }
+    private boolean isDominadaOuRepetida(int p, int[][] solucoes, long[] totalNotas, long[] esgotamento) {
+        for (int q = 0; q < solucoes.length; q++) {
+            if (q == p) {
+                continue;
+            }
+            if (q < p && Arrays.equals(solucoes[q], solucoes[p])) {
+                return true;
+            }
+            boolean naoPior = totalNotas[q] <= totalNotas[p] && esgotamento[q] <= esgotamento[p];
+            boolean melhor = totalNotas[q] < totalNotas[p] || esgotamento[q] < esgotamento[p];
+            if (naoPior && melhor) {
+                return true;
+            }
+        }
+        return false;
+    }
+    private int[] resolver(int valor, int[] valores, int[] limites, long[] pesos, int n) {
+        AreaTrabalho area = valor <= VALOR_MAXIMO_AREA_REUTILIZADA ? areaTrabalho.get() : new AreaTrabalho();
+        area.garantirCapacidade(valor + 1, n);
+        long[] anterior = area.anterior;
+        long[] atual = area.atual;
+        int[] fila = area.fila;
+        Arrays.fill(anterior, 0, valor + 1, INFINITO);
+        anterior[0] = 0;
+        for (int i = 0; i < n; i++) {
+            int nota = valores[i];
+            int limite = limites[i];
+            long peso = pesos[i];
+            int[] escolha = area.escolhas[i];
+            for (int residuo = 0; residuo < nota && residuo <= valor; residuo++) {
+                int inicio = 0;
+                int fim = 0;
+                for (int j = 0, v = residuo; v <= valor; j++, v += nota) {
+                    if (anterior[v] < INFINITO) {
+                        long chave = anterior[v] - j * peso;
+                        while (fim > inicio && anterior[residuo + fila[fim - 1] * nota] - fila[fim - 1] * peso >= chave) {
+                            fim--;
+                        }
+                        fila[fim++] = j;
+                    }
+                    while (fim > inicio && fila[inicio] < j - limite) {
+                        inicio++;
+                    }
+                    if (fim > inicio) {
+                        int t = fila[inicio];
+                        atual[v] = anterior[residuo + t * nota] + (j - t) * peso;
+                        escolha[v] = j - t;
+                    } else {
+                        atual[v] = INFINITO;
+                        escolha[v] = 0;
+                    }
+                }
+            }
+            long[] troca = anterior;
+            anterior = atual;
+            atual = troca;
+        }
+        if (anterior[valor] >= INFINITO) {
+            return null;
+        }
+        int[] quantidades = new int[n];
+        int restante = valor;
+        for (int i = n - 1; i >= 0; i--) {
+            quantidades[i] = area.escolhas[i][restante];
+            restante -= quantidades[i] * valores[i];
+        }
+        return quantidades;
+    }
+    @Override
+    public String getStrategyName() {
+        return "Menor Quantidade de Notas";
+    }
+    private static final class AreaTrabalho {
+        private long[] anterior = new long[0];
+        private long[] atual = new long[0];
+        private int[] fila = new int[0];
+        private int[][] escolhas = new int[0][0];
+        private void garantirCapacidade(int tamanho, int cedulas) {
+            if (anterior.length < tamanho) {
+                anterior = new long[tamanho];
+                atual = new long[tamanho];
+                fila = new int[tamanho];
+                escolhas = new int[Math.max(cedulas, escolhas.length)][tamanho];
+            } else if (escolhas.length < cedulas) {
+                escolhas = new int[cedulas][anterior.length];
+            }
+        }
+    }
+}
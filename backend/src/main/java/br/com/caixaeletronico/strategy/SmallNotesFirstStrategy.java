@@ -1,7 +1,7 @@
 package br.com.caixaeletronico.strategy;
 import br.com.caixaeletronico.model.CombinacaoCedulas;
 import br.com.caixaeletronico.model.ICedula;
-import br.com.caixaeletronico.model.ValorCedula;
+import br.com.caixaeletronico.model.VetorCedulas;
 import org.springframework.stereotype.Component;
 import java.util.*;
 @Component
@@ -9,23 +9,23 @@ public class SmallNotesFirstStrategy implements NotesDispenseStrategy {
     @Override
     public List<CombinacaoCedulas> generateCombinations(int valor, List<? extends ICedula> cedulas) {
         List<CombinacaoCedulas> combinacoes = new ArrayList<>();
-        List<? extends ICedula> cedulasOrdenadas = new ArrayList<>(cedulas);
-        cedulasOrdenadas.sort((a, b) -> Integer.compare(a.getValorCedula().getValor(), b.getValorCedula().getValor()));
-        cedulasOrdenadas = cedulasOrdenadas.stream()
-            .filter(cedula -> cedula.getQuantidade() > 0)
-            .toList();
-        Map<ValorCedula, Integer> combinacao = new HashMap<>();
+        VetorCedulas estoque = VetorCedulas.doEstoque(cedulas);
+        int[] combinacao = new int[VetorCedulas.DIMENSAO];
         int valorRestante = valor;
-        for (ICedula cedula : cedulasOrdenadas) {
-            int valorNota = cedula.getValorCedula().getValor();
-            int quantidadeMaxima = Math.min(cedula.getQuantidade(), valorRestante / valorNota);
+        for (int i = 0; i < VetorCedulas.DIMENSAO; i++) {
+            int disponivel = estoque.getQuantidade(i);
+            if (disponivel <= 0) {
+                continue;
+            }
+            int valorNota = VetorCedulas.cedula(i).getValor();
+            int quantidadeMaxima = Math.min(disponivel, valorRestante / valorNota);
             if (quantidadeMaxima > 0) {
-                combinacao.put(cedula.getValorCedula(), quantidadeMaxima);
+                combinacao[i] = quantidadeMaxima;
                 valorRestante -= quantidadeMaxima * valorNota;
             }
         }
         if (valorRestante == 0) {
-            combinacoes.add(new CombinacaoCedulas(combinacao));
+            combinacoes.add(new CombinacaoCedulas(VetorCedulas.envolvendo(combinacao)));
         }
         return combinacoes;
     }
@@ -0,0 +1,117 @@
+package br.com.caixaeletronico.util;
+import br.com.caixaeletronico.model.OperationMemento;
+import br.com.caixaeletronico.model.VetorCedulas;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.Map;
+/**
+ * Codificação binária compacta de {@link OperationMemento}.
+ *
+ * Formato (versão 1): versão (1 byte), flags (1 byte; bit 0 = terminal presente), terminal
+ * (UTF modificado, se presente), número de contas (varint) seguido de, para cada conta, id
+ * (varint), escala (1 byte) e valor sem escala (varint zigzag) da variação de saldo; por
+ * fim, uma máscara de 7 bits das cédulas com variação e as variações dessas cédulas
+ * (varint zigzag). Um saque típico ocupa cerca de 10 bytes.
+ */
+public final class MementoCodec {
+    private static final int VERSAO = 1;
+    private static final int FLAG_TERMINAL = 1;
+    private MementoCodec() {}
+    public static byte[] codificar(OperationMemento memento) {
+        if (memento.isLegado()) {
+            throw new IllegalArgumentException("Memento no formato legado não pode ser codificado");
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        try (DataOutputStream saida = new DataOutputStream(bytes)) {
+            saida.writeByte(VERSAO);
+            saida.writeByte(memento.getTerminalId() != null ? FLAG_TERMINAL : 0);
+            if (memento.getTerminalId() != null) {
+                saida.writeUTF(memento.getTerminalId());
+            }
+            Map<Long, BigDecimal> variacoesSaldo = memento.getVariacoesSaldo() != null
+                ? memento.getVariacoesSaldo() : Map.of();
+            escreverVarLong(saida, variacoesSaldo.size());
+            for (Map.Entry<Long, BigDecimal> entrada : variacoesSaldo.entrySet()) {
+                BigDecimal variacao = entrada.getValue();
+                escreverVarLong(saida, entrada.getKey());
+                saida.writeByte(variacao.scale());
+                escreverVarLong(saida, zigzag(variacao.unscaledValue().longValueExact()));
+            }
+            VetorCedulas cedulas = memento.getVariacoesCedulas() != null
+                ? memento.getVariacoesCedulas() : VetorCedulas.VAZIO;
+            int mascara = 0;
+            for (int i = 0; i < VetorCedulas.DIMENSAO; i++) {
+                if (cedulas.getQuantidade(i) != 0) {
+                    mascara |= 1 << i;
+                }
+            }
+            saida.writeByte(mascara);
+            for (int i = 0; i < VetorCedulas.DIMENSAO; i++) {
+                if (cedulas.getQuantidade(i) != 0) {
+                    escreverVarLong(saida, zigzag(cedulas.getQuantidade(i)));
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Erro ao codificar memento", e);
+        }
+        return bytes.toByteArray();
+    }
+    public static OperationMemento decodificar(byte[] dados) {
+        try (DataInputStream entrada = new DataInputStream(new ByteArrayInputStream(dados))) {
+            int versao = entrada.readUnsignedByte();
+            if (versao != VERSAO) {
+                throw new IllegalArgumentException("Versão de memento não suportada: " + versao);
+            }
+            int flags = entrada.readUnsignedByte();
+            String terminalId = (flags & FLAG_TERMINAL) != 0 ? entrada.readUTF() : null;
+            int contas = (int) lerVarLong(entrada);
+            Map<Long, BigDecimal> variacoesSaldo = new LinkedHashMap<>();
+            for (int i = 0; i < contas; i++) {
+                long contaId = lerVarLong(entrada);
+                int escala = entrada.readByte();
+                long semEscala = deszigzag(lerVarLong(entrada));
+                variacoesSaldo.put(contaId, new BigDecimal(BigInteger.valueOf(semEscala), escala));
+            }
+            int mascara = entrada.readUnsignedByte();
+            int[] quantidades = new int[VetorCedulas.DIMENSAO];
+            for (int i = 0; i < VetorCedulas.DIMENSAO; i++) {
+                if ((mascara & (1 << i)) != 0) {
+                    quantidades[i] = Math.toIntExact(deszigzag(lerVarLong(entrada)));
+                }
+            }
+            return new OperationMemento(variacoesSaldo, VetorCedulas.envolvendo(quantidades), terminalId);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Memento binário inválido", e);
+        }
+    }
+    private static long zigzag(long valor) {
+        return (valor << 1) ^ (valor >> 63);
+    }
+    private static long deszigzag(long valor) {
+        return (valor >>> 1) ^ -(valor & 1);
+    }
+    private static void escreverVarLong(DataOutputStream saida, long valor) throws IOException {
+        while ((valor & ~0x7FL) != 0) {
+            saida.writeByte((int) ((valor & 0x7F) | 0x80));
+            valor >>>= 7;
+        }
+        saida.writeByte((int) valor);
+    }
+    private static long lerVarLong(DataInputStream entrada) throws IOException {
+        long valor = 0;
+        for (int deslocamento = 0; deslocamento < 64; deslocamento += 7) {
+            int b = entrada.readUnsignedByte();
+            valor |= (long) (b & 0x7F) << deslocamento;
+            if ((b & 0x80) == 0) {
+                return valor;
+            }
+        }
+        throw new IOException("Varint muito longo");
+    }
+}
@@ -4,6 +4,7 @@ import br.com.caixaeletronico.dto.ContaBasicaDto;
 import br.com.caixaeletronico.model.Conta;
 import br.com.caixaeletronico.model.PerfilUsuario;
 import br.com.caixaeletronico.model.Usuario;
+import org.springframework.data.domain.Page;
 import java.util.HashMap;
 import java.util.Map;
 public class ResponseUtil {
@@ -62,6 +63,20 @@ public class ResponseUtil {
         }
         return response;
     }
+    /**
+     * Cria resposta padronizada com uma conta já projetada (ContaInfoDto)
+     */
+    public static Map<String, Object> criarRespostaPadraoComConta(String message, ContaInfoDto conta,
+                                                                  Map<String, Object> dadosAdicionais) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", message);
+        response.put("timestamp", java.time.LocalDateTime.now());
+        response.put("conta", conta);
+        if (dadosAdicionais != null && !dadosAdicionais.isEmpty()) {
+            response.put("dados", dadosAdicionais);
+        }
+        return response;
+    }
     /**
      * Cria resposta padronizada com duas contas (para transferências)
      */
@@ -95,6 +110,16 @@ public class ResponseUtil {
         }
         return response;
     }
+    /**
+     * Adiciona aos dados o conteúdo e os metadados de uma página de contas
+     */
+    public static void adicionarPaginaContas(Map<String, Object> dados, Page<?> pagina) {
+        dados.put("contas", pagina.getContent());
+        dados.put("totalContas", pagina.getTotalElements());
+        dados.put("pagina", pagina.getNumber());
+        dados.put("tamanhoPagina", pagina.getSize());
+        dados.put("totalPaginas", pagina.getTotalPages());
+    }
     /**
      * Verifica se o usuário é admin
      */
@@ -0,0 +1,110 @@
+package br.com.caixaeletronico.command;
+import br.com.caixaeletronico.model.Conta;
+import br.com.caixaeletronico.model.OperationMemento;
+import br.com.caixaeletronico.model.PagamentoAgendado;
+import br.com.caixaeletronico.model.StatusAgendamento;
+import br.com.caixaeletronico.repository.ContaRepository;
+import br.com.caixaeletronico.repository.PagamentoAgendadoRepository;
+import br.com.caixaeletronico.service.GerenciadorBloqueioContas;
+import br.com.caixaeletronico.util.TestDataBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Optional;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+@ExtendWith(MockitoExtension.class)
+@DisplayName("PaymentInstallmentCommand Tests")
+class PaymentInstallmentCommandTest {
+    @Mock
+    private ContaRepository contaRepository;
+    @Mock
+    private PagamentoAgendadoRepository pagamentoAgendadoRepository;
+    @Mock
+    private GerenciadorBloqueioContas bloqueioContas;
+    private final LocalDate vencimento = LocalDate.of(2025, 8, 5);
+    private Conta origem;
+    private Conta destino;
+    @BeforeEach
+    void setUp() {
+        origem = TestDataBuilder.umaConta().comId(10L).comSaldo(new BigDecimal("500.00")).build();
+        destino = TestDataBuilder.umaConta().comId(20L).comSaldo(new BigDecimal("100.00")).build();
+    }
+    @Test
+    @DisplayName("Deve debitar a origem, creditar o destino e avançar o agendamento")
+    void deveDebitarOrigemECreditarDestino() {
+        PagamentoAgendado pagamento = pagamento(destino);
+        PaymentInstallmentCommand command = command();
+        command.executar();
+        assertThat(origem.getSaldo()).isEqualByComparingTo("400.00");
+        assertThat(destino.getSaldo()).isEqualByComparingTo("200.00");
+        assertThat(pagamento.getParcelasRestantes()).isEqualTo(2);
+        assertThat(pagamento.getDataProximaExecucao()).isEqualTo(vencimento.plusDays(30));
+        verify(bloqueioContas).bloquear(10L, 20L);
+        verify(contaRepository).save(origem);
+        verify(contaRepository).save(destino);
+        OperationMemento memento = command.gerarMemento();
+        assertThat(memento.getVariacoesSaldo().get(10L)).isEqualByComparingTo("-100.00");
+        assertThat(memento.getVariacoesSaldo().get(20L)).isEqualByComparingTo("100.00");
+    }
+    @Test
+    @DisplayName("Deve desfazer o débito e o crédito da parcela")
+    void deveDesfazerDebitoECredito() {
+        PagamentoAgendado pagamento = pagamento(destino);
+        PaymentInstallmentCommand command = command();
+        command.executar();
+        command.desfazer();
+        assertThat(origem.getSaldo()).isEqualByComparingTo("500.00");
+        assertThat(destino.getSaldo()).isEqualByComparingTo("100.00");
+        assertThat(pagamento.getParcelasRestantes()).isEqualTo(3);
+        assertThat(pagamento.getDataProximaExecucao()).isEqualTo(vencimento);
+        assertThat(pagamento.getStatus()).isEqualTo(StatusAgendamento.ATIVO);
+    }
+    @Test
+    @DisplayName("Não deve movimentar saldo quando a origem não cobre a parcela")
+    void naoDeveMovimentarSemSaldo() {
+        origem.setSaldo(new BigDecimal("50.00"));
+        PagamentoAgendado pagamento = pagamento(destino);
+        assertThatThrownBy(() -> command().executar())
+            .isInstanceOf(RuntimeException.class)
+            .hasMessage("Saldo insuficiente para pagamento da parcela");
+        assertThat(destino.getSaldo()).isEqualByComparingTo("100.00");
+        assertThat(pagamento.getParcelasRestantes()).isEqualTo(3);
+        verify(contaRepository, never()).save(any());
+    }
+    @Test
+    @DisplayName("Pagamento para a própria conta deve ser só débito")
+    void pagamentoParaPropriaContaDeveSerSoDebito() {
+        pagamento(origem);
+        PaymentInstallmentCommand command = command();
+        command.executar();
+        assertThat(origem.getSaldo()).isEqualByComparingTo("400.00");
+        assertThat(command.gerarMemento().getVariacoesSaldo()).containsOnlyKeys(10L);
+        command.desfazer();
+        assertThat(origem.getSaldo()).isEqualByComparingTo("500.00");
+    }
+    private PagamentoAgendado pagamento(Conta contaDestino) {
+        PagamentoAgendado pagamento = TestDataBuilder.umPagamentoAgendado()
+            .comId(1L)
+            .comContaOrigem(origem)
+            .comContaDestino(contaDestino)
+            .comValorTotal(new BigDecimal("300.00"))
+            .comQuantidadeParcelas(3)
+            .build();
+        pagamento.setParcelasRestantes(3);
+        pagamento.setDataProximaExecucao(vencimento);
+        when(pagamentoAgendadoRepository.findById(1L)).thenReturn(Optional.of(pagamento));
+        when(contaRepository.findById(10L)).thenReturn(Optional.of(origem));
+        lenient().when(contaRepository.findById(20L)).thenReturn(Optional.of(destino));
+        return pagamento;
+    }
+    private PaymentInstallmentCommand command() {
+        return new PaymentInstallmentCommand(contaRepository, pagamentoAgendadoRepository, bloqueioContas, 1L);
+    }
+}
@@ -0,0 +1,75 @@
+package br.com.caixaeletronico.config;
+import br.com.caixaeletronico.event.UsuarioAlteradoEvent;
+import br.com.caixaeletronico.model.Conta;
+import br.com.caixaeletronico.model.PerfilUsuario;
+import br.com.caixaeletronico.model.Usuario;
+import br.com.caixaeletronico.util.TestDataBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.util.Date;
+import static org.assertj.core.api.Assertions.*;
+@DisplayName("CachePrincipaisJwt Tests")
+class CachePrincipaisJwtTest {
+    private CachePrincipaisJwt cache;
+    @BeforeEach
+    void setUp() {
+        cache = new CachePrincipaisJwt();
+        ReflectionTestUtils.setField(cache, "tamanhoMaximo", 2);
+    }
+    @Test
+    @DisplayName("Deve devolver o principal guardado até a expiração do token, sem a conta")
+    void deveDevolverPrincipalGuardadoSemConta() {
+        Usuario usuario = TestDataBuilder.umUsuario().comId(5L).comLogin("joao").comPerfil(PerfilUsuario.CLIENTE).build();
+        usuario.setConta(new Conta());
+        cache.guardar("token-a", new CustomUserDetailsService.CustomUserPrincipal(usuario, 9L), emMinutos(10));
+        CustomUserDetailsService.CustomUserPrincipal principal = cache.obter("token-a");
+        assertThat(principal).isNotNull();
+        assertThat(principal.getUsuario().getId()).isEqualTo(5L);
+        assertThat(principal.getUsername()).isEqualTo("joao");
+        assertThat(principal.getUsuario().getConta()).isNull();
+        assertThat(principal.getContaId()).isEqualTo(9L);
+        assertThat(cache.obter("token-b")).isNull();
+    }
+    @Test
+    @DisplayName("Deve ignorar entradas de tokens expirados")
+    void deveIgnorarEntradasDeTokensExpirados() {
+        cache.guardar("token-a", principal("joao"), new Date(System.currentTimeMillis() - 1));
+        assertThat(cache.obter("token-a")).isNull();
+    }
+    @Test
+    @DisplayName("Deve invalidar todos os tokens do usuário alterado")
+    void deveInvalidarTokensDoUsuarioAlterado() {
+        cache.guardar("token-a", principal("joao"), emMinutos(10));
+        cache.guardar("token-b", principal("maria"), emMinutos(10));
+        cache.invalidar(new UsuarioAlteradoEvent(this, "joao"));
+        assertThat(cache.obter("token-a")).isNull();
+        assertThat(cache.obter("token-b")).isNotNull();
+    }
+    @Test
+    @DisplayName("Deve marcar como desatualizados os tokens emitidos antes da alteração do usuário")
+    void deveMarcarTokensEmitidosAntesDaAlteracao() {
+        Date antes = new Date(System.currentTimeMillis() - 1000);
+        assertThat(cache.alteradoApos("joao", antes)).isFalse();
+        cache.invalidarUsuario("joao");
+        assertThat(cache.alteradoApos("joao", antes)).isTrue();
+        assertThat(cache.alteradoApos("joao", emMinutos(1))).isFalse();
+        assertThat(cache.alteradoApos("maria", antes)).isFalse();
+    }
+    @Test
+    @DisplayName("Não deve passar do tamanho máximo")
+    void naoDevePassarDoTamanhoMaximo() {
+        cache.guardar("token-a", principal("joao"), emMinutos(10));
+        cache.guardar("token-b", principal("maria"), emMinutos(10));
+        cache.guardar("token-c", principal("ana"), emMinutos(10));
+        assertThat(cache.obter("token-c")).isNull();
+        assertThat(cache.obter("token-a")).isNotNull();
+    }
+    private CustomUserDetailsService.CustomUserPrincipal principal(String login) {
+        return new CustomUserDetailsService.CustomUserPrincipal(TestDataBuilder.umUsuario().comLogin(login).build());
+    }
+    private Date emMinutos(int minutos) {
+        return new Date(System.currentTimeMillis() + minutos * 60_000L);
+    }
+}
@@ -0,0 +1,53 @@
+package br.com.caixaeletronico.config;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+@DisplayName("IndicesBanco Tests")
+class IndicesBancoTest {
+    private JdbcTemplate jdbcTemplate;
+    private IndicesBanco indicesBanco;
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+            "jdbc:h2:mem:indices;MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = spy(new JdbcTemplate(dataSource));
+        doReturn("PostgreSQL").when(jdbcTemplate).execute(any(ConnectionCallback.class));
+        doNothing().when(jdbcTemplate).execute(startsWith("SELECT setval"));
+        jdbcTemplate.execute("DROP TABLE IF EXISTS pagamentos_agendados");
+        // Esquema como o Hibernate o criou antes de existir StatusAgendamento.FALHOU.
+        jdbcTemplate.execute("CREATE TABLE pagamentos_agendados (id BIGINT PRIMARY KEY, status VARCHAR(255), " +
+            "CONSTRAINT pagamentos_agendados_status_check CHECK (status IN ('ATIVO', 'CONCLUIDO', 'CANCELADO')))");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS slots_cedulas");
+        // Slots como eram antes de haver terminais: uma linha por cédula.
+        jdbcTemplate.execute("CREATE TABLE slots_cedulas (id BIGINT PRIMARY KEY, terminal_id VARCHAR(50), " +
+            "valor_cedula VARCHAR(255), quantidade INT, CONSTRAINT slots_cedulas_valor_cedula_key UNIQUE (valor_cedula))");
+        indicesBanco = new IndicesBanco();
+        ReflectionTestUtils.setField(indicesBanco, "jdbcTemplate", jdbcTemplate);
+    }
+    @Test
+    @DisplayName("Deve remover a unicidade antiga de valor_cedula para aceitar vários terminais")
+    void deveRemoverUnicidadeAntigaDosSlots() {
+        jdbcTemplate.update("INSERT INTO slots_cedulas VALUES (1, 'TERMINAL-01', 'CEM', 10)");
+        assertThatThrownBy(() -> jdbcTemplate.update("INSERT INTO slots_cedulas VALUES (2, 'TERMINAL-02', 'CEM', 10)"))
+            .isInstanceOf(Exception.class);
+        indicesBanco.afterSingletonsInstantiated();
+        assertThat(jdbcTemplate.update("INSERT INTO slots_cedulas VALUES (2, 'TERMINAL-02', 'CEM', 10)")).isEqualTo(1);
+    }
+    @Test
+    @DisplayName("Deve refazer a restrição de status para aceitar FALHOU")
+    void deveRefazerRestricaoDeStatusComFalhou() {
+        assertThatThrownBy(() -> jdbcTemplate.update("INSERT INTO pagamentos_agendados VALUES (1, 'FALHOU')"))
+            .isInstanceOf(Exception.class);
+        indicesBanco.afterSingletonsInstantiated();
+        assertThat(jdbcTemplate.update("INSERT INTO pagamentos_agendados VALUES (1, 'FALHOU')")).isEqualTo(1);
+        assertThatThrownBy(() -> jdbcTemplate.update("INSERT INTO pagamentos_agendados VALUES (2, 'OUTRO')"))
+            .isInstanceOf(Exception.class);
+    }
+}
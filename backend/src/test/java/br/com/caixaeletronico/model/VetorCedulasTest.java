@@ -0,0 +1,81 @@
+package br.com.caixaeletronico.model;
+import br.com.caixaeletronico.util.TestDataBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import static org.assertj.core.api.Assertions.*;
+@DisplayName("VetorCedulas Tests")
+class VetorCedulasTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Test
+    @DisplayName("Deve indexar as posições pela ordem de ValorCedula, do menor para o maior valor")
+    void deveMapearIndicesParaCedulas() {
+        assertThat(VetorCedulas.DIMENSAO).isEqualTo(ValorCedula.values().length);
+        assertThat(VetorCedulas.cedula(0)).isEqualTo(ValorCedula.DOIS);
+        assertThat(VetorCedulas.cedula(2)).isEqualTo(ValorCedula.DEZ);
+        assertThat(VetorCedulas.cedula(VetorCedulas.DIMENSAO - 1)).isEqualTo(ValorCedula.DUZENTOS);
+        for (ValorCedula valorCedula : ValorCedula.values()) {
+            VetorCedulas vetor = VetorCedulas.de(valorCedula, 3);
+            assertThat(vetor.getQuantidade(valorCedula.ordinal())).isEqualTo(3);
+            assertThat(vetor.getValorTotal()).isEqualTo(3 * valorCedula.getValor());
+            assertThat(vetor.getCedulasDistintas()).isEqualTo(1);
+        }
+    }
+    @Test
+    @DisplayName("Deve criar o vetor por cédula, por array e por mapa")
+    void deveCriarVetorPorCedulaArrayEMapa() {
+        int[] quantidades = {0, 0, 1, 0, 0, 2, 0};
+        VetorCedulas porArray = VetorCedulas.de(quantidades);
+        quantidades[5] = 9;
+        assertThat(porArray.getQuantidade(ValorCedula.CEM)).isEqualTo(2);
+        assertThat(porArray).isEqualTo(VetorCedulas.de(ValorCedula.CEM, 2).somar(VetorCedulas.de(ValorCedula.DEZ, 1)));
+        assertThat(VetorCedulas.de(porArray.toMap())).isEqualTo(porArray);
+        assertThat(porArray.getTotalNotas()).isEqualTo(3);
+        assertThat(porArray.getValorTotal()).isEqualTo(210);
+        assertThatThrownBy(() -> VetorCedulas.de(new int[3]))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+    @Test
+    @DisplayName("Deve negar e reconhecer vetores não negativos")
+    void deveNegarEReconhecerNaoNegativos() {
+        VetorCedulas credito = VetorCedulas.de(ValorCedula.VINTE, 4).somar(VetorCedulas.de(ValorCedula.DOIS, 1));
+        VetorCedulas debito = credito.negar();
+        assertThat(credito.isNaoNegativo()).isTrue();
+        assertThat(debito.isNaoNegativo()).isFalse();
+        assertThat(debito.getQuantidade(ValorCedula.VINTE)).isEqualTo(-4);
+        assertThat(debito.negar()).isEqualTo(credito);
+        assertThat(credito.somar(debito).isVazio()).isTrue();
+        assertThat(VetorCedulas.VAZIO.negar()).isEqualTo(VetorCedulas.VAZIO);
+        assertThat(VetorCedulas.VAZIO.isNaoNegativo()).isTrue();
+        assertThat(credito.subtrair(VetorCedulas.de(ValorCedula.VINTE, 5)).positivos())
+            .isEqualTo(VetorCedulas.de(ValorCedula.DOIS, 1));
+    }
+    @Test
+    @DisplayName("Deve somar as quantidades do estoque por cédula")
+    void deveSomarQuantidadesDoEstoque() {
+        VetorCedulas estoque = VetorCedulas.doEstoque(List.of(
+            TestDataBuilder.umEstoqueGlobal().comValorCedula(ValorCedula.CINQUENTA).comQuantidade(3).build(),
+            TestDataBuilder.umEstoqueGlobal().comValorCedula(ValorCedula.CINCO).comQuantidade(7).build(),
+            new SlotCedula("TERMINAL-01", ValorCedula.CINQUENTA, 2)));
+        assertThat(estoque.getQuantidade(ValorCedula.CINQUENTA)).isEqualTo(5);
+        assertThat(estoque.getQuantidade(ValorCedula.CINCO)).isEqualTo(7);
+        assertThat(estoque.getCedulasDistintas()).isEqualTo(2);
+        assertThat(VetorCedulas.doEstoque(List.of()).isVazio()).isTrue();
+        assertThat(estoque.paraEstoque()).extracting(EstoqueGlobal::getValorCedula)
+            .containsExactly(ValorCedula.CINQUENTA, ValorCedula.CINCO);
+    }
+    @Test
+    @DisplayName("Deve serializar mapaCedulas como objeto por cédula e ler de volta o mesmo vetor")
+    void deveFazerIdaEVoltaDeMapaCedulasEmJson() throws Exception {
+        VetorCedulas cedulas = VetorCedulas.de(ValorCedula.CEM, 2).somar(VetorCedulas.de(ValorCedula.VINTE, 1));
+        CombinacaoCedulas combinacao = new CombinacaoCedulas(cedulas);
+        String json = objectMapper.writeValueAsString(combinacao);
+        assertThat(json).contains("\"mapaCedulas\":{\"VINTE\":1,\"CEM\":2}");
+        CombinacaoCedulas lida = objectMapper.readValue(json, CombinacaoCedulas.class);
+        assertThat(lida.getMapaCedulas()).isEqualTo(cedulas);
+        assertThat(lida.getQuantidadeTotalDeNotas()).isEqualTo(3);
+        assertThat(lida.getIdOpcao()).isEqualTo(combinacao.getIdOpcao());
+        assertThat(lida.calcularValorTotal()).isEqualTo(220);
+    }
+}
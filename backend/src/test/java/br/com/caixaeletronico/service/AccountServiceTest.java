@@ -1,7 +1,7 @@
 package br.com.caixaeletronico.service;
+import br.com.caixaeletronico.event.EstoqueAlteradoEvent;
 import br.com.caixaeletronico.model.*;
 import br.com.caixaeletronico.repository.ContaRepository;
-import br.com.caixaeletronico.repository.EstoqueGlobalRepository;
 import br.com.caixaeletronico.util.TestDataBuilder;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -10,6 +10,12 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import br.com.caixaeletronico.dto.ContaInfoDto;
 import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.List;
@@ -23,7 +29,9 @@ class AccountServiceTest {
     @Mock
     private ContaRepository contaRepository;
     @Mock
-    private EstoqueGlobalRepository estoqueGlobalRepository;
+    private MotorEstoque motorEstoque;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
     @InjectMocks
     private AccountService accountService;
     @Test
@@ -96,92 +104,36 @@ class AccountServiceTest {
         verify(contaRepository, never()).save(any());
     }
     @Test
-    @DisplayName("Deve adicionar cédulas ao estoque existente")
-    void deveAdicionarCedulasAoEstoqueExistente() {
-        ValorCedula valorCedula = ValorCedula.CEM;
-        int quantidadeExistente = 10;
-        int quantidadeAdicionar = 5;
-        int quantidadeEsperada = 15;
-        EstoqueGlobal estoqueExistente = TestDataBuilder.umEstoqueGlobal()
-                .comValorCedula(valorCedula)
-                .comQuantidade(quantidadeExistente)
-                .build();
-        when(estoqueGlobalRepository.findByValorCedula(valorCedula))
-                .thenReturn(Optional.of(estoqueExistente));
-        when(estoqueGlobalRepository.save(any(EstoqueGlobal.class)))
-                .thenReturn(estoqueExistente);
-        accountService.adicionarCedulas(valorCedula, quantidadeAdicionar);
-        ArgumentCaptor<EstoqueGlobal> estoqueCaptor = ArgumentCaptor.forClass(EstoqueGlobal.class);
-        verify(estoqueGlobalRepository).findByValorCedula(valorCedula);
-        verify(estoqueGlobalRepository).save(estoqueCaptor.capture());
-        EstoqueGlobal estoqueSalvo = estoqueCaptor.getValue();
-        assertThat(estoqueSalvo.getQuantidade()).isEqualTo(quantidadeEsperada);
+    @DisplayName("Deve adicionar cédulas pelo motor de estoque")
+    void deveAdicionarCedulasPeloMotorDeEstoque() {
+        accountService.adicionarCedulas(ValorCedula.CEM, 5);
+        verify(motorEstoque).creditar(VetorCedulas.de(ValorCedula.CEM, 5));
+        verify(eventPublisher).publishEvent(any(EstoqueAlteradoEvent.class));
     }
     @Test
-    @DisplayName("Deve criar novo estoque quando não existir")
-    void deveCriarNovoEstoqueQuandoNaoExistir() {
-        ValorCedula valorCedula = ValorCedula.CINQUENTA;
-        int quantidadeAdicionar = 10;
-        when(estoqueGlobalRepository.findByValorCedula(valorCedula))
-                .thenReturn(Optional.empty());
-        when(estoqueGlobalRepository.save(any(EstoqueGlobal.class)))
-                .thenReturn(new EstoqueGlobal());
-        accountService.adicionarCedulas(valorCedula, quantidadeAdicionar);
-        ArgumentCaptor<EstoqueGlobal> estoqueCaptor = ArgumentCaptor.forClass(EstoqueGlobal.class);
-        verify(estoqueGlobalRepository).findByValorCedula(valorCedula);
-        verify(estoqueGlobalRepository).save(estoqueCaptor.capture());
-        EstoqueGlobal estoqueSalvo = estoqueCaptor.getValue();
-        assertThat(estoqueSalvo.getValorCedula()).isEqualTo(valorCedula);
-        assertThat(estoqueSalvo.getQuantidade()).isEqualTo(quantidadeAdicionar);
+    @DisplayName("Deve remover cédulas pelo motor de estoque")
+    void deveRemoverCedulasPeloMotorDeEstoque() {
+        accountService.removerCedulas(ValorCedula.VINTE, 5);
+        verify(motorEstoque).debitar(VetorCedulas.de(ValorCedula.VINTE, 5));
     }
     @Test
-    @DisplayName("Deve remover cédulas do estoque com sucesso")
-    void deveRemoverCedulasDoEstoqueComSucesso() {
-        ValorCedula valorCedula = ValorCedula.VINTE;
-        int quantidadeExistente = 20;
-        int quantidadeRemover = 5;
-        int quantidadeEsperada = 15;
-        EstoqueGlobal estoqueExistente = TestDataBuilder.umEstoqueGlobal()
-                .comValorCedula(valorCedula)
-                .comQuantidade(quantidadeExistente)
-                .build();
-        when(estoqueGlobalRepository.findByValorCedula(valorCedula))
-                .thenReturn(Optional.of(estoqueExistente));
-        when(estoqueGlobalRepository.save(any(EstoqueGlobal.class)))
-                .thenReturn(estoqueExistente);
-        accountService.removerCedulas(valorCedula, quantidadeRemover);
-        ArgumentCaptor<EstoqueGlobal> estoqueCaptor = ArgumentCaptor.forClass(EstoqueGlobal.class);
-        verify(estoqueGlobalRepository).findByValorCedula(valorCedula);
-        verify(estoqueGlobalRepository).save(estoqueCaptor.capture());
-        EstoqueGlobal estoqueSalvo = estoqueCaptor.getValue();
-        assertThat(estoqueSalvo.getQuantidade()).isEqualTo(quantidadeEsperada);
-    }
-    @Test
-    @DisplayName("Deve lançar exceção ao tentar remover cédulas de estoque não encontrado")
-    void deveLancarExcecaoAoTentarRemoverCedulasDeEstoqueNaoEncontrado() {
-        ValorCedula valorCedula = ValorCedula.DEZ;
-        int quantidadeRemover = 5;
-        when(estoqueGlobalRepository.findByValorCedula(valorCedula))
-                .thenReturn(Optional.empty());
-        assertThatThrownBy(() -> accountService.removerCedulas(valorCedula, quantidadeRemover))
+    @DisplayName("Deve propagar a recusa do motor ao remover cédulas indisponíveis")
+    void devePropagarRecusaDoMotorAoRemoverCedulasIndisponiveis() {
+        doThrow(new RuntimeException("Cédulas insuficientes de R$10"))
+                .when(motorEstoque).debitar(VetorCedulas.de(ValorCedula.DEZ, 5));
+        assertThatThrownBy(() -> accountService.removerCedulas(ValorCedula.DEZ, 5))
                 .isInstanceOf(RuntimeException.class)
-                .hasMessage("Estoque não encontrado");
-        verify(estoqueGlobalRepository).findByValorCedula(valorCedula);
-        verify(estoqueGlobalRepository, never()).save(any());
+                .hasMessage("Cédulas insuficientes de R$10");
+        verify(eventPublisher, never()).publishEvent(any());
     }
     @Test
     @DisplayName("Deve obter estoque global ordenado por valor decrescente")
     void deveObterEstoqueGlobalOrdenadoPorValorDecrescente() {
-        List<EstoqueGlobal> estoqueEsperado = Arrays.asList(
-                TestDataBuilder.umEstoqueGlobal().comValorCedula(ValorCedula.CEM).build(),
-                TestDataBuilder.umEstoqueGlobal().comValorCedula(ValorCedula.CINQUENTA).build(),
-                TestDataBuilder.umEstoqueGlobal().comValorCedula(ValorCedula.VINTE).build()
-        );
-        when(estoqueGlobalRepository.findAllByOrderByValorCedulaDesc())
-                .thenReturn(estoqueEsperado);
+        when(motorEstoque.obterQuantidades()).thenReturn(VetorCedulas.de(ValorCedula.VINTE, 2)
+                .somar(VetorCedulas.de(ValorCedula.CEM, 1)).somar(VetorCedulas.de(ValorCedula.CINQUENTA, 3)));
         List<EstoqueGlobal> resultado = accountService.obterEstoqueGlobal();
-        assertThat(resultado).isEqualTo(estoqueEsperado);
-        verify(estoqueGlobalRepository).findAllByOrderByValorCedulaDesc();
+        assertThat(resultado).extracting(EstoqueGlobal::getValorCedula)
+                .containsExactly(ValorCedula.CEM, ValorCedula.CINQUENTA, ValorCedula.VINTE);
     }
     @Test
     @DisplayName("Deve obter saldo da conta com sucesso")
@@ -267,4 +219,36 @@ class AccountServiceTest {
                 .hasMessage("Conta não encontrada");
         verify(contaRepository).findById(contaId);
     }
+    @Test
+    @DisplayName("Deve filtrar contas por padrão escapado e limitar o tamanho da página")
+    void deveFiltrarContasPorPadraoEscapadoELimitarTamanhoDaPagina() {
+        ArgumentCaptor<Pageable> paginacao = ArgumentCaptor.forClass(Pageable.class);
+        Page<ContaInfoDto> pagina = new PageImpl<>(List.of());
+        when(contaRepository.findContaInfoByFiltro(eq("%silva!_50!%%"), paginacao.capture())).thenReturn(pagina);
+        Page<ContaInfoDto> resultado = accountService.listarContas(" Silva_50% ", 2, 10_000, "titular", "desc");
+        assertThat(resultado).isSameAs(pagina);
+        assertThat(paginacao.getValue().getPageNumber()).isEqualTo(2);
+        assertThat(paginacao.getValue().getPageSize()).isEqualTo(AccountService.TAMANHO_MAXIMO_PAGINA_CONTAS);
+        assertThat(paginacao.getValue().getSort()).isEqualTo(Sort.by(Sort.Direction.DESC, "titular", "id"));
+        verify(contaRepository, never()).findContaInfo(any());
+    }
+    @Test
+    @DisplayName("Deve listar sem filtro quando o filtro está em branco")
+    void deveListarSemFiltroQuandoFiltroEmBranco() {
+        when(contaRepository.findContaInfo(any())).thenReturn(new PageImpl<>(List.of()));
+        accountService.listarContas("  ", 0, 50, null, null);
+        verify(contaRepository).findContaInfo(any());
+        verify(contaRepository, never()).findContaInfoByFiltro(any(), any());
+    }
+    @Test
+    @DisplayName("Deve recusar ordenação por campo não permitido")
+    void deveRecusarOrdenacaoPorCampoNaoPermitido() {
+        assertThatThrownBy(() -> accountService.listarContasBasicas(null, 0, 50, "saldo", "asc"))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageStartingWith("Ordenação inválida");
+        assertThatThrownBy(() -> accountService.listarContas(null, 0, 50, "usuario.senha", "asc"))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageStartingWith("Ordenação inválida");
+        verifyNoInteractions(contaRepository);
+    }
 }
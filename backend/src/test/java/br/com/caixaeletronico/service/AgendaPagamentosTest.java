@@ -0,0 +1,125 @@
+package br.com.caixaeletronico.service;
+import br.com.caixaeletronico.dto.PagamentoAgendadoDTO;
+import br.com.caixaeletronico.event.PagamentoAgendadoAlteradoEvent;
+import br.com.caixaeletronico.event.PagamentosAgendadosEmLoteEvent;
+import br.com.caixaeletronico.model.PagamentoAgendado;
+import br.com.caixaeletronico.model.StatusAgendamento;
+import br.com.caixaeletronico.repository.PagamentoAgendadoRepository;
+import br.com.caixaeletronico.util.TestDataBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+@ExtendWith(MockitoExtension.class)
+@DisplayName("AgendaPagamentos Tests")
+class AgendaPagamentosTest {
+    @Mock
+    private PagamentoAgendadoRepository pagamentoAgendadoRepository;
+    @Mock
+    private ProcessadorPagamentosAgendados processadorPagamentosAgendados;
+    @InjectMocks
+    private AgendaPagamentos agenda;
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(agenda, "clock", Clock.systemDefaultZone());
+        ReflectionTestUtils.setField(agenda, "janelaDias", 2);
+        ReflectionTestUtils.setField(agenda, "esperaTravadoMs", 1000L);
+    }
+    @Test
+    @DisplayName("Deve entregar só os pagamentos vencidos, em ordem de vencimento")
+    void deveEntregarSoOsVencidosEmOrdem() {
+        LocalDate hoje = LocalDate.now();
+        when(pagamentoAgendadoRepository.findDtoAtivosAte(hoje.plusDays(2))).thenReturn(List.of(
+            dto(1L, hoje), dto(2L, hoje.minusDays(3)), dto(3L, hoje.plusDays(1))));
+        agenda.recarregar();
+        assertThat(agenda.tamanho()).isEqualTo(3);
+        assertThat(agenda.retirarVencidos(instanteDe(hoje))).containsExactly(2L, 1L);
+        assertThat(agenda.retirarVencidos(instanteDe(hoje))).isEmpty();
+        assertThat(agenda.retirarVencidos(instanteDe(hoje.plusDays(1)))).containsExactly(3L);
+    }
+    @Test
+    @DisplayName("Deve seguir os eventos de alteração, descartando entradas antigas")
+    void deveSeguirEventosDeAlteracao() {
+        LocalDate hoje = LocalDate.now();
+        agenda.aoAlterarPagamento(evento(1L, StatusAgendamento.ATIVO, hoje));
+        agenda.aoAlterarPagamento(evento(2L, StatusAgendamento.ATIVO, hoje));
+        agenda.aoAlterarPagamento(evento(1L, StatusAgendamento.ATIVO, hoje.plusDays(1)));
+        agenda.aoAlterarPagamento(evento(2L, StatusAgendamento.CANCELADO, hoje));
+        agenda.aoAlterarPagamento(evento(3L, StatusAgendamento.ATIVO, hoje.plusDays(30)));
+        assertThat(agenda.retirarVencidos(instanteDe(hoje))).isEmpty();
+        assertThat(agenda.retirarVencidos(instanteDe(hoje.plusDays(1)))).containsExactly(1L);
+        assertThat(agenda.tamanho()).isZero();
+    }
+    @Test
+    @DisplayName("Deve agendar a parcela que falhou para a próxima tentativa")
+    void deveAgendarParcelaQueFalhouParaProximaTentativa() {
+        LocalDate hoje = LocalDate.now();
+        LocalDateTime proximaTentativa = LocalDateTime.now().plusMinutes(30);
+        PagamentoAgendado pagamento = TestDataBuilder.umPagamentoAgendado().comId(1L).build();
+        pagamento.setDataProximaExecucao(hoje);
+        pagamento.registrarFalha("Saldo insuficiente para pagamento da parcela", proximaTentativa);
+        agenda.aoAlterarPagamento(new PagamentoAgendadoAlteradoEvent(this, pagamento));
+        long instanteTentativa = proximaTentativa.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        assertThat(agenda.retirarVencidos(instanteTentativa - 1)).isEmpty();
+        assertThat(agenda.retirarVencidos(instanteTentativa)).containsExactly(1L);
+    }
+    @Test
+    @DisplayName("Deve tirar da agenda o pagamento que esgotou as tentativas")
+    void deveTirarDaAgendaPagamentoQueEsgotouTentativas() {
+        PagamentoAgendado pagamento = TestDataBuilder.umPagamentoAgendado().comId(1L).build();
+        pagamento.setDataProximaExecucao(LocalDate.now());
+        agenda.aoAlterarPagamento(new PagamentoAgendadoAlteradoEvent(this, pagamento));
+        pagamento.registrarFalha("Saldo insuficiente para pagamento da parcela", null);
+        agenda.aoAlterarPagamento(new PagamentoAgendadoAlteradoEvent(this, pagamento));
+        assertThat(pagamento.getStatus()).isEqualTo(StatusAgendamento.FALHOU);
+        assertThat(agenda.tamanho()).isZero();
+    }
+    @Test
+    @DisplayName("Deve reagendar após a espera os pagamentos pulados por trava")
+    void deveReagendarPagamentosPuladosPorTrava() {
+        when(processadorPagamentosAgendados.processarPagamentos(List.of(1L, 2L))).thenReturn(Map.of(
+            1L, ProcessadorPagamentosAgendados.ResultadoParcela.TRAVADA,
+            2L, ProcessadorPagamentosAgendados.ResultadoParcela.PROCESSADA));
+        long antes = System.currentTimeMillis();
+        agenda.disparar(List.of(1L, 2L));
+        assertThat(agenda.tamanho()).isEqualTo(1);
+        assertThat(agenda.proximoVencimento()).isBetween(antes + 1000, System.currentTimeMillis() + 1000);
+        assertThat(agenda.retirarVencidos(agenda.proximoVencimento())).containsExactly(1L);
+    }
+    @Test
+    @DisplayName("Deve agendar a folha de pagamento recebida em um único evento")
+    void deveAgendarFolhaRecebidaEmUmUnicoEvento() {
+        LocalDate hoje = LocalDate.now();
+        agenda.aoAgendarEmLote(new PagamentosAgendadosEmLoteEvent(this, new long[] {5L, 6L, 7L}, hoje.plusDays(1)));
+        agenda.aoAgendarEmLote(new PagamentosAgendadosEmLoteEvent(this, new long[] {8L}, hoje.plusDays(30)));
+        assertThat(agenda.tamanho()).isEqualTo(3);
+        assertThat(agenda.retirarVencidos(instanteDe(hoje))).isEmpty();
+        assertThat(agenda.retirarVencidos(instanteDe(hoje.plusDays(1)))).containsExactlyInAnyOrder(5L, 6L, 7L);
+    }
+    private PagamentoAgendadoDTO dto(Long id, LocalDate vencimento) {
+        return new PagamentoAgendadoDTO(id, 10L, 20L, new BigDecimal("100.00"), 1, 1, 30,
+            vencimento, StatusAgendamento.ATIVO, "Teste");
+    }
+    private PagamentoAgendadoAlteradoEvent evento(Long id, StatusAgendamento status, LocalDate vencimento) {
+        PagamentoAgendado pagamento = TestDataBuilder.umPagamentoAgendado().comId(id).comStatus(status).build();
+        pagamento.setDataProximaExecucao(vencimento);
+        return new PagamentoAgendadoAlteradoEvent(this, pagamento);
+    }
+    private long instanteDe(LocalDate data) {
+        return data.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
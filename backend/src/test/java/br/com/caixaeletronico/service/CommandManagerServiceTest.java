@@ -0,0 +1,157 @@
+package br.com.caixaeletronico.service;
+import br.com.caixaeletronico.event.EstoqueAlteradoEvent;
+import br.com.caixaeletronico.model.*;
+import br.com.caixaeletronico.repository.ContaRepository;
+import br.com.caixaeletronico.repository.OperacaoRepository;
+import br.com.caixaeletronico.repository.UsuarioRepository;
+import br.com.caixaeletronico.util.TestDataBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+@ExtendWith(MockitoExtension.class)
+@DisplayName("CommandManagerService Tests")
+class CommandManagerServiceTest {
+    @Mock
+    private OperacaoRepository operacaoRepository;
+    @Mock
+    private ContaRepository contaRepository;
+    @Mock
+    private UsuarioRepository usuarioRepository;
+    @Mock
+    private MotorEstoque motorEstoque;
+    @Mock
+    private GerenciadorBloqueioContas bloqueioContas;
+    @Mock
+    private MementoOperacaoService mementoOperacaoService;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @InjectMocks
+    private CommandManagerService commandManagerService;
+    private Usuario admin;
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(commandManagerService, "tamanhoMaximoLote", 100);
+        admin = TestDataBuilder.umUsuario().comLogin("admin").comPerfil(PerfilUsuario.ADMIN).build();
+    }
+    @Test
+    @DisplayName("Deve somar as variações inversas por conta e por terminal ao desfazer em lote")
+    void deveSomarVariacoesInversasAoDesfazerEmLote() {
+        Operacao saque = operacaoDesfazivel(1L, "100.00");
+        Operacao deposito = operacaoDesfazivel(2L, "50.00");
+        when(operacaoRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(saque, deposito));
+        when(mementoOperacaoService.lerTodos(List.of(1L, 2L))).thenReturn(Map.of(
+            1L, new OperationMemento(Map.of(10L, new BigDecimal("-100.00")), VetorCedulas.de(ValorCedula.CEM, 1), null),
+            2L, new OperationMemento(Map.of(10L, new BigDecimal("50.00")),
+                VetorCedulas.de(ValorCedula.CINQUENTA, 1).negar(), null)));
+        when(contaRepository.aplicarVariacaoSaldo(10L, new BigDecimal("50.00"))).thenReturn(1);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[] {1, 1});
+        List<Long> desfeitas = commandManagerService.desfazerOperacoesEmLote(List.of(1L, 2L), admin);
+        assertThat(desfeitas).containsExactly(1L, 2L);
+        verify(bloqueioContas).bloquear(10L);
+        verify(contaRepository).aplicarVariacaoSaldo(10L, new BigDecimal("50.00"));
+        verify(motorEstoque).creditar(null, VetorCedulas.de(ValorCedula.CINQUENTA, 1));
+        verify(motorEstoque).debitar(null, VetorCedulas.de(ValorCedula.CEM, 1));
+        verify(eventPublisher).publishEvent(any(EstoqueAlteradoEvent.class));
+        verify(mementoOperacaoService).removerTodos(List.of(1L, 2L));
+    }
+    @Test
+    @DisplayName("Deve restaurar o estoque de um memento legado pelo motor de estoque")
+    void deveRestaurarEstoqueLegadoPeloMotor() {
+        Operacao saque = operacaoDesfazivel(1L, "150.00");
+        OperationMemento legado = new OperationMemento();
+        legado.setSaldosAntes(Map.of());
+        legado.setEstoquesAntes(List.of(
+            new OperationMemento.EstoqueGlobalSnapshot(ValorCedula.CEM, 5),
+            new OperationMemento.EstoqueGlobalSnapshot(ValorCedula.CINQUENTA, 1)));
+        when(operacaoRepository.findAllById(List.of(1L))).thenReturn(List.of(saque));
+        when(mementoOperacaoService.lerTodos(List.of(1L))).thenReturn(Map.of(1L, legado));
+        when(motorEstoque.obterQuantidades(null)).thenReturn(
+            VetorCedulas.de(ValorCedula.CEM, 4).somar(VetorCedulas.de(ValorCedula.CINQUENTA, 3)));
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[] {1});
+        commandManagerService.desfazerOperacoesEmLote(List.of(1L), admin);
+        verify(motorEstoque).creditar(null, VetorCedulas.de(ValorCedula.CEM, 1));
+        verify(motorEstoque).debitar(null, VetorCedulas.de(ValorCedula.CINQUENTA, 2));
+        verify(eventPublisher).publishEvent(any(EstoqueAlteradoEvent.class));
+    }
+    @Test
+    @DisplayName("Deve falhar o lote quando o saldo ficaria negativo")
+    void deveFalharLoteQuandoSaldoFicariaNegativo() {
+        Operacao deposito = operacaoDesfazivel(1L, "500.00");
+        when(operacaoRepository.findAllById(List.of(1L))).thenReturn(List.of(deposito));
+        when(mementoOperacaoService.lerTodos(List.of(1L))).thenReturn(Map.of(
+            1L, new OperationMemento(Map.of(10L, new BigDecimal("500.00")), VetorCedulas.VAZIO, null)));
+        when(contaRepository.aplicarVariacaoSaldo(10L, new BigDecimal("-500.00"))).thenReturn(0);
+        assertThatThrownBy(() -> commandManagerService.desfazerOperacoesEmLote(List.of(1L), admin))
+            .isInstanceOf(RuntimeException.class)
+            .hasMessageContaining("saldo insuficiente");
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+        verify(mementoOperacaoService, never()).removerTodos(any());
+    }
+    @Test
+    @DisplayName("Deve ignorar operações já desfeitas no lote")
+    void deveIgnorarOperacoesJaDesfeitasNoLote() {
+        Operacao desfeita = operacaoDesfazivel(1L, "100.00");
+        desfeita.setDesfeita(true);
+        when(operacaoRepository.findAllById(List.of(1L))).thenReturn(List.of(desfeita));
+        List<Long> desfeitas = commandManagerService.desfazerOperacoesEmLote(List.of(1L), admin);
+        assertThat(desfeitas).isEmpty();
+        verifyNoInteractions(contaRepository, motorEstoque, jdbcTemplate);
+    }
+    @Test
+    @DisplayName("Deve marcar a operação como desfeita antes de compensar")
+    void deveMarcarOperacaoComoDesfeitaAntesDeCompensar() {
+        Operacao saque = prepararDesfazerEspecifico();
+        when(mementoOperacaoService.ler(1L)).thenReturn(
+            new OperationMemento(Map.of(10L, new BigDecimal("-100.00")), VetorCedulas.VAZIO, null));
+        when(jdbcTemplate.update(anyString(), eq("admin"), any(), eq(1L))).thenReturn(1);
+        when(contaRepository.aplicarVariacaoSaldo(10L, new BigDecimal("100.00"))).thenReturn(1);
+        commandManagerService.desfazerOperacaoEspecifica(saque.getId(), 5L, admin);
+        InOrder ordem = inOrder(jdbcTemplate, contaRepository, mementoOperacaoService);
+        ordem.verify(jdbcTemplate).update(anyString(), eq("admin"), any(), eq(1L));
+        ordem.verify(contaRepository).aplicarVariacaoSaldo(10L, new BigDecimal("100.00"));
+        ordem.verify(mementoOperacaoService).remover(1L);
+    }
+    @Test
+    @DisplayName("Não deve estornar de novo quando outro desfazer marcou a operação antes")
+    void naoDeveEstornarOperacaoDesfeitaConcorrentemente() {
+        Operacao saque = prepararDesfazerEspecifico();
+        when(jdbcTemplate.update(anyString(), eq("admin"), any(), eq(1L))).thenReturn(0);
+        assertThatThrownBy(() -> commandManagerService.desfazerOperacaoEspecifica(saque.getId(), 5L, admin))
+            .isInstanceOf(RuntimeException.class)
+            .hasMessage("Operação já foi desfeita anteriormente");
+        verifyNoInteractions(contaRepository, motorEstoque);
+        verify(mementoOperacaoService, never()).ler(anyLong());
+    }
+    private Operacao prepararDesfazerEspecifico() {
+        Usuario alvo = TestDataBuilder.umUsuario().comLogin("cliente").build();
+        Operacao saque = operacaoDesfazivel(1L, "100.00");
+        when(usuarioRepository.findById(5L)).thenReturn(Optional.of(alvo));
+        when(operacaoRepository.findByIdAndUsuarioResponsavelAndNaoDesfeita(1L, "cliente")).thenReturn(saque);
+        return saque;
+    }
+    private Operacao operacaoDesfazivel(Long id, String valor) {
+        Operacao operacao = TestDataBuilder.umaOperacao()
+            .comId(id)
+            .comValor(new BigDecimal(valor))
+            .build();
+        operacao.setPossuiMemento(true);
+        return operacao;
+    }
+}
@@ -0,0 +1,79 @@
+package br.com.caixaeletronico.service;
+import br.com.caixaeletronico.event.EstoqueAlteradoEvent;
+import br.com.caixaeletronico.model.ValorCedula;
+import br.com.caixaeletronico.model.VetorCedulas;
+import br.com.caixaeletronico.util.TestDataBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.util.Arrays;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+@ExtendWith(MockitoExtension.class)
+@DisplayName("DispensabilidadeService Tests")
+class DispensabilidadeServiceTest {
+    @Mock
+    private MotorEstoque motorEstoque;
+    @InjectMocks
+    private DispensabilidadeService dispensabilidadeService;
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(dispensabilidadeService, "valorMaximo", 1000);
+        when(motorEstoque.obterQuantidades()).thenReturn(VetorCedulas.doEstoque(Arrays.asList(
+                TestDataBuilder.umEstoqueGlobal().comValorCedula(ValorCedula.CINCO).comQuantidade(2).build(),
+                TestDataBuilder.umEstoqueGlobal().comValorCedula(ValorCedula.DOIS).comQuantidade(3).build()
+        )));
+    }
+    @Test
+    @DisplayName("Deve identificar valores dispensáveis respeitando a quantidade de cédulas")
+    void deveIdentificarValoresDispensaveis() {
+        assertThat(dispensabilidadeService.isDispensavel(6)).isTrue();
+        assertThat(dispensabilidadeService.isDispensavel(16)).isTrue();
+        assertThat(dispensabilidadeService.isDispensavel(3)).isFalse();
+        assertThat(dispensabilidadeService.isDispensavel(17)).isFalse();
+        assertThat(dispensabilidadeService.obterValorDispensavelAnterior(17)).isEqualTo(16);
+        assertThat(dispensabilidadeService.obterValorDispensavelSeguinte(3)).isEqualTo(4);
+        assertThat(dispensabilidadeService.obterValorDispensavelSeguinte(17)).isNull();
+        verify(motorEstoque, times(1)).obterQuantidades();
+    }
+    @Test
+    @DisplayName("Deve rejeitar valor não dispensável informando valores próximos")
+    void deveRejeitarValorNaoDispensavel() {
+        assertThatThrownBy(() -> dispensabilidadeService.validarValorDispensavel(3))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("R$2 e R$4");
+        assertThatCode(() -> dispensabilidadeService.validarValorDispensavel(2000)).doesNotThrowAnyException();
+    }
+    @Test
+    @DisplayName("Deve aplicar crédito de cédulas sem reler o estoque")
+    void deveAplicarCreditoSemRelerEstoque() {
+        assertThat(dispensabilidadeService.isDispensavel(20)).isFalse();
+        dispensabilidadeService.handleEstoqueAlterado(new EstoqueAlteradoEvent(this, VetorCedulas.de(ValorCedula.DEZ, 1)));
+        assertThat(dispensabilidadeService.isDispensavel(20)).isTrue();
+        verify(motorEstoque, times(1)).obterQuantidades();
+    }
+    @Test
+    @DisplayName("Não deve somar de novo crédito publicado antes da leitura do estoque")
+    void naoDeveSomarCreditoJaIncluidoNaLeitura() {
+        EstoqueAlteradoEvent confirmadoAntes = new EstoqueAlteradoEvent(this, VetorCedulas.de(ValorCedula.DEZ, 1));
+        when(motorEstoque.obterQuantidades()).thenReturn(VetorCedulas.de(ValorCedula.DEZ, 1));
+        assertThat(dispensabilidadeService.isDispensavel(10)).isTrue();
+        dispensabilidadeService.handleEstoqueAlterado(confirmadoAntes);
+        assertThat(dispensabilidadeService.isDispensavel(20)).isFalse();
+        verify(motorEstoque, times(2)).obterQuantidades();
+    }
+    @Test
+    @DisplayName("Deve reconstruir o mapa após débito de cédulas")
+    void deveReconstruirMapaAposDebito() {
+        assertThat(dispensabilidadeService.isDispensavel(10)).isTrue();
+        when(motorEstoque.obterQuantidades()).thenReturn(VetorCedulas.de(ValorCedula.DOIS, 3));
+        dispensabilidadeService.handleEstoqueAlterado(new EstoqueAlteradoEvent(this, VetorCedulas.de(ValorCedula.CINCO, -2)));
+        assertThat(dispensabilidadeService.isDispensavel(10)).isFalse();
+        verify(motorEstoque, times(2)).obterQuantidades();
+    }
+}
@@ -1,6 +1,8 @@
 package br.com.caixaeletronico.service;
+import br.com.caixaeletronico.event.EstoqueAlteradoEvent;
 import br.com.caixaeletronico.model.EstoqueGlobal;
 import br.com.caixaeletronico.model.ValorCedula;
+import br.com.caixaeletronico.model.VetorCedulas;
 import br.com.caixaeletronico.repository.EstoqueGlobalRepository;
 import br.com.caixaeletronico.util.TestDataBuilder;
 import org.junit.jupiter.api.DisplayName;
@@ -12,6 +14,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -23,23 +26,28 @@ import static org.mockito.Mockito.*;
 class EstoqueGlobalServiceTest {
     @Mock
     private EstoqueGlobalRepository estoqueGlobalRepository;
+    @Mock
+    private MotorEstoque motorEstoque;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
     @InjectMocks
     private EstoqueGlobalService estoqueGlobalService;
     @Test
     @DisplayName("Deve obter estoque global ordenado por valor decrescente")
     void deveObterEstoqueGlobalOrdenadoPorValorDecrescente() {
         List<EstoqueGlobal> estoqueEsperado = Arrays.asList(
+                TestDataBuilder.umEstoqueGlobal().comValorCedula(ValorCedula.DEZ).comQuantidade(40).build(),
                 TestDataBuilder.umEstoqueGlobal().comValorCedula(ValorCedula.CEM).comQuantidade(50).build(),
-                TestDataBuilder.umEstoqueGlobal().comValorCedula(ValorCedula.CINQUENTA).comQuantidade(30).build(),
                 TestDataBuilder.umEstoqueGlobal().comValorCedula(ValorCedula.VINTE).comQuantidade(20).build(),
-                TestDataBuilder.umEstoqueGlobal().comValorCedula(ValorCedula.DEZ).comQuantidade(40).build()
+                TestDataBuilder.umEstoqueGlobal().comValorCedula(ValorCedula.CINQUENTA).comQuantidade(30).build()
         );
-        when(estoqueGlobalRepository.findAllByOrderByValorCedulaDesc())
-                .thenReturn(estoqueEsperado);
+        when(motorEstoque.obterQuantidades()).thenReturn(VetorCedulas.doEstoque(estoqueEsperado));
         List<EstoqueGlobal> resultado = estoqueGlobalService.obterEstoqueGlobal();
         assertThat(resultado).hasSize(4);
-        assertThat(resultado).isEqualTo(estoqueEsperado);
-        verify(estoqueGlobalRepository).findAllByOrderByValorCedulaDesc();
+        assertThat(resultado).extracting(EstoqueGlobal::getValorCedula)
+                .containsExactly(ValorCedula.CEM, ValorCedula.CINQUENTA, ValorCedula.VINTE, ValorCedula.DEZ);
+        assertThat(resultado).extracting(EstoqueGlobal::getQuantidade).containsExactly(50, 30, 20, 40);
+        verifyNoInteractions(estoqueGlobalRepository);
     }
     @Test
     @DisplayName("Deve obter estoque por valor de cédula existente")
@@ -69,102 +77,45 @@ class EstoqueGlobalServiceTest {
         verify(estoqueGlobalRepository).findByValorCedula(valorCedula);
     }
     @Test
-    @DisplayName("Deve adicionar cédulas ao estoque existente")
-    void deveAdicionarCedulasAoEstoqueExistente() {
-        ValorCedula valorCedula = ValorCedula.VINTE;
-        int quantidadeExistente = 15;
-        int quantidadeAdicionar = 10;
-        int quantidadeEsperada = 25;
-        EstoqueGlobal estoqueExistente = TestDataBuilder.umEstoqueGlobal()
-                .comValorCedula(valorCedula)
-                .comQuantidade(quantidadeExistente)
-                .build();
-        when(estoqueGlobalRepository.findByValorCedula(valorCedula))
-                .thenReturn(Optional.of(estoqueExistente));
-        estoqueGlobalService.adicionarCedulas(valorCedula, quantidadeAdicionar);
-        ArgumentCaptor<EstoqueGlobal> estoqueCaptor = ArgumentCaptor.forClass(EstoqueGlobal.class);
-        verify(estoqueGlobalRepository).findByValorCedula(valorCedula);
-        verify(estoqueGlobalRepository).save(estoqueCaptor.capture());
-        EstoqueGlobal estoqueSalvo = estoqueCaptor.getValue();
-        assertThat(estoqueSalvo.getQuantidade()).isEqualTo(quantidadeEsperada);
-        assertThat(estoqueSalvo.getValorCedula()).isEqualTo(valorCedula);
-    }
-    @Test
-    @DisplayName("Deve criar novo estoque ao adicionar cédulas inexistentes")
-    void deveCriarNovoEstoqueAoAdicionarCedulasInexistentes() {
-        ValorCedula valorCedula = ValorCedula.CINCO;
-        int quantidadeAdicionar = 20;
-        when(estoqueGlobalRepository.findByValorCedula(valorCedula))
-                .thenReturn(Optional.empty());
-        estoqueGlobalService.adicionarCedulas(valorCedula, quantidadeAdicionar);
-        ArgumentCaptor<EstoqueGlobal> estoqueCaptor = ArgumentCaptor.forClass(EstoqueGlobal.class);
-        verify(estoqueGlobalRepository).findByValorCedula(valorCedula);
-        verify(estoqueGlobalRepository).save(estoqueCaptor.capture());
-        EstoqueGlobal novoEstoque = estoqueCaptor.getValue();
-        assertThat(novoEstoque.getQuantidade()).isEqualTo(quantidadeAdicionar);
-        assertThat(novoEstoque.getValorCedula()).isEqualTo(valorCedula);
+    @DisplayName("Deve adicionar cédulas pelo motor de estoque")
+    void deveAdicionarCedulasPeloMotorDeEstoque() {
+        estoqueGlobalService.adicionarCedulas(ValorCedula.VINTE, 10);
+        verify(motorEstoque).creditar(VetorCedulas.de(ValorCedula.VINTE, 10));
+        verify(eventPublisher).publishEvent(any(EstoqueAlteradoEvent.class));
+        verifyNoInteractions(estoqueGlobalRepository);
     }
     @ParameterizedTest
     @EnumSource(ValorCedula.class)
     @DisplayName("Deve adicionar cédulas para todos os valores de cédula")
     void deveAdicionarCedulasParaTodosOsValoresDeCedula(ValorCedula valorCedula) {
-        int quantidadeAdicionar = 10;
-        when(estoqueGlobalRepository.findByValorCedula(valorCedula))
-                .thenReturn(Optional.empty());
-        estoqueGlobalService.adicionarCedulas(valorCedula, quantidadeAdicionar);
-        verify(estoqueGlobalRepository).findByValorCedula(valorCedula);
-        verify(estoqueGlobalRepository).save(any(EstoqueGlobal.class));
+        estoqueGlobalService.adicionarCedulas(valorCedula, 10);
+        verify(motorEstoque).creditar(VetorCedulas.de(valorCedula, 10));
     }
     @Test
-    @DisplayName("Deve remover cédulas do estoque com sucesso")
-    void deveRemoverCedulasDoEstoqueComSucesso() {
-        ValorCedula valorCedula = ValorCedula.CEM;
-        int quantidadeExistente = 30;
-        int quantidadeRemover = 10;
-        int quantidadeEsperada = 20;
-        EstoqueGlobal estoqueExistente = TestDataBuilder.umEstoqueGlobal()
-                .comValorCedula(valorCedula)
-                .comQuantidade(quantidadeExistente)
-                .build();
-        when(estoqueGlobalRepository.findByValorCedula(valorCedula))
-                .thenReturn(Optional.of(estoqueExistente));
-        estoqueGlobalService.removerCedulas(valorCedula, quantidadeRemover);
-        ArgumentCaptor<EstoqueGlobal> estoqueCaptor = ArgumentCaptor.forClass(EstoqueGlobal.class);
-        verify(estoqueGlobalRepository).findByValorCedula(valorCedula);
-        verify(estoqueGlobalRepository).save(estoqueCaptor.capture());
-        EstoqueGlobal estoqueSalvo = estoqueCaptor.getValue();
-        assertThat(estoqueSalvo.getQuantidade()).isEqualTo(quantidadeEsperada);
+    @DisplayName("Deve remover cédulas pelo motor de estoque")
+    void deveRemoverCedulasPeloMotorDeEstoque() {
+        estoqueGlobalService.removerCedulas(ValorCedula.CEM, 10);
+        verify(motorEstoque).debitar(VetorCedulas.de(ValorCedula.CEM, 10));
+        verify(eventPublisher).publishEvent(any(EstoqueAlteradoEvent.class));
+        verifyNoInteractions(estoqueGlobalRepository);
     }
     @Test
-    @DisplayName("Deve lançar exceção ao tentar remover de estoque não encontrado")
-    void deveLancarExcecaoAoTentarRemoverDeEstoqueNaoEncontrado() {
-        ValorCedula valorCedula = ValorCedula.DEZ;
-        int quantidadeRemover = 5;
-        when(estoqueGlobalRepository.findByValorCedula(valorCedula))
-                .thenReturn(Optional.empty());
-        assertThatThrownBy(() -> estoqueGlobalService.removerCedulas(valorCedula, quantidadeRemover))
+    @DisplayName("Deve propagar a recusa do motor ao remover quantidade maior que disponível")
+    void devePropagarRecusaDoMotorAoRemoverQuantidadeMaiorQueDisponivel() {
+        doThrow(new RuntimeException("Cédulas insuficientes de R$50"))
+                .when(motorEstoque).debitar(VetorCedulas.de(ValorCedula.CINQUENTA, 10));
+        assertThatThrownBy(() -> estoqueGlobalService.removerCedulas(ValorCedula.CINQUENTA, 10))
                 .isInstanceOf(RuntimeException.class)
-                .hasMessage("Estoque não encontrado para cédula " + valorCedula);
-        verify(estoqueGlobalRepository).findByValorCedula(valorCedula);
-        verify(estoqueGlobalRepository, never()).save(any());
+                .hasMessage("Cédulas insuficientes de R$50");
+        verify(eventPublisher, never()).publishEvent(any());
     }
     @Test
-    @DisplayName("Deve lançar exceção ao tentar remover quantidade maior que disponível")
-    void deveLancarExcecaoAoTentarRemoverQuantidadeMaiorQueDisponivel() {
-        ValorCedula valorCedula = ValorCedula.CINQUENTA;
-        int quantidadeExistente = 5;
-        int quantidadeRemover = 10;
-        EstoqueGlobal estoqueExistente = TestDataBuilder.umEstoqueGlobal()
-                .comValorCedula(valorCedula)
-                .comQuantidade(quantidadeExistente)
-                .build();
-        when(estoqueGlobalRepository.findByValorCedula(valorCedula))
-                .thenReturn(Optional.of(estoqueExistente));
-        assertThatThrownBy(() -> estoqueGlobalService.removerCedulas(valorCedula, quantidadeRemover))
+    @DisplayName("Deve recusar quantidade não positiva")
+    void deveRecusarQuantidadeNaoPositiva() {
+        assertThatThrownBy(() -> estoqueGlobalService.removerCedulas(ValorCedula.DEZ, -5))
                 .isInstanceOf(RuntimeException.class)
-                .hasMessage("Quantidade insuficiente no estoque");
-        verify(estoqueGlobalRepository).findByValorCedula(valorCedula);
-        verify(estoqueGlobalRepository, never()).save(any());
+                .hasMessage("Quantidade deve ser maior que zero");
+        verifyNoInteractions(motorEstoque);
     }
     @Test
     @DisplayName("Deve verificar disponibilidade quando há quantidade suficiente")
@@ -176,11 +127,10 @@ class EstoqueGlobalServiceTest {
                 .comValorCedula(valorCedula)
                 .comQuantidade(quantidadeDisponivel)
                 .build();
-        when(estoqueGlobalRepository.findByValorCedula(valorCedula))
-                .thenReturn(Optional.of(estoque));
+        when(motorEstoque.obterQuantidades()).thenReturn(VetorCedulas.doEstoque(List.of(estoque)));
         boolean resultado = estoqueGlobalService.verificarDisponibilidade(valorCedula, quantidadeNecessaria);
         assertThat(resultado).isTrue();
-        verify(estoqueGlobalRepository).findByValorCedula(valorCedula);
+        verify(motorEstoque).obterQuantidades();
     }
     @Test
     @DisplayName("Deve verificar indisponibilidade quando não há quantidade suficiente")
@@ -192,22 +142,20 @@ class EstoqueGlobalServiceTest {
                 .comValorCedula(valorCedula)
                 .comQuantidade(quantidadeDisponivel)
                 .build();
-        when(estoqueGlobalRepository.findByValorCedula(valorCedula))
-                .thenReturn(Optional.of(estoque));
+        when(motorEstoque.obterQuantidades()).thenReturn(VetorCedulas.doEstoque(List.of(estoque)));
         boolean resultado = estoqueGlobalService.verificarDisponibilidade(valorCedula, quantidadeNecessaria);
         assertThat(resultado).isFalse();
-        verify(estoqueGlobalRepository).findByValorCedula(valorCedula);
+        verify(motorEstoque).obterQuantidades();
     }
     @Test
     @DisplayName("Deve retornar false para disponibilidade quando estoque não existe")
     void deveRetornarFalseParaDisponibilidadeQuandoEstoqueNaoExiste() {
         ValorCedula valorCedula = ValorCedula.DOIS;
         int quantidadeNecessaria = 5;
-        when(estoqueGlobalRepository.findByValorCedula(valorCedula))
-                .thenReturn(Optional.empty());
+        when(motorEstoque.obterQuantidades()).thenReturn(VetorCedulas.VAZIO);
         boolean resultado = estoqueGlobalService.verificarDisponibilidade(valorCedula, quantidadeNecessaria);
         assertThat(resultado).isFalse();
-        verify(estoqueGlobalRepository).findByValorCedula(valorCedula);
+        verify(motorEstoque).obterQuantidades();
     }
     @Test
     @DisplayName("Deve retornar true quando quantidade necessária é zero")
@@ -218,10 +166,9 @@ class EstoqueGlobalServiceTest {
                 .comValorCedula(valorCedula)
                 .comQuantidade(10)
                 .build();
-        when(estoqueGlobalRepository.findByValorCedula(valorCedula))
-                .thenReturn(Optional.of(estoque));
+        when(motorEstoque.obterQuantidades()).thenReturn(VetorCedulas.doEstoque(List.of(estoque)));
         boolean resultado = estoqueGlobalService.verificarDisponibilidade(valorCedula, quantidadeNecessaria);
         assertThat(resultado).isTrue();
-        verify(estoqueGlobalRepository).findByValorCedula(valorCedula);
+        verify(motorEstoque).obterQuantidades();
     }
 }
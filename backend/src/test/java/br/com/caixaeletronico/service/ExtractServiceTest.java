@@ -1,4 +1,6 @@
 package br.com.caixaeletronico.service;
+import br.com.caixaeletronico.config.JacksonConfig;
+import br.com.caixaeletronico.dto.OperacaoDto;
 import br.com.caixaeletronico.model.Conta;
 import br.com.caixaeletronico.model.Operacao;
 import br.com.caixaeletronico.model.TipoOperacao;
@@ -9,18 +11,26 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Stream;
 import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 @DisplayName("ExtractService Tests")
 class ExtractServiceTest {
     @Mock
     private OperacaoRepository operacaoRepository;
+    @Spy
+    private ObjectMapper objectMapper = new JacksonConfig().objectMapper();
     @InjectMocks
     private ExtractService extractService;
     @Test
@@ -103,7 +113,7 @@ class ExtractServiceTest {
     void deveObterUltimasOperacoesComLimiteMenorQueTotal() {
         Conta conta = TestDataBuilder.umaConta().build();
         int limite = 2;
-        List<Operacao> todasOperacoes = Arrays.asList(
+        List<OperacaoDto> todasOperacoes = paraDtos(
                 TestDataBuilder.umaOperacao()
                         .comTipo(TipoOperacao.DEPOSITO)
                         .comValor(new BigDecimal("100.00"))
@@ -125,20 +135,21 @@ class ExtractServiceTest {
                         .comDataHora(LocalDateTime.now().minusHours(3))
                         .build()
         );
-        when(operacaoRepository.findByContaOrderByDataHoraDesc(conta))
-                .thenReturn(todasOperacoes);
-        List<Operacao> resultado = extractService.obterUltimasOperacoes(conta, limite);
+        when(operacaoRepository.findPaginaExtrato(any(), any(), any(), any(), eq(limite)))
+                .thenReturn(todasOperacoes.subList(0, limite));
+        List<OperacaoDto> resultado = extractService.obterUltimasOperacoes(conta, limite);
         assertThat(resultado).hasSize(2);
         assertThat(resultado.get(0)).isEqualTo(todasOperacoes.get(0));
         assertThat(resultado.get(1)).isEqualTo(todasOperacoes.get(1));
-        verify(operacaoRepository).findByContaOrderByDataHoraDesc(conta);
+        verify(operacaoRepository).findPaginaExtrato(eq(conta.getId()), any(), any(), eq(Long.MAX_VALUE), eq(limite));
+        verify(operacaoRepository, never()).findByContaOrderByDataHoraDesc(any());
     }
     @Test
     @DisplayName("Deve retornar todas as operações quando limite é maior que total")
     void deveRetornarTodasAsOperacoesQuandoLimiteEMaiorQueTotal() {
         Conta conta = TestDataBuilder.umaConta().build();
         int limite = 5;
-        List<Operacao> todasOperacoes = Arrays.asList(
+        List<OperacaoDto> todasOperacoes = paraDtos(
                 TestDataBuilder.umaOperacao()
                         .comTipo(TipoOperacao.DEPOSITO)
                         .comValor(new BigDecimal("100.00"))
@@ -148,47 +159,47 @@ class ExtractServiceTest {
                         .comValor(new BigDecimal("50.00"))
                         .build()
         );
-        when(operacaoRepository.findByContaOrderByDataHoraDesc(conta))
+        when(operacaoRepository.findPaginaExtrato(any(), any(), any(), any(), eq(limite)))
                 .thenReturn(todasOperacoes);
-        List<Operacao> resultado = extractService.obterUltimasOperacoes(conta, limite);
+        List<OperacaoDto> resultado = extractService.obterUltimasOperacoes(conta, limite);
         assertThat(resultado).hasSize(2);
         assertThat(resultado).isEqualTo(todasOperacoes);
-        verify(operacaoRepository).findByContaOrderByDataHoraDesc(conta);
+        verify(operacaoRepository).findPaginaExtrato(any(), any(), any(), any(), eq(limite));
     }
     @Test
     @DisplayName("Deve retornar todas as operações quando limite é igual ao total")
     void deveRetornarTodasAsOperacoesQuandoLimiteEIgualAoTotal() {
         Conta conta = TestDataBuilder.umaConta().build();
         int limite = 3;
-        List<Operacao> todasOperacoes = Arrays.asList(
+        List<OperacaoDto> todasOperacoes = paraDtos(
                 TestDataBuilder.umaOperacao().comTipo(TipoOperacao.DEPOSITO).build(),
                 TestDataBuilder.umaOperacao().comTipo(TipoOperacao.SAQUE).build(),
                 TestDataBuilder.umaOperacao().comTipo(TipoOperacao.TRANSFERENCIA).build()
         );
-        when(operacaoRepository.findByContaOrderByDataHoraDesc(conta))
+        when(operacaoRepository.findPaginaExtrato(any(), any(), any(), any(), eq(limite)))
                 .thenReturn(todasOperacoes);
-        List<Operacao> resultado = extractService.obterUltimasOperacoes(conta, limite);
+        List<OperacaoDto> resultado = extractService.obterUltimasOperacoes(conta, limite);
         assertThat(resultado).hasSize(3);
         assertThat(resultado).isEqualTo(todasOperacoes);
-        verify(operacaoRepository).findByContaOrderByDataHoraDesc(conta);
+        verify(operacaoRepository).findPaginaExtrato(any(), any(), any(), any(), eq(limite));
     }
     @Test
     @DisplayName("Deve retornar lista vazia quando não há operações e limite é aplicado")
     void deveRetornarListaVaziaQuandoNaoHaOperacoesELimiteEAplicado() {
         Conta conta = TestDataBuilder.umaConta().build();
         int limite = 5;
-        when(operacaoRepository.findByContaOrderByDataHoraDesc(conta))
+        when(operacaoRepository.findPaginaExtrato(any(), any(), any(), any(), eq(limite)))
                 .thenReturn(Arrays.asList());
-        List<Operacao> resultado = extractService.obterUltimasOperacoes(conta, limite);
+        List<OperacaoDto> resultado = extractService.obterUltimasOperacoes(conta, limite);
         assertThat(resultado).isEmpty();
-        verify(operacaoRepository).findByContaOrderByDataHoraDesc(conta);
+        verify(operacaoRepository).findPaginaExtrato(any(), any(), any(), any(), eq(limite));
     }
     @Test
     @DisplayName("Deve obter uma única operação quando limite é 1")
     void deveObterUmaUnicaOperacaoQuandoLimiteE1() {
         Conta conta = TestDataBuilder.umaConta().build();
         int limite = 1;
-        List<Operacao> todasOperacoes = Arrays.asList(
+        List<OperacaoDto> todasOperacoes = paraDtos(
                 TestDataBuilder.umaOperacao()
                         .comTipo(TipoOperacao.DEPOSITO)
                         .comValor(new BigDecimal("500.00"))
@@ -198,12 +209,77 @@ class ExtractServiceTest {
                         .comValor(new BigDecimal("100.00"))
                         .build()
         );
-        when(operacaoRepository.findByContaOrderByDataHoraDesc(conta))
-                .thenReturn(todasOperacoes);
-        List<Operacao> resultado = extractService.obterUltimasOperacoes(conta, limite);
+        when(operacaoRepository.findPaginaExtrato(any(), any(), any(), any(), eq(limite)))
+                .thenReturn(todasOperacoes.subList(0, limite));
+        List<OperacaoDto> resultado = extractService.obterUltimasOperacoes(conta, limite);
         assertThat(resultado).hasSize(1);
         assertThat(resultado.get(0)).isEqualTo(todasOperacoes.get(0));
         assertThat(resultado.get(0).getTipo()).isEqualTo(TipoOperacao.DEPOSITO);
-        verify(operacaoRepository).findByContaOrderByDataHoraDesc(conta);
+        verify(operacaoRepository).findPaginaExtrato(any(), any(), any(), any(), eq(limite));
+    }
+    @Test
+    @DisplayName("Deve buscar a página seguinte a partir do cursor")
+    void deveBuscarPaginaSeguinteAPartirDoCursor() {
+        Conta conta = TestDataBuilder.umaConta().comId(7L).build();
+        LocalDateTime cursor = LocalDateTime.of(2024, 1, 15, 10, 30);
+        when(operacaoRepository.findPaginaExtrato(eq(7L), any(), eq(cursor), eq(42L), eq(20)))
+                .thenReturn(List.of());
+        List<OperacaoDto> resultado = extractService.obterPaginaExtrato(conta.getId(), null, null, cursor, 42L, 20);
+        assertThat(resultado).isEmpty();
+        verify(operacaoRepository).findPaginaExtrato(eq(7L), any(), eq(cursor), eq(42L), eq(20));
+    }
+    @Test
+    @DisplayName("Deve exigir data e id do cursor juntos")
+    void deveExigirDataEIdDoCursorJuntos() {
+        Conta conta = TestDataBuilder.umaConta().build();
+        assertThatThrownBy(() -> extractService.obterPaginaExtrato(conta.getId(), null, null, LocalDateTime.now(), null, 20))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage("Informe antesDeDataHora e antesDeId juntos");
+        verifyNoInteractions(operacaoRepository);
+    }
+    @Test
+    @DisplayName("Deve exportar o extrato em CSV escapando campos de texto")
+    void deveExportarExtratoEmCsv() throws Exception {
+        Conta conta = TestDataBuilder.umaConta().comId(7L).build();
+        when(operacaoRepository.streamExtrato(eq(7L), any(), any())).thenReturn(Stream.of(
+                new OperacaoDto(1L, TipoOperacao.DEPOSITO, LocalDateTime.of(2024, 1, 15, 10, 30),
+                        new BigDecimal("500.00"), "cliente"),
+                new OperacaoDto(2L, TipoOperacao.SAQUE, LocalDateTime.of(2024, 1, 16, 14, 20),
+                        new BigDecimal("100.00"), "silva, joão")));
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        long total = extractService.exportarExtrato(conta.getId(), null, null, ExtractService.FormatoExtrato.CSV, saida);
+        assertThat(total).isEqualTo(2);
+        assertThat(saida.toString(StandardCharsets.UTF_8).split("\n")).containsExactly(
+                "id,tipo,dataHora,valor,usuarioResponsavel,descricao",
+                "1,DEPOSITO,2024-01-15T10:30,500.00,cliente,Depósito em dinheiro",
+                "2,SAQUE,2024-01-16T14:20,100.00,\"silva, joão\",Saque no caixa eletrônico");
+    }
+    @Test
+    @DisplayName("Deve exportar o extrato em NDJSON no período informado")
+    void deveExportarExtratoEmNdjson() throws Exception {
+        Conta conta = TestDataBuilder.umaConta().comId(7L).build();
+        LocalDateTime inicio = LocalDateTime.of(2024, 1, 1, 0, 0);
+        LocalDateTime fim = LocalDateTime.of(2024, 1, 31, 23, 59, 59);
+        when(operacaoRepository.streamExtrato(7L, inicio, fim)).thenReturn(Stream.of(
+                new OperacaoDto(1L, TipoOperacao.DEPOSITO, LocalDateTime.of(2024, 1, 15, 10, 30),
+                        new BigDecimal("500.00"), "cliente")));
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        extractService.exportarExtrato(conta.getId(), inicio, fim, ExtractService.FormatoExtrato.NDJSON, saida);
+        String[] linhas = saida.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(linhas).hasSize(1);
+        assertThat(objectMapper.readTree(linhas[0]).get("dataHora").asText()).isEqualTo("2024-01-15T10:30:00");
+        assertThat(objectMapper.readTree(linhas[0]).get("tipo").asText()).isEqualTo("DEPOSITO");
+    }
+    @Test
+    @DisplayName("Deve recusar formato de exportação desconhecido")
+    void deveRecusarFormatoDeExportacaoDesconhecido() {
+        assertThatThrownBy(() -> ExtractService.FormatoExtrato.de("xml"))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage("Formato de exportação inválido. Use: csv ou ndjson");
+    }
+    private List<OperacaoDto> paraDtos(Operacao... operacoes) {
+        return Arrays.stream(operacoes)
+                .map(o -> new OperacaoDto(o.getId(), o.getTipo(), o.getDataHora(), o.getValor(), o.getUsuarioResponsavel()))
+                .toList();
     }
 }
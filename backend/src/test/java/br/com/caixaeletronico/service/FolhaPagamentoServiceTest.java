@@ -0,0 +1,178 @@
+package br.com.caixaeletronico.service;
+import br.com.caixaeletronico.event.PagamentosAgendadosEmLoteEvent;
+import br.com.caixaeletronico.model.Conta;
+import br.com.caixaeletronico.model.PagamentoAgendado;
+import br.com.caixaeletronico.repository.ContaRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.mockito.stubbing.Answer;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("FolhaPagamentoService Tests")
+class FolhaPagamentoServiceTest {
+    @Mock
+    private ContaRepository contaRepository;
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private EntityManager entityManager;
+    @InjectMocks
+    private FolhaPagamentoService folhaPagamentoService;
+    private final LocalDate dataInicio = LocalDate.of(2025, 8, 5);
+    private final AtomicLong proximoId = new AtomicLong(11);
+    private final Answer<Void> atribuirId = invocacao -> {
+        invocacao.<PagamentoAgendado>getArgument(0).setId(proximoId.getAndIncrement());
+        return null;
+    };
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(folhaPagamentoService, "clock", Clock.systemDefaultZone());
+        ReflectionTestUtils.setField(folhaPagamentoService, "maximoLinhas", 100);
+        ReflectionTestUtils.setField(folhaPagamentoService, "tamanhoLote", 2);
+        ReflectionTestUtils.setField(folhaPagamentoService, "minutosRetencao", 60L);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(entityManager.getReference(eq(Conta.class), any())).thenAnswer(invocacao -> {
+            Conta conta = new Conta();
+            conta.setId(invocacao.getArgument(1));
+            return conta;
+        });
+        doAnswer(atribuirId).when(entityManager).persist(any(PagamentoAgendado.class));
+        folhaPagamentoService.inicializar();
+        folhaPagamentoService.encerrar();
+        ReflectionTestUtils.setField(folhaPagamentoService, "executor", (Executor) Runnable::run);
+    }
+    @Test
+    @DisplayName("Deve gravar a folha em lotes e concluir com o andamento completo")
+    void deveGravarFolhaEmLotes() {
+        when(contaRepository.findIdsExistentes(anyCollection())).thenReturn(List.of(2L, 3L, 4L));
+        FolhaPagamentoService.ProgressoFolha progresso = folhaPagamentoService.agendarFolha(1L, json("""
+            [
+                {"contaDestinoId": 2, "valor": 3500.00, "parcelas": 1, "periodicidadeDias": 30},
+                {"contaDestinoId": 3, "valor": 4200.00, "parcelas": 2, "periodicidadeDias": 30},
+                {"contaDestinoId": 4, "valor": 1000.00, "parcelas": 1, "periodicidadeDias": 30}
+            ]
+            """), dataInicio, "Folha de agosto");
+        assertThat(progresso.getStatus()).isEqualTo(FolhaPagamentoService.StatusFolha.CONCLUIDA);
+        assertThat(progresso.getTotal()).isEqualTo(3);
+        assertThat(progresso.getGravados()).isEqualTo(3);
+        assertThat(progresso.getPercentual()).isEqualTo(100);
+        ArgumentCaptor<PagamentoAgendado> pagamentos = ArgumentCaptor.forClass(PagamentoAgendado.class);
+        verify(entityManager, times(3)).persist(pagamentos.capture());
+        assertThat(pagamentos.getAllValues().get(1).getContaDestino().getId()).isEqualTo(3L);
+        assertThat(pagamentos.getAllValues().get(1).getValorParcela()).isEqualByComparingTo(new BigDecimal("2100.00"));
+        assertThat(pagamentos.getAllValues().get(1).getDataProximaExecucao()).isEqualTo(dataInicio);
+        verify(entityManager, times(2)).flush();
+        verify(entityManager, times(2)).clear();
+        ArgumentCaptor<PagamentosAgendadosEmLoteEvent> evento = ArgumentCaptor.forClass(PagamentosAgendadosEmLoteEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(evento.capture());
+        assertThat(evento.getValue().getPagamentoIds()).containsExactly(11L, 12L, 13L);
+        assertThat(evento.getValue().getDataProximaExecucao()).isEqualTo(dataInicio);
+        verify(contaRepository, times(1)).findIdsExistentes(anyCollection());
+        assertThat(folhaPagamentoService.obterProgresso(progresso.getId())).isSameAs(progresso);
+    }
+    @Test
+    @DisplayName("Deve recusar a folha inteira com contas destino inexistentes ou linhas inválidas")
+    void deveRecusarFolhaComLinhasInvalidas() {
+        when(contaRepository.findIdsExistentes(anyCollection())).thenReturn(List.of(2L));
+        InputStream folha = json("""
+            [
+                {"contaDestinoId": 2, "valor": 3500.00, "parcelas": 1, "periodicidadeDias": 30},
+                {"contaDestinoId": 99, "valor": 4200.00, "parcelas": 1, "periodicidadeDias": 30},
+                {"contaDestinoId": 2, "valor": 0, "parcelas": 1, "periodicidadeDias": 30},
+                {"contaDestinoId": 1, "valor": 10.00, "parcelas": 1, "periodicidadeDias": 30}
+            ]
+            """);
+        assertThatThrownBy(() -> folhaPagamentoService.agendarFolha(1L, folha, dataInicio, "Folha"))
+            .isInstanceOf(RuntimeException.class)
+            .hasMessageContaining("linha 3: valor deve ser maior que zero")
+            .hasMessageContaining("linha 4: conta origem e destino não podem ser iguais")
+            .hasMessageContaining("conta destino 99 não encontrada");
+        verify(entityManager, never()).persist(any());
+    }
+    @Test
+    @DisplayName("Deve consultar as contas destino em blocos, sem repetir ids")
+    void deveConsultarContasDestinoEmBlocos() {
+        int linhas = FolhaPagamentoService.IDS_POR_CONSULTA + 1;
+        ReflectionTestUtils.setField(folhaPagamentoService, "maximoLinhas", linhas + 1);
+        ReflectionTestUtils.setField(folhaPagamentoService, "tamanhoLote", 1000);
+        StringBuilder folha = new StringBuilder("[");
+        for (int i = 0; i < linhas; i++) {
+            folha.append(i == 0 ? "" : ",").append("{\"contaDestinoId\": ").append(i + 2)
+                .append(", \"valor\": 10.00, \"parcelas\": 1, \"periodicidadeDias\": 30}");
+        }
+        folha.append(",{\"contaDestinoId\": 2, \"valor\": 10.00, \"parcelas\": 1, \"periodicidadeDias\": 30}]");
+        when(contaRepository.findIdsExistentes(anyCollection())).thenAnswer(invocacao ->
+            List.copyOf(invocacao.<Collection<Long>>getArgument(0)));
+        FolhaPagamentoService.ProgressoFolha progresso = folhaPagamentoService.agendarFolha(1L,
+            json(folha.toString()), dataInicio, "Folha");
+        assertThat(progresso.getGravados()).isEqualTo(linhas + 1);
+        verify(contaRepository, times(2)).findIdsExistentes(anyCollection());
+    }
+    @Test
+    @DisplayName("Deve recusar folha acima do limite de linhas")
+    void deveRecusarFolhaAcimaDoLimite() {
+        ReflectionTestUtils.setField(folhaPagamentoService, "maximoLinhas", 1);
+        InputStream folha = json("""
+            [
+                {"contaDestinoId": 2, "valor": 10.00, "parcelas": 1, "periodicidadeDias": 30},
+                {"contaDestinoId": 3, "valor": 10.00, "parcelas": 1, "periodicidadeDias": 30}
+            ]
+            """);
+        assertThatThrownBy(() -> folhaPagamentoService.agendarFolha(1L, folha, dataInicio, "Folha"))
+            .hasMessage("Folha excede o limite de 1 pagamentos");
+        verifyNoInteractions(contaRepository);
+    }
+    @Test
+    @DisplayName("Deve marcar a folha como falha e zerar o andamento se a gravação falhar")
+    void deveMarcarFolhaComoFalhaSeGravacaoFalhar() {
+        when(contaRepository.findIdsExistentes(anyCollection())).thenReturn(List.of(2L, 3L, 4L));
+        doAnswer(atribuirId).doAnswer(atribuirId).doThrow(new RuntimeException("Erro no banco"))
+            .when(entityManager).persist(any());
+        FolhaPagamentoService.ProgressoFolha progresso = folhaPagamentoService.agendarFolha(1L, json("""
+            [
+                {"contaDestinoId": 2, "valor": 10.00, "parcelas": 1, "periodicidadeDias": 30},
+                {"contaDestinoId": 3, "valor": 10.00, "parcelas": 1, "periodicidadeDias": 30},
+                {"contaDestinoId": 4, "valor": 10.00, "parcelas": 1, "periodicidadeDias": 30}
+            ]
+            """), dataInicio, "Folha");
+        assertThat(progresso.getStatus()).isEqualTo(FolhaPagamentoService.StatusFolha.FALHOU);
+        assertThat(progresso.getErro()).isEqualTo("Erro no banco");
+        assertThat(progresso.getGravados()).isZero();
+        assertThat(progresso.getConcluidaEm()).isNotNull();
+    }
+    private InputStream json(String conteudo) {
+        return new ByteArrayInputStream(conteudo.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,86 @@
+package br.com.caixaeletronico.service;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+@ExtendWith(MockitoExtension.class)
+@DisplayName("GerenciadorBloqueioContas Tests")
+class GerenciadorBloqueioContasTest {
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @InjectMocks
+    private GerenciadorBloqueioContas gerenciador;
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(gerenciador, "quantidadeFaixas", 64);
+        ReflectionTestUtils.setField(gerenciador, "timeoutMs", 100L);
+        gerenciador.criarFaixas();
+    }
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+    @Test
+    @DisplayName("Deve exigir transação ativa")
+    void deveExigirTransacaoAtiva() {
+        assertThatThrownBy(() -> gerenciador.bloquear(1L))
+            .isInstanceOf(IllegalStateException.class);
+    }
+    @Test
+    @DisplayName("Deve manter a conta bloqueada até o fim da transação")
+    void deveManterContaBloqueadaAteFimDaTransacao() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        gerenciador.bloquear(2L, 1L);
+        assertThatThrownBy(() -> emOutraTransacao(1L).get(5, TimeUnit.SECONDS))
+            .hasRootCauseMessage("Conta em uso por outra operação. Tente novamente em instantes");
+        concluirTransacao();
+        emOutraTransacao(1L).get(5, TimeUnit.SECONDS);
+        verifyNoInteractions(jdbcTemplate);
+    }
+    @Test
+    @DisplayName("Deve obter advisory locks em ordem de id quando distribuído")
+    void deveObterAdvisoryLocksEmOrdemDeIdQuandoDistribuido() {
+        ReflectionTestUtils.setField(gerenciador, "distribuido", true);
+        TransactionSynchronizationManager.initSynchronization();
+        gerenciador.bloquear(9L, 3L, 9L);
+        var ordem = inOrder(jdbcTemplate);
+        ordem.verify(jdbcTemplate).queryForObject(anyString(), eq(Object.class), eq(3L));
+        ordem.verify(jdbcTemplate).queryForObject(anyString(), eq(Object.class), eq(9L));
+        verifyNoMoreInteractions(jdbcTemplate);
+        concluirTransacao();
+    }
+    private CompletableFuture<Void> emOutraTransacao(Long contaId) {
+        return CompletableFuture.runAsync(() -> {
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                gerenciador.bloquear(contaId);
+                concluirTransacao();
+            } finally {
+                if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                    TransactionSynchronizationManager.clearSynchronization();
+                }
+            }
+        });
+    }
+    private void concluirTransacao() {
+        for (TransactionSynchronization sincronizacao : TransactionSynchronizationManager.getSynchronizations()) {
+            sincronizacao.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+}
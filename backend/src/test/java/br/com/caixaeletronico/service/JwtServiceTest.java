@@ -1,4 +1,8 @@
 package br.com.caixaeletronico.service;
+import br.com.caixaeletronico.config.CustomUserDetailsService;
+import br.com.caixaeletronico.model.PerfilUsuario;
+import br.com.caixaeletronico.model.Usuario;
+import br.com.caixaeletronico.util.TestDataBuilder;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -17,6 +21,7 @@ class JwtServiceTest {
     void setUp() {
         ReflectionTestUtils.setField(jwtService, "jwtSecret", "minha-chave-secreta-super-segura-para-jwt-tokens-teste");
         ReflectionTestUtils.setField(jwtService, "jwtExpiration", 86400000L);
+        jwtService.inicializar();
     }
     @Test
     @DisplayName("Deve gerar token JWT válido")
@@ -119,4 +124,25 @@ class JwtServiceTest {
         assertThat(loginExtraido).isEqualTo(loginEspecial);
         assertThat(tokenValido).isTrue();
     }
+    @Test
+    @DisplayName("Deve montar o principal só com as claims do token")
+    void deveMontarPrincipalSoComAsClaimsDoToken() {
+        Usuario usuario = TestDataBuilder.umUsuario().comId(7L).comLogin("joao").comPerfil(PerfilUsuario.CLIENTE).build();
+        String token = jwtService.gerarToken(usuario, 42L);
+        CustomUserDetailsService.CustomUserPrincipal principal =
+            CustomUserDetailsService.CustomUserPrincipal.deClaims(jwtService.lerClaims(token));
+        assertThat(principal).isNotNull();
+        assertThat(principal.getUsername()).isEqualTo("joao");
+        assertThat(principal.getUsuario().getId()).isEqualTo(7L);
+        assertThat(principal.getUsuario().getEmail()).isEqualTo(usuario.getEmail());
+        assertThat(principal.getContaId()).isEqualTo(42L);
+        assertThat(principal.podeAcessarConta(42L)).isTrue();
+        assertThat(principal.podeAcessarConta(43L)).isFalse();
+    }
+    @Test
+    @DisplayName("Não deve montar principal a partir de token sem claims de identidade")
+    void naoDeveMontarPrincipalDeTokenSemClaimsDeIdentidade() {
+        String token = jwtService.gerarToken("joao");
+        assertThat(CustomUserDetailsService.CustomUserPrincipal.deClaims(jwtService.lerClaims(token))).isNull();
+    }
 }
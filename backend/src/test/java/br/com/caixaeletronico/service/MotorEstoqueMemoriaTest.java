@@ -0,0 +1,148 @@
+package br.com.caixaeletronico.service;
+import br.com.caixaeletronico.model.CheckpointEstoque;
+import br.com.caixaeletronico.model.ValorCedula;
+import br.com.caixaeletronico.model.VetorCedulas;
+import br.com.caixaeletronico.repository.CheckpointEstoqueRepository;
+import br.com.caixaeletronico.repository.ConfirmacaoEstoqueRepository;
+import br.com.caixaeletronico.repository.EstoqueGlobalRepository;
+import br.com.caixaeletronico.util.TestDataBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+@ExtendWith(MockitoExtension.class)
+@DisplayName("MotorEstoqueMemoria Tests")
+class MotorEstoqueMemoriaTest {
+    @Mock
+    private EstoqueGlobalRepository estoqueGlobalRepository;
+    @Mock
+    private CheckpointEstoqueRepository checkpointEstoqueRepository;
+    @Mock
+    private ConfirmacaoEstoqueRepository confirmacaoEstoqueRepository;
+    @InjectMocks
+    private MotorEstoqueMemoria motorEstoque;
+    @TempDir
+    Path diretorio;
+    private Path journal;
+    private final GerenciadorTransacoesTeste transactionManager = new GerenciadorTransacoesTeste();
+    @BeforeEach
+    void setUp() {
+        journal = diretorio.resolve("estoque-journal.log");
+        configurar(motorEstoque);
+        when(estoqueGlobalRepository.findAll()).thenReturn(List.of(
+                TestDataBuilder.umEstoqueGlobal().comValorCedula(ValorCedula.CEM).comQuantidade(3).build()
+        ));
+    }
+    @AfterEach
+    void tearDown() throws Exception {
+        motorEstoque.parar();
+    }
+    private void configurar(MotorEstoqueMemoria motor) {
+        ReflectionTestUtils.setField(motor, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(motor, "caminhoJournal", journal.toString());
+        ReflectionTestUtils.setField(motor, "capacidadeFila", 16);
+        ReflectionTestUtils.setField(motor, "sincronizarJournal", false);
+        ReflectionTestUtils.setField(motor, "tempoEsperaMs", 5000L);
+        motor.criarFila();
+    }
+    @Test
+    @DisplayName("Deve aplicar créditos e débitos e rejeitar débito acima do estoque")
+    void deveAplicarMovimentosERejeitarDebitoAcimaDoEstoque() throws Exception {
+        motorEstoque.iniciar();
+        motorEstoque.debitar(VetorCedulas.de(ValorCedula.CEM, 2));
+        motorEstoque.creditar(VetorCedulas.de(ValorCedula.DEZ, 5));
+        assertThatThrownBy(() -> motorEstoque.debitar(VetorCedulas.de(ValorCedula.CEM, 2)))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("R$100");
+        assertThat(motorEstoque.obterQuantidades().getQuantidade(ValorCedula.CEM)).isEqualTo(1);
+        assertThat(motorEstoque.obterQuantidades().getQuantidade(ValorCedula.DEZ)).isEqualTo(5);
+        assertThat(Files.readAllLines(journal)).hasSize(2);
+        verify(confirmacaoEstoqueRepository).registrar(1L);
+        verify(confirmacaoEstoqueRepository).registrar(2L);
+    }
+    @Test
+    @DisplayName("Deve persistir variações confirmadas, remover as marcas e rotacionar o journal")
+    void devePersistirVariacoesERotacionarJournal() throws Exception {
+        motorEstoque.iniciar();
+        motorEstoque.debitar(VetorCedulas.de(ValorCedula.CEM, 1));
+        motorEstoque.debitar(VetorCedulas.de(ValorCedula.CEM, 1));
+        motorEstoque.persistirVariacoes();
+        verify(estoqueGlobalRepository).aplicarVariacoes(VetorCedulas.de(ValorCedula.CEM, -2));
+        verify(confirmacaoEstoqueRepository).removerSequencias(List.of(1L, 2L));
+        ArgumentCaptor<CheckpointEstoque> checkpoint = ArgumentCaptor.forClass(CheckpointEstoque.class);
+        verify(checkpointEstoqueRepository).save(checkpoint.capture());
+        assertThat(checkpoint.getValue().getSequencia()).isEqualTo(2L);
+        assertThat(Files.readAllLines(journal)).isEmpty();
+        motorEstoque.persistirVariacoes();
+        verify(estoqueGlobalRepository, times(1)).aplicarVariacoes(any());
+        assertThat(motorEstoque.obterQuantidades().getQuantidade(ValorCedula.CEM)).isEqualTo(1);
+    }
+    @Test
+    @DisplayName("Deve desfazer em memória o débito de uma transação revertida")
+    void deveDesfazerDebitoDeTransacaoRevertida() throws Exception {
+        motorEstoque.iniciar();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            motorEstoque.debitar(VetorCedulas.de(ValorCedula.CEM, 2));
+            assertThat(motorEstoque.obterQuantidades().getQuantidade(ValorCedula.CEM)).isEqualTo(1);
+            status.setRollbackOnly();
+        });
+        motorEstoque.persistirVariacoes();
+        assertThat(motorEstoque.obterQuantidades().getQuantidade(ValorCedula.CEM)).isEqualTo(3);
+        verify(estoqueGlobalRepository).aplicarVariacoes(VetorCedulas.VAZIO);
+        assertThat(Files.readAllLines(journal)).isEmpty();
+    }
+    @Test
+    @DisplayName("Deve reaplicar apenas as entradas confirmadas posteriores ao checkpoint")
+    void deveReaplicarApenasEntradasConfirmadas() throws Exception {
+        motorEstoque.iniciar();
+        motorEstoque.debitar(VetorCedulas.de(ValorCedula.CEM, 1));
+        motorEstoque.debitar(VetorCedulas.de(ValorCedula.CEM, 1));
+        ReflectionTestUtils.setField(motorEstoque, "ativo", false);
+        Files.writeString(journal, "3;0;0;0;0;0;-1;0;2\n", StandardOpenOption.APPEND);
+        when(checkpointEstoqueRepository.findById(1L)).thenReturn(Optional.of(new CheckpointEstoque(1L, 1L)));
+        when(confirmacaoEstoqueRepository.findSequenciasApos(1L)).thenReturn(List.of(3L));
+        MotorEstoqueMemoria reiniciado = new MotorEstoqueMemoria();
+        ReflectionTestUtils.setField(reiniciado, "estoqueGlobalRepository", estoqueGlobalRepository);
+        ReflectionTestUtils.setField(reiniciado, "checkpointEstoqueRepository", checkpointEstoqueRepository);
+        ReflectionTestUtils.setField(reiniciado, "confirmacaoEstoqueRepository", confirmacaoEstoqueRepository);
+        configurar(reiniciado);
+        reiniciado.iniciar();
+        assertThat(reiniciado.obterQuantidades().getQuantidade(ValorCedula.CEM)).isEqualTo(2);
+        assertThat(Files.readAllLines(journal)).containsExactly("3;0;0;0;0;0;-1;0;2");
+        ReflectionTestUtils.setField(reiniciado, "ativo", false);
+    }
+    private static final class GerenciadorTransacoesTeste extends AbstractPlatformTransactionManager {
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
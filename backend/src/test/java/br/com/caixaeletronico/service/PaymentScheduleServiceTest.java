@@ -10,6 +10,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.Optional;
@@ -23,6 +24,8 @@ class PaymentScheduleServiceTest {
     private PagamentoAgendadoRepository pagamentoAgendadoRepository;
     @Mock
     private ContaRepository contaRepository;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
     @InjectMocks
     private PaymentScheduleService paymentScheduleService;
     @Test
@@ -0,0 +1,203 @@
+package br.com.caixaeletronico.service;
+import br.com.caixaeletronico.command.CommandFactory;
+import br.com.caixaeletronico.command.OperacaoCommand;
+import br.com.caixaeletronico.event.PagamentoAgendadoAlteradoEvent;
+import br.com.caixaeletronico.model.PagamentoAgendado;
+import br.com.caixaeletronico.model.StatusAgendamento;
+import br.com.caixaeletronico.model.TipoOperacao;
+import br.com.caixaeletronico.repository.PagamentoAgendadoRepository;
+import br.com.caixaeletronico.util.TestDataBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("ProcessadorPagamentosAgendados Tests")
+class ProcessadorPagamentosAgendadosTest {
+    @Mock
+    private PagamentoAgendadoRepository pagamentoAgendadoRepository;
+    @Mock
+    private CommandFactory commandFactory;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @InjectMocks
+    private ProcessadorPagamentosAgendados processador;
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(processador, "clock", Clock.systemDefaultZone());
+        ReflectionTestUtils.setField(processador, "tamanhoLote", 2);
+        ReflectionTestUtils.setField(processador, "threads", 2);
+        ReflectionTestUtils.setField(processador, "minutosReserva", 15L);
+        ReflectionTestUtils.setField(processador, "maximoTentativas", 3);
+        ReflectionTestUtils.setField(processador, "minutosEsperaInicial", 15L);
+        ReflectionTestUtils.setField(processador, "minutosEsperaMaxima", 60L);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        processador.inicializar();
+    }
+    @AfterEach
+    void tearDown() {
+        processador.encerrar();
+    }
+    @Test
+    @DisplayName("Deve reservar e processar os lotes até esgotar os vencidos")
+    void deveReservarEProcessarLotesAteEsgotarVencidos() {
+        PagamentoAgendado p1 = vencido(1L);
+        PagamentoAgendado p2 = vencido(2L);
+        PagamentoAgendado p3 = vencido(3L);
+        when(pagamentoAgendadoRepository.findVencidosParaReserva(any(), any(), eq(0L), any(Limit.class)))
+            .thenReturn(List.of(p1, p2));
+        when(pagamentoAgendadoRepository.findVencidosParaReserva(any(), any(), eq(2L), any(Limit.class)))
+            .thenReturn(List.of(p3));
+        when(pagamentoAgendadoRepository.findVencidosParaReserva(any(), any(), eq(3L), any(Limit.class)))
+            .thenReturn(List.of());
+        for (PagamentoAgendado p : List.of(p1, p2, p3)) {
+            when(pagamentoAgendadoRepository.findByIdParaProcessamento(p.getId())).thenReturn(Optional.of(p));
+        }
+        OperacaoCommand command = mock(OperacaoCommand.class);
+        when(commandFactory.criarCommand(eq(TipoOperacao.PAGAMENTO_PARCELA), any(Object[].class))).thenReturn(command);
+        ProcessadorPagamentosAgendados.ResumoExecucao resumo = processador.processarVencidos();
+        assertThat(resumo.processados()).isEqualTo(3);
+        assertThat(resumo.falhas()).isZero();
+        verify(command, times(3)).executar();
+        assertThat(p1.getReservadoAte()).isNull();
+        assertThat(p3.getReservadoAte()).isNull();
+    }
+    @Test
+    @DisplayName("Uma parcela com falha não deve impedir as demais e fica em espera")
+    void parcelaComFalhaNaoDeveImpedirAsDemais() {
+        PagamentoAgendado p1 = vencido(1L);
+        PagamentoAgendado p2 = vencido(2L);
+        when(pagamentoAgendadoRepository.findVencidosParaReserva(any(), any(), eq(0L), any(Limit.class)))
+            .thenReturn(List.of(p1, p2));
+        when(pagamentoAgendadoRepository.findVencidosParaReserva(any(), any(), eq(2L), any(Limit.class)))
+            .thenReturn(List.of());
+        when(pagamentoAgendadoRepository.findByIdParaProcessamento(1L)).thenReturn(Optional.of(p1));
+        when(pagamentoAgendadoRepository.findByIdParaProcessamento(2L)).thenReturn(Optional.of(p2));
+        OperacaoCommand falha = mock(OperacaoCommand.class);
+        doThrow(new RuntimeException("Saldo insuficiente para pagamento da parcela")).when(falha).executar();
+        OperacaoCommand sucesso = mock(OperacaoCommand.class);
+        when(commandFactory.criarCommand(TipoOperacao.PAGAMENTO_PARCELA, 1L)).thenReturn(falha);
+        when(commandFactory.criarCommand(TipoOperacao.PAGAMENTO_PARCELA, 2L)).thenReturn(sucesso);
+        ProcessadorPagamentosAgendados.ResumoExecucao resumo = processador.processarVencidos();
+        assertThat(resumo.processados()).isEqualTo(1);
+        assertThat(resumo.falhas()).isEqualTo(1);
+        assertThat(p1.getTentativas()).isEqualTo(1);
+        assertThat(p1.getUltimoErro()).isEqualTo("Saldo insuficiente para pagamento da parcela");
+        assertThat(p1.getProximaTentativa()).isAfter(LocalDateTime.now().plusMinutes(14));
+        assertThat(p1.getReservadoAte()).isNull();
+        assertThat(p1.getStatus()).isEqualTo(StatusAgendamento.ATIVO);
+        verify(sucesso).executar();
+    }
+    @Test
+    @DisplayName("Deve encerrar como FALHOU ao esgotar as tentativas")
+    void deveEncerrarComoFalhouAoEsgotarTentativas() {
+        PagamentoAgendado p1 = vencido(1L);
+        p1.setTentativas(2);
+        when(pagamentoAgendadoRepository.findByIdParaProcessamento(1L)).thenReturn(Optional.of(p1));
+        OperacaoCommand falha = mock(OperacaoCommand.class);
+        doThrow(new RuntimeException("Saldo insuficiente para pagamento da parcela")).when(falha).executar();
+        when(commandFactory.criarCommand(TipoOperacao.PAGAMENTO_PARCELA, 1L)).thenReturn(falha);
+        Map<Long, ProcessadorPagamentosAgendados.ResultadoParcela> resultados = processador.processarPagamentos(List.of(1L));
+        assertThat(resultados).containsEntry(1L, ProcessadorPagamentosAgendados.ResultadoParcela.FALHA);
+        assertThat(p1.getStatus()).isEqualTo(StatusAgendamento.FALHOU);
+        assertThat(p1.getTentativas()).isEqualTo(3);
+        assertThat(p1.getProximaTentativa()).isNull();
+    }
+    @Test
+    @DisplayName("Não deve cobrar parcela ainda em espera após falha")
+    void naoDeveCobrarParcelaEmEspera() {
+        PagamentoAgendado p1 = vencido(1L);
+        p1.registrarFalha("Saldo insuficiente para pagamento da parcela", LocalDateTime.now().plusMinutes(10));
+        when(pagamentoAgendadoRepository.findByIdParaProcessamento(1L)).thenReturn(Optional.of(p1));
+        Map<Long, ProcessadorPagamentosAgendados.ResultadoParcela> resultados = processador.processarPagamentos(List.of(1L));
+        assertThat(resultados).containsEntry(1L, ProcessadorPagamentosAgendados.ResultadoParcela.IGNORADA);
+        verifyNoInteractions(commandFactory);
+    }
+    @Test
+    @DisplayName("Deve devolver TRAVADA para pagamento travado por outra transação e IGNORADA para apagado")
+    void deveDistinguirPagamentoTravadoDeApagado() {
+        when(pagamentoAgendadoRepository.findByIdParaProcessamento(anyLong())).thenReturn(Optional.empty());
+        when(pagamentoAgendadoRepository.existsById(1L)).thenReturn(true);
+        when(pagamentoAgendadoRepository.existsById(2L)).thenReturn(false);
+        Map<Long, ProcessadorPagamentosAgendados.ResultadoParcela> resultados = processador.processarPagamentos(List.of(1L, 2L));
+        assertThat(resultados).containsEntry(1L, ProcessadorPagamentosAgendados.ResultadoParcela.TRAVADA)
+            .containsEntry(2L, ProcessadorPagamentosAgendados.ResultadoParcela.IGNORADA);
+        verifyNoInteractions(commandFactory, eventPublisher);
+    }
+    @Test
+    @DisplayName("Deve devolver TRAVADA quando a falha não pôde ser registrada por trava")
+    void deveDevolverTravadaQuandoFalhaNaoFoiRegistrada() {
+        PagamentoAgendado p1 = vencido(1L);
+        when(pagamentoAgendadoRepository.findByIdParaProcessamento(1L))
+            .thenReturn(Optional.of(p1))
+            .thenReturn(Optional.empty());
+        when(pagamentoAgendadoRepository.existsById(1L)).thenReturn(true);
+        OperacaoCommand falha = mock(OperacaoCommand.class);
+        doThrow(new RuntimeException("Saldo insuficiente para pagamento da parcela")).when(falha).executar();
+        when(commandFactory.criarCommand(TipoOperacao.PAGAMENTO_PARCELA, 1L)).thenReturn(falha);
+        Map<Long, ProcessadorPagamentosAgendados.ResultadoParcela> resultados = processador.processarPagamentos(List.of(1L));
+        assertThat(resultados).containsEntry(1L, ProcessadorPagamentosAgendados.ResultadoParcela.TRAVADA);
+        assertThat(p1.getTentativas()).isZero();
+        verifyNoInteractions(eventPublisher);
+    }
+    @Test
+    @DisplayName("A espera deve dobrar a cada falha até o máximo")
+    void esperaDeveDobrarACadaFalhaAteOMaximo() {
+        PoliticaTentativas politica = new PoliticaTentativas(5, 15, 60);
+        LocalDateTime agora = LocalDateTime.of(2025, 1, 1, 0, 0);
+        assertThat(politica.esperaAposFalha(1)).isEqualTo(15L);
+        assertThat(politica.esperaAposFalha(2)).isEqualTo(30L);
+        assertThat(politica.esperaAposFalha(3)).isEqualTo(60L);
+        assertThat(politica.esperaAposFalha(10)).isEqualTo(60L);
+        assertThat(politica.proximaTentativa(4, agora)).isEqualTo(agora.plusMinutes(60));
+        assertThat(politica.proximaTentativa(5, agora)).isNull();
+    }
+    @Test
+    @DisplayName("Deve ignorar pagamento já processado por outra instância")
+    void deveIgnorarPagamentoJaProcessadoPorOutraInstancia() {
+        PagamentoAgendado p1 = vencido(1L);
+        when(pagamentoAgendadoRepository.findVencidosParaReserva(any(), any(), eq(0L), any(Limit.class)))
+            .thenReturn(List.of(p1));
+        when(pagamentoAgendadoRepository.findVencidosParaReserva(any(), any(), eq(1L), any(Limit.class)))
+            .thenReturn(List.of());
+        PagamentoAgendado jaProcessado = vencido(1L);
+        jaProcessado.setDataProximaExecucao(LocalDate.now().plusDays(30));
+        when(pagamentoAgendadoRepository.findByIdParaProcessamento(1L)).thenReturn(Optional.of(jaProcessado));
+        ProcessadorPagamentosAgendados.ResumoExecucao resumo = processador.processarVencidos();
+        assertThat(resumo.ignorados()).isEqualTo(1);
+        assertThat(resumo.processados()).isZero();
+        verifyNoInteractions(commandFactory);
+        verify(eventPublisher).publishEvent(any(PagamentoAgendadoAlteradoEvent.class));
+    }
+    private PagamentoAgendado vencido(Long id) {
+        PagamentoAgendado pagamento = TestDataBuilder.umPagamentoAgendado()
+            .comId(id)
+            .comStatus(StatusAgendamento.ATIVO)
+            .build();
+        pagamento.setDataProximaExecucao(LocalDate.now().minusDays(1));
+        return pagamento;
+    }
+}
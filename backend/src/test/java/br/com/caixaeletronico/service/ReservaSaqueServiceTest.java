@@ -0,0 +1,137 @@
+package br.com.caixaeletronico.service;
+import br.com.caixaeletronico.model.CombinacaoCedulas;
+import br.com.caixaeletronico.model.ReservaSaque;
+import br.com.caixaeletronico.model.ValorCedula;
+import br.com.caixaeletronico.model.VetorCedulas;
+import br.com.caixaeletronico.simulacao.RelogioVirtual;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ReservaSaqueService Tests")
+class ReservaSaqueServiceTest {
+    @Mock
+    private SaqueOptionService saqueOptionService;
+    @InjectMocks
+    private ReservaSaqueService reservaSaqueService;
+    private final CombinacaoCedulas umaNotaDeCem = new CombinacaoCedulas(VetorCedulas.de(ValorCedula.CEM, 1));
+    private final CombinacaoCedulas duasNotasDeCinquenta = new CombinacaoCedulas(VetorCedulas.de(ValorCedula.CINQUENTA, 2));
+    private final RelogioVirtual relogio = new RelogioVirtual(Instant.parse("2025-08-05T12:00:00.500Z"), ZoneId.of("UTC"));
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(reservaSaqueService, "clock", relogio);
+        ReflectionTestUtils.setField(reservaSaqueService, "ttlSegundos", 60L);
+        ReflectionTestUtils.setField(reservaSaqueService, "maximoPorConta", 2);
+        reservaSaqueService.inicializar();
+        when(saqueOptionService.obterOpcoesRaques(anyLong(), any(), eq(100)))
+                .thenReturn(List.of(umaNotaDeCem, duasNotasDeCinquenta));
+        when(saqueOptionService.obterEstoqueAtual(any())).thenReturn(VetorCedulas.de(ValorCedula.CEM, 1)
+                .somar(VetorCedulas.de(ValorCedula.CINQUENTA, 2)));
+    }
+    @Test
+    @DisplayName("Não deve oferecer a outro usuário cédulas já reservadas")
+    void naoDeveOferecerCedulasJaReservadas() {
+        ReservaSaque primeira = reservaSaqueService.reservar(1L, 100);
+        assertThat(primeira.getOpcoes()).containsExactly(umaNotaDeCem, duasNotasDeCinquenta);
+        assertThat(reservaSaqueService.getCedulasRetidas().getValorTotal()).isEqualTo(200);
+        assertThatThrownBy(() -> reservaSaqueService.reservar(2L, 100))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("reservadas");
+    }
+    @Test
+    @DisplayName("Deve confirmar opção reservada uma única vez e liberar as cédulas")
+    void deveConfirmarOpcaoReservadaUmaUnicaVez() {
+        ReservaSaque reserva = reservaSaqueService.reservar(1L, 100);
+        ReservaSaque consumida = reservaSaqueService.consumir(reserva.getIdReserva(), 1L, 100);
+        assertThat(consumida.obterOpcao(umaNotaDeCem.getIdOpcao())).isSameAs(umaNotaDeCem);
+        assertThatThrownBy(() -> reservaSaqueService.consumir(reserva.getIdReserva(), 1L, 100))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("expirada ou inexistente");
+        reservaSaqueService.liberarCedulas(consumida);
+        assertThat(reservaSaqueService.getCedulasRetidas().isVazio()).isTrue();
+        assertThat(reservaSaqueService.reservar(2L, 100).getOpcoes()).hasSize(2);
+    }
+    @Test
+    @DisplayName("Deve rejeitar reserva de outra conta ou valor")
+    void deveRejeitarReservaDeOutraContaOuValor() {
+        ReservaSaque reserva = reservaSaqueService.reservar(1L, 100);
+        assertThatThrownBy(() -> reservaSaqueService.consumir(reserva.getIdReserva(), 2L, 100))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("não corresponde");
+        assertThat(reservaSaqueService.getTotalReservas()).isEqualTo(1);
+    }
+    @Test
+    @DisplayName("Deve reter cédulas separadamente por terminal")
+    void deveReterCedulasSeparadamentePorTerminal() {
+        ReservaSaque noTerminal = reservaSaqueService.reservar(1L, "TERMINAL-01", 100);
+        assertThat(reservaSaqueService.reservar(2L, "TERMINAL-02", 100).getOpcoes()).hasSize(2);
+        assertThat(reservaSaqueService.getCedulasRetidas("TERMINAL-01").getValorTotal()).isEqualTo(200);
+        assertThat(reservaSaqueService.getCedulasRetidas().isVazio()).isTrue();
+        assertThatThrownBy(() -> reservaSaqueService.consumir(noTerminal.getIdReserva(), 1L, "TERMINAL-02", 100))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("não corresponde");
+    }
+    @Test
+    @DisplayName("Deve liberar cédulas de reservas expiradas")
+    void deveLiberarCedulasDeReservasExpiradas() {
+        reservaSaqueService.reservar(1L, 100);
+        relogio.avancar(Duration.ofSeconds(59));
+        reservaSaqueService.expirarReservas();
+        assertThat(reservaSaqueService.getTotalReservas()).isEqualTo(1);
+        relogio.avancar(Duration.ofSeconds(2));
+        reservaSaqueService.expirarReservas();
+        assertThat(reservaSaqueService.getTotalReservas()).isZero();
+        assertThat(reservaSaqueService.getTotalReservas(1L)).isZero();
+        assertThat(reservaSaqueService.getCedulasRetidas().isVazio()).isTrue();
+    }
+    @Test
+    @DisplayName("Deve substituir a reserva anterior da conta no mesmo terminal")
+    void deveSubstituirReservaAnteriorDaConta() {
+        ReservaSaque primeira = reservaSaqueService.reservar(1L, 100);
+        ReservaSaque segunda = reservaSaqueService.reservar(1L, 100);
+        assertThat(segunda.getOpcoes()).hasSize(2);
+        assertThat(reservaSaqueService.getTotalReservas()).isEqualTo(1);
+        assertThat(reservaSaqueService.getCedulasRetidas().getValorTotal()).isEqualTo(200);
+        assertThatThrownBy(() -> reservaSaqueService.consumir(primeira.getIdReserva(), 1L, 100))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("expirada ou inexistente");
+    }
+    @Test
+    @DisplayName("Deve limitar as reservas ativas por conta")
+    void deveLimitarReservasAtivasPorConta() {
+        reservaSaqueService.reservar(1L, "TERMINAL-01", 100);
+        reservaSaqueService.reservar(1L, "TERMINAL-02", 100);
+        assertThatThrownBy(() -> reservaSaqueService.reservar(1L, "TERMINAL-03", 100))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("Limite de 2 reservas");
+        assertThat(reservaSaqueService.getCedulasRetidas("TERMINAL-03").isVazio()).isTrue();
+        reservaSaqueService.reservar(1L, "TERMINAL-01", 100);
+        assertThat(reservaSaqueService.getTotalReservas(1L)).isEqualTo(2);
+    }
+    @Test
+    @DisplayName("Deve respeitar reservas de outras contas na confirmação sem reserva")
+    void deveRespeitarReservasNaConfirmacaoSemReserva() {
+        reservaSaqueService.reservar(1L, 100);
+        assertThatThrownBy(() -> reservaSaqueService.reterCombinacao(2L, null, 100, umaNotaDeCem))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("reservadas");
+        ReservaSaque retencao = reservaSaqueService.reterCombinacao(1L, null, 100, umaNotaDeCem);
+        assertThat(reservaSaqueService.getTotalReservas()).isZero();
+        assertThat(reservaSaqueService.getCedulasRetidas().getValorTotal()).isEqualTo(100);
+        assertThat(reservaSaqueService.reterCombinacao(2L, null, 100, duasNotasDeCinquenta)).isNotNull();
+        reservaSaqueService.liberarCedulas(retencao);
+        assertThat(reservaSaqueService.getCedulasRetidas().getValorTotal()).isEqualTo(100);
+    }
+}
@@ -0,0 +1,118 @@
+package br.com.caixaeletronico.service;
+import br.com.caixaeletronico.event.EstoqueAlteradoEvent;
+import br.com.caixaeletronico.model.CombinacaoCedulas;
+import br.com.caixaeletronico.model.ValorCedula;
+import br.com.caixaeletronico.model.VetorCedulas;
+import br.com.caixaeletronico.strategy.BigNotesFirstStrategy;
+import br.com.caixaeletronico.strategy.NotesStrategyFactory;
+import br.com.caixaeletronico.util.TestDataBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.util.List;
+import java.util.Map;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+@ExtendWith(MockitoExtension.class)
+@DisplayName("SaqueOptionService Tests")
+class SaqueOptionServiceTest {
+    @Mock
+    private MotorEstoque motorEstoque;
+    @Mock
+    private NotesStrategyFactory strategyFactory;
+    @InjectMocks
+    private SaqueOptionService saqueOptionService;
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(saqueOptionService, "tamanhoMaximoCache", 2);
+        when(strategyFactory.getAllStrategies()).thenReturn(List.of(new BigNotesFirstStrategy()));
+        when(motorEstoque.obterQuantidades(null)).thenReturn(VetorCedulas.doEstoque(List.of(
+                TestDataBuilder.umEstoqueGlobal().comValorCedula(ValorCedula.CINQUENTA).comQuantidade(10).build(),
+                TestDataBuilder.umEstoqueGlobal().comValorCedula(ValorCedula.DEZ).comQuantidade(10).build()
+        )));
+    }
+    @Test
+    @DisplayName("Deve reutilizar opções enquanto a versão do estoque não mudar")
+    void deveReutilizarOpcoesEnquantoVersaoNaoMudar() {
+        List<CombinacaoCedulas> primeira = saqueOptionService.obterOpcoesRaques(1L, 60);
+        List<CombinacaoCedulas> segunda = saqueOptionService.obterOpcoesRaques(2L, 60);
+        assertThat(segunda).isSameAs(primeira);
+        assertThat(saqueOptionService.obterEstatisticasCache())
+                .containsEntry("acertos", 1L)
+                .containsEntry("falhas", 1L);
+        verify(motorEstoque, times(1)).obterQuantidades(null);
+    }
+    @Test
+    @DisplayName("Não deve oferecer opções com mais notas de uma cédula do que o identificador comporta")
+    void naoDeveOferecerOpcoesSemIdentificador() {
+        when(motorEstoque.obterQuantidades(null)).thenReturn(VetorCedulas.de(ValorCedula.DOIS, 70_000));
+        assertThat(saqueOptionService.obterOpcoesRaques(1L, 2 * 66_000)).isEmpty();
+        List<CombinacaoCedulas> opcoes = saqueOptionService.obterOpcoesRaques(1L, 2 * 65_535);
+        assertThat(opcoes).hasSize(1);
+        assertThat(VetorCedulas.doIdentificador(opcoes.get(0).getIdOpcao())).isEqualTo(opcoes.get(0).getMapaCedulas());
+    }
+    @Test
+    @DisplayName("Não deve criar versão de estoque para terminal inexistente")
+    void naoDeveCriarVersaoParaTerminalInexistente() {
+        saqueOptionService.obterOpcoesRaques(1L, 60);
+        when(motorEstoque.obterQuantidades("NAO-EXISTE"))
+                .thenThrow(new RuntimeException("Terminal não encontrado: NAO-EXISTE"));
+        assertThatThrownBy(() -> saqueOptionService.obterOpcoesRaques(1L, "NAO-EXISTE", 60))
+                .hasMessage("Terminal não encontrado: NAO-EXISTE");
+        Map<?, ?> versoes = (Map<?, ?>) ReflectionTestUtils.getField(saqueOptionService, "versoesEstoque");
+        assertThat(versoes.containsKey("NAO-EXISTE")).isFalse();
+        assertThat(saqueOptionService.getVersaoEstoque("NAO-EXISTE")).isZero();
+    }
+    @Test
+    @DisplayName("Deve recalcular opções após alteração de estoque")
+    void deveRecalcularOpcoesAposAlteracaoDeEstoque() {
+        List<CombinacaoCedulas> antes = saqueOptionService.obterOpcoesRaques(1L, 60);
+        saqueOptionService.handleEstoqueAlterado(new EstoqueAlteradoEvent(this, VetorCedulas.de(ValorCedula.DEZ, -1)));
+        List<CombinacaoCedulas> depois = saqueOptionService.obterOpcoesRaques(1L, 60);
+        assertThat(depois).isNotSameAs(antes);
+        assertThat(saqueOptionService.getVersaoEstoque()).isEqualTo(1L);
+        assertThat(saqueOptionService.obterEstatisticasCache())
+                .containsEntry("tamanho", 1)
+                .containsEntry("remocoes", 1L);
+        verify(motorEstoque, times(2)).obterQuantidades(null);
+    }
+    @Test
+    @DisplayName("Deve descartar a entrada mais antiga ao atingir o tamanho máximo")
+    void deveDescartarEntradaMaisAntigaAoAtingirTamanhoMaximo() {
+        saqueOptionService.obterOpcoesRaques(1L, 50);
+        saqueOptionService.obterOpcoesRaques(1L, 60);
+        saqueOptionService.obterOpcoesRaques(1L, 70);
+        assertThat(saqueOptionService.obterEstatisticasCache())
+                .containsEntry("tamanho", 2)
+                .containsEntry("remocoes", 1L);
+        saqueOptionService.obterOpcoesRaques(1L, 70);
+        saqueOptionService.obterOpcoesRaques(1L, 50);
+        assertThat(saqueOptionService.obterEstatisticasCache())
+                .containsEntry("acertos", 1L)
+                .containsEntry("falhas", 4L);
+    }
+    @Test
+    @DisplayName("Deve manter cache e versão separados por terminal")
+    void deveManterCacheEVersaoSeparadosPorTerminal() {
+        when(motorEstoque.obterQuantidades("TERMINAL-01")).thenReturn(VetorCedulas.de(ValorCedula.DEZ, 6));
+        when(motorEstoque.obterQuantidades("TERMINAL-99"))
+                .thenThrow(new RuntimeException("Terminal não encontrado: TERMINAL-99"));
+        List<CombinacaoCedulas> global = saqueOptionService.obterOpcoesRaques(1L, 60);
+        List<CombinacaoCedulas> terminal = saqueOptionService.obterOpcoesRaques(1L, "TERMINAL-01", 60);
+        assertThat(terminal).extracting(CombinacaoCedulas::getMapaCedulas)
+                .containsExactly(VetorCedulas.de(ValorCedula.DEZ, 6));
+        saqueOptionService.handleEstoqueAlterado(
+                new EstoqueAlteradoEvent(this, "TERMINAL-01", VetorCedulas.de(ValorCedula.DEZ, -1)));
+        assertThat(saqueOptionService.getVersaoEstoque("TERMINAL-01")).isEqualTo(1L);
+        assertThat(saqueOptionService.getVersaoEstoque()).isZero();
+        assertThat(saqueOptionService.obterOpcoesRaques(2L, 60)).isSameAs(global);
+        assertThatThrownBy(() -> saqueOptionService.obterOpcoesRaques(1L, "TERMINAL-99", 60))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("Terminal não encontrado");
+    }
+}
@@ -1,4 +1,5 @@
 package br.com.caixaeletronico.service;
+import br.com.caixaeletronico.dto.OperacaoDto;
 import br.com.caixaeletronico.model.*;
 import br.com.caixaeletronico.repository.*;
 import br.com.caixaeletronico.util.TestDataBuilder;
@@ -8,9 +9,11 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -27,6 +30,10 @@ class ServiceIntegrationTest {
     private EstoqueGlobalRepository estoqueGlobalRepository;
     @Mock
     private PagamentoAgendadoRepository pagamentoAgendadoRepository;
+    @Mock
+    private MotorEstoque motorEstoque;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
     @InjectMocks
     private AccountService accountService;
     @InjectMocks
@@ -45,24 +52,14 @@ class ServiceIntegrationTest {
                 .comId(contaId)
                 .comSaldo(saldoAtual)
                 .build();
-        EstoqueGlobal estoqueCem = TestDataBuilder.umEstoqueGlobal()
-                .comValorCedula(ValorCedula.CEM)
-                .comQuantidade(10)
-                .build();
         when(contaRepository.findById(contaId)).thenReturn(Optional.of(conta));
         when(contaRepository.save(any(Conta.class))).thenReturn(conta);
-        when(estoqueGlobalRepository.findByValorCedula(ValorCedula.CEM))
-                .thenReturn(Optional.of(estoqueCem));
-        when(estoqueGlobalRepository.save(any(EstoqueGlobal.class)))
-                .thenReturn(estoqueCem);
         accountService.creditarConta(contaId, valorDeposito);
         estoqueGlobalService.adicionarCedulas(ValorCedula.CEM, 5);
         verify(contaRepository).findById(contaId);
         verify(contaRepository).save(argThat(c -> 
             c.getSaldo().equals(new BigDecimal("600.00"))));
-        verify(estoqueGlobalRepository).findByValorCedula(ValorCedula.CEM);
-        verify(estoqueGlobalRepository).save(argThat(e -> 
-            e.getQuantidade().equals(15)));
+        verify(motorEstoque).creditar(VetorCedulas.de(ValorCedula.CEM, 5));
     }
     @Test
     @DisplayName("Deve executar operação completa de saque com validação de estoque")
@@ -80,10 +77,7 @@ class ServiceIntegrationTest {
                 .build();
         when(contaRepository.findById(contaId)).thenReturn(Optional.of(conta));
         when(contaRepository.save(any(Conta.class))).thenReturn(conta);
-        when(estoqueGlobalRepository.findByValorCedula(ValorCedula.CEM))
-                .thenReturn(Optional.of(estoqueCem));
-        when(estoqueGlobalRepository.save(any(EstoqueGlobal.class)))
-                .thenReturn(estoqueCem);
+        when(motorEstoque.obterQuantidades()).thenReturn(VetorCedulas.doEstoque(List.of(estoqueCem)));
         boolean estoqueDisponivel = estoqueGlobalService.verificarDisponibilidade(ValorCedula.CEM, 3);
         if (estoqueDisponivel) {
             accountService.debitarConta(contaId, valorSaque);
@@ -93,9 +87,7 @@ class ServiceIntegrationTest {
         verify(contaRepository).findById(contaId);
         verify(contaRepository).save(argThat(c -> 
             c.getSaldo().equals(new BigDecimal("200.00"))));
-        verify(estoqueGlobalRepository, times(2)).findByValorCedula(ValorCedula.CEM);
-        verify(estoqueGlobalRepository).save(argThat(e -> 
-            e.getQuantidade().equals(7)));
+        verify(motorEstoque).debitar(VetorCedulas.de(ValorCedula.CEM, 3));
     }
     @Test
     @DisplayName("Deve impedir saque quando estoque insuficiente")
@@ -104,13 +96,12 @@ class ServiceIntegrationTest {
                 .comValorCedula(ValorCedula.CEM)
                 .comQuantidade(2)
                 .build();
-        when(estoqueGlobalRepository.findByValorCedula(ValorCedula.CEM))
-                .thenReturn(Optional.of(estoqueInsuficiente));
+        when(motorEstoque.obterQuantidades()).thenReturn(VetorCedulas.doEstoque(List.of(estoqueInsuficiente)));
         boolean estoqueDisponivel = estoqueGlobalService.verificarDisponibilidade(ValorCedula.CEM, 10);
         assertThat(estoqueDisponivel).isFalse();
         verify(contaRepository, never()).findById(any());
         verify(contaRepository, never()).save(any());
-        verify(estoqueGlobalRepository, never()).save(any());
+        verify(motorEstoque, never()).debitar(any());
     }
     @Test
     @DisplayName("Deve processar transferência entre contas")
@@ -184,11 +175,17 @@ class ServiceIntegrationTest {
         );
         when(operacaoRepository.findByContaOrderByDataHoraDesc(conta))
                 .thenReturn(operacoesExistentes);
+        Operacao maisRecente = operacoesExistentes.get(0);
+        when(operacaoRepository.findPaginaExtrato(any(), any(), any(), any(), eq(1)))
+                .thenReturn(java.util.List.of(new OperacaoDto(maisRecente.getId(),
+                        maisRecente.getTipo(), maisRecente.getDataHora(), maisRecente.getValor(),
+                        maisRecente.getUsuarioResponsavel())));
         java.util.List<Operacao> extrato = extractService.obterExtrato(conta);
-        java.util.List<Operacao> ultimasOperacoes = extractService.obterUltimasOperacoes(conta, 1);
+        java.util.List<OperacaoDto> ultimasOperacoes = extractService.obterUltimasOperacoes(conta, 1);
         assertThat(extrato).hasSize(2);
         assertThat(ultimasOperacoes).hasSize(1);
         assertThat(ultimasOperacoes.get(0).getTipo()).isEqualTo(TipoOperacao.DEPOSITO);
-        verify(operacaoRepository, times(2)).findByContaOrderByDataHoraDesc(conta);
+        verify(operacaoRepository).findByContaOrderByDataHoraDesc(conta);
+        verify(operacaoRepository).findPaginaExtrato(any(), any(), any(), any(), eq(1));
     }
 }
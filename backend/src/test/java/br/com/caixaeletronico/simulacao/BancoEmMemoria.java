@@ -0,0 +1,311 @@
+package br.com.caixaeletronico.simulacao;
+import br.com.caixaeletronico.dto.PagamentoAgendadoDTO;
+import br.com.caixaeletronico.model.Conta;
+import br.com.caixaeletronico.model.PagamentoAgendado;
+import br.com.caixaeletronico.model.StatusAgendamento;
+import br.com.caixaeletronico.repository.ContaRepository;
+import br.com.caixaeletronico.repository.PagamentoAgendadoRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+/**
+ * Contas e pagamentos agendados da simulação em vetores primitivos, com cerca de 40 bytes por
+ * pagamento, no lugar das tabelas. Expõe só o que o agendamento usa de
+ * {@link ContaRepository} e {@link PagamentoAgendadoRepository}; os outros métodos lançam
+ * {@link UnsupportedOperationException}.
+ *
+ * As entidades são montadas sob demanda num contexto por thread, aberto pelo
+ * {@link #gerenciadorTransacoes()}: o commit grava de volta nos vetores o que a transação
+ * alterou e o rollback descarta. O último erro de cada pagamento não é guardado.
+ */
+public class BancoEmMemoria {
+    private static final long NULO = Long.MIN_VALUE;
+    private static final StatusAgendamento[] STATUS = StatusAgendamento.values();
+    private final long[] saldos;
+    private final int[] origens;
+    private final int[] destinos;
+    private final long[] valoresTotais;
+    private final byte[] quantidadesParcelas;
+    private final byte[] parcelasRestantes;
+    private final short[] periodicidades;
+    private final int[] proximasExecucoes;
+    private final byte[] status;
+    private final byte[] tentativas;
+    private final long[] proximasTentativas;
+    private final long[] reservas;
+    private int totalContas;
+    private int totalPagamentos;
+    private final ThreadLocal<Contexto> contextoAtual = new ThreadLocal<>();
+    private static class Contexto {
+        private final Map<Long, Conta> contas = new HashMap<>();
+        private final Map<Long, PagamentoAgendado> pagamentos = new HashMap<>();
+    }
+    public BancoEmMemoria(int capacidadeContas, int capacidadePagamentos) {
+        saldos = new long[capacidadeContas];
+        origens = new int[capacidadePagamentos];
+        destinos = new int[capacidadePagamentos];
+        valoresTotais = new long[capacidadePagamentos];
+        quantidadesParcelas = new byte[capacidadePagamentos];
+        parcelasRestantes = new byte[capacidadePagamentos];
+        periodicidades = new short[capacidadePagamentos];
+        proximasExecucoes = new int[capacidadePagamentos];
+        status = new byte[capacidadePagamentos];
+        tentativas = new byte[capacidadePagamentos];
+        proximasTentativas = new long[capacidadePagamentos];
+        reservas = new long[capacidadePagamentos];
+    }
+    /**
+     * Cria uma conta e devolve o id dela (a partir de 1).
+     */
+    public long adicionarConta(long saldoCentavos) {
+        saldos[totalContas] = saldoCentavos;
+        return ++totalContas;
+    }
+    /**
+     * Cria um pagamento ativo e devolve o id dele (a partir de 1). Até 127 parcelas.
+     */
+    public long adicionarPagamento(long origemId, long destinoId, long valorTotalCentavos, int parcelas,
+                                   int periodicidadeDias, LocalDate inicio) {
+        int i = totalPagamentos;
+        origens[i] = (int) origemId;
+        destinos[i] = (int) destinoId;
+        valoresTotais[i] = valorTotalCentavos;
+        quantidadesParcelas[i] = (byte) parcelas;
+        parcelasRestantes[i] = (byte) parcelas;
+        periodicidades[i] = (short) periodicidadeDias;
+        proximasExecucoes[i] = (int) inicio.toEpochDay();
+        status[i] = (byte) StatusAgendamento.ATIVO.ordinal();
+        proximasTentativas[i] = NULO;
+        reservas[i] = NULO;
+        return ++totalPagamentos;
+    }
+    public int getTotalContas() {
+        return totalContas;
+    }
+    public int getTotalPagamentos() {
+        return totalPagamentos;
+    }
+    public long getSaldoCentavos(long contaId) {
+        return saldos[(int) contaId - 1];
+    }
+    public long getOrigemId(long pagamentoId) {
+        return origens[(int) pagamentoId - 1];
+    }
+    public long getDestinoId(long pagamentoId) {
+        return destinos[(int) pagamentoId - 1];
+    }
+    public int getQuantidadeParcelas(long pagamentoId) {
+        return quantidadesParcelas[(int) pagamentoId - 1];
+    }
+    public int getParcelasRestantes(long pagamentoId) {
+        return parcelasRestantes[(int) pagamentoId - 1];
+    }
+    public StatusAgendamento getStatus(long pagamentoId) {
+        return STATUS[status[(int) pagamentoId - 1]];
+    }
+    /**
+     * Valor da parcela em centavos, com o mesmo arredondamento de
+     * {@link PagamentoAgendado#getValorParcela()}.
+     */
+    public long getValorParcelaCentavos(long pagamentoId) {
+        int i = (int) pagamentoId - 1;
+        return BigDecimal.valueOf(valoresTotais[i], 2)
+            .divide(BigDecimal.valueOf(quantidadesParcelas[i]), 2, java.math.RoundingMode.HALF_UP)
+            .movePointRight(2).longValueExact();
+    }
+    public ContaRepository repositorioContas() {
+        return (ContaRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] {ContaRepository.class}, (proxy, metodo, argumentos) -> switch (metodo.getName()) {
+                case "findById" -> Optional.ofNullable(conta((Long) argumentos[0]));
+                case "save" -> salvarConta((Conta) argumentos[0]);
+                default -> metodoDeObjeto(proxy, metodo.getName(), argumentos, "ContaRepository");
+            });
+    }
+    public PagamentoAgendadoRepository repositorioPagamentos() {
+        return (PagamentoAgendadoRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] {PagamentoAgendadoRepository.class}, (proxy, metodo, argumentos) -> switch (metodo.getName()) {
+                case "findById", "findByIdParaProcessamento" -> Optional.ofNullable(pagamento((Long) argumentos[0]));
+                case "existsById" -> pagamento((Long) argumentos[0]) != null;
+                case "save" -> salvarPagamento((PagamentoAgendado) argumentos[0]);
+                case "findDtoAtivosAte" -> ativosAte((LocalDate) argumentos[0]);
+                case "findVencidosParaReserva" -> vencidosParaReserva((LocalDate) argumentos[0],
+                    (LocalDateTime) argumentos[1], (Long) argumentos[2], (Limit) argumentos[3]);
+                default -> metodoDeObjeto(proxy, metodo.getName(), argumentos, "PagamentoAgendadoRepository");
+            });
+    }
+    /**
+     * Implementação de interface que só aceita os métodos de {@link Object}, para dependências
+     * que a simulação nunca aciona.
+     */
+    public static <T> T naoSuportado(Class<T> tipo) {
+        return tipo.cast(Proxy.newProxyInstance(BancoEmMemoria.class.getClassLoader(), new Class<?>[] {tipo},
+            (proxy, metodo, argumentos) -> metodoDeObjeto(proxy, metodo.getName(), argumentos, tipo.getSimpleName())));
+    }
+    public AbstractPlatformTransactionManager gerenciadorTransacoes() {
+        return new GerenciadorTransacoes();
+    }
+    private static Object metodoDeObjeto(Object proxy, String nome, Object[] argumentos, String tipo) {
+        return switch (nome) {
+            case "toString" -> tipo + " em memória";
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "equals" -> proxy == argumentos[0];
+            default -> throw new UnsupportedOperationException(tipo + "." + nome + " não é suportado na simulação");
+        };
+    }
+    private Conta conta(Long id) {
+        if (id == null || id < 1 || id > totalContas) {
+            return null;
+        }
+        Contexto contexto = contextoAtual.get();
+        Conta conta = contexto != null ? contexto.contas.get(id) : null;
+        if (conta == null) {
+            conta = new Conta("Conta " + id, BigDecimal.valueOf(saldos[(int) (id - 1)], 2), null, String.valueOf(id));
+            conta.setId(id);
+            if (contexto != null) {
+                contexto.contas.put(id, conta);
+            }
+        }
+        return conta;
+    }
+    private Conta salvarConta(Conta conta) {
+        Contexto contexto = contextoAtual.get();
+        if (contexto != null) {
+            contexto.contas.put(conta.getId(), conta);
+        } else {
+            gravar(conta);
+        }
+        return conta;
+    }
+    private PagamentoAgendado pagamento(Long id) {
+        if (id == null || id < 1 || id > totalPagamentos) {
+            return null;
+        }
+        Contexto contexto = contextoAtual.get();
+        PagamentoAgendado pagamento = contexto != null ? contexto.pagamentos.get(id) : null;
+        if (pagamento == null) {
+            pagamento = montar(id);
+            if (contexto != null) {
+                contexto.pagamentos.put(id, pagamento);
+            }
+        }
+        return pagamento;
+    }
+    private PagamentoAgendado salvarPagamento(PagamentoAgendado pagamento) {
+        Contexto contexto = contextoAtual.get();
+        if (contexto != null) {
+            contexto.pagamentos.put(pagamento.getId(), pagamento);
+        } else {
+            gravar(pagamento);
+        }
+        return pagamento;
+    }
+    private List<PagamentoAgendadoDTO> ativosAte(LocalDate limite) {
+        long dia = limite.toEpochDay();
+        List<PagamentoAgendadoDTO> ativos = new ArrayList<>();
+        for (int i = 0; i < totalPagamentos; i++) {
+            if (status[i] == StatusAgendamento.ATIVO.ordinal() && proximasExecucoes[i] <= dia) {
+                ativos.add(new PagamentoAgendadoDTO((long) i + 1, (long) origens[i], (long) destinos[i],
+                    BigDecimal.valueOf(valoresTotais[i], 2), (int) quantidadesParcelas[i], (int) parcelasRestantes[i],
+                    (int) periodicidades[i], LocalDate.ofEpochDay(proximasExecucoes[i]), StatusAgendamento.ATIVO,
+                    "Simulação", (int) tentativas[i], null, paraData(proximasTentativas[i])));
+            }
+        }
+        return ativos;
+    }
+    private List<PagamentoAgendado> vencidosParaReserva(LocalDate hoje, LocalDateTime agora, Long aposId, Limit limite) {
+        long dia = hoje.toEpochDay();
+        long instante = paraMillis(agora);
+        List<PagamentoAgendado> vencidos = new ArrayList<>();
+        for (int i = (int) (long) aposId; i < totalPagamentos && vencidos.size() < limite.max(); i++) {
+            if (status[i] == StatusAgendamento.ATIVO.ordinal() && proximasExecucoes[i] <= dia
+                    && (reservas[i] == NULO || reservas[i] < instante)
+                    && (proximasTentativas[i] == NULO || proximasTentativas[i] <= instante)) {
+                vencidos.add(pagamento((long) i + 1));
+            }
+        }
+        return vencidos;
+    }
+    private PagamentoAgendado montar(long id) {
+        int i = (int) id - 1;
+        Conta origem = new Conta();
+        origem.setId((long) origens[i]);
+        Conta destino = new Conta();
+        destino.setId((long) destinos[i]);
+        PagamentoAgendado pagamento = new PagamentoAgendado(origem, destino, BigDecimal.valueOf(valoresTotais[i], 2),
+            (int) quantidadesParcelas[i], (int) periodicidades[i], LocalDate.ofEpochDay(proximasExecucoes[i]), "Simulação");
+        pagamento.setId(id);
+        pagamento.setParcelasRestantes((int) parcelasRestantes[i]);
+        pagamento.setStatus(STATUS[status[i]]);
+        pagamento.setTentativas((int) tentativas[i]);
+        pagamento.setProximaTentativa(paraData(proximasTentativas[i]));
+        pagamento.setReservadoAte(paraData(reservas[i]));
+        return pagamento;
+    }
+    private void gravar(Conta conta) {
+        saldos[(int) (conta.getId() - 1)] = conta.getSaldo().movePointRight(2).longValueExact();
+    }
+    private void gravar(PagamentoAgendado pagamento) {
+        int i = (int) (pagamento.getId() - 1);
+        parcelasRestantes[i] = (byte) (int) pagamento.getParcelasRestantes();
+        proximasExecucoes[i] = (int) pagamento.getDataProximaExecucao().toEpochDay();
+        status[i] = (byte) pagamento.getStatus().ordinal();
+        tentativas[i] = (byte) pagamento.getTentativas();
+        proximasTentativas[i] = paraMillis(pagamento.getProximaTentativa());
+        reservas[i] = paraMillis(pagamento.getReservadoAte());
+    }
+    private static long paraMillis(LocalDateTime data) {
+        return data == null ? NULO : data.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+    private static LocalDateTime paraData(long millis) {
+        return millis == NULO ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+    /**
+     * Transação da simulação: um contexto de entidades por thread, gravado nos vetores no commit.
+     */
+    private class GerenciadorTransacoes extends AbstractPlatformTransactionManager {
+        private static class Transacao {
+            private Contexto contexto;
+        }
+        @Override
+        protected Object doGetTransaction() {
+            Transacao transacao = new Transacao();
+            transacao.contexto = contextoAtual.get();
+            return transacao;
+        }
+        @Override
+        protected boolean isExistingTransaction(Object transacao) {
+            return ((Transacao) transacao).contexto != null;
+        }
+        @Override
+        protected void doBegin(Object transacao, TransactionDefinition definicao) {
+            Contexto contexto = new Contexto();
+            ((Transacao) transacao).contexto = contexto;
+            contextoAtual.set(contexto);
+        }
+        @Override
+        protected void doCommit(DefaultTransactionStatus situacao) {
+            Contexto contexto = ((Transacao) situacao.getTransaction()).contexto;
+            contexto.contas.values().forEach(BancoEmMemoria.this::gravar);
+            contexto.pagamentos.values().forEach(BancoEmMemoria.this::gravar);
+        }
+        @Override
+        protected void doRollback(DefaultTransactionStatus situacao) {
+        }
+        @Override
+        protected void doCleanupAfterCompletion(Object transacao) {
+            contextoAtual.remove();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package br.com.caixaeletronico.simulacao;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+/**
+ * Relógio que só anda quando mandado; o tempo nunca volta.
+ */
+public class RelogioVirtual extends Clock {
+    private final ZoneId zona;
+    private volatile long millis;
+    public RelogioVirtual(Instant inicio, ZoneId zona) {
+        this.millis = inicio.toEpochMilli();
+        this.zona = zona;
+    }
+    public synchronized void avancarPara(long instante) {
+        if (instante > millis) {
+            millis = instante;
+        }
+    }
+    public void avancar(Duration duracao) {
+        avancarPara(millis + duracao.toMillis());
+    }
+    @Override
+    public long millis() {
+        return millis;
+    }
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis);
+    }
+    @Override
+    public ZoneId getZone() {
+        return zona;
+    }
+    @Override
+    public Clock withZone(ZoneId zona) {
+        return new RelogioVirtual(instant(), zona);
+    }
+}
@@ -0,0 +1,238 @@
+package br.com.caixaeletronico.simulacao;
+import br.com.caixaeletronico.command.CommandFactory;
+import br.com.caixaeletronico.model.StatusAgendamento;
+import br.com.caixaeletronico.repository.ContaRepository;
+import br.com.caixaeletronico.repository.PagamentoAgendadoRepository;
+import br.com.caixaeletronico.service.AgendaPagamentos;
+import br.com.caixaeletronico.service.GerenciadorBloqueioContas;
+import br.com.caixaeletronico.service.MotorEstoque;
+import br.com.caixaeletronico.service.ProcessadorPagamentosAgendados;
+import br.com.caixaeletronico.service.ScheduledPaymentJob;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListenerFactory;
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+/**
+ * Simulação acelerada do agendamento de pagamentos com o código de produção: a
+ * {@link AgendaPagamentos}, o {@link ProcessadorPagamentosAgendados}, o
+ * {@link ScheduledPaymentJob} e o comando de parcela rodam num contexto Spring mínimo, sobre
+ * um {@link BancoEmMemoria} no lugar do banco e um {@link RelogioVirtual} no lugar do relógio.
+ * O relógio salta direto para o próximo vencimento da agenda ou para a reconciliação diária
+ * (00:30), então o tempo simulado anda tão rápido quanto as parcelas são cobradas.
+ *
+ * Ao fim confere os invariantes: o saldo total não muda, o saldo de cada conta é o inicial
+ * mais o que recebeu menos o que pagou pelas parcelas cobradas, nenhum saldo fica negativo,
+ * o status de cada pagamento bate com as parcelas restantes e os pagamentos em
+ * {@link StatusAgendamento#FALHOU} são os que esgotaram as tentativas.
+ *
+ * Fica nos testes. Uso, após {@code mvn test-compile}: {@code java -Xmx2g -cp
+ * target/classes:target/test-classes:<dependências> br.com.caixaeletronico.simulacao.SimuladorPagamentos
+ * [pagamentos] [contas] [dias] [semente] 2>/dev/null} (o erro padrão recebe uma linha por
+ * parcela que falha). Os pagamentos ocupam cerca de 40 bytes cada e a agenda só guarda os da
+ * janela de {@code pagamentos.agenda.janela-dias}, então 10 milhões cabem em 2 GB de heap.
+ */
+public class SimuladorPagamentos {
+    private static final int[] PERIODICIDADES = {7, 15, 30};
+    private static final int MAXIMO_VIOLACOES = 20;
+    private static final long MINUTOS_RECONCILIACAO = 30;
+    private final int quantidadePagamentos;
+    private final int quantidadeContas;
+    private final int diasSimulados;
+    private final long semente;
+    private final int maximoTentativas;
+    private final long minutosEsperaInicial;
+    private final long minutosEsperaMaxima;
+    private final RelogioVirtual relogio;
+    private final BancoEmMemoria banco;
+    private long[] saldosIniciais;
+    /**
+     * Backlog é o número de pagamentos vencidos no mesmo instante virtual, que a agenda entrega
+     * juntos ao processador antes de o relógio avançar.
+     */
+    public record Relatorio(int pagamentos, long parcelasCobradas, long falhas, long esgotados,
+                            int diasSimulados, long duracaoMs, int backlogMaximo, double backlogMedio,
+                            int pendentes, List<String> violacoes) {
+        public double vazaoPorSegundo() {
+            return duracaoMs == 0 ? parcelasCobradas + falhas : (parcelasCobradas + falhas) * 1000.0 / duracaoMs;
+        }
+        public boolean invariantesRespeitados() {
+            return violacoes.isEmpty();
+        }
+    }
+    public SimuladorPagamentos(int quantidadePagamentos, int quantidadeContas, int diasSimulados, long semente,
+                               int maximoTentativas, long minutosEsperaInicial, long minutosEsperaMaxima) {
+        if (quantidadeContas < 2) {
+            throw new IllegalArgumentException("A simulação precisa de ao menos duas contas");
+        }
+        this.quantidadePagamentos = quantidadePagamentos;
+        this.quantidadeContas = quantidadeContas;
+        this.diasSimulados = diasSimulados;
+        this.semente = semente;
+        this.maximoTentativas = maximoTentativas;
+        this.minutosEsperaInicial = minutosEsperaInicial;
+        this.minutosEsperaMaxima = minutosEsperaMaxima;
+        this.relogio = new RelogioVirtual(LocalDate.of(2025, 1, 1).atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC);
+        this.banco = new BancoEmMemoria(quantidadeContas, quantidadePagamentos);
+    }
+    public static void main(String[] args) {
+        int pagamentos = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int contas = args.length > 1 ? Integer.parseInt(args[1]) : Math.max(pagamentos / 10, 2);
+        int dias = args.length > 2 ? Integer.parseInt(args[2]) : 365;
+        long semente = args.length > 3 ? Long.parseLong(args[3]) : 42L;
+        Relatorio relatorio = new SimuladorPagamentos(pagamentos, contas, dias, semente, 5, 15, 1440).executar();
+        System.out.println("Pagamentos: " + relatorio.pagamentos() + " em " + contas + " contas, " +
+            relatorio.diasSimulados() + " dias simulados em " + relatorio.duracaoMs() + " ms");
+        System.out.println("Parcelas cobradas: " + relatorio.parcelasCobradas() + ", falhas: " + relatorio.falhas() +
+            ", pagamentos esgotados: " + relatorio.esgotados() + ", pendentes no fim: " + relatorio.pendentes());
+        System.out.printf("Vazão: %.0f parcelas/s, backlog máximo: %d, backlog médio: %.1f%n",
+            relatorio.vazaoPorSegundo(), relatorio.backlogMaximo(), relatorio.backlogMedio());
+        if (relatorio.invariantesRespeitados()) {
+            System.out.println("Invariantes respeitados");
+        } else {
+            relatorio.violacoes().forEach(violacao -> System.err.println("Violação: " + violacao));
+            System.exit(1);
+        }
+    }
+    public Relatorio executar() {
+        LocalDate inicio = LocalDate.now(relogio);
+        popular(inicio);
+        SimpleMeterRegistry medidores = new SimpleMeterRegistry();
+        try (AnnotationConfigApplicationContext contexto = criarContexto()) {
+            ProcessadorPagamentosAgendados processador = contexto.getBean(ProcessadorPagamentosAgendados.class);
+            AgendaPagamentos agenda = contexto.getBean(AgendaPagamentos.class);
+            ScheduledPaymentJob job = contexto.getBean(ScheduledPaymentJob.class);
+            processador.bindTo(medidores);
+            long fim = instanteDe(inicio.plusDays(diasSimulados));
+            long proximaReconciliacao = instanteDe(inicio) + TimeUnit.MINUTES.toMillis(MINUTOS_RECONCILIACAO);
+            long rodadas = 0;
+            long somaBacklog = 0;
+            int backlogMaximo = 0;
+            long inicioNanos = System.nanoTime();
+            agenda.recarregar();
+            while (true) {
+                long proximo = Math.min(agenda.proximoVencimento(), proximaReconciliacao);
+                if (proximo >= fim) {
+                    break;
+                }
+                relogio.avancarPara(proximo);
+                if (proximo == proximaReconciliacao) {
+                    job.processarPagamentosVencidos();
+                    proximaReconciliacao += TimeUnit.DAYS.toMillis(1);
+                    continue;
+                }
+                int entregues = agenda.dispararVencidos();
+                if (entregues > 0) {
+                    rodadas++;
+                    somaBacklog += entregues;
+                    backlogMaximo = Math.max(backlogMaximo, entregues);
+                }
+            }
+            long duracaoMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicioNanos);
+            long falhas = (long) medidores.get("pagamentos.agendados.parcelas").tag("resultado", "falha")
+                .functionCounter().count();
+            long esgotados = (long) medidores.get("pagamentos.agendados.falhas.esgotadas").functionCounter().count();
+            List<String> violacoes = new ArrayList<>();
+            long cobradas = conferirInvariantes(esgotados, violacoes);
+            return new Relatorio(quantidadePagamentos, cobradas, falhas, esgotados, diasSimulados, duracaoMs,
+                backlogMaximo, rodadas == 0 ? 0 : (double) somaBacklog / rodadas, agenda.tamanho(), violacoes);
+        }
+    }
+    /**
+     * Um processador de uma thread, para que a mesma semente reproduza a mesma simulação.
+     */
+    private AnnotationConfigApplicationContext criarContexto() {
+        AnnotationConfigApplicationContext contexto = new AnnotationConfigApplicationContext();
+        contexto.getEnvironment().getPropertySources().addFirst(new MapPropertySource("simulacao", Map.of(
+            "pagamentos.processamento.threads", "1",
+            "pagamentos.falhas.maximo-tentativas", String.valueOf(maximoTentativas),
+            "pagamentos.falhas.espera-inicial-minutos", String.valueOf(minutosEsperaInicial),
+            "pagamentos.falhas.espera-maxima-minutos", String.valueOf(minutosEsperaMaxima))));
+        contexto.registerBean(Clock.class, () -> relogio);
+        contexto.registerBean(ContaRepository.class, banco::repositorioContas);
+        contexto.registerBean(PagamentoAgendadoRepository.class, banco::repositorioPagamentos);
+        contexto.registerBean(PlatformTransactionManager.class, banco::gerenciadorTransacoes);
+        contexto.registerBean(MotorEstoque.class, () -> BancoEmMemoria.naoSuportado(MotorEstoque.class));
+        contexto.registerBean(JdbcTemplate.class, () -> new JdbcTemplate(BancoEmMemoria.naoSuportado(DataSource.class)));
+        contexto.registerBean(TransactionalEventListenerFactory.class);
+        contexto.register(GerenciadorBloqueioContas.class, CommandFactory.class, ProcessadorPagamentosAgendados.class,
+            AgendaPagamentos.class, ScheduledPaymentJob.class);
+        contexto.refresh();
+        return contexto;
+    }
+    /**
+     * Contas com saldo entre 0 e 5.000,00 e pagamentos de 10,00 a 2.010,00 em até 12 parcelas
+     * semanais, quinzenais ou mensais, começando nos primeiros 30 dias; parte das contas não
+     * tem saldo para tudo o que paga, o que exercita as novas tentativas.
+     */
+    private void popular(LocalDate inicio) {
+        Random random = new Random(semente);
+        saldosIniciais = new long[quantidadeContas];
+        for (int i = 0; i < quantidadeContas; i++) {
+            saldosIniciais[i] = random.nextInt(500_000);
+            banco.adicionarConta(saldosIniciais[i]);
+        }
+        for (int i = 0; i < quantidadePagamentos; i++) {
+            int origem = random.nextInt(quantidadeContas);
+            int destino = (origem + 1 + random.nextInt(quantidadeContas - 1)) % quantidadeContas;
+            banco.adicionarPagamento(origem + 1, destino + 1, 1_000 + random.nextInt(200_000), 1 + random.nextInt(12),
+                PERIODICIDADES[random.nextInt(PERIODICIDADES.length)], inicio.plusDays(random.nextInt(30)));
+        }
+    }
+    /**
+     * Confere os invariantes e devolve o total de parcelas cobradas.
+     */
+    private long conferirInvariantes(long esgotados, List<String> violacoes) {
+        long[] esperados = saldosIniciais.clone();
+        long cobradas = 0;
+        long falhados = 0;
+        for (long id = 1; id <= banco.getTotalPagamentos(); id++) {
+            int restantes = banco.getParcelasRestantes(id);
+            int pagas = banco.getQuantidadeParcelas(id) - restantes;
+            long valor = pagas * banco.getValorParcelaCentavos(id);
+            esperados[(int) banco.getOrigemId(id) - 1] -= valor;
+            esperados[(int) banco.getDestinoId(id) - 1] += valor;
+            cobradas += pagas;
+            StatusAgendamento status = banco.getStatus(id);
+            if ((status == StatusAgendamento.CONCLUIDO) != (restantes == 0) && violacoes.size() < MAXIMO_VIOLACOES) {
+                violacoes.add("Pagamento " + id + " " + status + " com " + restantes + " parcelas restantes");
+            }
+            if (status == StatusAgendamento.FALHOU) {
+                falhados++;
+            }
+        }
+        long totalInicial = 0;
+        long totalFinal = 0;
+        for (int i = 0; i < quantidadeContas; i++) {
+            long saldo = banco.getSaldoCentavos(i + 1);
+            totalInicial += saldosIniciais[i];
+            totalFinal += saldo;
+            if (saldo != esperados[i] && violacoes.size() < MAXIMO_VIOLACOES) {
+                violacoes.add("Conta " + (i + 1) + " com saldo " + saldo + " centavos, esperado " + esperados[i]);
+            }
+            if (saldo < 0 && violacoes.size() < MAXIMO_VIOLACOES) {
+                violacoes.add("Conta " + (i + 1) + " com saldo negativo: " + saldo + " centavos");
+            }
+        }
+        if (totalFinal != totalInicial) {
+            violacoes.add("Saldo total mudou de " + totalInicial + " para " + totalFinal + " centavos");
+        }
+        if (falhados != esgotados) {
+            violacoes.add(falhados + " pagamentos FALHOU, mas " + esgotados + " esgotaram as tentativas");
+        }
+        return cobradas;
+    }
+    private long instanteDe(LocalDate data) {
+        return data.atStartOfDay(relogio.getZone()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,29 @@
+package br.com.caixaeletronico.simulacao;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.*;
+@DisplayName("SimuladorPagamentos Tests")
+class SimuladorPagamentosTest {
+    @Test
+    @DisplayName("Deve simular um ano de parcelas preservando os invariantes de saldo")
+    void deveSimularUmAnoPreservandoInvariantes() {
+        SimuladorPagamentos.Relatorio relatorio = new SimuladorPagamentos(5_000, 500, 365, 7L,
+            3, 15, 60).executar();
+        assertThat(relatorio.violacoes()).isEmpty();
+        assertThat(relatorio.parcelasCobradas()).isPositive();
+        assertThat(relatorio.falhas()).isPositive();
+        assertThat(relatorio.esgotados()).isPositive();
+        assertThat(relatorio.backlogMaximo()).isGreaterThanOrEqualTo(1);
+    }
+    @Test
+    @DisplayName("A mesma semente deve produzir a mesma simulação")
+    void mesmaSementeDeveProduzirMesmaSimulacao() {
+        SimuladorPagamentos.Relatorio primeira = new SimuladorPagamentos(1_000, 100, 90, 11L,
+            3, 15, 60).executar();
+        SimuladorPagamentos.Relatorio segunda = new SimuladorPagamentos(1_000, 100, 90, 11L,
+            3, 15, 60).executar();
+        assertThat(segunda.parcelasCobradas()).isEqualTo(primeira.parcelasCobradas());
+        assertThat(segunda.falhas()).isEqualTo(primeira.falhas());
+        assertThat(segunda.esgotados()).isEqualTo(primeira.esgotados());
+    }
+}
@@ -0,0 +1,104 @@
+package br.com.caixaeletronico.strategy;
+import br.com.caixaeletronico.model.CombinacaoCedulas;
+import br.com.caixaeletronico.model.EstoqueGlobal;
+import br.com.caixaeletronico.model.ValorCedula;
+import br.com.caixaeletronico.model.VetorCedulas;
+import br.com.caixaeletronico.util.TestDataBuilder;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.util.Arrays;
+import java.util.List;
+import static org.assertj.core.api.Assertions.*;
+@DisplayName("OptimalNotesStrategy Tests")
+class OptimalNotesStrategyTest {
+    private final OptimalNotesStrategy strategy = new OptimalNotesStrategy();
+    private EstoqueGlobal estoque(ValorCedula valorCedula, int quantidade) {
+        return TestDataBuilder.umEstoqueGlobal().comValorCedula(valorCedula).comQuantidade(quantidade).build();
+    }
+    @Test
+    @DisplayName("Deve pagar valores que as estratégias gulosas rejeitam")
+    void devePagarValoresQueAsEstrategiasGulosasRejeitam() {
+        List<EstoqueGlobal> estoques = Arrays.asList(
+                estoque(ValorCedula.CINCO, 10),
+                estoque(ValorCedula.DOIS, 10)
+        );
+        assertThat(new BigNotesFirstStrategy().generateCombinations(6, estoques)).isEmpty();
+        List<CombinacaoCedulas> seis = strategy.generateCombinations(6, estoques);
+        List<CombinacaoCedulas> oito = strategy.generateCombinations(8, estoques);
+        assertThat(seis).isNotEmpty();
+        assertThat(seis.get(0).getMapaCedulas()).isEqualTo(VetorCedulas.de(ValorCedula.DOIS, 3));
+        assertThat(oito.get(0).getMapaCedulas()).isEqualTo(VetorCedulas.de(ValorCedula.DOIS, 4));
+    }
+    @Test
+    @DisplayName("Não deve guardar na thread a área de trabalho de valores grandes")
+    void naoDeveGuardarNaThreadAreaDeValoresGrandes() {
+        List<EstoqueGlobal> estoques = Arrays.asList(
+                estoque(ValorCedula.DUZENTOS, 1000),
+                estoque(ValorCedula.CEM, 1000)
+        );
+        strategy.generateCombinations(500, estoques);
+        List<CombinacaoCedulas> combinacoes = strategy.generateCombinations(100_000, estoques);
+        assertThat(combinacoes).isNotEmpty();
+        assertThat(combinacoes.get(0).getQuantidadeTotalDeNotas()).isEqualTo(500);
+        ThreadLocal<?> areaTrabalho = (ThreadLocal<?>) ReflectionTestUtils.getField(strategy, "areaTrabalho");
+        long[] anterior = (long[]) ReflectionTestUtils.getField(areaTrabalho.get(), "anterior");
+        assertThat(anterior.length).isLessThanOrEqualTo(OptimalNotesStrategy.VALOR_MAXIMO_AREA_REUTILIZADA + 1);
+    }
+    @Test
+    @DisplayName("Deve encontrar a combinação com menor número de notas")
+    void deveEncontrarCombinacaoComMenorNumeroDeNotas() {
+        List<EstoqueGlobal> estoques = Arrays.asList(
+                estoque(ValorCedula.DUZENTOS, 100),
+                estoque(ValorCedula.CEM, 100),
+                estoque(ValorCedula.CINQUENTA, 100),
+                estoque(ValorCedula.VINTE, 100),
+                estoque(ValorCedula.DEZ, 100),
+                estoque(ValorCedula.CINCO, 100),
+                estoque(ValorCedula.DOIS, 100)
+        );
+        List<CombinacaoCedulas> combinacoes = strategy.generateCombinations(5000, estoques);
+        assertThat(combinacoes).isNotEmpty();
+        assertThat(combinacoes.get(0).getQuantidadeTotalDeNotas()).isEqualTo(25);
+        assertThat(combinacoes).allSatisfy(c -> assertThat(c.calcularValorTotal()).isEqualTo(5000));
+    }
+    @Test
+    @DisplayName("Deve respeitar a quantidade disponível de cada cédula")
+    void deveRespeitarQuantidadeDisponivelDeCadaCedula() {
+        List<EstoqueGlobal> estoques = Arrays.asList(
+                estoque(ValorCedula.CEM, 1),
+                estoque(ValorCedula.CINQUENTA, 3),
+                estoque(ValorCedula.VINTE, 50)
+        );
+        List<CombinacaoCedulas> combinacoes = strategy.generateCombinations(400, estoques);
+        assertThat(combinacoes).isNotEmpty();
+        assertThat(combinacoes).allSatisfy(c -> {
+            assertThat(c.calcularValorTotal()).isEqualTo(400);
+            assertThat(c.getMapaCedulas().getQuantidade(ValorCedula.CEM)).isLessThanOrEqualTo(1);
+            assertThat(c.getMapaCedulas().getQuantidade(ValorCedula.CINQUENTA)).isLessThanOrEqualTo(3);
+        });
+        assertThat(combinacoes.get(0).getQuantidadeTotalDeNotas()).isEqualTo(13);
+    }
+    @Test
+    @DisplayName("Deve oferecer alternativa que preserva cédulas escassas")
+    void deveOferecerAlternativaQuePreservaCedulasEscassas() {
+        List<EstoqueGlobal> estoques = Arrays.asList(
+                estoque(ValorCedula.CEM, 2),
+                estoque(ValorCedula.CINQUENTA, 1000)
+        );
+        List<CombinacaoCedulas> combinacoes = strategy.generateCombinations(200, estoques);
+        assertThat(combinacoes).hasSizeGreaterThan(1);
+        assertThat(combinacoes).anySatisfy(c -> assertThat(c.getMapaCedulas().getQuantidade(ValorCedula.CEM)).isEqualTo(2));
+        assertThat(combinacoes).anySatisfy(c -> assertThat(c.getMapaCedulas().getQuantidade(ValorCedula.CEM)).isZero());
+    }
+    @Test
+    @DisplayName("Deve retornar lista vazia quando o valor não pode ser pago")
+    void deveRetornarListaVaziaQuandoValorNaoPodeSerPago() {
+        List<EstoqueGlobal> estoques = Arrays.asList(
+                estoque(ValorCedula.CINCO, 10),
+                estoque(ValorCedula.DOIS, 10)
+        );
+        assertThat(strategy.generateCombinations(3, estoques)).isEmpty();
+        assertThat(strategy.generateCombinations(1000, estoques)).isEmpty();
+    }
+}
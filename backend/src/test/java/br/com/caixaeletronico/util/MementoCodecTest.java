@@ -0,0 +1,44 @@
+package br.com.caixaeletronico.util;
+import br.com.caixaeletronico.model.OperationMemento;
+import br.com.caixaeletronico.model.ValorCedula;
+import br.com.caixaeletronico.model.VetorCedulas;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import static org.assertj.core.api.Assertions.*;
+@DisplayName("MementoCodec Tests")
+class MementoCodecTest {
+    @Test
+    @DisplayName("Deve codificar e decodificar variações de saldo e de cédulas")
+    void deveCodificarEDecodificarVariacoes() {
+        Map<Long, BigDecimal> variacoesSaldo = new LinkedHashMap<>();
+        variacoesSaldo.put(1L, new BigDecimal("-250.00"));
+        variacoesSaldo.put(300000L, new BigDecimal("99999999.99"));
+        VetorCedulas cedulas = VetorCedulas.de(ValorCedula.CEM, -2).somar(VetorCedulas.de(ValorCedula.CINQUENTA, -1));
+        OperationMemento memento = new OperationMemento(variacoesSaldo, cedulas, "TERMINAL-01");
+        byte[] dados = MementoCodec.codificar(memento);
+        OperationMemento lido = MementoCodec.decodificar(dados);
+        assertThat(lido.getVariacoesSaldo()).isEqualTo(variacoesSaldo);
+        assertThat(lido.getVariacoesCedulas()).isEqualTo(cedulas);
+        assertThat(lido.getTerminalId()).isEqualTo("TERMINAL-01");
+        assertThat(lido.isLegado()).isFalse();
+    }
+    @Test
+    @DisplayName("Deve gerar memento de saque com poucos bytes")
+    void deveGerarMementoDeSaqueCompacto() {
+        OperationMemento memento = new OperationMemento(
+                Map.of(1L, new BigDecimal("-100.00")), VetorCedulas.de(ValorCedula.CEM, -1), null);
+        byte[] dados = MementoCodec.codificar(memento);
+        assertThat(dados.length).isLessThanOrEqualTo(12);
+        assertThat(MementoCodec.decodificar(dados).getTerminalId()).isNull();
+    }
+    @Test
+    @DisplayName("Deve rejeitar versão desconhecida")
+    void deveRejeitarVersaoDesconhecida() {
+        assertThatThrownBy(() -> MementoCodec.decodificar(new byte[] {9, 0, 0, 0}))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Versão");
+    }
+}
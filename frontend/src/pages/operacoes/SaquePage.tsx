@@ -48,6 +48,7 @@ export const SaquePage: React.FC = () => {
   const [activeStep, setActiveStep] = useState(0);
   const [valor, setValor] = useState<string>("");
   const [opcoesSaque, setOpcoesSaque] = useState<SaqueOpcao[]>([]);
+  const [idReserva, setIdReserva] = useState<string | undefined>(undefined);
   const [opcaoSelecionada, setOpcaoSelecionada] = useState<SaqueOpcao | null>(
     null
   );
@@ -102,6 +103,7 @@ export const SaquePage: React.FC = () => {
       }
 
       setOpcoesSaque(response.dados.opcoes);
+      setIdReserva(response.dados.idReserva);
       setActiveStep(1);
     } catch (err) {
       const errorMessage =
@@ -138,6 +140,7 @@ export const SaquePage: React.FC = () => {
         contaId: accountData.contaId,
         valor: valorNumerico,
         idOpcao: opcaoSelecionada.idOpcao,
+        idReserva,
       };
 
       await operacoesService.confirmarSaque(request);
@@ -441,6 +444,7 @@ export const SaquePage: React.FC = () => {
                     setActiveStep(0);
                     setValor("");
                     setOpcoesSaque([]);
+                    setIdReserva(undefined);
                     setOpcaoSelecionada(null);
                     setOperacaoConcluida(false);
                     setError(null);
@@ -50,7 +50,7 @@ import { httpClient } from './httpClient';
  * 
  * 2. Confirmar saque:
  * Endpoint: POST /operacoes/saque/confirmar
- * Request: { "contaId": 1, "valor": 250, "idOpcao": "uuid" }
+ * Request: { "contaId": 1, "valor": 250, "idOpcao": "uuid", "idReserva": "uuid" }
  */
 
 // Tipos para integração de pagamentos agendados
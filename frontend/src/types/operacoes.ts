@@ -99,6 +99,8 @@ export interface SaqueOpcao {
 export interface SaqueOpcoesResponse {
   dados: {
     valorSolicitado: number;
+    idReserva?: string;
+    reservaExpiraEm?: string;
     opcoes: SaqueOpcao[];
     totalOpcoes: number;
     saldoSuficiente: boolean;
@@ -120,6 +122,7 @@ export interface SaqueConfirmacaoRequest {
   contaId: number;
   valor: number;
   idOpcao: string;
+  idReserva?: string;
 }
 
 // Response da confirmação do saque